@@ -0,0 +1,132 @@
+package com.netflix.eventbus.bridge.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.netflix.eventbus.bridge.ByteBufferPool;
+import com.netflix.eventbus.spi.EventCodec;
+
+/**
+ * Encodes and decodes an event into a pooled direct buffer, the way the
+ * bridges do, with {@link String#getBytes} as the baseline of a copying codec.
+ * The build runs it with the GC profiler, so gc.alloc.rate.norm reports the
+ * bytes allocated per encode and decode.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventCodecBenchmark {
+
+    public static class Event {
+        String id;
+        long timestamp;
+        String message;
+
+        public Event() {
+        }
+
+        Event(String id, long timestamp, String message) {
+            this.id = id;
+            this.timestamp = timestamp;
+            this.message = message;
+        }
+    }
+
+    /**
+     * Payload of {@link Event} for {@link BinaryEventCodec}: the timestamp,
+     * the length prefixed id and the message.
+     */
+    private static class EventPayloadCodec implements EventCodec {
+        @Override
+        public void encode(Object event, ByteBuffer target) {
+            Event e = (Event) event;
+            target.putLong(e.timestamp);
+            int lengthPosition = target.position();
+            target.putShort((short) 0);
+            Utf8.encode(e.id, target);
+            target.putShort(lengthPosition, (short) (target.position() - lengthPosition - 2));
+            Utf8.encode(e.message, target);
+        }
+
+        @Override
+        public Object decode(ByteBuffer source) {
+            long timestamp = source.getLong();
+            int idLength = source.getShort();
+            ByteBuffer id = source.slice();
+            id.limit(idLength);
+            source.position(source.position() + idLength);
+            return new Event(Utf8.decode(id), timestamp, Utf8.decode(source));
+        }
+    }
+
+    @Param({"gson", "binary"})
+    private String codecName;
+
+    private EventCodec codec;
+    private ByteBufferPool pool;
+    private Event event;
+    private ByteBuffer encoded;
+
+    @Setup
+    public void setup() {
+        if ("gson".equals(codecName))
+            codec = new GsonEventCodec(Event.class);
+        else
+            codec = BinaryEventCodec.builder().withType(BinaryEventCodec.MIN_CUSTOM_TAG, Event.class, new EventPayloadCodec()).build();
+        pool = new ByteBufferPool(4096, 4);
+        event = new Event("3f2a9c1e-7b44-4d0e-9a51-0c6d2b8e7f10", System.currentTimeMillis(),
+                          "User logged in from device \u00e9cran \u4e2d\u6587");
+        encoded = ByteBuffer.allocateDirect(4096);
+        codec.encode(event, encoded);
+        encoded.flip();
+    }
+
+    @Benchmark
+    public Object encode() {
+        ByteBuffer buffer = pool.acquire();
+        codec.encode(event, buffer);
+        pool.release(buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public Object decode() {
+        Object decoded = codec.decode(encoded);
+        encoded.rewind();
+        return decoded;
+    }
+
+    @Benchmark
+    public Object roundTrip() {
+        ByteBuffer buffer = pool.acquire();
+        codec.encode(event, buffer);
+        buffer.flip();
+        Object decoded = codec.decode(buffer);
+        pool.release(buffer);
+        return decoded;
+    }
+
+    @Benchmark
+    public Object copyingBaseline() {
+        ByteBuffer buffer = pool.acquire();
+        buffer.put(event.message.getBytes(StandardCharsets.UTF_8));
+        pool.release(buffer);
+        return buffer;
+    }
+}
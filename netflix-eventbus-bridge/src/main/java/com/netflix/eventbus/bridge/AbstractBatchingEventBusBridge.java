@@ -0,0 +1,417 @@
+package com.netflix.eventbus.bridge;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+
+import com.google.common.base.Preconditions;
+import com.netflix.eventbus.spi.DynamicSubscriber;
+import com.netflix.eventbus.spi.EventWeigher;
+import com.netflix.eventbus.spi.Subscribe;
+import com.netflix.eventbus.spi.SubscriberConfigProvider;
+
+/**
+ * Bridge that forwards events in batches, with a bounded number of
+ * asynchronous sends in flight.
+ *
+ * Events are batched by the event bus by size and age, see
+ * {@link Subscribe.BatchingStrategy#SizeOrAge}.  If a maximum number of
+ * bytes per batch is specified, a batch delivered by the bus is further split
+ * so that the weight of every batch sent is within the limit, unless it holds
+ * a single event.
+ *
+ * Batches are handed to sendEvents() on the consumer thread, which may
+ * complete the send asynchronously by calling the provided callback.  When the
+ * maximum number of sends is in flight, the consumer thread waits for a send
+ * to complete, so that the queue of the subscriber fills up rather than
+ * sending more.
+ */
+public abstract class AbstractBatchingEventBusBridge extends AbstractEventBusBridge {
+    public static final int  DEFAULT_BATCH_SIZE       = 100;
+    public static final int  DEFAULT_BATCH_AGE_MILLIS = 100;
+    public static final long DEFAULT_MAX_BATCH_BYTES  = Long.MAX_VALUE;
+    public static final int  DEFAULT_MAX_IN_FLIGHT    = 1;
+
+    /**
+     * Completion callback of a send.  Exactly one of the methods must be
+     * called, once, from any thread.
+     */
+    public interface SendCallback {
+        public void onSuccess();
+
+        public void onFailure(Exception e);
+
+        /**
+         * Called, before the send completes, for an event of the batch that is
+         * not sent while the rest of the batch is, e.g. as it can not be
+         * encoded.  The event is counted as a consume error and not as
+         * consumed.
+         */
+        public default void onDropped(Object event, Exception e) {
+        }
+    }
+
+    /**
+     * Base builder with support for fluent subsclasses
+     *
+     * @param <T>   The subclasses's Builder.
+     */
+    public static abstract class Builder<T extends Builder<T>> extends AbstractEventBusBridge.Builder<T> {
+        protected int batchSize = DEFAULT_BATCH_SIZE;
+        protected int batchAgeMillis = DEFAULT_BATCH_AGE_MILLIS;
+        protected long maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+        protected EventWeigher weigher;
+        protected int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+        /**
+         * Maximum number of events in a batch, must be greater than 1
+         * @param batchSize
+         */
+        public T withBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return self();
+        }
+
+        /**
+         * Maximum time a batch is held before being sent
+         * @param batchAgeMillis
+         */
+        public T withBatchAge(int batchAgeMillis) {
+            this.batchAgeMillis = batchAgeMillis;
+            return self();
+        }
+
+        /**
+         * Maximum weight of a batch, typically its serialized size.
+         * @param maxBatchBytes
+         * @param weigher   Weighs every event, in the same units as maxBatchBytes
+         */
+        public T withMaxBatchBytes(long maxBatchBytes, EventWeigher weigher) {
+            this.maxBatchBytes = maxBatchBytes;
+            this.weigher = weigher;
+            return self();
+        }
+
+        /**
+         * Maximum number of sends that have not yet completed
+         * @param maxInFlight
+         */
+        public T withMaxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+            return self();
+        }
+
+        @Override
+        protected void validate() throws Exception {
+            super.validate();
+            Preconditions.checkArgument(batchSize > 1,      "Batch size must be greater than 1");
+            Preconditions.checkArgument(batchAgeMillis > 0, "Batch age must be positive");
+            Preconditions.checkArgument(maxBatchBytes > 0,  "Max batch bytes must be positive");
+            Preconditions.checkArgument(maxInFlight > 0,    "Max in flight must be positive");
+            Preconditions.checkArgument(maxBatchBytes == DEFAULT_MAX_BATCH_BYTES || weigher != null,
+                                        "Must specify a weigher for max batch bytes");
+        }
+    }
+
+    protected final BatchSendStats batchStats = new BatchSendStats();
+
+    private final int batchSize;
+    private final int batchAgeMillis;
+    private final long maxBatchBytes;
+    private final EventWeigher weigher;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+
+    protected AbstractBatchingEventBusBridge(Builder<?> init) throws Exception {
+        super(init);
+        this.batchSize      = init.batchSize;
+        this.batchAgeMillis = init.batchAgeMillis;
+        this.maxBatchBytes  = init.maxBatchBytes;
+        this.weigher        = init.weigher;
+        this.maxInFlight    = init.maxInFlight;
+        this.inFlight       = new Semaphore(init.maxInFlight);
+    }
+
+    /**
+     * Template method for sending a batch of events.  The send may complete
+     * asynchronously, but the callback must eventually be called.  Throwing
+     * an exception is the same as calling callback.onFailure().
+     *
+     * @param events    Immutable batch of events
+     * @param callback  Callback to call when the send completes
+     * @throws Exception
+     */
+    protected abstract void sendEvents(List<Object> events, SendCallback callback) throws Exception;
+
+    /**
+     * Sends the event as a batch of one.
+     */
+    @Override
+    @Deprecated
+    protected final void sendEvent(Object event) throws Exception {
+        send(Collections.singletonList(event), weigher == null ? 0 : weigher.weigh(event));
+    }
+
+    /**
+     * Sends the event as a batch of one and waits for the send to complete,
+     * so that a failed send throws its exception, e.g. for
+     * {@link DiskBufferedEventBusBridge} to retry it.
+     */
+    @Override
+    protected void onNextEvent(Object event) throws Exception {
+        final CountDownLatch completed = new CountDownLatch(1);
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        send(Collections.singletonList(event), weigher == null ? 0 : weigher.weigh(event), new SendCallback() {
+            @Override
+            public void onSuccess() {
+                completed.countDown();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                failure.set(e);
+                completed.countDown();
+            }
+        });
+        completed.await();
+        if (failure.get() != null)
+            throw failure.get();
+    }
+
+    @Override
+    protected Object createSubscriber() {
+        return new BatchSubscriber();
+    }
+
+    /**
+     * Sends the event as a batch of one, subject to the max in flight.
+     */
+    @Override
+    protected void sendBufferedEvent(Object event) {
+        send(Collections.singletonList(event), weigher == null ? 0 : weigher.weigh(event));
+    }
+
+    /**
+     * Sends the events as one batch, split like the batches of the
+     * subscriber, subject to the max in flight.
+     */
+    @Override
+    protected void sendBufferedEvents(List<Object> events) {
+        consume(events);
+    }
+
+    @Override
+    protected int getBufferedBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Waits for all the sends in flight to complete.  Typically called from
+     * postShutdown().
+     *
+     * @return false if the timeout elapsed first
+     * @throws InterruptedException
+     */
+    public boolean awaitInFlight(long timeout, TimeUnit units) throws InterruptedException {
+        if (!inFlight.tryAcquire(maxInFlight, timeout, units))
+            return false;
+        inFlight.release(maxInFlight);
+        return true;
+    }
+
+    /**
+     * @return Number of sends that have not yet completed
+     */
+    public int getInFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    public BatchSendStats getBatchStats() {
+        return batchStats;
+    }
+
+    private void consume(Iterable<Object> batch) {
+        if (maxBatchBytes == DEFAULT_MAX_BATCH_BYTES && batch instanceof List) {
+            send((List<Object>) batch, 0); // Immutable as delivered by the bus.
+            return;
+        }
+
+        List<Object> current = new ArrayList<Object>();
+        long currentBytes = 0;
+        for (Object event : batch) {
+            long bytes = weigher == null ? 0 : weigher.weigh(event);
+            if (!current.isEmpty() && currentBytes + bytes > maxBatchBytes) {
+                send(Collections.unmodifiableList(current), currentBytes);
+                current = new ArrayList<Object>();
+                currentBytes = 0;
+            }
+            current.add(event);
+            currentBytes += bytes;
+        }
+        if (!current.isEmpty())
+            send(Collections.unmodifiableList(current), currentBytes);
+    }
+
+    /**
+     * @param bytes Weight of the events, 0 if not weighed
+     */
+    private void send(List<Object> events, long bytes) {
+        send(events, bytes, null);
+    }
+
+    /**
+     * @param listener Called once the send completed and the stats are
+     *  updated, if not null
+     */
+    private void send(List<Object> events, long bytes, SendCallback listener) {
+        try {
+            inFlight.acquire();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // The consumer is shutdown.
+            onSendFailure(events.size(), e);
+            if (listener != null)
+                listener.onFailure(e);
+            return;
+        }
+
+        BatchCallback callback = new BatchCallback(events, bytes, listener);
+        try {
+            sendEvents(events, callback);
+        }
+        catch (Exception e) {
+            callback.onFailure(e);
+        }
+    }
+
+    private void onSendFailure(int eventCount, Exception e) {
+        for (int i = 0; i < eventCount; i++) {
+            stats.incConsumeErrorCount(e);
+        }
+    }
+
+    private class BatchCallback implements SendCallback {
+        private final List<Object> events;
+        private final long bytes;
+        private final SendCallback listener;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private final AtomicInteger dropped = new AtomicInteger();
+
+        BatchCallback(List<Object> events, long bytes, SendCallback listener) {
+            this.events = events;
+            this.bytes = bytes;
+            this.listener = listener;
+        }
+
+        @Override
+        public void onSuccess() {
+            if (!completed.compareAndSet(false, true))
+                return;
+            long latencyNanos = System.nanoTime() - startNanos;
+            batchStats.recordSend(events.size(), latencyNanos, true);
+            stats.recordSendLatency(latencyNanos);
+            if (bytes > 0)
+                stats.incConsumeBytes(bytes);
+            for (int i = dropped.get(); i < events.size(); i++) {
+                stats.incConsumeCount();
+            }
+            inFlight.release();
+            if (listener != null)
+                listener.onSuccess();
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            if (!completed.compareAndSet(false, true))
+                return;
+            long latencyNanos = System.nanoTime() - startNanos;
+            batchStats.recordSend(events.size(), latencyNanos, false);
+            stats.recordSendLatency(latencyNanos);
+            onSendFailure(events.size() - dropped.get(), e);
+            inFlight.release();
+            if (listener != null)
+                listener.onFailure(e);
+        }
+
+        @Override
+        public void onDropped(Object event, Exception e) {
+            if (completed.get())
+                return;
+            dropped.incrementAndGet();
+            stats.incConsumeErrorCount(e);
+            if (listener != null)
+                listener.onDropped(event, e);
+        }
+    }
+
+    /**
+     * The batching configuration is provided by {@link #getConfigForName(String)},
+     * the annotation only marks this as a batch subscriber.
+     */
+    private class BatchSubscriber implements DynamicSubscriber, SubscriberConfigProvider {
+        @Override
+        public Class<?> getEventType() {
+            return eventType;
+        }
+
+        @Override
+        public SubscriberConfig getConfigForName(String subscriberName) {
+            return new SubscriberConfig() {
+                @Override
+                public Subscribe.BatchingStrategy getBatchingStrategy() {
+                    return Subscribe.BatchingStrategy.SizeOrAge;
+                }
+
+                @Override
+                public int getBatchAge() {
+                    return batchAgeMillis;
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return batchSize;
+                }
+
+                @Override
+                public int getQueueSize() {
+                    return -1;
+                }
+
+                @Override
+                public boolean syncIfAllowed() {
+                    return false;
+                }
+            };
+        }
+
+        @Subscribe(name = "bridge-batch", batchingStrategy = Subscribe.BatchingStrategy.Age, batchAge = 1)
+        public void consume(Iterable<Object> batch) {
+            Lock lock = getSendLock();
+            lock.lock();
+            try {
+                if (!isBuffering()) {
+                    AbstractBatchingEventBusBridge.this.consume(batch);
+                    return;
+                }
+                List<Object> events = new ArrayList<Object>();
+                for (Object event : batch) {
+                    if (!bufferIfPaused(event))
+                        events.add(event);
+                }
+                if (!events.isEmpty())
+                    AbstractBatchingEventBusBridge.this.consume(Collections.unmodifiableList(events));
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+    }
+}
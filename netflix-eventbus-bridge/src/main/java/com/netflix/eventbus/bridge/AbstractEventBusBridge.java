@@ -1,12 +1,27 @@
 package com.netflix.eventbus.bridge;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
+import com.google.common.util.concurrent.RateLimiter;
 import com.google.inject.Inject;
+import com.netflix.eventbus.impl.EventBusImpl;
 import com.netflix.eventbus.spi.DynamicSubscriber;
 import com.netflix.eventbus.spi.EventBus;
 import com.netflix.eventbus.spi.EventFilter;
@@ -20,7 +35,12 @@ import com.netflix.eventbus.spi.Subscribe;
  *
  */
 public abstract class AbstractEventBusBridge implements EventBusBridge {
+    private static final Logger LOG = LoggerFactory.getLogger(AbstractEventBusBridge.class);
+    private static final AtomicInteger instanceCounter = new AtomicInteger();
+    
     public static final Boolean DEFAULT_AUTO_START = true;
+    public static final int DEFAULT_PAUSE_BUFFER_SIZE = 0;
+    public static final double DEFAULT_RESUME_RATE = 0;
     public static final Supplier<EventBusBridgeStats> DEFAULT_STATS_SUPPLIER = new Supplier<EventBusBridgeStats>() {
         @Override
         public EventBusBridgeStats get() {
@@ -41,6 +61,8 @@ public abstract class AbstractEventBusBridge implements EventBusBridge {
         protected Supplier<EventBusBridgeStats> statsSupplier = DEFAULT_STATS_SUPPLIER;
         protected boolean autoStart = DEFAULT_AUTO_START;
         protected EventFilter filter;
+        protected int pauseBufferSize = DEFAULT_PAUSE_BUFFER_SIZE;
+        protected double resumeRate = DEFAULT_RESUME_RATE;
         
         /**
          * The event bus to use
@@ -103,9 +125,38 @@ public abstract class AbstractEventBusBridge implements EventBusBridge {
             return self();
         }
         
+        /**
+         * Keep the subscription while paused and buffer up to this many events,
+         * which are sent once resumed.  When the buffer is full the oldest
+         * event is passed to onPauseBufferOverflow().  By default (0) pausing
+         * unsubscribes and the events published while paused are lost.
+         * 
+         * Note that events are only buffered once the bridge was started.
+         * @param size
+         */
+        public T withPauseBuffer(int size) {
+            this.pauseBufferSize = size;
+            return self();
+        }
+        
+        /**
+         * Maximum rate at which the events buffered while paused are sent once
+         * resumed, so the sink is not flooded after a maintenance window.  
+         * Only the events buffered at the time of the resume are limited, the
+         * new events are queued behind them, to keep the order, and sent at
+         * the rate they arrive.  By default (0) the rate is not limited.
+         * @param eventsPerSecond
+         */
+        public T withResumeRate(double eventsPerSecond) {
+            this.resumeRate = eventsPerSecond;
+            return self();
+        }
+        
         protected void validate() throws Exception {
             Preconditions.checkNotNull(eventType,  "Must specify an event type");
             Preconditions.checkNotNull(eventBus,   "Must specify an event bus");
+            Preconditions.checkArgument(pauseBufferSize >= 0, "Pause buffer size must not be negative");
+            Preconditions.checkArgument(resumeRate >= 0,      "Resume rate must not be negative");
         }
         
         /**
@@ -122,6 +173,23 @@ public abstract class AbstractEventBusBridge implements EventBusBridge {
     protected final Object              subscriber;
     protected final EventFilter         filter;
     protected volatile Boolean          paused = false;
+    private ObjectName                  mbeanName;
+    
+    private final int                   pauseBufferSize;
+    private final ArrayDeque<Object>    pauseBuffer;
+    private final RateLimiter           resumeRateLimiter;
+    private volatile boolean            buffering;
+    private int                         rateLimitedBacklog; // Guarded by pauseBuffer.
+    private boolean                     draining;
+    private boolean                     subscribed;
+    private Thread                      drainThread;
+    
+    /**
+     * Held for read by the subscriber while deciding to send an event and
+     * sending it, and for write while sending buffered events, so that the
+     * subscriber never sends concurrently with the resume thread.
+     */
+    private final ReentrantReadWriteLock sendLock = new ReentrantReadWriteLock();
     
     protected AbstractEventBusBridge(Builder<?> init) throws Exception {
         this.eventBus  = init.eventBus;
@@ -129,8 +197,27 @@ public abstract class AbstractEventBusBridge implements EventBusBridge {
         this.eventType = init.eventType;
         this.paused    = !init.autoStart;
         this.filter    = init.filter;
+        this.stats.setPaused(this.paused);
+        this.buffering = this.paused;
+        
+        this.pauseBufferSize   = init.pauseBufferSize;
+        this.pauseBuffer       = new ArrayDeque<Object>(Math.min(init.pauseBufferSize, 1024));
+        this.resumeRateLimiter = init.resumeRate > 0 ? RateLimiter.create(init.resumeRate) : null;
         
-        this.subscriber = new DynamicSubscriber() {
+        this.subscriber = createSubscriber();
+    }
+    
+    /**
+     * Template method creating the subscriber registered to the event bus.
+     * The default subscriber consumes events one at a time, calling 
+     * sendEvent() on the consumer thread.
+     * 
+     * Note that this is called from the constructor, so the subscriber must
+     * not access the fields of the subclass until it receives events.
+     * @return
+     */
+    protected Object createSubscriber() {
+        return new DynamicSubscriber() {
             @Override
             public Class<?> getEventType() {
                 return eventType;
@@ -138,19 +225,118 @@ public abstract class AbstractEventBusBridge implements EventBusBridge {
 
             @Subscribe
             public void consume(Object obj) {
+                Lock lock = getSendLock();
+                lock.lock();
                 try {
-                    if (!paused) {
-                        sendEvent(obj);
-                        stats.incConsumeCount();
-                    }
+                    if (!bufferIfPaused(obj))
+                        consumeEvent(obj);
                 }
-                catch (Exception e) {
-                    stats.incConsumeErrorCount(e);
+                finally {
+                    lock.unlock();
                 }
             }
         };
     }
     
+    private void consumeEvent(Object obj) {
+        try {
+            long startNanos = System.nanoTime();
+            sendEvent(obj);
+            stats.recordSendLatency(System.nanoTime() - startNanos);
+            stats.incConsumeCount();
+        }
+        catch (Exception e) {
+            stats.incConsumeErrorCount(e);
+        }
+    }
+    
+    /**
+     * Called by the subscriber for every event before sending it.  While paused,
+     * and while resuming from a pause buffer, the event is buffered (or 
+     * dropped if there is no pause buffer) instead of sent.  The subscriber
+     * must hold getSendLock() from this call till the event is sent.
+     * 
+     * @param event
+     * @return true if the event must not be sent by the subscriber
+     */
+    protected final boolean bufferIfPaused(Object event) {
+        if (!buffering)
+            return false;
+        
+        Object evicted = null;
+        synchronized (pauseBuffer) {
+            if (!buffering)
+                return false;
+            if (pauseBufferSize == 0)
+                return true;
+            if (pauseBuffer.size() == pauseBufferSize)
+                evicted = pauseBuffer.poll();
+            pauseBuffer.offer(event);
+        }
+        if (evicted != null)
+            onPauseBufferOverflow(evicted);
+        return true;
+    }
+    
+    /**
+     * @return true if events are buffered (or dropped) by bufferIfPaused()
+     *  rather than sent, i.e. while paused or draining the pause buffer.  The
+     *  subscriber must hold getSendLock() from this call till the events are
+     *  sent.
+     */
+    protected final boolean isBuffering() {
+        return buffering;
+    }
+    
+    /**
+     * @return The lock a subscriber holds from the isBuffering() or
+     *  bufferIfPaused() check till the event is sent, so that it does not send
+     *  concurrently with, and thus reorder events sent by, the resume thread.
+     *  Subscribers hold it concurrently with each other.
+     */
+    protected final Lock getSendLock() {
+        return sendLock.readLock();
+    }
+    
+    /**
+     * Template method for sending an event that was buffered while paused.
+     * It is called on the resume thread, but never concurrently with the 
+     * subscriber sending events.  Subclasses with their own subscriber 
+     * should override this to send the event the way the subscriber does.
+     * @param event
+     */
+    protected void sendBufferedEvent(Object event) {
+        consumeEvent(event);
+    }
+    
+    /**
+     * Template method for sending the events buffered while paused, in the
+     * order they were buffered, called like sendBufferedEvent().  The default
+     * sends them one at a time with sendBufferedEvent().
+     * @param events - Immutable list of at most getBufferedBatchSize() events
+     */
+    protected void sendBufferedEvents(List<Object> events) {
+        for (Object event : events) {
+            sendBufferedEvent(event);
+        }
+    }
+    
+    /**
+     * @return Maximum number of buffered events passed to sendBufferedEvents() at once
+     */
+    protected int getBufferedBatchSize() {
+        return 1;
+    }
+    
+    /**
+     * Template method called with the oldest buffered event when the pause
+     * buffer is full, for example to spill it.  The default drops it.
+     * @param event
+     */
+    protected void onPauseBufferOverflow(Object event) {
+        stats.incPauseDroppedCount();
+    }
+    
     @PostConstruct
     final public void init() throws Exception  {
         preInit();
@@ -158,11 +344,26 @@ public abstract class AbstractEventBusBridge implements EventBusBridge {
             paused = true;
             resume();
         }
+        registerMBean();
     }
     
     @PreDestroy
     final public void shutdown() throws Exception {
         pause();
+        Thread thread;
+        synchronized (this) {
+            unsubscribe();
+            thread = drainThread;
+        }
+        if (thread != null)
+            thread.join();
+        synchronized (pauseBuffer) {
+            if (!pauseBuffer.isEmpty()) {
+                LOG.warn("Discarding " + pauseBuffer.size() + " events buffered while paused for: " + eventType);
+                pauseBuffer.clear();
+            }
+        }
+        unregisterMBean();
         postShutdown();
     }
     
@@ -224,8 +425,13 @@ public abstract class AbstractEventBusBridge implements EventBusBridge {
     @Override
     final public synchronized void pause() throws Exception {
         if (paused == false) {
-            paused = true;
-            this.eventBus.unregisterSubscriber(subscriber);
+            synchronized (pauseBuffer) {
+                paused = true;
+                buffering = true;
+            }
+            if (pauseBufferSize == 0)
+                unsubscribe();
+            stats.setPaused(true);
             postPause();
         }
     }
@@ -234,18 +440,98 @@ public abstract class AbstractEventBusBridge implements EventBusBridge {
     final public synchronized void resume() throws Exception {
         if (paused == true) {
             preResume();
-            if (filter != null)
-                this.eventBus.registerSubscriber(filter, subscriber);
-            else 
-                this.eventBus.registerSubscriber(subscriber);        
-            paused = false;
+            if (!subscribed) {
+                if (filter != null)
+                    this.eventBus.registerSubscriber(filter, subscriber);
+                else 
+                    this.eventBus.registerSubscriber(subscriber);        
+                subscribed = true;
+            }
+            synchronized (pauseBuffer) {
+                paused = false;
+                rateLimitedBacklog = pauseBuffer.size();
+                if (pauseBuffer.isEmpty())
+                    buffering = false;
+                else if (!draining)
+                    startDraining();
+            }
+            stats.setPaused(false);
         }
     }
     
+    private void unsubscribe() {
+        if (subscribed) {
+            this.eventBus.unregisterSubscriber(subscriber);
+            subscribed = false;
+        }
+    }
+    
+    /**
+     * Sends the events buffered while paused, in batches of up to
+     * getBufferedBatchSize(), then switches back to sending directly from the
+     * subscriber.  Only the events buffered at the time of the resume are 
+     * rate limited.  Stops after the current batch if paused again.
+     */
+    private void startDraining() {
+        draining = true;
+        drainThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                int batchSize = getBufferedBatchSize();
+                while (true) {
+                    List<Object> events = new ArrayList<Object>(Math.min(batchSize, 1024));
+                    int rateLimited;
+                    synchronized (pauseBuffer) {
+                        // The backlog shrinks if its oldest events overflowed.
+                        rateLimitedBacklog = Math.min(rateLimitedBacklog, pauseBuffer.size());
+                        while (!paused && events.size() < batchSize && !pauseBuffer.isEmpty()) {
+                            events.add(pauseBuffer.poll());
+                        }
+                        if (events.isEmpty()) {
+                            draining = false;
+                            buffering = paused;
+                            return;
+                        }
+                        rateLimited = Math.min(events.size(), rateLimitedBacklog);
+                        rateLimitedBacklog -= rateLimited;
+                    }
+                    if (resumeRateLimiter != null && rateLimited > 0)
+                        resumeRateLimiter.acquire(rateLimited);
+                    Lock lock = sendLock.writeLock();
+                    lock.lock();
+                    try {
+                        sendBufferedEvents(Collections.unmodifiableList(events));
+                    }
+                    finally {
+                        lock.unlock();
+                    }
+                }
+            }
+        }, "eventbus-bridge-resume-" + eventType.getSimpleName());
+        drainThread.setDaemon(true);
+        drainThread.start();
+    }
+    
     public boolean isPaused() {
         return paused;
     }
     
+    /**
+     * @return Number of events buffered while paused and not yet sent
+     */
+    public int getPauseBufferCount() {
+        synchronized (pauseBuffer) {
+            return pauseBuffer.size();
+        }
+    }
+    
+    /**
+     * @return Number of events dropped because the pause buffer was full
+     */
+    public long getPauseDroppedCount() {
+        return stats.getPauseDroppedCount();
+    }
+    
     public long getConsumeErrorCount() {
         return stats.getConsumeErrorCount();
     }
@@ -258,7 +544,46 @@ public abstract class AbstractEventBusBridge implements EventBusBridge {
         return stats.getLastConsumeException();
     }
     
+    /**
+     * @return Number of events queued for the subscriber of this bridge, 
+     *  including those buffered while paused.  The queue of the subscriber
+     *  is only known for {@link EventBusImpl}.  The value is also updated in
+     *  the stats.
+     */
+    public long getQueueLag() {
+        long lag = getPauseBufferCount();
+        if (eventBus instanceof EventBusImpl)
+            lag += ((EventBusImpl) eventBus).getQueuedEventCount(subscriber);
+        stats.setQueueLag(lag);
+        return lag;
+    }
+    
     public EventBusBridgeStats getStats() {
+        getQueueLag();
         return new ImmutableEventBusBridgeStats(stats);
     }
+    
+    private void registerMBean() {
+        try {
+            ObjectName name = new ObjectName("com.netflix.eventbus.bridge:type=" + getClass().getName() 
+                    + ",eventType=" + eventType.getName() + ",id=" + instanceCounter.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new EventBusBridgeMonitor(this), name);
+            mbeanName = name;
+        }
+        catch (Exception e) {
+            LOG.warn("Unable to register the stats of the bridge for: " + eventType + " to JMX", e);
+        }
+    }
+    
+    private void unregisterMBean() {
+        if (mbeanName == null)
+            return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+        }
+        catch (Exception e) {
+            LOG.warn("Unable to unregister the stats of the bridge for: " + eventType + " from JMX", e);
+        }
+        mbeanName = null;
+    }
 }
@@ -0,0 +1,92 @@
+package com.netflix.eventbus.bridge;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stats of the batches sent by an {@link AbstractBatchingEventBusBridge}.
+ * A batch is recorded when its send completes, successfully or not.
+ */
+public class BatchSendStats {
+    private final AtomicLong batchCount = new AtomicLong(0);
+    private final AtomicLong batchedEventCount = new AtomicLong(0);
+    private final AtomicLong maxBatchSize = new AtomicLong(0);
+    private final AtomicLong totalSendLatencyNanos = new AtomicLong(0);
+    private final AtomicLong maxSendLatencyNanos = new AtomicLong(0);
+    private final AtomicLong failedBatchCount = new AtomicLong(0);
+
+    /**
+     * Called when the send of a batch completes
+     * @param batchSize - Number of events in the batch
+     * @param latencyNanos - Time from calling sendEvents() to the completion
+     * @param success - Whether the batch was sent successfully
+     */
+    public void recordSend(int batchSize, long latencyNanos, boolean success) {
+        batchCount.incrementAndGet();
+        batchedEventCount.addAndGet(batchSize);
+        totalSendLatencyNanos.addAndGet(latencyNanos);
+        updateMax(maxBatchSize, batchSize);
+        updateMax(maxSendLatencyNanos, latencyNanos);
+        if (!success)
+            failedBatchCount.incrementAndGet();
+    }
+
+    /**
+     * @return Number of completed sends
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * @return Number of completed sends that failed
+     */
+    public long getFailedBatchCount() {
+        return failedBatchCount.get();
+    }
+
+    /**
+     * @return Number of events in all the completed sends
+     */
+    public long getBatchedEventCount() {
+        return batchedEventCount.get();
+    }
+
+    /**
+     * @return Largest batch sent
+     */
+    public long getMaxBatchSize() {
+        return maxBatchSize.get();
+    }
+
+    /**
+     * @return Mean number of events per batch, 0 if nothing was sent
+     */
+    public double getMeanBatchSize() {
+        long count = batchCount.get();
+        return count == 0 ? 0 : (double) batchedEventCount.get() / count;
+    }
+
+    /**
+     * @return Mean send latency in milliseconds, 0 if nothing was sent
+     */
+    public double getMeanSendLatencyMillis() {
+        long count = batchCount.get();
+        return count == 0 ? 0 : (double) totalSendLatencyNanos.get() / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @return Highest send latency in milliseconds
+     */
+    public long getMaxSendLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxSendLatencyNanos.get());
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        while (true) {
+            long current = max.get();
+            if (value <= current || max.compareAndSet(current, value))
+                return;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.netflix.eventbus.bridge;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of direct buffers of a fixed size, so that bridges encoding
+ * events for I/O do not allocate a buffer per send.  A buffer is allocated
+ * when the pool is empty and dropped on release when the pool is full.
+ *
+ * This class is thread-safe.
+ */
+public class ByteBufferPool {
+    private final int bufferSize;
+    private final int maxPooled;
+    private final Queue<ByteBuffer> pool = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private final AtomicLong allocatedCount = new AtomicLong();
+
+    /**
+     * @param bufferSize - Capacity of every buffer
+     * @param maxPooled - Maximum number of idle buffers retained
+     */
+    public ByteBufferPool(int bufferSize, int maxPooled) {
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("Buffer size must be positive");
+        if (maxPooled < 0)
+            throw new IllegalArgumentException("Max pooled must not be negative");
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * @return A cleared buffer, which should be passed to {@link #release(ByteBuffer)}
+     *  once it is not used anymore
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = pool.poll();
+        if (buffer == null) {
+            allocatedCount.incrementAndGet();
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        pooled.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool.  Buffers not acquired from this pool are
+     * ignored.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect() || buffer.capacity() != bufferSize)
+            return;
+        if (pooled.incrementAndGet() > maxPooled) {
+            pooled.decrementAndGet();
+            return;
+        }
+        pool.offer(buffer);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return Number of buffers allocated since the pool was created
+     */
+    public long getAllocatedCount() {
+        return allocatedCount.get();
+    }
+}
@@ -0,0 +1,463 @@
+package com.netflix.eventbus.bridge;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.netflix.eventbus.spi.DynamicSubscriber;
+import com.netflix.eventbus.spi.EventCodec;
+import com.netflix.eventbus.spi.Subscribe;
+
+/**
+ * Decorator for a bridge that buffers the events on local disk, so that a
+ * slow or unavailable downstream does not fill up the queue of the subscriber
+ * and make the event bus reject events.
+ *
+ * Events consumed from the event bus are only appended to a log of memory-mapped
+ * segment files, see {@link SegmentLog}.  A dedicated thread drains the log in
+ * order, calling onNextEvent() of the delegate bridge at whatever pace the
+ * downstream allows.  A failed send is retried, after a backoff, until it
+ * succeeds or the maximum number of retries is reached, when the event is
+ * passed to the {@link DeadLetterHandler} and removed from the log.  A
+ * batching delegate sends each event as a batch of one and its onNextEvent()
+ * waits for the send to complete, see {@link AbstractBatchingEventBusBridge}.
+ * By default events are retried until delivered, so they are only lost when
+ * the log reaches its maximum size, in which case they are dropped and counted
+ * as consume errors.  An event that fails is counted as a consume error once,
+ * whatever the number of retries.
+ *
+ * The drain position is checkpointed periodically and on shutdown.  A bridge
+ * created on the same directory and log name resumes draining from the last
+ * checkpoint, so events are delivered at least once across restarts and
+ * process crashes.
+ *
+ * The delegate must be created with autoStart set to false, since this bridge
+ * registers for the event bus in its place.  The consume count of this bridge
+ * is the number of events delivered to the delegate.
+ */
+public class DiskBufferedEventBusBridge extends AbstractEventBusBridge {
+    private static final Logger LOG = LoggerFactory.getLogger(DiskBufferedEventBusBridge.class);
+
+    public static final int  DEFAULT_SEGMENT_SIZE_BYTES    = 8 * 1024 * 1024;
+    public static final long DEFAULT_MAX_DISK_BYTES        = 256L * 1024 * 1024;
+    public static final int  DEFAULT_CHECKPOINT_INTERVAL   = 1000;
+    public static final long DEFAULT_RETRY_BACKOFF_MILLIS  = 1000;
+    public static final int  DEFAULT_MAX_RETRIES           = Integer.MAX_VALUE;
+
+    /**
+     * Receives the events that failed to be sent after the maximum number of
+     * retries, on the drain thread.
+     */
+    public interface DeadLetterHandler {
+        /**
+         * @param event
+         * @param lastError - Failure of the last retry
+         */
+        public void onDeadLetter(Object event, Exception lastError);
+    }
+
+    public static class Builder extends AbstractEventBusBridge.Builder<Builder> {
+        private AbstractEventBusBridge delegate;
+        private EventCodec codec;
+        private File directory;
+        private String logName;
+        private int segmentSize = DEFAULT_SEGMENT_SIZE_BYTES;
+        private long maxDiskBytes = DEFAULT_MAX_DISK_BYTES;
+        private int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+        private long retryBackoffMillis = DEFAULT_RETRY_BACKOFF_MILLIS;
+        private int maxRetries = DEFAULT_MAX_RETRIES;
+        private DeadLetterHandler deadLetterHandler;
+
+        /**
+         * The bridge that sends the events downstream.  It must be paused.
+         * @param delegate
+         */
+        public Builder withDelegate(AbstractEventBusBridge delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * Codec used to write the events to disk
+         * @param codec
+         */
+        public Builder withCodec(EventCodec codec) {
+            this.codec = codec;
+            return this;
+        }
+
+        /**
+         * Directory of the log, created if it does not exist
+         * @param directory
+         */
+        public Builder withDirectory(File directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * Prefix of the files of the log, unique within the directory.
+         * Defaults to the name of the event type.
+         * @param logName
+         */
+        public Builder withLogName(String logName) {
+            this.logName = logName;
+            return this;
+        }
+
+        /**
+         * Size of each segment file.  A single encoded event must fit in a segment.
+         * @param segmentSize
+         */
+        public Builder withSegmentSize(int segmentSize) {
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * Maximum size of all the segment files, rounded down to a whole
+         * number of segments.
+         * @param maxDiskBytes
+         */
+        public Builder withMaxDiskBytes(long maxDiskBytes) {
+            this.maxDiskBytes = maxDiskBytes;
+            return this;
+        }
+
+        /**
+         * Number of events delivered between checkpoints of the drain position
+         * @param checkpointInterval
+         */
+        public Builder withCheckpointInterval(int checkpointInterval) {
+            this.checkpointInterval = checkpointInterval;
+            return this;
+        }
+
+        /**
+         * Time to wait before retrying a failed send
+         * @param retryBackoffMillis
+         */
+        public Builder withRetryBackoff(long retryBackoffMillis) {
+            this.retryBackoffMillis = retryBackoffMillis;
+            return this;
+        }
+
+        /**
+         * Maximum number of retries of a failed send, after which the event is
+         * removed from the log and passed to the dead letter handler.
+         * Defaults to retrying until the send succeeds.
+         * @param maxRetries
+         */
+        public Builder withMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * Handler of the events that exceed the maximum number of retries.
+         * By default they are logged and dropped.
+         * @param deadLetterHandler
+         */
+        public Builder withDeadLetterHandler(DeadLetterHandler deadLetterHandler) {
+            this.deadLetterHandler = deadLetterHandler;
+            return this;
+        }
+
+        @Override
+        protected void validate() throws Exception {
+            super.validate();
+            Preconditions.checkNotNull(delegate,  "Must specify a delegate bridge");
+            Preconditions.checkNotNull(codec,     "Must specify a codec");
+            Preconditions.checkNotNull(directory, "Must specify a directory");
+            Preconditions.checkArgument(delegate.isPaused(), "Delegate bridge must not be started");
+            Preconditions.checkArgument(segmentSize > SegmentLog.RECORD_HEADER_BYTES, "Segment size is too small");
+            Preconditions.checkArgument(maxDiskBytes >= segmentSize, "Max disk bytes must hold at least a segment");
+            Preconditions.checkArgument(checkpointInterval > 0, "Checkpoint interval must be positive");
+            Preconditions.checkArgument(retryBackoffMillis >= 0, "Retry backoff must not be negative");
+            Preconditions.checkArgument(maxRetries >= 0, "Max retries must not be negative");
+        }
+
+        @Override
+        protected Builder self() {
+            return this;
+        }
+
+        public DiskBufferedEventBusBridge build() throws Exception {
+            validate();
+            if (logName == null)
+                logName = eventType.getName();
+            return new DiskBufferedEventBusBridge(this);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final AbstractEventBusBridge delegate;
+    private final SegmentLog log;
+    private final int checkpointInterval;
+    private final long retryBackoffMillis;
+    private final int maxRetries;
+    private final DeadLetterHandler deadLetterHandler;
+    private final Thread drainThread;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong deadLetterCount = new AtomicLong();
+    private volatile boolean draining = true;
+
+    protected DiskBufferedEventBusBridge(Builder init) throws Exception {
+        super(init);
+        this.delegate           = init.delegate;
+        this.checkpointInterval = init.checkpointInterval;
+        this.retryBackoffMillis = init.retryBackoffMillis;
+        this.maxRetries         = init.maxRetries;
+        this.deadLetterHandler  = init.deadLetterHandler;
+        this.log = new SegmentLog(init.directory, init.logName, init.codec, init.segmentSize,
+                                  (int) Math.min(Integer.MAX_VALUE, init.maxDiskBytes / init.segmentSize));
+        this.drainThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "eventbus-bridge-drain-" + init.logName);
+        this.drainThread.setDaemon(true);
+        this.drainThread.start();
+        init();
+    }
+
+    @Override
+    protected Object createSubscriber() {
+        return new DynamicSubscriber() {
+            @Override
+            public Class<?> getEventType() {
+                return eventType;
+            }
+
+            @Subscribe
+            public void consume(Object obj) {
+                Lock lock = getSendLock();
+                lock.lock();
+                try {
+                    if (!bufferIfPaused(obj)) {
+                        append(obj);
+                    }
+                }
+                finally {
+                    lock.unlock();
+                }
+            }
+        };
+    }
+
+    @Override
+    protected void sendBufferedEvent(Object event) {
+        append(event);
+    }
+
+    /**
+     * Events are never sent directly, but appended to the log.
+     */
+    @Override
+    @Deprecated
+    protected void sendEvent(Object event) throws Exception {
+        append(event);
+    }
+
+    @Override
+    protected void postShutdown() throws Exception {
+        draining = false;
+        drainThread.interrupt();
+        drainThread.join();
+        synchronized (log) {
+            log.close();
+        }
+        delegate.shutdown();
+    }
+
+    /**
+     * @return Number of events in the log not yet delivered
+     */
+    public long getLagEvents() {
+        synchronized (log) {
+            return log.getPendingEvents();
+        }
+    }
+
+    /**
+     * @return Encoded size of the events in the log not yet delivered
+     */
+    public long getLagBytes() {
+        synchronized (log) {
+            return log.getPendingBytes();
+        }
+    }
+
+    /**
+     * @return Time since the oldest event not yet delivered was consumed, 0 if
+     *  there is none
+     */
+    public long getLagMillis() {
+        long oldest;
+        synchronized (log) {
+            oldest = log.getOldestAppendMillis();
+        }
+        return oldest < 0 ? 0 : Math.max(0, System.currentTimeMillis() - oldest);
+    }
+
+    /**
+     * @return Size of the segment files of the log
+     */
+    public long getDiskUsageBytes() {
+        synchronized (log) {
+            return log.getDiskUsageBytes();
+        }
+    }
+
+    /**
+     * @return Number of events dropped because the log was full
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return Number of sends retried after a failure
+     */
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    /**
+     * @return Number of events removed from the log after the maximum number of retries
+     */
+    public long getDeadLetterCount() {
+        return deadLetterCount.get();
+    }
+
+    private void append(Object event) {
+        boolean appended;
+        synchronized (log) {
+            appended = log.append(event);
+            if (appended)
+                log.notifyAll();
+        }
+        if (!appended) {
+            droppedCount.incrementAndGet();
+            stats.incConsumeErrorCount(new IOException("Event dropped, the disk buffer is full"));
+        }
+    }
+
+    private void drain() {
+        int sinceCheckpoint = 0;
+        int failures = 0; // Of the oldest event.
+        while (draining) {
+            SegmentLog.Checkpoint checkpoint = null;
+            try {
+                SegmentLog.Record record;
+                synchronized (log) {
+                    record = log.peek();
+                    if (log.hasReadSegments() || (record == null && sinceCheckpoint > 0)) {
+                        checkpoint = log.prepareCheckpoint(); // Idle, all delivered, or a segment to delete.
+                        sinceCheckpoint = 0;
+                    }
+                    else if (record == null) {
+                        log.wait(TimeUnit.SECONDS.toMillis(1));
+                        continue;
+                    }
+                }
+                if (checkpoint != null) {
+                    writeCheckpoint(checkpoint);
+                    checkpoint = null;
+                }
+                if (record == null)
+                    continue;
+
+                if (!deliver(record, failures)) {
+                    failures++;
+                    Thread.sleep(retryBackoffMillis);
+                    continue;
+                }
+                failures = 0;
+
+                synchronized (log) {
+                    log.remove();
+                    if (++sinceCheckpoint >= checkpointInterval) {
+                        checkpoint = log.prepareCheckpoint();
+                        sinceCheckpoint = 0;
+                    }
+                }
+                if (checkpoint != null) {
+                    writeCheckpoint(checkpoint);
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return; // Shutdown, the log is checkpointed on close.
+            }
+            catch (IOException e) {
+                LOG.error("Failed to read the disk buffer of the bridge for: " + eventType, e);
+            }
+        }
+    }
+
+    /**
+     * Sends the event to the delegate, or to the dead letter handler once
+     * the maximum number of retries is reached.
+     *
+     * @param failures Number of failed sends of the event so far
+     * @return true if the event must be removed from the log
+     */
+    private boolean deliver(SegmentLog.Record record, int failures) throws InterruptedException {
+        if (failures > 0)
+            retryCount.incrementAndGet();
+        long startNanos = System.nanoTime();
+        try {
+            delegate.onNextEvent(record.event);
+        }
+        catch (InterruptedException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            if (failures == 0)
+                stats.incConsumeErrorCount(e);
+            if (failures < maxRetries)
+                return false;
+            deadLetterCount.incrementAndGet();
+            if (deadLetterHandler != null) {
+                deadLetterHandler.onDeadLetter(record.event, e);
+            }
+            else {
+                LOG.error(String.format("Dropping event: %s of the bridge for: %s after %s retries", record.event,
+                                        eventType, failures), e);
+            }
+            return true;
+        }
+        stats.recordSendLatency(System.nanoTime() - startNanos);
+        stats.incConsumeBytes(record.size - SegmentLog.RECORD_HEADER_BYTES);
+        stats.incConsumeCount();
+        return true;
+    }
+
+    /**
+     * Writes the checkpoint without holding the lock of the log, so that
+     * append() is not held up by the disk I/O.
+     */
+    private void writeCheckpoint(SegmentLog.Checkpoint checkpoint) {
+        try {
+            log.writeCheckpoint(checkpoint);
+        }
+        catch (IOException e) {
+            LOG.error("Failed to checkpoint the disk buffer of the bridge for: " + eventType, e);
+            synchronized (log) {
+                log.abortCheckpoint(checkpoint);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.netflix.eventbus.bridge;
+
+/**
+ * Exposes the stats of a bridge to JMX, refreshing the queue lag on read.
+ */
+class EventBusBridgeMonitor implements EventBusBridgeStatsMXBean {
+    private final AbstractEventBusBridge bridge;
+
+    EventBusBridgeMonitor(AbstractEventBusBridge bridge) {
+        this.bridge = bridge;
+    }
+
+    @Override
+    public long getConsumeCount() {
+        return bridge.stats.getConsumeCount();
+    }
+
+    @Override
+    public long getConsumeErrorCount() {
+        return bridge.stats.getConsumeErrorCount();
+    }
+
+    @Override
+    public double getEventsPerSecond() {
+        return bridge.stats.getEventsPerSecond();
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return bridge.stats.getBytesPerSecond();
+    }
+
+    @Override
+    public double getMeanSendLatencyMicros() {
+        return bridge.stats.getMeanSendLatencyMicros();
+    }
+
+    @Override
+    public long getSendLatency50thPercentileMicros() {
+        return bridge.stats.getSendLatencyMicros(50);
+    }
+
+    @Override
+    public long getSendLatency99thPercentileMicros() {
+        return bridge.stats.getSendLatencyMicros(99);
+    }
+
+    @Override
+    public long getSendLatency999thPercentileMicros() {
+        return bridge.stats.getSendLatencyMicros(99.9);
+    }
+
+    @Override
+    public long getMaxSendLatencyMicros() {
+        return bridge.stats.getMaxSendLatencyMicros();
+    }
+
+    @Override
+    public long getQueueLag() {
+        return bridge.getQueueLag();
+    }
+
+    @Override
+    public long getPausedTimeMillis() {
+        return bridge.stats.getPausedTimeMillis();
+    }
+
+    @Override
+    public long getPauseDroppedCount() {
+        return bridge.stats.getPauseDroppedCount();
+    }
+
+    @Override
+    public boolean isPaused() {
+        return bridge.isPaused();
+    }
+}
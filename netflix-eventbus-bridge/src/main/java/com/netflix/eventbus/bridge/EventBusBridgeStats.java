@@ -2,6 +2,10 @@ package com.netflix.eventbus.bridge;
 
 /**
  * Interface specifying stats exposed by the EventBusSuroBridge.
+ *
+ * The latency, rate, lag, pause and pause dropped stats are default methods
+ * that record nothing and return 0, so that existing implementations keep
+ * compiling.
  * 
  * @author elandau
  *
@@ -34,4 +38,97 @@ public interface EventBusBridgeStats {
      * @return Last exception provided to {@link incConsumeErrorCount}
      */
     public Exception getLastConsumeException();
+
+    /**
+     * Called with the time taken by each send to the sink
+     * @param latencyNanos
+     */
+    public default void recordSendLatency(long latencyNanos) {
+    }
+
+    /**
+     * Called by bridges that know the size of what they send
+     * @param bytes - Bytes sent to the sink
+     */
+    public default void incConsumeBytes(long bytes) {
+    }
+
+    /**
+     * Called whenever the bridge is paused or resumed
+     * @param paused
+     */
+    public default void setPaused(boolean paused) {
+    }
+
+    /**
+     * Called with the number of events queued for the subscriber of the bridge
+     * @param queuedEvents
+     */
+    public default void setQueueLag(long queuedEvents) {
+    }
+
+    /**
+     * @param percentile - Between 0 and 100
+     * @return Send latency at the percentile in micros, see {@link LatencyHistogram}
+     */
+    public default long getSendLatencyMicros(double percentile) {
+        return 0;
+    }
+
+    /**
+     * @return Mean send latency in micros
+     */
+    public default double getMeanSendLatencyMicros() {
+        return 0;
+    }
+
+    /**
+     * @return Highest send latency in micros
+     */
+    public default long getMaxSendLatencyMicros() {
+        return 0;
+    }
+
+    /**
+     * @return Rate of successfully bridged events over a sliding window
+     */
+    public default double getEventsPerSecond() {
+        return 0;
+    }
+
+    /**
+     * @return Rate of bytes provided to {@link incConsumeBytes} over a sliding window
+     */
+    public default double getBytesPerSecond() {
+        return 0;
+    }
+
+    /**
+     * @return Last number of events queued for the subscriber of the bridge
+     */
+    public default long getQueueLag() {
+        return 0;
+    }
+
+    /**
+     * @return Total time spent paused, including the current pause
+     */
+    public default long getPausedTimeMillis() {
+        return 0;
+    }
+
+    /**
+     * Called for each event dropped because the pause buffer was full
+     * @return New count of dropped events
+     */
+    public default long incPauseDroppedCount() {
+        return 0;
+    }
+
+    /**
+     * @return Number of events dropped because the pause buffer was full
+     */
+    public default long getPauseDroppedCount() {
+        return 0;
+    }
 }
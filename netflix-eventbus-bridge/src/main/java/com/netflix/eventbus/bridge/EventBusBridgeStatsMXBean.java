@@ -0,0 +1,34 @@
+package com.netflix.eventbus.bridge;
+
+/**
+ * JMX view of the {@link EventBusBridgeStats} of a bridge, registered by
+ * {@link AbstractEventBusBridge#init()} under the domain
+ * com.netflix.eventbus.bridge.
+ */
+public interface EventBusBridgeStatsMXBean {
+    public long getConsumeCount();
+
+    public long getConsumeErrorCount();
+
+    public double getEventsPerSecond();
+
+    public double getBytesPerSecond();
+
+    public double getMeanSendLatencyMicros();
+
+    public long getSendLatency50thPercentileMicros();
+
+    public long getSendLatency99thPercentileMicros();
+
+    public long getSendLatency999thPercentileMicros();
+
+    public long getMaxSendLatencyMicros();
+
+    public long getQueueLag();
+
+    public long getPausedTimeMillis();
+
+    public long getPauseDroppedCount();
+
+    public boolean isPaused();
+}
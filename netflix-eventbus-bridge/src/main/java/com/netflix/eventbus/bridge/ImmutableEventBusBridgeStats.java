@@ -39,4 +39,69 @@ public class ImmutableEventBusBridgeStats implements EventBusBridgeStats {
     public Exception getLastConsumeException() {
         return this.delegate.getLastConsumeException();
     }
+
+    @Override
+    public void recordSendLatency(long latencyNanos) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void incConsumeBytes(long bytes) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setPaused(boolean paused) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setQueueLag(long queuedEvents) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long getSendLatencyMicros(double percentile) {
+        return this.delegate.getSendLatencyMicros(percentile);
+    }
+
+    @Override
+    public double getMeanSendLatencyMicros() {
+        return this.delegate.getMeanSendLatencyMicros();
+    }
+
+    @Override
+    public long getMaxSendLatencyMicros() {
+        return this.delegate.getMaxSendLatencyMicros();
+    }
+
+    @Override
+    public double getEventsPerSecond() {
+        return this.delegate.getEventsPerSecond();
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return this.delegate.getBytesPerSecond();
+    }
+
+    @Override
+    public long getQueueLag() {
+        return this.delegate.getQueueLag();
+    }
+
+    @Override
+    public long getPausedTimeMillis() {
+        return this.delegate.getPausedTimeMillis();
+    }
+
+    @Override
+    public long incPauseDroppedCount() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long getPauseDroppedCount() {
+        return this.delegate.getPauseDroppedCount();
+    }
 }
@@ -0,0 +1,82 @@
+package com.netflix.eventbus.bridge;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of latencies with power of two buckets in microseconds,
+ * i.e. bucket i counts the latencies between 2^(i-1) and 2^i - 1 micros.
+ * Percentiles are approximated by the upper bound of their bucket, so they are
+ * accurate within a factor of two.
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 40; // Last bucket is ~6 days and above.
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long latencyNanos) {
+        if (latencyNanos < 0)
+            latencyNanos = 0;
+        long micros = TimeUnit.NANOSECONDS.toMicros(latencyNanos);
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalNanos.addAndGet(latencyNanos);
+        while (true) {
+            long max = maxNanos.get();
+            if (latencyNanos <= max || maxNanos.compareAndSet(max, latencyNanos))
+                break;
+        }
+    }
+
+    /**
+     * @return Number of latencies recorded
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return Mean latency, 0 if none was recorded
+     */
+    public double getMeanMicros() {
+        long recorded = count.get();
+        return recorded == 0 ? 0 : (double) totalNanos.get() / recorded / TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
+    /**
+     * @return Highest latency recorded
+     */
+    public long getMaxMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxNanos.get());
+    }
+
+    /**
+     * @param percentile - Between 0 and 100
+     * @return Latency below which the passed percentile of latencies fall, 0
+     *  if none was recorded
+     */
+    public long getPercentileMicros(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0)
+            return 0;
+
+        long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0)
+                return Math.min((1L << i) - 1, getMaxMicros());
+        }
+        return getMaxMicros();
+    }
+}
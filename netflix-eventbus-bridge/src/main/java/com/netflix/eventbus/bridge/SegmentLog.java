@@ -0,0 +1,488 @@
+package com.netflix.eventbus.bridge;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.eventbus.spi.EventCodec;
+
+/**
+ * A persistent FIFO log of events, backed by memory-mapped segment files in a
+ * directory, used by {@link DiskBufferedEventBusBridge}.
+ *
+ * Every segment is a sequence of records, each of the form:
+ * <pre>
+ [int record size][long append time millis][encoded event]
+ * </pre>
+ * where the record size includes the 12 byte header.  Segments are created
+ * zero filled and the size of a record is written after its content, so a
+ * record size of 0 marks the end of a segment, even if the process crashed
+ * while appending.
+ *
+ * The position of the next event to read is persisted in a checkpoint file,
+ * which is replaced atomically.  On opening, the segments before the
+ * checkpoint are deleted and reading resumes at the checkpoint, so the events
+ * read after the last checkpoint are read again after a crash.  A segment is
+ * deleted by the first checkpoint after reading moves past it.
+ *
+ * This class is <b>not</b> thread-safe, all calls must be guarded by the owner,
+ * except {@link #writeCheckpoint(Checkpoint)}, so that the disk I/O of a
+ * checkpoint does not hold up appends.
+ */
+class SegmentLog implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(SegmentLog.class);
+
+    static final int RECORD_HEADER_BYTES = 12;
+
+    private static final String SEGMENT_SUFFIX    = ".seg";
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+    /**
+     * An event read from the log.
+     */
+    static class Record {
+        final Object event;
+        final long appendMillis;
+        final int size;
+
+        Record(Object event, long appendMillis, int size) {
+            this.event = event;
+            this.appendMillis = appendMillis;
+            this.size = size;
+        }
+    }
+
+    private final File directory;
+    private final String name;
+    private final EventCodec codec;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final File checkpointFile;
+
+    /**
+     * A read position to persist, see {@link SegmentLog#prepareCheckpoint()}.
+     */
+    static class Checkpoint {
+        private final long segment;
+        private final int position;
+        private final MappedByteBuffer tail;
+        private final List<Segment> read;
+
+        private Checkpoint(long segment, int position, MappedByteBuffer tail, List<Segment> read) {
+            this.segment = segment;
+            this.position = position;
+            this.tail = tail;
+            this.read = read;
+        }
+    }
+
+    private final ArrayDeque<Segment> segments = new ArrayDeque<Segment>();
+    private final List<Segment> readSegments = new ArrayList<Segment>(); // Deleted by the next checkpoint.
+    private int readPosition; // In the head segment.
+    private Record peeked;
+    private long pendingEvents;
+    private long pendingBytes;
+
+    SegmentLog(File directory, String name, EventCodec codec, int segmentSize, int maxSegments) throws IOException {
+        this.directory = directory;
+        this.name = name;
+        this.codec = codec;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.checkpointFile = new File(directory, name + CHECKPOINT_SUFFIX);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the log directory: " + directory);
+        }
+        recover();
+    }
+
+    /**
+     * Appends the passed event.
+     *
+     * @return false if the log is full or the event can not be encoded.
+     */
+    boolean append(Object event) {
+        try {
+            return tryAppend(event);
+        }
+        catch (RuntimeException e) {
+            LOG.error(String.format("Failed to encode event: %s for log: %s. Dropping the event.", event, name), e);
+            return false;
+        }
+    }
+
+    private boolean tryAppend(Object event) {
+        Segment tail = segments.peekLast();
+        int size = tail.write(event);
+        if (size < 0) {
+            if (segments.size() + readSegments.size() >= maxSegments) {
+                return false;
+            }
+            try {
+                tail = new Segment(tail.number + 1);
+            }
+            catch (IOException e) {
+                LOG.error("Failed to create a log segment in directory: " + directory, e);
+                return false;
+            }
+            segments.addLast(tail);
+            size = tail.write(event);
+            if (size < 0) {
+                LOG.error(String.format("Event: %s does not fit in a log segment of size: %s. Dropping the event.",
+                                        event, segmentSize));
+                return false;
+            }
+        }
+        pendingEvents++;
+        pendingBytes += size;
+        return true;
+    }
+
+    /**
+     * Returns the oldest unread event, without removing it.  Events that can
+     * not be decoded are skipped.
+     *
+     * @return null if there are no unread events.
+     */
+    Record peek() throws IOException {
+        while (peeked == null) {
+            Segment head = segments.peekFirst();
+            if (readPosition < head.writePosition) {
+                peeked = head.read(readPosition);
+                if (peeked == null) {
+                    skip(head.recordSize(readPosition));
+                }
+            }
+            else if (segments.size() > 1) {
+                segments.pollFirst();
+                readPosition = 0;
+                readSegments.add(head);
+            }
+            else {
+                return null;
+            }
+        }
+        return peeked;
+    }
+
+    /**
+     * Removes the event returned by the last call to {@link #peek()}.
+     */
+    void remove() {
+        if (peeked != null) {
+            skip(peeked.size);
+            peeked = null;
+        }
+    }
+
+    /**
+     * Persists the read position, see {@link #writeCheckpoint(Checkpoint)}.
+     */
+    void checkpoint() throws IOException {
+        Checkpoint checkpoint = prepareCheckpoint();
+        try {
+            writeCheckpoint(checkpoint);
+        }
+        catch (IOException e) {
+            abortCheckpoint(checkpoint);
+            throw e;
+        }
+    }
+
+    /**
+     * @return The current read position, to pass to {@link #writeCheckpoint(Checkpoint)}
+     */
+    Checkpoint prepareCheckpoint() {
+        List<Segment> read = new ArrayList<Segment>(readSegments);
+        readSegments.clear();
+        return new Checkpoint(segments.peekFirst().number, readPosition, segments.peekLast().buffer, read);
+    }
+
+    /**
+     * Keeps the segments read before the passed checkpoint, which failed to
+     * be written, for the next checkpoint to delete.
+     */
+    void abortCheckpoint(Checkpoint checkpoint) {
+        readSegments.addAll(0, checkpoint.read);
+    }
+
+    /**
+     * @return true if reading moved past a segment that is deleted by the next checkpoint
+     */
+    boolean hasReadSegments() {
+        return !readSegments.isEmpty();
+    }
+
+    /**
+     * Persists the passed read position, then deletes the segments read
+     * before it.  The content of the last segment is also flushed to the
+     * storage device, so that the appended events survive a machine crash as
+     * of this checkpoint.
+     *
+     * This is the only method that may be called without the guard of the
+     * owner, but not concurrently with another checkpoint or with close().
+     * If it fails, {@link #abortCheckpoint(Checkpoint)} must be called.
+     */
+    void writeCheckpoint(Checkpoint checkpoint) throws IOException {
+        checkpoint.tail.force();
+
+        File temp = new File(directory, name + CHECKPOINT_SUFFIX + ".tmp");
+        RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+        try {
+            raf.setLength(0);
+            raf.writeLong(checkpoint.segment);
+            raf.writeInt(checkpoint.position);
+            raf.getFD().sync();
+        }
+        finally {
+            raf.close();
+        }
+        if (!temp.renameTo(checkpointFile)) {
+            throw new IOException("Unable to replace the checkpoint file: " + checkpointFile);
+        }
+        for (Segment segment : checkpoint.read) {
+            segment.delete();
+        }
+    }
+
+    long getPendingEvents() {
+        return pendingEvents;
+    }
+
+    long getPendingBytes() {
+        return pendingBytes;
+    }
+
+    /**
+     * @return Time the oldest unread event was appended, -1 if there is none.
+     */
+    long getOldestAppendMillis() {
+        int position = readPosition;
+        for (Segment segment : segments) {
+            if (position < segment.writePosition) {
+                return segment.buffer.getLong(position + 4);
+            }
+            position = 0;
+        }
+        return -1;
+    }
+
+    long getDiskUsageBytes() {
+        return (long) (segments.size() + readSegments.size()) * segmentSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            checkpoint();
+        }
+        finally {
+            for (Segment segment : segments) {
+                segment.close();
+            }
+            segments.clear();
+            for (Segment segment : readSegments) {
+                segment.close();
+            }
+            readSegments.clear();
+        }
+    }
+
+    private void skip(int size) {
+        readPosition += size;
+        pendingEvents--;
+        pendingBytes -= size;
+    }
+
+    private void recover() throws IOException {
+        long checkpointSegment = -1;
+        int checkpointPosition = 0;
+        if (checkpointFile.exists()) {
+            RandomAccessFile raf = new RandomAccessFile(checkpointFile, "r");
+            try {
+                checkpointSegment = raf.readLong();
+                checkpointPosition = raf.readInt();
+            }
+            finally {
+                raf.close();
+            }
+        }
+
+        for (long number : listSegments()) {
+            if (number < checkpointSegment) {
+                new File(directory, segmentFileName(number)).delete(); // Read before the checkpoint.
+                continue;
+            }
+            Segment segment = new Segment(number);
+            segments.addLast(segment);
+            int position = number == checkpointSegment ? checkpointPosition : 0;
+            if (segments.size() == 1) {
+                readPosition = Math.min(position, segment.writePosition);
+            }
+            for (int next = segments.size() == 1 ? readPosition : 0; next < segment.writePosition; ) {
+                int size = segment.recordSize(next);
+                pendingEvents++;
+                pendingBytes += size;
+                next += size;
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.addLast(new Segment(Math.max(checkpointSegment, 0)));
+            readPosition = 0;
+        }
+        if (pendingEvents > 0) {
+            LOG.info(String.format("Recovered %s unread events from log: %s in directory: %s", pendingEvents, name,
+                                   directory));
+        }
+    }
+
+    private List<Long> listSegments() {
+        final String prefix = name + "-";
+        String[] files = directory.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String fileName) {
+                return fileName.startsWith(prefix) && fileName.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        List<Long> numbers = new ArrayList<Long>();
+        if (files != null) {
+            for (String file : files) {
+                try {
+                    numbers.add(Long.parseLong(file.substring(prefix.length(),
+                                                              file.length() - SEGMENT_SUFFIX.length())));
+                }
+                catch (NumberFormatException e) {
+                    LOG.warn("Ignoring unexpected file in the log directory: " + file);
+                }
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private String segmentFileName(long number) {
+        return String.format("%s-%019d%s", name, number, SEGMENT_SUFFIX);
+    }
+
+    private class Segment {
+        private final long number;
+        private final File file;
+        private final RandomAccessFile raf;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+
+        private Segment(long number) throws IOException {
+            this.number = number;
+            this.file = new File(directory, segmentFileName(number));
+            boolean existing = file.exists();
+            this.raf = new RandomAccessFile(file, "rw");
+            try {
+                if (!existing || raf.length() != segmentSize) {
+                    raf.setLength(segmentSize);
+                }
+                buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            }
+            catch (IOException e) {
+                raf.close();
+                throw e;
+            }
+            if (existing) {
+                scan();
+            }
+        }
+
+        /**
+         * Finds the end of the records written before the segment was closed.
+         */
+        private void scan() {
+            while (writePosition + RECORD_HEADER_BYTES <= segmentSize) {
+                int size = buffer.getInt(writePosition);
+                if (size == 0) {
+                    return;
+                }
+                if (size < RECORD_HEADER_BYTES || writePosition + size > segmentSize) {
+                    LOG.warn(String.format("Corrupt record at position: %s of log segment: %s, ignoring the rest of the segment.",
+                                           writePosition, file));
+                    return;
+                }
+                writePosition += size;
+            }
+        }
+
+        /**
+         * @return Size of the record written, -1 if the event does not fit.
+         */
+        private int write(Object event) {
+            if (segmentSize - writePosition <= RECORD_HEADER_BYTES) {
+                return -1;
+            }
+            buffer.limit(segmentSize);
+            buffer.position(writePosition + RECORD_HEADER_BYTES);
+            try {
+                codec.encode(event, buffer);
+            }
+            catch (BufferOverflowException e) {
+                return -1;
+            }
+            int size = buffer.position() - writePosition;
+            if (segmentSize - buffer.position() >= 4) {
+                buffer.putInt(buffer.position(), 0); // Bytes of a previous, unfinished record.
+            }
+            buffer.putLong(writePosition + 4, System.currentTimeMillis());
+            buffer.putInt(writePosition, size); // Last, which makes the record visible.
+            writePosition += size;
+            return size;
+        }
+
+        private int recordSize(int position) {
+            return buffer.getInt(position);
+        }
+
+        /**
+         * @return null if the event can not be decoded.
+         */
+        private Record read(int position) {
+            int size = buffer.getInt(position);
+            ByteBuffer source = buffer.duplicate();
+            source.limit(position + size);
+            source.position(position + RECORD_HEADER_BYTES);
+            try {
+                return new Record(codec.decode(source), buffer.getLong(position + 4), size);
+            }
+            catch (RuntimeException e) {
+                LOG.error(String.format("Failed to decode the record at position: %s of log segment: %s. Skipping the event.",
+                                        position, file), e);
+                return null;
+            }
+        }
+
+        private void close() {
+            try {
+                raf.close();
+            }
+            catch (IOException e) {
+                LOG.info("Failed to close log segment: " + file, e);
+            }
+        }
+
+        private void delete() {
+            close();
+            if (!file.delete()) {
+                LOG.info("Failed to delete log segment: " + file);
+            }
+        }
+    }
+}
@@ -3,10 +3,31 @@ package com.netflix.eventbus.bridge;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class SimpleEventBusBridgeStats implements EventBusBridgeStats {
+    public static final int DEFAULT_RATE_WINDOW_SECONDS = 10;
+
     private final AtomicLong consumeErrorCount = new AtomicLong(0);
     private final AtomicLong consumeCount = new AtomicLong(0);
     private volatile Exception lastConsumeException = null;
-    
+    private final LatencyHistogram sendLatency = new LatencyHistogram();
+    private final SlidingWindowRate eventRate;
+    private final SlidingWindowRate byteRate;
+    private final AtomicLong queueLag = new AtomicLong(0);
+    private final AtomicLong pausedSinceMillis = new AtomicLong(0); // 0 if not paused
+    private final AtomicLong pausedTimeMillis = new AtomicLong(0);
+    private final AtomicLong pauseDroppedCount = new AtomicLong(0);
+
+    public SimpleEventBusBridgeStats() {
+        this(DEFAULT_RATE_WINDOW_SECONDS);
+    }
+
+    /**
+     * @param rateWindowSeconds - Window of the events and bytes rates
+     */
+    public SimpleEventBusBridgeStats(int rateWindowSeconds) {
+        this.eventRate = new SlidingWindowRate(rateWindowSeconds);
+        this.byteRate = new SlidingWindowRate(rateWindowSeconds);
+    }
+
     @Override
     public long getConsumeCount() {
         return consumeCount.get();
@@ -19,6 +40,7 @@ public class SimpleEventBusBridgeStats implements EventBusBridgeStats {
 
     @Override
     public long incConsumeCount() {
+        eventRate.add(1);
         return consumeCount.incrementAndGet();
     }
 
@@ -32,4 +54,78 @@ public class SimpleEventBusBridgeStats implements EventBusBridgeStats {
     public Exception getLastConsumeException() {
         return this.lastConsumeException;
     }
+
+    @Override
+    public void recordSendLatency(long latencyNanos) {
+        sendLatency.record(latencyNanos);
+    }
+
+    @Override
+    public void incConsumeBytes(long bytes) {
+        byteRate.add(bytes);
+    }
+
+    @Override
+    public void setPaused(boolean paused) {
+        if (paused) {
+            pausedSinceMillis.compareAndSet(0, System.currentTimeMillis());
+        }
+        else {
+            long since = pausedSinceMillis.getAndSet(0);
+            if (since != 0)
+                pausedTimeMillis.addAndGet(System.currentTimeMillis() - since);
+        }
+    }
+
+    @Override
+    public void setQueueLag(long queuedEvents) {
+        queueLag.set(queuedEvents);
+    }
+
+    @Override
+    public long getSendLatencyMicros(double percentile) {
+        return sendLatency.getPercentileMicros(percentile);
+    }
+
+    @Override
+    public double getMeanSendLatencyMicros() {
+        return sendLatency.getMeanMicros();
+    }
+
+    @Override
+    public long getMaxSendLatencyMicros() {
+        return sendLatency.getMaxMicros();
+    }
+
+    @Override
+    public double getEventsPerSecond() {
+        return eventRate.getRatePerSecond();
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return byteRate.getRatePerSecond();
+    }
+
+    @Override
+    public long getQueueLag() {
+        return queueLag.get();
+    }
+
+    @Override
+    public long getPausedTimeMillis() {
+        long since = pausedSinceMillis.get();
+        long current = since == 0 ? 0 : System.currentTimeMillis() - since;
+        return pausedTimeMillis.get() + current;
+    }
+
+    @Override
+    public long incPauseDroppedCount() {
+        return pauseDroppedCount.incrementAndGet();
+    }
+
+    @Override
+    public long getPauseDroppedCount() {
+        return pauseDroppedCount.get();
+    }
 }
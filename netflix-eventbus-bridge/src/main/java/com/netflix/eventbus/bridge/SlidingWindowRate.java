@@ -0,0 +1,57 @@
+package com.netflix.eventbus.bridge;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free rate over a sliding window of whole seconds.  Amounts are added to
+ * the bucket of the current second and the rate is the sum of the buckets of
+ * the last completed seconds in the window, divided by its length.
+ *
+ * The rate is approximate, an amount added concurrently with the reset of a
+ * reused bucket may be lost.
+ */
+public class SlidingWindowRate {
+    private final int windowSeconds;
+    private final AtomicLongArray amounts;
+    private final AtomicLongArray seconds; // Second of every bucket.
+
+    public SlidingWindowRate(int windowSeconds) {
+        if (windowSeconds <= 0)
+            throw new IllegalArgumentException("Window must be positive");
+        this.windowSeconds = windowSeconds;
+        this.amounts = new AtomicLongArray(windowSeconds + 1); // Plus the current second.
+        this.seconds = new AtomicLongArray(windowSeconds + 1);
+    }
+
+    public void add(long amount) {
+        long now = currentSecond();
+        int bucket = (int) (now % seconds.length());
+        long second = seconds.get(bucket);
+        if (second != now && seconds.compareAndSet(bucket, second, now))
+            amounts.set(bucket, 0);
+        amounts.addAndGet(bucket, amount);
+    }
+
+    /**
+     * @return Amount per second over the window, excluding the current second
+     */
+    public double getRatePerSecond() {
+        long now = currentSecond();
+        long total = 0;
+        for (int i = 0; i < seconds.length(); i++) {
+            long second = seconds.get(i);
+            if (second < now && second >= now - windowSeconds)
+                total += amounts.get(i);
+        }
+        return (double) total / windowSeconds;
+    }
+
+    public int getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    private static long currentSecond() {
+        return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    }
+}
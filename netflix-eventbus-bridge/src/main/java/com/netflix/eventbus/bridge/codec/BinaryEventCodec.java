@@ -0,0 +1,173 @@
+package com.netflix.eventbus.bridge.codec;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.netflix.eventbus.spi.EventCodec;
+
+/**
+ * Compact binary {@link EventCodec}.  Every event is a one byte tag
+ * identifying its type, followed by its payload:
+ * <ul>
+ <li>String: UTF-8 bytes.</li>
+ <li>Integer and Long: zig-zag encoded variable length integer.</li>
+ <li>Double: 8 bytes.</li>
+ <li>Boolean: 1 byte.</li>
+ <li>byte[]: the bytes as is.</li>
+ <li>Custom types: the bytes written by the {@link EventCodec} registered for
+ the type, with a tag from {@link #MIN_CUSTOM_TAG} to {@link #MAX_CUSTOM_TAG}.</li>
+ </ul>
+ * A payload always extends to the end of the encoded event, so it is not
+ * length prefixed.  The types are matched exactly, not by inheritance.
+ *
+ * This class is immutable and thread-safe if the custom codecs are.
+ */
+public class BinaryEventCodec implements EventCodec {
+    public static final int MIN_CUSTOM_TAG = 16;
+    public static final int MAX_CUSTOM_TAG = 127;
+
+    private static final byte STRING_TAG  = 1;
+    private static final byte INTEGER_TAG = 2;
+    private static final byte LONG_TAG    = 3;
+    private static final byte DOUBLE_TAG  = 4;
+    private static final byte BOOLEAN_TAG = 5;
+    private static final byte BYTES_TAG   = 6;
+
+    public static class Builder {
+        private final Map<Class<?>, Byte> tags = new HashMap<Class<?>, Byte>();
+        private final EventCodec[] codecs = new EventCodec[MAX_CUSTOM_TAG + 1];
+
+        /**
+         * Registers a codec for a custom event type
+         * @param tag - Unique tag of the type, which must be the same for the
+         *  encoder and the decoder
+         * @param type - Exact type of the events
+         * @param codec - Codec of the payload
+         */
+        public Builder withType(int tag, Class<?> type, EventCodec codec) {
+            Preconditions.checkArgument(tag >= MIN_CUSTOM_TAG && tag <= MAX_CUSTOM_TAG, "Invalid tag: " + tag);
+            Preconditions.checkArgument(codecs[tag] == null, "Tag already registered: " + tag);
+            Preconditions.checkArgument(!tags.containsKey(type), "Type already registered: " + type);
+            tags.put(type, (byte) tag);
+            codecs[tag] = Preconditions.checkNotNull(codec, "Must specify a codec");
+            return this;
+        }
+
+        public BinaryEventCodec build() {
+            return new BinaryEventCodec(this);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final Map<Class<?>, Byte> tags;
+    private final EventCodec[] codecs;
+
+    /**
+     * Creates a codec of the built in types only.
+     */
+    public BinaryEventCodec() {
+        this(new Builder());
+    }
+
+    private BinaryEventCodec(Builder builder) {
+        this.tags = new HashMap<Class<?>, Byte>(builder.tags);
+        this.codecs = builder.codecs.clone();
+    }
+
+    @Override
+    public void encode(Object event, ByteBuffer target) {
+        Class<?> type = event.getClass();
+        if (type == String.class) {
+            target.put(STRING_TAG);
+            Utf8.encode((String) event, target);
+        }
+        else if (type == Integer.class) {
+            target.put(INTEGER_TAG);
+            putVarLong(zigZag((Integer) event), target);
+        }
+        else if (type == Long.class) {
+            target.put(LONG_TAG);
+            putVarLong(zigZag((Long) event), target);
+        }
+        else if (type == Double.class) {
+            target.put(DOUBLE_TAG);
+            target.putDouble((Double) event);
+        }
+        else if (type == Boolean.class) {
+            target.put(BOOLEAN_TAG);
+            target.put((byte) ((Boolean) event ? 1 : 0));
+        }
+        else if (type == byte[].class) {
+            target.put(BYTES_TAG);
+            target.put((byte[]) event);
+        }
+        else {
+            Byte tag = tags.get(type);
+            if (tag == null)
+                throw new IllegalArgumentException("No codec registered for event type: " + type.getName());
+            target.put(tag);
+            codecs[tag].encode(event, target);
+        }
+    }
+
+    @Override
+    public Object decode(ByteBuffer source) {
+        if (!source.hasRemaining())
+            throw new IllegalArgumentException("Empty event");
+        byte tag = source.get();
+        switch (tag) {
+            case STRING_TAG:
+                return Utf8.decode(source);
+            case INTEGER_TAG:
+                return (int) unZigZag(getVarLong(source));
+            case LONG_TAG:
+                return unZigZag(getVarLong(source));
+            case DOUBLE_TAG:
+                return source.getDouble();
+            case BOOLEAN_TAG:
+                return source.get() != 0;
+            case BYTES_TAG:
+                byte[] bytes = new byte[source.remaining()];
+                source.get(bytes);
+                return bytes;
+            default:
+                if (tag < MIN_CUSTOM_TAG || codecs[tag] == null)
+                    throw new IllegalArgumentException("Unknown event tag: " + tag);
+                return codecs[tag].decode(source);
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void putVarLong(long value, ByteBuffer target) {
+        while ((value & ~0x7FL) != 0) {
+            target.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        target.put((byte) value);
+    }
+
+    private static long getVarLong(ByteBuffer source) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!source.hasRemaining())
+                throw new IllegalArgumentException("Truncated variable length integer");
+            byte b = source.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IllegalArgumentException("Malformed variable length integer");
+    }
+}
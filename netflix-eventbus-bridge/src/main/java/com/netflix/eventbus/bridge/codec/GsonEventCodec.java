@@ -0,0 +1,277 @@
+package com.netflix.eventbus.bridge.codec;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+
+import com.google.common.base.Preconditions;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.netflix.eventbus.spi.EventCodec;
+
+/**
+ * {@link EventCodec} of events of a single type as UTF-8 JSON, using the
+ * streaming API of Gson.  The JSON is written to and read from the buffer
+ * character by character, so there is no intermediate String or byte array
+ * per event.
+ *
+ * Each thread reuses its JSON writer and reader over the buffers it passes,
+ * the reader reading the events as the elements of a single JSON array.  A
+ * writer or reader that fails is dropped, as it is left mid value.  The
+ * buffers are not retained after encode() or decode() returns.
+ *
+ * This class is thread-safe as long as the passed Gson is.
+ */
+public class GsonEventCodec implements EventCodec {
+    private final Gson gson;
+    private final Class<?> eventType;
+    private final TypeAdapter<Object> adapter;
+
+    private final ThreadLocal<Encoder> encoders = new ThreadLocal<Encoder>() {
+        @Override
+        protected Encoder initialValue() {
+            return new Encoder(gson);
+        }
+    };
+
+    private final ThreadLocal<Decoder> decoders = new ThreadLocal<Decoder>() {
+        @Override
+        protected Decoder initialValue() {
+            return new Decoder();
+        }
+    };
+
+    public GsonEventCodec(Class<?> eventType) {
+        this(new Gson(), eventType);
+    }
+
+    /**
+     * @param gson - Configured Gson, e.g. with type adapters for the event
+     * @param eventType - Type of all the events
+     */
+    @SuppressWarnings("unchecked")
+    public GsonEventCodec(Gson gson, Class<?> eventType) {
+        Preconditions.checkNotNull(gson,      "Must specify a Gson instance");
+        Preconditions.checkNotNull(eventType, "Must specify an event type");
+        this.gson = gson;
+        this.eventType = eventType;
+        this.adapter = (TypeAdapter<Object>) gson.getAdapter(eventType);
+    }
+
+    @Override
+    public void encode(Object event, ByteBuffer target) {
+        if (!eventType.isInstance(event))
+            throw new IllegalArgumentException("Event: " + event + " is not a " + eventType.getName());
+        Encoder encoder = encoders.get();
+        encoder.writer.reset(target);
+        try {
+            adapter.write(encoder.jsonWriter, event);
+            encoder.jsonWriter.flush();
+        }
+        catch (IOException e) {
+            encoders.remove();
+            throw new IllegalArgumentException("Failed to encode event: " + event, e);
+        }
+        catch (RuntimeException e) {
+            encoders.remove();
+            throw e;
+        }
+        finally {
+            encoder.writer.release();
+        }
+    }
+
+    @Override
+    public Object decode(ByteBuffer source) {
+        Decoder decoder = decoders.get();
+        int start = source.position();
+        try {
+            return decoder.decode(source);
+        }
+        catch (IllegalArgumentException e) {
+            decoders.remove();
+            if (!decoder.decoded)
+                throw e;
+            // The reader may have failed on unread trailing bytes of the previous
+            // event, so retry once with a new reader.
+            source.position(start);
+            return decode(source);
+        }
+    }
+
+    private static class Encoder {
+        private final ByteBufferWriter writer = new ByteBufferWriter();
+        private final JsonWriter jsonWriter = new JsonWriter(writer);
+
+        Encoder(Gson gson) {
+            // Every event is a top level value, as set by Gson.toJson()
+            jsonWriter.setLenient(true);
+            jsonWriter.setHtmlSafe(gson.htmlSafe());
+            jsonWriter.setSerializeNulls(gson.serializeNulls());
+        }
+    }
+
+    private class Decoder {
+        private final ByteBufferReader reader = new ByteBufferReader();
+        private final JsonReader jsonReader = new JsonReader(reader);
+        private boolean decoded;
+
+        Decoder() {
+            jsonReader.setLenient(true); // As set by Gson.fromJson()
+        }
+
+        Object decode(ByteBuffer source) {
+            reader.reset(source);
+            Object event;
+            try {
+                if (!decoded)
+                    jsonReader.beginArray();
+                event = adapter.read(jsonReader);
+            }
+            catch (IOException e) {
+                throw new IllegalArgumentException("Failed to decode an event of type: " + eventType.getName(), e);
+            }
+            catch (RuntimeException e) {
+                throw new IllegalArgumentException("Failed to decode an event of type: " + eventType.getName(), e);
+            }
+            finally {
+                reader.release();
+            }
+            if (event == null)
+                throw new IllegalArgumentException("No event of type: " + eventType.getName() + " in the buffer");
+            decoded = true;
+            return event;
+        }
+    }
+
+    private static class ByteBufferWriter extends Writer {
+        private ByteBuffer target;
+        private char highSurrogate;
+
+        void reset(ByteBuffer target) {
+            this.target = target;
+            highSurrogate = 0;
+        }
+
+        void release() {
+            target = null;
+        }
+
+        @Override
+        public void write(int c) {
+            write((char) c);
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                write(chars[i]);
+            }
+        }
+
+        @Override
+        public void write(String str, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                write(str.charAt(i));
+            }
+        }
+
+        /**
+         * A {@link java.nio.BufferOverflowException} is not an IOException, so
+         * Gson lets it through to the caller of encode().
+         */
+        private void write(char c) {
+            if (highSurrogate != 0) {
+                char high = highSurrogate;
+                highSurrogate = 0;
+                if (Character.isLowSurrogate(c)) {
+                    Utf8.putCodePoint(Character.toCodePoint(high, c), target);
+                    return;
+                }
+                target.put((byte) '?');
+            }
+            if (Character.isHighSurrogate(c))
+                highSurrogate = c;
+            else
+                Utf8.putCodePoint(Character.isSurrogate(c) ? '?' : c, target);
+        }
+
+        @Override
+        public void flush() {
+            if (highSurrogate != 0) {
+                highSurrogate = 0;
+                write('?'); // Unpaired.
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Reads the buffers passed to {@link #reset(ByteBuffer)} as the elements of
+     * a JSON array, so that a single JsonReader reads all of them.
+     */
+    private static class ByteBufferReader extends Reader {
+        private ByteBuffer source;
+        private boolean started;
+        private boolean separated;
+        // Read before the next code point, e.g. the low surrogate of the last one.
+        private char pending = '[';
+
+        void reset(ByteBuffer source) {
+            if (started && !separated)
+                pending = ','; // The previous event had unread trailing bytes.
+            this.source = source;
+            started = true;
+            separated = false;
+        }
+
+        /**
+         * Drops the buffer, keeping what is needed to separate the next one.
+         */
+        void release() {
+            source = null;
+        }
+
+        @Override
+        public int read(char[] chars, int offset, int length) {
+            if (length == 0)
+                return 0;
+            int count = 0;
+            if (pending != 0) {
+                chars[offset + count++] = pending;
+                pending = 0;
+            }
+            while (count < length) {
+                int codePoint = Utf8.getCodePoint(source);
+                if (codePoint == Utf8.END) {
+                    if (!separated) {
+                        separated = true;
+                        chars[offset + count++] = ',';
+                    }
+                    break;
+                }
+                if (Character.isBmpCodePoint(codePoint)) {
+                    chars[offset + count++] = (char) codePoint;
+                }
+                else {
+                    chars[offset + count++] = Character.highSurrogate(codePoint);
+                    if (count < length)
+                        chars[offset + count++] = Character.lowSurrogate(codePoint);
+                    else
+                        pending = Character.lowSurrogate(codePoint);
+                }
+            }
+            return count == 0 ? -1 : count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
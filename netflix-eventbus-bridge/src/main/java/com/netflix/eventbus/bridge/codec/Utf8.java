@@ -0,0 +1,118 @@
+package com.netflix.eventbus.bridge.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * UTF-8 encoding and decoding directly on buffers, without the intermediate
+ * byte arrays of {@link String#getBytes(java.nio.charset.Charset)} or the
+ * allocations of a {@link java.nio.charset.CharsetEncoder}.  Unpaired
+ * surrogates are encoded as '?', malformed input is decoded as U+FFFD.
+ */
+class Utf8 {
+    static final int END = -1;
+
+    private static final int REPLACEMENT = 0xFFFD;
+
+    private Utf8() {
+    }
+
+    /**
+     * @throws java.nio.BufferOverflowException If the buffer is too small, in
+     *  which case its position is undefined
+     */
+    static void encode(CharSequence chars, ByteBuffer target) {
+        int length = chars.length();
+        for (int i = 0; i < length; i++) {
+            char c = chars.charAt(i);
+            if (c < 0x80) {
+                target.put((byte) c);
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                putCodePoint(Character.toCodePoint(c, chars.charAt(++i)), target);
+            }
+            else {
+                putCodePoint(Character.isSurrogate(c) ? '?' : c, target);
+            }
+        }
+    }
+
+    static void putCodePoint(int codePoint, ByteBuffer target) {
+        if (codePoint < 0x80) {
+            target.put((byte) codePoint);
+        }
+        else if (codePoint < 0x800) {
+            target.put((byte) (0xC0 | (codePoint >> 6)));
+            target.put((byte) (0x80 | (codePoint & 0x3F)));
+        }
+        else if (codePoint < 0x10000) {
+            target.put((byte) (0xE0 | (codePoint >> 12)));
+            target.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+            target.put((byte) (0x80 | (codePoint & 0x3F)));
+        }
+        else {
+            target.put((byte) (0xF0 | (codePoint >> 18)));
+            target.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+            target.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+            target.put((byte) (0x80 | (codePoint & 0x3F)));
+        }
+    }
+
+    /**
+     * Decodes all the remaining bytes of the buffer.
+     */
+    static String decode(ByteBuffer source) {
+        char[] chars = new char[source.remaining()]; // A byte decodes to at most one char.
+        int count = 0;
+        int codePoint;
+        while ((codePoint = getCodePoint(source)) != END) {
+            count += Character.toChars(codePoint, chars, count);
+        }
+        return new String(chars, 0, count);
+    }
+
+    /**
+     * @return The next code point, {@link #END} if the buffer has no remaining bytes
+     */
+    static int getCodePoint(ByteBuffer source) {
+        if (!source.hasRemaining())
+            return END;
+        int b = source.get() & 0xFF;
+        if (b < 0x80)
+            return b;
+
+        int continuation;
+        int codePoint;
+        int min;
+        if ((b & 0xE0) == 0xC0) {
+            continuation = 1;
+            codePoint = b & 0x1F;
+            min = 0x80;
+        }
+        else if ((b & 0xF0) == 0xE0) {
+            continuation = 2;
+            codePoint = b & 0x0F;
+            min = 0x800;
+        }
+        else if ((b & 0xF8) == 0xF0) {
+            continuation = 3;
+            codePoint = b & 0x07;
+            min = 0x10000;
+        }
+        else {
+            return REPLACEMENT;
+        }
+        for (int i = 0; i < continuation; i++) {
+            if (!source.hasRemaining())
+                return REPLACEMENT;
+            int next = source.get(source.position()) & 0xFF;
+            if ((next & 0xC0) != 0x80)
+                return REPLACEMENT; // Leave the byte for the next code point.
+            source.get();
+            codePoint = (codePoint << 6) | (next & 0x3F);
+        }
+        if (codePoint < min || codePoint > Character.MAX_CODE_POINT
+            || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE))
+            return REPLACEMENT;
+        return codePoint;
+    }
+}
@@ -0,0 +1,96 @@
+package com.netflix.eventbus.bridge.tcp;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.netflix.eventbus.bridge.AbstractBatchingEventBusBridge.SendCallback;
+import com.netflix.eventbus.bridge.ByteBufferPool;
+import com.netflix.eventbus.spi.EventCodec;
+
+/**
+ * Framing of events on the wire, shared by {@link TcpEventBusBridge} and
+ * {@link TcpEventBusReceiver}.  Every event is a frame of the form:
+ * <pre>
+ [int length][encoded event]
+ * </pre>
+ * where the length excludes the 4 byte header.  Frames never span buffers, so
+ * a frame must fit in a pooled buffer.
+ */
+class Frames {
+    static final int HEADER_BYTES = 4;
+
+    private Frames() {
+    }
+
+    /**
+     * Encodes the events directly into buffers acquired from the pool.  An
+     * event that can not be encoded or does not fit in a buffer is passed to
+     * {@link SendCallback#onDropped(Object, Exception)} and skipped, so that
+     * it does not fail the other events.
+     *
+     * @return Buffers ready to be written, in order
+     */
+    static ByteBuffer[] encode(List<Object> events, EventCodec codec, ByteBufferPool pool, SendCallback callback) {
+        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+        ByteBuffer current = pool.acquire();
+        buffers.add(current);
+        try {
+            for (Object event : events) {
+                try {
+                    if (!encode(event, codec, current)) {
+                        if (current.position() == 0)
+                            throw tooLarge(event, pool);
+                        current = pool.acquire();
+                        buffers.add(current);
+                        if (!encode(event, codec, current))
+                            throw tooLarge(event, pool);
+                    }
+                }
+                catch (RuntimeException e) {
+                    callback.onDropped(event, e);
+                }
+            }
+        }
+        catch (RuntimeException e) {
+            for (ByteBuffer buffer : buffers) {
+                pool.release(buffer);
+            }
+            throw e;
+        }
+        for (ByteBuffer buffer : buffers) {
+            buffer.flip();
+        }
+        return buffers.toArray(new ByteBuffer[buffers.size()]);
+    }
+
+    private static IllegalArgumentException tooLarge(Object event, ByteBufferPool pool) {
+        return new IllegalArgumentException(String.format(
+                "Event: %s does not fit in a frame of: %s bytes", event, pool.getBufferSize()));
+    }
+
+    /**
+     * @return false if the event does not fit in the remaining space of the
+     *  buffer, which is then left unchanged
+     */
+    private static boolean encode(Object event, EventCodec codec, ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < HEADER_BYTES)
+            return false;
+        buffer.position(start + HEADER_BYTES);
+        try {
+            codec.encode(event, buffer);
+        }
+        catch (BufferOverflowException e) {
+            buffer.position(start);
+            return false;
+        }
+        catch (RuntimeException e) {
+            buffer.position(start);
+            throw e;
+        }
+        buffer.putInt(start, buffer.position() - start - HEADER_BYTES);
+        return true;
+    }
+}
@@ -0,0 +1,325 @@
+package com.netflix.eventbus.bridge.tcp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.netflix.eventbus.bridge.AbstractBatchingEventBusBridge;
+import com.netflix.eventbus.bridge.ByteBufferPool;
+import com.netflix.eventbus.spi.EventCodec;
+
+/**
+ * Bridge that streams events to the event bus of another JVM over TCP, where
+ * a {@link TcpEventBusReceiver} publishes them.
+ *
+ * Every batch is encoded by the {@link EventCodec} directly into pooled direct
+ * buffers as length prefixed frames, see {@link Frames}, and written with a
+ * single gathering write by a dedicated I/O thread over a non-blocking
+ * socket.  A send completes once the whole batch is handed to the socket, so
+ * up to maxInFlight batches are pipelined on the connection.  An event that
+ * can not be encoded, or does not fit in a buffer, is counted as a consume
+ * error and the rest of its batch is sent.
+ *
+ * The connection is established on the first send.  When it fails, all the
+ * sends not yet written fail and sends fail immediately until the reconnect
+ * backoff elapses, when the next send reconnects.
+ */
+public class TcpEventBusBridge extends AbstractBatchingEventBusBridge {
+    private static final Logger LOG = LoggerFactory.getLogger(TcpEventBusBridge.class);
+
+    public static final int  DEFAULT_FRAME_BUFFER_SIZE       = 64 * 1024;
+    public static final int  DEFAULT_MAX_POOLED_BUFFERS      = 16;
+    public static final int  DEFAULT_TCP_MAX_IN_FLIGHT       = 4;
+    public static final long DEFAULT_RECONNECT_BACKOFF_MILLIS = 1000;
+    public static final long DEFAULT_SHUTDOWN_TIMEOUT_MILLIS  = 5000;
+
+    private static final long SELECT_TIMEOUT_MILLIS = 1000;
+
+    public static class Builder extends AbstractBatchingEventBusBridge.Builder<Builder> {
+        private InetSocketAddress address;
+        private EventCodec codec;
+        private int frameBufferSize = DEFAULT_FRAME_BUFFER_SIZE;
+        private int maxPooledBuffers = DEFAULT_MAX_POOLED_BUFFERS;
+        private long reconnectBackoffMillis = DEFAULT_RECONNECT_BACKOFF_MILLIS;
+        private long shutdownTimeoutMillis = DEFAULT_SHUTDOWN_TIMEOUT_MILLIS;
+
+        public Builder() {
+            this.maxInFlight = DEFAULT_TCP_MAX_IN_FLIGHT;
+        }
+
+        /**
+         * Address of the {@link TcpEventBusReceiver}
+         * @param address
+         */
+        public Builder withAddress(InetSocketAddress address) {
+            this.address = address;
+            return this;
+        }
+
+        /**
+         * Codec of the events, which must be the same as the receiver's
+         * @param codec
+         */
+        public Builder withCodec(EventCodec codec) {
+            this.codec = codec;
+            return this;
+        }
+
+        /**
+         * Size of the pooled buffers, which is the maximum size of an encoded
+         * event plus 4 bytes.  It must not exceed the maximum frame size of
+         * the receiver.
+         * @param frameBufferSize
+         */
+        public Builder withFrameBufferSize(int frameBufferSize) {
+            this.frameBufferSize = frameBufferSize;
+            return this;
+        }
+
+        /**
+         * Maximum number of idle buffers retained in the pool
+         * @param maxPooledBuffers
+         */
+        public Builder withMaxPooledBuffers(int maxPooledBuffers) {
+            this.maxPooledBuffers = maxPooledBuffers;
+            return this;
+        }
+
+        /**
+         * Time after a connection failure during which sends fail without
+         * reconnecting
+         * @param reconnectBackoffMillis
+         */
+        public Builder withReconnectBackoff(long reconnectBackoffMillis) {
+            this.reconnectBackoffMillis = reconnectBackoffMillis;
+            return this;
+        }
+
+        /**
+         * Maximum time to wait for the sends in flight on shutdown
+         * @param shutdownTimeoutMillis
+         */
+        public Builder withShutdownTimeout(long shutdownTimeoutMillis) {
+            this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+            return this;
+        }
+
+        @Override
+        protected void validate() throws Exception {
+            super.validate();
+            Preconditions.checkNotNull(address, "Must specify an address");
+            Preconditions.checkNotNull(codec,   "Must specify a codec");
+            Preconditions.checkArgument(frameBufferSize > Frames.HEADER_BYTES, "Frame buffer size is too small");
+            Preconditions.checkArgument(maxPooledBuffers >= 0, "Max pooled buffers must not be negative");
+            Preconditions.checkArgument(reconnectBackoffMillis >= 0, "Reconnect backoff must not be negative");
+        }
+
+        @Override
+        protected Builder self() {
+            return this;
+        }
+
+        public TcpEventBusBridge build() throws Exception {
+            validate();
+            return new TcpEventBusBridge(this);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final InetSocketAddress address;
+    private final EventCodec codec;
+    private final ByteBufferPool pool;
+    private final long reconnectBackoffMillis;
+    private final long shutdownTimeoutMillis;
+    private final Queue<PendingWrite> writeQueue = new ConcurrentLinkedQueue<PendingWrite>();
+    private volatile Selector selector;
+    private volatile Thread ioThread;
+    private volatile boolean running;
+    private volatile long reconnectAtMillis;
+    private volatile IOException lastConnectionError;
+
+    // Owned by the I/O thread.
+    private SocketChannel channel;
+    private boolean connected;
+    private PendingWrite current;
+
+    protected TcpEventBusBridge(Builder init) throws Exception {
+        super(init);
+        this.address                = init.address;
+        this.codec                  = init.codec;
+        this.pool                   = new ByteBufferPool(init.frameBufferSize, init.maxPooledBuffers);
+        this.reconnectBackoffMillis = init.reconnectBackoffMillis;
+        this.shutdownTimeoutMillis  = init.shutdownTimeoutMillis;
+        init();
+    }
+
+    @Override
+    protected void preInit() throws Exception {
+        selector = Selector.open();
+        running = true;
+        ioThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runIo();
+            }
+        }, "eventbus-bridge-tcp-" + address);
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    @Override
+    protected void postShutdown() throws Exception {
+        if (!awaitInFlight(shutdownTimeoutMillis, TimeUnit.MILLISECONDS))
+            LOG.warn("Timed out waiting for the sends in flight to: " + address);
+        running = false;
+        selector.wakeup();
+        ioThread.join();
+        failQueued(new IOException("Bridge to: " + address + " is shut down"));
+        selector.close();
+    }
+
+    @Override
+    protected void sendEvents(List<Object> events, SendCallback callback) throws Exception {
+        if (!running)
+            throw new IOException("Bridge to: " + address + " is shut down");
+        long backoff = reconnectAtMillis - System.currentTimeMillis();
+        if (backoff > 0)
+            throw new IOException("Not connected to: " + address + ", reconnecting in " + backoff + " ms",
+                                  lastConnectionError);
+
+        PendingWrite write = new PendingWrite(Frames.encode(events, codec, pool, callback), callback);
+        if (!write.hasRemaining()) {
+            write.complete(null); // All the events are dropped.
+            return;
+        }
+        writeQueue.add(write);
+        selector.wakeup();
+        if (!running)
+            failQueued(new IOException("Bridge to: " + address + " is shut down")); // Raced with shutdown.
+    }
+
+    /**
+     * @return Pool of the buffers events are encoded into
+     */
+    public ByteBufferPool getBufferPool() {
+        return pool;
+    }
+
+    private void runIo() {
+        while (running) {
+            try {
+                if (channel == null && (current != null || !writeQueue.isEmpty()))
+                    connect();
+                if (channel != null)
+                    channel.keyFor(selector).interestOps(!connected ? SelectionKey.OP_CONNECT
+                            : (current != null || !writeQueue.isEmpty()) ? SelectionKey.OP_WRITE : 0);
+                selector.select(SELECT_TIMEOUT_MILLIS);
+                selector.selectedKeys().clear();
+                if (channel != null && !connected && channel.finishConnect()) {
+                    connected = true;
+                    LOG.info("Connected to: " + address);
+                }
+                if (connected)
+                    writePending();
+            }
+            catch (IOException e) {
+                disconnect(e);
+            }
+        }
+        if (channel != null)
+            disconnect(new IOException("Bridge to: " + address + " is shut down"));
+    }
+
+    private void connect() throws IOException {
+        if (System.currentTimeMillis() < reconnectAtMillis) {
+            failQueued(lastConnectionError);
+            return;
+        }
+        channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        connected = channel.connect(address);
+        channel.register(selector, connected ? 0 : SelectionKey.OP_CONNECT);
+    }
+
+    private void writePending() throws IOException {
+        while (true) {
+            if (current == null) {
+                current = writeQueue.poll();
+                if (current == null)
+                    return;
+            }
+            channel.write(current.buffers);
+            if (current.hasRemaining())
+                return; // Socket buffer is full, wait until writable.
+            current.complete(null);
+            current = null;
+        }
+    }
+
+    private void disconnect(IOException e) {
+        LOG.warn("Connection to: " + address + " failed", e);
+        lastConnectionError = e;
+        reconnectAtMillis = System.currentTimeMillis() + reconnectBackoffMillis;
+        if (channel != null) {
+            try {
+                channel.close();
+            }
+            catch (IOException closeFailure) {
+                LOG.info("Failed to close the connection to: " + address, closeFailure);
+            }
+        }
+        channel = null;
+        connected = false;
+        if (current != null) {
+            current.complete(e);
+            current = null;
+        }
+        failQueued(e);
+    }
+
+    private void failQueued(IOException e) {
+        PendingWrite write;
+        while ((write = writeQueue.poll()) != null) {
+            write.complete(e);
+        }
+    }
+
+    private class PendingWrite {
+        private final ByteBuffer[] buffers;
+        private final SendCallback callback;
+
+        PendingWrite(ByteBuffer[] buffers, SendCallback callback) {
+            this.buffers = buffers;
+            this.callback = callback;
+        }
+
+        boolean hasRemaining() {
+            return buffers[buffers.length - 1].hasRemaining();
+        }
+
+        void complete(Exception e) {
+            for (ByteBuffer buffer : buffers) {
+                pool.release(buffer);
+            }
+            if (e == null)
+                callback.onSuccess();
+            else
+                callback.onFailure(e);
+        }
+    }
+}
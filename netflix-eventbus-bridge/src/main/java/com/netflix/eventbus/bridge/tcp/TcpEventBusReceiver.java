@@ -0,0 +1,239 @@
+package com.netflix.eventbus.bridge.tcp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.netflix.eventbus.bridge.ByteBufferPool;
+import com.netflix.eventbus.spi.EventBus;
+import com.netflix.eventbus.spi.EventCodec;
+
+/**
+ * Receives the events streamed by {@link TcpEventBusBridge}s and publishes
+ * them to an event bus.
+ *
+ * All the connections are served by a single I/O thread over non-blocking
+ * sockets.  Every connection reads into a pooled direct buffer and the events
+ * are decoded directly from slices of it, then published in the order they
+ * were sent.  A connection sending a frame larger than the maximum frame size
+ * is closed.
+ */
+public class TcpEventBusReceiver implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(TcpEventBusReceiver.class);
+
+    public static final int DEFAULT_MAX_FRAME_SIZE = TcpEventBusBridge.DEFAULT_FRAME_BUFFER_SIZE;
+
+    private static final long SELECT_TIMEOUT_MILLIS = 1000;
+
+    private final EventBus eventBus;
+    private final EventCodec codec;
+    private final int maxFrameSize;
+    private final ByteBufferPool pool;
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final Thread ioThread;
+    private final AtomicLong receivedCount = new AtomicLong();
+    private final AtomicLong decodeErrorCount = new AtomicLong();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private volatile boolean running = true;
+
+    public TcpEventBusReceiver(EventBus eventBus, EventCodec codec, InetSocketAddress bindAddress) throws IOException {
+        this(eventBus, codec, bindAddress, DEFAULT_MAX_FRAME_SIZE);
+    }
+
+    /**
+     * Binds to the passed address and starts receiving.
+     *
+     * @param eventBus Bus to publish the received events to.
+     * @param codec Codec of the events, which must be the same as the bridges'.
+     * @param bindAddress Address to listen on, port 0 picks a free port.
+     * @param maxFrameSize Maximum size of a frame, including its 4 byte header.
+     */
+    public TcpEventBusReceiver(EventBus eventBus, EventCodec codec, InetSocketAddress bindAddress, int maxFrameSize)
+            throws IOException {
+        Preconditions.checkNotNull(eventBus, "Must specify an event bus");
+        Preconditions.checkNotNull(codec,    "Must specify a codec");
+        Preconditions.checkArgument(maxFrameSize > Frames.HEADER_BYTES, "Max frame size is too small");
+        this.eventBus = eventBus;
+        this.codec = codec;
+        this.maxFrameSize = maxFrameSize;
+        this.pool = new ByteBufferPool(maxFrameSize, TcpEventBusBridge.DEFAULT_MAX_POOLED_BUFFERS);
+
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.socket().setReuseAddress(true);
+            serverChannel.socket().bind(bindAddress);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        }
+        catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+
+        ioThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runIo();
+            }
+        }, "eventbus-bridge-tcp-receiver-" + getLocalAddress());
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    /**
+     * @return Address the receiver is listening on
+     */
+    public InetSocketAddress getLocalAddress() {
+        return (InetSocketAddress) serverChannel.socket().getLocalSocketAddress();
+    }
+
+    /**
+     * @return Number of events published
+     */
+    public long getReceivedCount() {
+        return receivedCount.get();
+    }
+
+    /**
+     * @return Number of frames that could not be decoded
+     */
+    public long getDecodeErrorCount() {
+        return decodeErrorCount.get();
+    }
+
+    /**
+     * @return Number of open connections
+     */
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            ioThread.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() != null)
+                closeConnection(key);
+        }
+        serverChannel.close();
+        selector.close();
+    }
+
+    private void runIo() {
+        while (running) {
+            try {
+                selector.select(SELECT_TIMEOUT_MILLIS);
+            }
+            catch (IOException e) {
+                LOG.error("Failed to select on: " + getLocalAddress(), e);
+                continue;
+            }
+            Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+            while (selected.hasNext()) {
+                SelectionKey key = selected.next();
+                selected.remove();
+                if (!key.isValid())
+                    continue;
+                if (key.isAcceptable()) {
+                    accept();
+                }
+                else if (key.isReadable()) {
+                    read(key);
+                }
+            }
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel = serverChannel.accept();
+            if (channel == null)
+                return;
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, pool.acquire());
+            connectionCount.incrementAndGet();
+        }
+        catch (IOException e) {
+            LOG.warn("Failed to accept a connection on: " + getLocalAddress(), e);
+        }
+    }
+
+    private void read(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        ByteBuffer buffer = (ByteBuffer) key.attachment();
+        try {
+            if (channel.read(buffer) < 0) {
+                closeConnection(key);
+                return;
+            }
+            buffer.flip();
+            while (buffer.remaining() >= Frames.HEADER_BYTES) {
+                int start = buffer.position();
+                int length = buffer.getInt(start);
+                if (length < 0 || length > maxFrameSize - Frames.HEADER_BYTES)
+                    throw new IOException("Invalid frame length: " + length + " from: " + channel.socket().getRemoteSocketAddress());
+                if (buffer.remaining() < Frames.HEADER_BYTES + length)
+                    break;
+                ByteBuffer frame = buffer.duplicate();
+                frame.position(start + Frames.HEADER_BYTES);
+                frame.limit(start + Frames.HEADER_BYTES + length);
+                buffer.position(start + Frames.HEADER_BYTES + length);
+                publish(frame);
+            }
+            buffer.compact();
+        }
+        catch (IOException e) {
+            LOG.warn("Closing the connection on: " + getLocalAddress(), e);
+            closeConnection(key);
+        }
+    }
+
+    private void publish(ByteBuffer frame) {
+        Object event;
+        try {
+            event = codec.decode(frame);
+        }
+        catch (RuntimeException e) {
+            decodeErrorCount.incrementAndGet();
+            LOG.error("Failed to decode an event received on: " + getLocalAddress(), e);
+            return;
+        }
+        eventBus.publish(event);
+        receivedCount.incrementAndGet();
+    }
+
+    private void closeConnection(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        }
+        catch (IOException e) {
+            LOG.info("Failed to close a connection on: " + getLocalAddress(), e);
+        }
+        pool.release((ByteBuffer) key.attachment());
+        key.attach(null);
+        connectionCount.decrementAndGet();
+    }
+}
@@ -0,0 +1,158 @@
+package com.netflix.eventbus;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netflix.eventbus.impl.EventBusImpl;
+import com.netflix.eventbus.spi.EventBus;
+import com.netflix.eventbus.spi.EventWeigher;
+
+public class AbstractBatchingEventBusBridgeTest {
+
+    @Test
+    public void testBatchSize() throws Exception {
+        EventBus eventBus = new EventBusImpl();
+        DummyBatchingEventBusBridge bridge = DummyBatchingEventBusBridge.builder()
+            .withEventBus(eventBus)
+            .withEventType(String.class)
+            .withBatchSize(5)
+            .withBatchAge(100)
+            .build();
+
+        for (int i = 0; i < 12; i++) {
+            eventBus.publish("Foo" + i);
+        }
+        Assert.assertTrue(waitForConsumeCount(bridge, 12, 3, TimeUnit.SECONDS));
+        Assert.assertEquals(0, bridge.getConsumeErrorCount());
+        for (List<Object> batch : bridge.getBatches()) {
+            Assert.assertTrue("Batch too large: " + batch.size(), batch.size() <= 5);
+        }
+        Assert.assertEquals(bridge.getBatches().size(), bridge.getBatchStats().getBatchCount());
+        Assert.assertEquals(12, bridge.getBatchStats().getBatchedEventCount());
+        Assert.assertTrue(bridge.getBatchStats().getMaxBatchSize() <= 5);
+    }
+
+    @Test
+    public void testMaxBatchBytes() throws Exception {
+        EventBus eventBus = new EventBusImpl();
+        DummyBatchingEventBusBridge bridge = DummyBatchingEventBusBridge.builder()
+            .withEventBus(eventBus)
+            .withEventType(String.class)
+            .withBatchSize(100)
+            .withBatchAge(200)
+            .withMaxBatchBytes(6, new EventWeigher() {
+                @Override
+                public long weigh(Object event) {
+                    return ((String) event).length();
+                }
+            })
+            .build();
+
+        for (int i = 0; i < 10; i++) {
+            eventBus.publish("Foo");
+        }
+        Assert.assertTrue(waitForConsumeCount(bridge, 10, 3, TimeUnit.SECONDS));
+        for (List<Object> batch : bridge.getBatches()) {
+            Assert.assertTrue("Batch too large: " + batch.size(), batch.size() <= 2);
+        }
+    }
+
+    @Test
+    public void testBufferedPause() throws Exception {
+        EventBus eventBus = new EventBusImpl();
+        DummyBatchingEventBusBridge bridge = DummyBatchingEventBusBridge.builder()
+            .withEventBus(eventBus)
+            .withEventType(String.class)
+            .withBatchSize(5)
+            .withBatchAge(10)
+            .withPauseBuffer(100)
+            .build();
+
+        bridge.pause();
+        for (int i = 0; i < 8; i++) {
+            eventBus.publish("Foo" + i);
+        }
+        TimeUnit.MILLISECONDS.sleep(200);
+        Assert.assertTrue(bridge.getBatches().isEmpty());
+        Assert.assertEquals(8, bridge.getPauseBufferCount());
+
+        bridge.resume();
+        Assert.assertTrue(waitForConsumeCount(bridge, 8, 3, TimeUnit.SECONDS));
+        Assert.assertEquals("Buffered events not sent in full batches.", 2, bridge.getBatches().size());
+        Assert.assertEquals(5, bridge.getBatches().get(0).size());
+        Assert.assertEquals(3, bridge.getBatches().get(1).size());
+        int i = 0;
+        for (List<Object> batch : bridge.getBatches()) {
+            for (Object event : batch) {
+                Assert.assertEquals("Unexpected event order.", "Foo" + i++, event);
+            }
+        }
+    }
+
+    @Test
+    public void testMaxInFlight() throws Exception {
+        EventBus eventBus = new EventBusImpl();
+        DummyBatchingEventBusBridge bridge = DummyBatchingEventBusBridge.builder()
+            .withEventBus(eventBus)
+            .withEventType(String.class)
+            .withBatchSize(2)
+            .withBatchAge(10)
+            .withMaxInFlight(2)
+            .withManualCompletion()
+            .build();
+
+        for (int i = 0; i < 10; i++) {
+            eventBus.publish("Foo" + i);
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        TimeUnit.MILLISECONDS.sleep(200);
+        Assert.assertEquals(2, bridge.getBatches().size());
+        Assert.assertEquals(2, bridge.getInFlightCount());
+        Assert.assertEquals(0, bridge.getConsumeCount());
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(3);
+        while (bridge.getConsumeCount() < 10 && System.currentTimeMillis() < deadline) {
+            bridge.completePending();
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        Assert.assertEquals(10, bridge.getConsumeCount());
+        Assert.assertTrue(bridge.awaitInFlight(1, TimeUnit.SECONDS));
+        Assert.assertEquals(0, bridge.getInFlightCount());
+    }
+
+    @Test
+    public void testSendErrorStats() throws Exception {
+        EventBus eventBus = new EventBusImpl();
+        final RuntimeException e = new RuntimeException("Failed to send the batch");
+        DummyBatchingEventBusBridge bridge = DummyBatchingEventBusBridge.builder()
+            .withEventBus(eventBus)
+            .withEventType(String.class)
+            .withBatchSize(2)
+            .withBatchAge(10)
+            .build();
+
+        bridge.setError(e);
+        eventBus.publish("Foo");
+        eventBus.publish("Bar");
+
+        TimeUnit.SECONDS.sleep(1);
+        Assert.assertEquals(0, bridge.getConsumeCount());
+        Assert.assertEquals(2, bridge.getConsumeErrorCount());
+        Assert.assertEquals(e, bridge.getLastConsumeException());
+        Assert.assertEquals(bridge.getBatchStats().getBatchCount(), bridge.getBatchStats().getFailedBatchCount());
+        Assert.assertEquals(0, bridge.getInFlightCount());
+    }
+
+    private boolean waitForConsumeCount(DummyBatchingEventBusBridge bridge, long expected, long delay, TimeUnit units) throws Exception {
+        long intervals = TimeUnit.MILLISECONDS.convert(delay, units)/100;
+        for (long i = 0; i < intervals; i++) {
+            if (bridge.getConsumeCount() == expected)
+                return true;
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        return false;
+    }
+}
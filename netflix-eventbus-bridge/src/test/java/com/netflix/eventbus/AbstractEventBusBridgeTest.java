@@ -25,7 +25,7 @@ public class AbstractEventBusBridgeTest {
         
         eventBus.publish(new String("Foo"));
         Assert.assertTrue(bridge.await(3,  TimeUnit.SECONDS));        
-        Assert.assertEquals(1, bridge.getConsumeCount());
+        Assert.assertTrue(waitForConsumeCount(bridge, 1, 1, TimeUnit.SECONDS)); // Counted after the send returns.
         Assert.assertEquals(0, bridge.getConsumeErrorCount());
     }   
     
@@ -86,6 +86,124 @@ public class AbstractEventBusBridgeTest {
         Assert.assertTrue(waitForConsumeCount(bridge, 2, 1, TimeUnit.SECONDS));
     }
     
+    @Test
+    public void testBufferedPauseAndResume() throws Exception {
+        EventBus eventBus = new EventBusImpl();
+        DummyEventBusBridge bridge = DummyEventBusBridge.builder()
+            .withEventBus(eventBus)
+            .withEventType(String.class)
+            .withPauseBuffer(100)
+            .build();
+        
+        eventBus.publish("Foo0");
+        Assert.assertTrue(waitForConsumeCount(bridge, 1, 1, TimeUnit.SECONDS));
+        
+        bridge.pause();
+        for (int i = 1; i < 6; i++) {
+            eventBus.publish("Foo" + i);
+        }
+        Assert.assertTrue(waitForPauseBufferCount(bridge, 5));
+        Assert.assertEquals(1, bridge.getConsumeCount());
+        Assert.assertEquals(5, bridge.getQueueLag());
+        
+        bridge.resume();
+        eventBus.publish("Foo6");
+        Assert.assertTrue(waitForConsumeCount(bridge, 7, 3, TimeUnit.SECONDS));
+        for (int i = 0; i < 7; i++) {
+            Assert.assertEquals("Unexpected event order.", "Foo" + i, bridge.getEvents().get(i));
+        }
+        Assert.assertEquals(0, bridge.getPauseBufferCount());
+        Assert.assertEquals(0, bridge.getPauseDroppedCount());
+        bridge.shutdown();
+    }
+    
+    @Test
+    public void testPauseBufferOverflow() throws Exception {
+        EventBus eventBus = new EventBusImpl();
+        DummyEventBusBridge bridge = DummyEventBusBridge.builder()
+            .withEventBus(eventBus)
+            .withEventType(String.class)
+            .withPauseBuffer(2)
+            .build();
+        
+        bridge.pause();
+        eventBus.publish("Foo1");
+        eventBus.publish("Foo2");
+        eventBus.publish("Foo3");
+        Assert.assertTrue(waitForPauseBufferCount(bridge, 2));
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(3);
+        while (bridge.getPauseDroppedCount() == 0 && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        Assert.assertEquals(1, bridge.getPauseDroppedCount());
+        Assert.assertEquals(1, bridge.getStats().getPauseDroppedCount());
+        
+        bridge.resume();
+        Assert.assertTrue(waitForConsumeCount(bridge, 2, 3, TimeUnit.SECONDS));
+        Assert.assertEquals("Oldest event not dropped.", "Foo2", bridge.getEvents().get(0));
+        Assert.assertEquals("Foo3", bridge.getEvents().get(1));
+        bridge.shutdown();
+    }
+    
+    @Test
+    public void testResumeRate() throws Exception {
+        EventBus eventBus = new EventBusImpl();
+        DummyEventBusBridge bridge = DummyEventBusBridge.builder()
+            .withEventBus(eventBus)
+            .withEventType(String.class)
+            .withPauseBuffer(100)
+            .withResumeRate(20)
+            .build();
+        
+        bridge.pause();
+        for (int i = 0; i < 10; i++) {
+            eventBus.publish("Foo" + i);
+        }
+        Assert.assertTrue(waitForPauseBufferCount(bridge, 10));
+        
+        bridge.resume();
+        TimeUnit.MILLISECONDS.sleep(200);
+        Assert.assertTrue("Not rate limited.", bridge.getConsumeCount() < 10);
+        Assert.assertTrue(waitForConsumeCount(bridge, 10, 3, TimeUnit.SECONDS));
+        bridge.shutdown();
+    }
+    
+    @Test
+    public void testResumeRateLimitsOnlyBacklog() throws Exception {
+        EventBus eventBus = new EventBusImpl();
+        DummyEventBusBridge bridge = DummyEventBusBridge.builder()
+            .withEventBus(eventBus)
+            .withEventType(String.class)
+            .withPauseBuffer(100)
+            .withResumeRate(4)
+            .build();
+        
+        bridge.pause();
+        for (int i = 0; i < 4; i++) {
+            eventBus.publish("Foo" + i);
+        }
+        Assert.assertTrue(waitForPauseBufferCount(bridge, 4));
+        
+        bridge.resume();
+        for (int i = 4; i < 24; i++) {
+            eventBus.publish("Foo" + i); // At the resume rate, these would take 5 seconds.
+        }
+        Assert.assertTrue("Events published after the resume rate limited.", 
+                waitForConsumeCount(bridge, 24, 3, TimeUnit.SECONDS));
+        for (int i = 0; i < 24; i++) {
+            Assert.assertEquals("Unexpected event order.", "Foo" + i, bridge.getEvents().get(i));
+        }
+        bridge.shutdown();
+    }
+    
+    private static boolean waitForPauseBufferCount(DummyEventBusBridge bridge, int expected) throws Exception {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(3);
+        while (bridge.getPauseBufferCount() < expected && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        return bridge.getPauseBufferCount() == expected;
+    }
+    
     public boolean waitForConsumeCount(DummyEventBusBridge bridge, long expected, long delay, TimeUnit units) throws Exception {
         long intervals = TimeUnit.MILLISECONDS.convert(delay, units)/100;
         assert intervals > 0;
@@ -0,0 +1,231 @@
+package com.netflix.eventbus;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.netflix.eventbus.bridge.AbstractEventBusBridge;
+import com.netflix.eventbus.bridge.DiskBufferedEventBusBridge;
+import com.netflix.eventbus.impl.EventBusImpl;
+import com.netflix.eventbus.impl.StringEventCodec;
+import com.netflix.eventbus.spi.EventBus;
+
+public class DiskBufferedEventBusBridgeTest {
+
+    private File logDir;
+
+    @Before
+    public void setUp() throws Exception {
+        logDir = File.createTempFile("eventbus-bridge-log-test", "");
+        logDir.delete();
+        logDir.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        File[] files = logDir.listFiles();
+        if (null != files) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        logDir.delete();
+    }
+
+    @Test
+    public void testDrainsToDelegate() throws Exception {
+        EventBus eventBus = new EventBusImpl();
+        DummyEventBusBridge delegate = newDelegate(eventBus, 10);
+        DiskBufferedEventBusBridge bridge = newBridge(eventBus, delegate, 1024 * 1024);
+
+        for (int i = 0; i < 10; i++) {
+            eventBus.publish("Foo" + i);
+        }
+        Assert.assertTrue(delegate.await(3, TimeUnit.SECONDS));
+        Assert.assertTrue(waitForLag(bridge, 0, 1, TimeUnit.SECONDS));
+        Assert.assertEquals(10, bridge.getConsumeCount());
+        Assert.assertEquals(0, bridge.getConsumeErrorCount());
+        bridge.shutdown();
+    }
+
+    @Test
+    public void testBuffersWhileDownstreamFails() throws Exception {
+        EventBus eventBus = new EventBusImpl();
+        DummyEventBusBridge delegate = newDelegate(eventBus, 5);
+        delegate.setError(new RuntimeException("Downstream unavailable"));
+        DiskBufferedEventBusBridge bridge = newBridge(eventBus, delegate, 1024 * 1024);
+
+        for (int i = 0; i < 5; i++) {
+            eventBus.publish("Foo" + i);
+        }
+        Assert.assertTrue(waitForLag(bridge, 5, 3, TimeUnit.SECONDS));
+        Assert.assertTrue(bridge.getConsumeErrorCount() > 0);
+        Assert.assertTrue(bridge.getLagBytes() > 0);
+        Assert.assertEquals(0, bridge.getDroppedCount());
+
+        delegate.setError(null);
+        Assert.assertTrue(delegate.await(3, TimeUnit.SECONDS));
+        Assert.assertTrue(waitForLag(bridge, 0, 1, TimeUnit.SECONDS));
+        Assert.assertEquals(5, bridge.getConsumeCount());
+        bridge.shutdown();
+    }
+
+    @Test
+    public void testResumesAfterRestart() throws Exception {
+        EventBus eventBus = new EventBusImpl();
+        DummyEventBusBridge delegate = newDelegate(eventBus, 5);
+        delegate.setError(new RuntimeException("Downstream unavailable"));
+        DiskBufferedEventBusBridge bridge = newBridge(eventBus, delegate, 1024 * 1024);
+        for (int i = 0; i < 5; i++) {
+            eventBus.publish("Foo" + i);
+        }
+        Assert.assertTrue(waitForLag(bridge, 5, 3, TimeUnit.SECONDS));
+        bridge.shutdown();
+
+        DummyEventBusBridge newDelegate = newDelegate(eventBus, 5);
+        DiskBufferedEventBusBridge restarted = newBridge(eventBus, newDelegate, 1024 * 1024);
+        Assert.assertTrue(newDelegate.await(3, TimeUnit.SECONDS));
+        Assert.assertTrue(waitForLag(restarted, 0, 1, TimeUnit.SECONDS));
+        Assert.assertEquals(5, restarted.getConsumeCount());
+        restarted.shutdown();
+    }
+
+    @Test
+    public void testBoundedDiskUsage() throws Exception {
+        EventBus eventBus = new EventBusImpl();
+        DummyEventBusBridge delegate = newDelegate(eventBus, 1);
+        delegate.setError(new RuntimeException("Downstream unavailable"));
+        DiskBufferedEventBusBridge bridge = newBridge(eventBus, delegate, 64); // 4 events per segment.
+
+        for (int i = 0; i < 20; i++) {
+            eventBus.publish("Foo" + (i % 10));
+        }
+        Assert.assertTrue(waitForLag(bridge, 8, 3, TimeUnit.SECONDS));
+        Assert.assertTrue(waitForDropped(bridge, 12, 3, TimeUnit.SECONDS));
+        Assert.assertEquals(128, bridge.getDiskUsageBytes());
+        bridge.shutdown();
+    }
+
+    @Test
+    public void testBatchingDelegateFailureKeepsEvents() throws Exception {
+        EventBus eventBus = new EventBusImpl();
+        DummyBatchingEventBusBridge delegate = DummyBatchingEventBusBridge.builder()
+            .withEventBus(eventBus)
+            .withEventType(String.class)
+            .withAutoStart(false)
+            .build();
+        delegate.setError(new RuntimeException("Downstream unavailable"));
+        DiskBufferedEventBusBridge bridge = newBridge(eventBus, delegate, 1024 * 1024, Integer.MAX_VALUE, null);
+
+        for (int i = 0; i < 3; i++) {
+            eventBus.publish("Foo" + i);
+        }
+        Assert.assertTrue(waitForLag(bridge, 3, 3, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(3);
+        while (bridge.getRetryCount() < 2 && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        Assert.assertEquals("Failed asynchronous send removed from the log.", 3, bridge.getLagEvents());
+        Assert.assertEquals("Retries counted as errors.", 1, bridge.getConsumeErrorCount());
+
+        delegate.setError(null);
+        Assert.assertTrue(waitForLag(bridge, 0, 3, TimeUnit.SECONDS));
+        Assert.assertEquals(3, bridge.getConsumeCount());
+        int i = 0;
+        for (List<Object> batch : delegate.getBatches()) {
+            for (Object event : batch) {
+                Assert.assertEquals("Unexpected event order.", "Foo" + i++, event);
+            }
+        }
+        Assert.assertEquals(3, i);
+        bridge.shutdown();
+    }
+
+    @Test
+    public void testDeadLetterAfterMaxRetries() throws Exception {
+        EventBus eventBus = new EventBusImpl();
+        DummyEventBusBridge delegate = newDelegate(eventBus, 1);
+        delegate.setError(new RuntimeException("Poison event"));
+        final List<Object> deadLetters = new CopyOnWriteArrayList<Object>();
+        DiskBufferedEventBusBridge bridge = newBridge(eventBus, delegate, 1024 * 1024, 2,
+                                                      new DiskBufferedEventBusBridge.DeadLetterHandler() {
+                                                          @Override
+                                                          public void onDeadLetter(Object event, Exception lastError) {
+                                                              deadLetters.add(event);
+                                                          }
+                                                      });
+
+        eventBus.publish("Foo0");
+        eventBus.publish("Foo1");
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(3);
+        while (deadLetters.size() < 2 && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        Assert.assertEquals(2, deadLetters.size());
+        Assert.assertTrue(waitForLag(bridge, 0, 1, TimeUnit.SECONDS));
+        Assert.assertEquals("Foo0", deadLetters.get(0));
+        Assert.assertEquals(2, bridge.getDeadLetterCount());
+        Assert.assertEquals(4, bridge.getRetryCount());
+        Assert.assertEquals(2, bridge.getConsumeErrorCount());
+        Assert.assertEquals(0, bridge.getConsumeCount());
+        bridge.shutdown();
+    }
+
+    private DummyEventBusBridge newDelegate(EventBus eventBus, int expectedCount) throws Exception {
+        return DummyEventBusBridge.builder()
+            .withEventBus(eventBus)
+            .withEventType(String.class)
+            .withAutoStart(false)
+            .withExpectedCount(expectedCount)
+            .build();
+    }
+
+    private DiskBufferedEventBusBridge newBridge(EventBus eventBus, DummyEventBusBridge delegate, int segmentSize)
+            throws Exception {
+        return newBridge(eventBus, delegate, segmentSize, Integer.MAX_VALUE, null);
+    }
+
+    private DiskBufferedEventBusBridge newBridge(EventBus eventBus, AbstractEventBusBridge delegate, int segmentSize,
+                                                 int maxRetries,
+                                                 DiskBufferedEventBusBridge.DeadLetterHandler deadLetterHandler)
+            throws Exception {
+        return DiskBufferedEventBusBridge.builder()
+            .withEventBus(eventBus)
+            .withEventType(String.class)
+            .withDelegate(delegate)
+            .withCodec(new StringEventCodec())
+            .withDirectory(logDir)
+            .withSegmentSize(segmentSize)
+            .withMaxDiskBytes(2L * segmentSize)
+            .withRetryBackoff(50)
+            .withMaxRetries(maxRetries)
+            .withDeadLetterHandler(deadLetterHandler)
+            .build();
+    }
+
+    private boolean waitForLag(DiskBufferedEventBusBridge bridge, long expected, long delay, TimeUnit units) throws Exception {
+        long intervals = TimeUnit.MILLISECONDS.convert(delay, units)/100;
+        for (long i = 0; i < intervals; i++) {
+            if (bridge.getLagEvents() == expected)
+                return true;
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        return false;
+    }
+
+    private boolean waitForDropped(DiskBufferedEventBusBridge bridge, long expected, long delay, TimeUnit units) throws Exception {
+        long intervals = TimeUnit.MILLISECONDS.convert(delay, units)/100;
+        for (long i = 0; i < intervals; i++) {
+            if (bridge.getDroppedCount() == expected)
+                return true;
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,79 @@
+package com.netflix.eventbus;
+
+import com.netflix.eventbus.bridge.AbstractBatchingEventBusBridge;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class DummyBatchingEventBusBridge extends AbstractBatchingEventBusBridge {
+
+    public static class Builder extends AbstractBatchingEventBusBridge.Builder<Builder> {
+        private boolean completeManually;
+
+        public Builder withManualCompletion() {
+            completeManually = true;
+            return this;
+        }
+
+        @Override
+        protected Builder self() {
+            return this;
+        }
+
+        public DummyBatchingEventBusBridge build() throws Exception {
+            validate();
+            return new DummyBatchingEventBusBridge(this);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final boolean completeManually;
+    private final List<List<Object>> batches = new CopyOnWriteArrayList<List<Object>>();
+    private final Queue<SendCallback> pending = new ConcurrentLinkedQueue<SendCallback>();
+    private Exception forcedError;
+
+    protected DummyBatchingEventBusBridge(final Builder init)
+            throws Exception {
+        super(init);
+        this.completeManually = init.completeManually;
+        init();
+    }
+
+    @Override
+    protected void sendEvents(List<Object> events, SendCallback callback) throws Exception {
+        if (forcedError != null)
+            throw forcedError;
+        batches.add(events);
+        if (completeManually)
+            pending.add(callback);
+        else
+            callback.onSuccess();
+    }
+
+    /**
+     * Completes all the sends not yet completed
+     * @return Number of sends completed
+     */
+    public int completePending() {
+        int count = 0;
+        SendCallback callback;
+        while ((callback = pending.poll()) != null) {
+            callback.onSuccess();
+            count++;
+        }
+        return count;
+    }
+
+    public List<List<Object>> getBatches() {
+        return batches;
+    }
+
+    public void setError(Exception forcedError) {
+        this.forcedError = forcedError;
+    }
+}
@@ -2,6 +2,8 @@ package com.netflix.eventbus;
 
 import com.netflix.eventbus.bridge.AbstractEventBusBridge;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.*;
@@ -33,6 +35,7 @@ public class DummyEventBusBridge extends AbstractEventBusBridge {
     
     private final CountDownLatch latch;
     private final AtomicLong counter = new AtomicLong();
+    private final List<Object> events = new CopyOnWriteArrayList<Object>();
     private Exception forcedError;
     
     protected DummyEventBusBridge(final Builder init)
@@ -51,7 +54,13 @@ public class DummyEventBusBridge extends AbstractEventBusBridge {
         if (forcedError != null)
             throw forcedError;
         counter.incrementAndGet();
-        latch.countDown();
+        events.add(event);
+        if (latch != null)
+            latch.countDown();
+    }
+    
+    public List<Object> getEvents() {
+        return events;
     }
     
     public void setError(Exception forcedError) {
@@ -0,0 +1,143 @@
+package com.netflix.eventbus;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netflix.eventbus.bridge.AbstractEventBusBridge;
+import com.netflix.eventbus.bridge.EventBusBridgeStats;
+import com.netflix.eventbus.bridge.LatencyHistogram;
+import com.netflix.eventbus.bridge.SimpleEventBusBridgeStats;
+import com.netflix.eventbus.impl.EventBusImpl;
+import com.netflix.eventbus.spi.EventBus;
+
+public class EventBusBridgeStatsTest {
+
+    @Test
+    public void testLatencyPercentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(10));
+
+        Assert.assertEquals(100, histogram.getCount());
+        long median = histogram.getPercentileMicros(50);
+        Assert.assertTrue("Unexpected median: " + median, median >= 100 && median < 200);
+        Assert.assertEquals(10000, histogram.getPercentileMicros(100));
+        Assert.assertEquals(10000, histogram.getMaxMicros());
+        Assert.assertEquals(0, new LatencyHistogram().getPercentileMicros(99));
+    }
+
+    @Test
+    public void testEventsPerSecond() throws Exception {
+        SimpleEventBusBridgeStats stats = new SimpleEventBusBridgeStats(2);
+        for (int i = 0; i < 10; i++) {
+            stats.incConsumeCount();
+            stats.incConsumeBytes(100);
+        }
+        Assert.assertEquals("The current second must not count.", 0, stats.getEventsPerSecond(), 0);
+
+        TimeUnit.MILLISECONDS.sleep(1100);
+        Assert.assertEquals(5, stats.getEventsPerSecond(), 0);
+        Assert.assertEquals(500, stats.getBytesPerSecond(), 0);
+    }
+
+    @Test
+    public void testPausedTime() throws Exception {
+        DummyEventBusBridge bridge = DummyEventBusBridge.builder()
+            .withEventBus(new EventBusImpl())
+            .withEventType(String.class)
+            .build();
+        Assert.assertEquals(0, bridge.getStats().getPausedTimeMillis());
+
+        bridge.pause();
+        TimeUnit.MILLISECONDS.sleep(100);
+        Assert.assertTrue(bridge.getStats().getPausedTimeMillis() >= 100);
+        bridge.resume();
+        long pausedTime = bridge.getStats().getPausedTimeMillis();
+        TimeUnit.MILLISECONDS.sleep(50);
+        Assert.assertEquals(pausedTime, bridge.getStats().getPausedTimeMillis());
+        bridge.shutdown();
+    }
+
+    @Test
+    public void testQueueLagAndLatency() throws Exception {
+        EventBusImpl eventBus = new EventBusImpl();
+        final CountDownLatch release = new CountDownLatch(1);
+        AbstractEventBusBridge bridge = new BlockingBridge(eventBus, release);
+
+        for (int i = 0; i < 5; i++) {
+            eventBus.publish("Foo" + i);
+        }
+        TimeUnit.MILLISECONDS.sleep(200);
+        // One event is being sent, the rest are queued.
+        Assert.assertEquals(4, bridge.getQueueLag());
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(3);
+        while (bridge.getConsumeCount() < 5 && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        EventBusBridgeStats stats = bridge.getStats();
+        Assert.assertEquals(5, stats.getConsumeCount());
+        Assert.assertEquals(0, stats.getQueueLag());
+        Assert.assertTrue("Blocked send not timed.", stats.getMaxSendLatencyMicros() >= TimeUnit.MILLISECONDS.toMicros(50));
+        bridge.shutdown();
+    }
+
+    @Test
+    public void testJmxRegistration() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName query = new ObjectName("com.netflix.eventbus.bridge:type=" + DummyEventBusBridge.class.getName() + ",*");
+        int before = server.queryNames(query, null).size();
+
+        DummyEventBusBridge bridge = DummyEventBusBridge.builder()
+            .withEventBus(new EventBusImpl())
+            .withEventType(Integer.class)
+            .build();
+        Set<ObjectName> names = server.queryNames(query, null);
+        Assert.assertEquals(before + 1, names.size());
+        ObjectName name = null;
+        for (ObjectName candidate : names) {
+            if (Integer.class.getName().equals(candidate.getKeyProperty("eventType")))
+                name = candidate;
+        }
+        Assert.assertNotNull(name);
+        Assert.assertEquals(0L, server.getAttribute(name, "ConsumeCount"));
+        Assert.assertEquals(false, server.getAttribute(name, "Paused"));
+        Assert.assertEquals(0L, server.getAttribute(name, "PauseDroppedCount"));
+
+        bridge.shutdown();
+        Assert.assertFalse(server.isRegistered(name));
+    }
+
+    private static class BlockingBridge extends AbstractEventBusBridge {
+        private static class Builder extends AbstractEventBusBridge.Builder<Builder> {
+            @Override
+            protected Builder self() {
+                return this;
+            }
+        }
+
+        private final CountDownLatch release;
+
+        BlockingBridge(EventBus eventBus, CountDownLatch release) throws Exception {
+            super(new Builder().withEventBus(eventBus).withEventType(String.class));
+            this.release = release;
+            init();
+        }
+
+        @Override
+        protected void sendEvent(Object event) throws Exception {
+            release.await();
+        }
+    }
+}
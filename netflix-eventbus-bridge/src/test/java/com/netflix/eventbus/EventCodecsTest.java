@@ -0,0 +1,151 @@
+package com.netflix.eventbus;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netflix.eventbus.bridge.codec.BinaryEventCodec;
+import com.netflix.eventbus.bridge.codec.GsonEventCodec;
+import com.netflix.eventbus.spi.EventCodec;
+
+public class EventCodecsTest {
+
+    private static final String UNICODE = "caf\u00e9 \u4e2d\u6587 \ud83d\ude00 \"quoted\"";
+
+    @Test
+    public void testGsonRoundTrip() {
+        EventCodec codec = new GsonEventCodec(Event.class);
+        Event event = new Event(42, UNICODE);
+
+        Event decoded = (Event) roundTrip(codec, event, ByteBuffer.allocateDirect(256));
+        Assert.assertEquals(42, decoded.id);
+        Assert.assertEquals(UNICODE, decoded.name);
+    }
+
+    @Test
+    public void testGsonOverflow() {
+        EventCodec codec = new GsonEventCodec(Event.class);
+        try {
+            codec.encode(new Event(1, UNICODE), ByteBuffer.allocate(8));
+            Assert.fail("Expected an overflow.");
+        }
+        catch (BufferOverflowException e) {
+            // Expected.
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGsonMalformed() {
+        new GsonEventCodec(Event.class).decode(ByteBuffer.wrap("{\"id\":".getBytes()));
+    }
+
+    @Test
+    public void testGsonReusedAfterFailures() {
+        EventCodec codec = new GsonEventCodec(Event.class);
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(i, ((Event) roundTrip(codec, new Event(i, UNICODE), buffer)).id);
+        }
+
+        try {
+            codec.encode(new Event(1, UNICODE), ByteBuffer.allocate(8));
+            Assert.fail("Expected an overflow.");
+        }
+        catch (BufferOverflowException e) {
+            // Expected.
+        }
+        Assert.assertEquals(3, ((Event) roundTrip(codec, new Event(3, "Foo"), buffer)).id);
+
+        try {
+            codec.decode(ByteBuffer.wrap("{\"id\":".getBytes()));
+            Assert.fail("Expected a malformed event.");
+        }
+        catch (IllegalArgumentException e) {
+            // Expected.
+        }
+        Assert.assertEquals(4, ((Event) roundTrip(codec, new Event(4, "Foo"), buffer)).id);
+
+        // Trailing bytes are ignored and must not corrupt the next event.
+        Assert.assertEquals(5, ((Event) codec.decode(ByteBuffer.wrap("{\"id\":5} {\"id\":6}".getBytes()))).id);
+        Assert.assertEquals(7, ((Event) roundTrip(codec, new Event(7, "Foo"), buffer)).id);
+    }
+
+    @Test
+    public void testBinaryRoundTrip() {
+        EventCodec codec = new BinaryEventCodec();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(256);
+
+        Assert.assertEquals(UNICODE, roundTrip(codec, UNICODE, buffer));
+        Assert.assertEquals("", roundTrip(codec, "", buffer));
+        for (int value : new int[] {0, 1, -1, Integer.MAX_VALUE, Integer.MIN_VALUE}) {
+            Assert.assertEquals(value, roundTrip(codec, value, buffer));
+        }
+        for (long value : new long[] {0L, 300L, -300L, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            Assert.assertEquals(value, roundTrip(codec, value, buffer));
+        }
+        Assert.assertEquals(Math.PI, roundTrip(codec, Math.PI, buffer));
+        Assert.assertEquals(Boolean.TRUE, roundTrip(codec, true, buffer));
+        Assert.assertEquals(Boolean.FALSE, roundTrip(codec, false, buffer));
+        Assert.assertTrue(Arrays.equals(new byte[] {1, 2, 3}, (byte[]) roundTrip(codec, new byte[] {1, 2, 3}, buffer)));
+
+        buffer.clear();
+        codec.encode(1, buffer);
+        Assert.assertEquals("Small integers take a tag and a byte.", 2, buffer.position());
+    }
+
+    @Test
+    public void testBinaryCustomType() {
+        BinaryEventCodec codec = BinaryEventCodec.builder()
+            .withType(BinaryEventCodec.MIN_CUSTOM_TAG, Event.class, new GsonEventCodec(Event.class))
+            .build();
+
+        Event decoded = (Event) roundTrip(codec, new Event(7, "Foo"), ByteBuffer.allocate(256));
+        Assert.assertEquals(7, decoded.id);
+        Assert.assertEquals("Foo", decoded.name);
+        Assert.assertEquals("Bar", roundTrip(codec, "Bar", ByteBuffer.allocate(256)));
+    }
+
+    @Test
+    public void testBinaryUnknownType() {
+        BinaryEventCodec codec = new BinaryEventCodec();
+        try {
+            codec.encode(new Event(1, "Foo"), ByteBuffer.allocate(256));
+            Assert.fail("Expected an unknown type.");
+        }
+        catch (IllegalArgumentException e) {
+            // Expected.
+        }
+        try {
+            codec.decode(ByteBuffer.wrap(new byte[] {BinaryEventCodec.MIN_CUSTOM_TAG, 0}));
+            Assert.fail("Expected an unknown tag.");
+        }
+        catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+
+    private static Object roundTrip(EventCodec codec, Object event, ByteBuffer buffer) {
+        buffer.clear();
+        codec.encode(event, buffer);
+        buffer.flip();
+        Object decoded = codec.decode(buffer);
+        Assert.assertFalse("Event not fully decoded.", buffer.hasRemaining());
+        return decoded;
+    }
+
+    public static class Event {
+        private int id;
+        private String name;
+
+        public Event() {
+        }
+
+        public Event(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+}
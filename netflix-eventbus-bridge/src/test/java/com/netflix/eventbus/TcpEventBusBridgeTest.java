@@ -0,0 +1,177 @@
+package com.netflix.eventbus;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netflix.eventbus.bridge.tcp.TcpEventBusBridge;
+import com.netflix.eventbus.bridge.tcp.TcpEventBusReceiver;
+import com.netflix.eventbus.impl.EventBusImpl;
+import com.netflix.eventbus.impl.StringEventCodec;
+import com.netflix.eventbus.spi.EventBus;
+import com.netflix.eventbus.spi.EventCodec;
+import com.netflix.eventbus.spi.Subscribe;
+
+public class TcpEventBusBridgeTest {
+
+    @Test
+    public void testLoopback() throws Exception {
+        EventBus remoteBus = new EventBusImpl();
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        remoteBus.registerSubscriber(subscriber);
+        TcpEventBusReceiver receiver = new TcpEventBusReceiver(remoteBus, new StringEventCodec(), loopback(0));
+
+        EventBus eventBus = new EventBusImpl();
+        TcpEventBusBridge bridge = newBridge(eventBus, receiver.getLocalAddress(), 1024);
+        for (int i = 0; i < 100; i++) {
+            eventBus.publish("Foo" + i);
+        }
+
+        Assert.assertTrue(subscriber.awaitEvents(100));
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals("Unexpected event order.", "Foo" + i, subscriber.events.get(i));
+        }
+        Assert.assertEquals(100, receiver.getReceivedCount());
+        Assert.assertTrue(waitForConsumeCount(bridge, 100));
+        Assert.assertEquals(0, bridge.getConsumeErrorCount());
+
+        bridge.shutdown();
+        receiver.close();
+    }
+
+    @Test
+    public void testBatchSpanningBuffers() throws Exception {
+        EventBus remoteBus = new EventBusImpl();
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        remoteBus.registerSubscriber(subscriber);
+        TcpEventBusReceiver receiver = new TcpEventBusReceiver(remoteBus, new StringEventCodec(), loopback(0), 64);
+
+        EventBus eventBus = new EventBusImpl();
+        TcpEventBusBridge bridge = newBridge(eventBus, receiver.getLocalAddress(), 64); // 2 events per buffer.
+        for (int i = 0; i < 50; i++) {
+            eventBus.publish(String.format("Event-%020d", i));
+        }
+
+        Assert.assertTrue(subscriber.awaitEvents(50));
+        for (int i = 0; i < 50; i++) {
+            Assert.assertEquals("Unexpected event order.", String.format("Event-%020d", i), subscriber.events.get(i));
+        }
+        Assert.assertTrue("Buffers not pooled.", bridge.getBufferPool().getAllocatedCount() < 50);
+
+        bridge.shutdown();
+        receiver.close();
+    }
+
+    @Test
+    public void testReconnect() throws Exception {
+        EventBus remoteBus = new EventBusImpl();
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        remoteBus.registerSubscriber(subscriber);
+        TcpEventBusReceiver receiver = new TcpEventBusReceiver(remoteBus, new StringEventCodec(), loopback(0));
+        InetSocketAddress address = receiver.getLocalAddress();
+        receiver.close();
+
+        EventBus eventBus = new EventBusImpl();
+        TcpEventBusBridge bridge = newBridge(eventBus, address, 1024);
+        eventBus.publish("Lost");
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(3);
+        while (bridge.getConsumeErrorCount() == 0 && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        Assert.assertEquals(1, bridge.getConsumeErrorCount());
+
+        receiver = new TcpEventBusReceiver(remoteBus, new StringEventCodec(), address);
+        TimeUnit.MILLISECONDS.sleep(200); // Reconnect backoff.
+        eventBus.publish("Delivered");
+        Assert.assertTrue(subscriber.awaitEvents(1));
+        Assert.assertEquals("Delivered", subscriber.events.get(0));
+
+        bridge.shutdown();
+        receiver.close();
+    }
+
+    @Test
+    public void testUnencodableEventsSkipped() throws Exception {
+        EventBus remoteBus = new EventBusImpl();
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        remoteBus.registerSubscriber(subscriber);
+        TcpEventBusReceiver receiver = new TcpEventBusReceiver(remoteBus, new StringEventCodec(), loopback(0));
+
+        EventBus eventBus = new EventBusImpl();
+        TcpEventBusBridge bridge = newBridge(eventBus, receiver.getLocalAddress(), 1024, new StringEventCodec() {
+            @Override
+            public void encode(Object event, ByteBuffer target) {
+                if ("Bad".equals(event))
+                    throw new IllegalArgumentException("Can not encode: " + event);
+                super.encode(event, target);
+            }
+        });
+        eventBus.publish("Foo");
+        eventBus.publish("Bad");
+        eventBus.publish(String.format("%2000s", "TooLarge"));
+        eventBus.publish("Bar");
+
+        Assert.assertTrue(subscriber.awaitEvents(2));
+        Assert.assertEquals("Foo", subscriber.events.get(0));
+        Assert.assertEquals("Bar", subscriber.events.get(1));
+        Assert.assertTrue(waitForConsumeCount(bridge, 2));
+        Assert.assertEquals(2, bridge.getConsumeErrorCount());
+
+        bridge.shutdown();
+        receiver.close();
+    }
+
+    private static TcpEventBusBridge newBridge(EventBus eventBus, InetSocketAddress address, int frameBufferSize)
+            throws Exception {
+        return newBridge(eventBus, address, frameBufferSize, new StringEventCodec());
+    }
+
+    private static TcpEventBusBridge newBridge(EventBus eventBus, InetSocketAddress address, int frameBufferSize,
+                                               EventCodec codec) throws Exception {
+        return TcpEventBusBridge.builder()
+            .withEventBus(eventBus)
+            .withEventType(String.class)
+            .withAddress(address)
+            .withCodec(codec)
+            .withFrameBufferSize(frameBufferSize)
+            .withBatchSize(10)
+            .withBatchAge(10)
+            .withReconnectBackoff(100)
+            .build();
+    }
+
+    private static InetSocketAddress loopback(int port) {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+    private static boolean waitForConsumeCount(TcpEventBusBridge bridge, long expected) throws Exception {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(3);
+        while (bridge.getConsumeCount() < expected && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        return bridge.getConsumeCount() == expected;
+    }
+
+    public static class RecordingSubscriber {
+        private final List<Object> events = new CopyOnWriteArrayList<Object>();
+
+        @Subscribe
+        public void consume(String event) {
+            events.add(event);
+        }
+
+        private boolean awaitEvents(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+            while (events.size() < count && System.currentTimeMillis() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            return events.size() >= count;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.netflix.eventbus.rx;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import rx.Producer;
+import rx.Subscriber;
+
+/**
+ * Emits the events of a shared event bus subscription to a single Rx
+ * subscriber, honoring the subscriber's requests as per the
+ * {@link RxEventBus.BackpressureStrategy}.
+ *
+ * Events are emitted either on the consumer thread of the event bus
+ * subscription or on the thread that requests more, but never concurrently.
+ */
+class BackpressureEmitter<T> implements Producer {
+    private final Subscriber<? super T> observer;
+    private final RxEventBus.BackpressureStrategy strategy;
+    private final int bufferSize;
+    private final AtomicLong requested = new AtomicLong();
+    private final Queue<T> queue = new ConcurrentLinkedQueue<T>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicReference<T> latest = new AtomicReference<T>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicBoolean terminated = new AtomicBoolean();
+    private final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+    BackpressureEmitter(Subscriber<? super T> observer, RxEventBus.BackpressureStrategy strategy, int bufferSize) {
+        this.observer = observer;
+        this.strategy = strategy;
+        this.bufferSize = bufferSize;
+    }
+
+    Subscriber<? super T> getObserver() {
+        return observer;
+    }
+
+    /**
+     * @return true if an error was signalled to the subscriber.
+     */
+    boolean isTerminated() {
+        return terminated.get();
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            return;
+        }
+        while (true) {
+            long current = requested.get();
+            long updated = current + n;
+            if (updated < 0) {
+                updated = Long.MAX_VALUE;
+            }
+            if (current == Long.MAX_VALUE || requested.compareAndSet(current, updated)) {
+                break;
+            }
+        }
+        drain();
+    }
+
+    void emit(T event) {
+        if (terminated.get()) {
+            return;
+        }
+        switch (strategy) {
+            case Drop:
+                if (queued.get() >= requested.get()) {
+                    return; // Not requested.
+                }
+                enqueue(event);
+                break;
+            case Latest:
+                latest.set(event);
+                break;
+            case Buffer:
+                if (queued.get() >= bufferSize) {
+                    error.compareAndSet(null, new IllegalStateException(
+                            "Backpressure buffer of size " + bufferSize + " overflowed."));
+                    break;
+                }
+                enqueue(event);
+                break;
+        }
+        drain();
+    }
+
+    private void enqueue(T event) {
+        queue.offer(event);
+        queued.incrementAndGet();
+    }
+
+    private T poll() {
+        if (strategy == RxEventBus.BackpressureStrategy.Latest) {
+            return latest.getAndSet(null);
+        }
+        T next = queue.poll();
+        if (next != null) {
+            queued.decrementAndGet();
+        }
+        return next;
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return; // The thread emitting will drain again.
+        }
+        int missed = 1;
+        while (true) {
+            Throwable failure = error.get();
+            if (failure != null && terminated.compareAndSet(false, true)) {
+                queue.clear();
+                observer.onError(failure);
+                observer.unsubscribe();
+            }
+            while (!terminated.get() && requested.get() > 0) {
+                T next = poll();
+                if (next == null) {
+                    break;
+                }
+                if (requested.get() != Long.MAX_VALUE) {
+                    requested.decrementAndGet();
+                }
+                try {
+                    observer.onNext(next);
+                } catch (Throwable th) {
+                    error.compareAndSet(null, th);
+                    break;
+                }
+            }
+            if (error.get() != null && !terminated.get()) {
+                continue; // Signal the error.
+            }
+            missed = wip.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.netflix.eventbus.rx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.eventbus.impl.EventBusImpl;
+import com.netflix.eventbus.spi.EventBus;
+
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.subscriptions.BooleanSubscription;
+
+/**
+ * A sink that publishes the events emitted by an Observable to the EventBus in
+ * batches, see {@link RxEventBus#publishStream(rx.Observable, int, int, long)}.
+ *
+ * At most a window of events is requested from upstream that is not yet
+ * published.  After publishing a batch, more events are requested only if
+ * none of the event types in the batch is saturated, see
+ * {@link EventBusImpl#isSaturated(Class)}, otherwise the request is retried
+ * on every flush interval.  A batch that is not full is published on the next
+ * flush interval.
+ *
+ * The events are published without holding the lock of this sink, so that
+ * the events emitted and the flushes meanwhile are not blocked by a slow
+ * publish; a publish lock keeps the batches in order.
+ *
+ * An error from upstream publishes the events received before it and is
+ * logged, as there is no one downstream to pass it to.
+ */
+class BulkPublishingSubscriber extends Subscriber<Object> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkPublishingSubscriber.class);
+
+    /**
+     * Shared by all the sinks, with a thread per processor, so that a sink
+     * slow to publish does not hold up the flushes of the others.  A failed
+     * flush is logged and does not cancel the flushes of any sink.
+     */
+    private static final ScheduledExecutorService flusher = newFlusher();
+
+    private final EventBus eventBus;
+    private final int batchSize;
+    private final int window;
+    private final long flushIntervalMillis;
+    private volatile ScheduledFuture<?> flushTask;
+    private final Object publishLock = new Object();
+
+    private List<Object> pending; // Guarded by this.
+    private long outstanding; // Requested and not yet received, guarded by this.
+    private boolean saturated; // Guarded by this.
+    private long missedRequests; // Guarded by this.
+    private boolean requesting; // Guarded by this.
+    private Class<?> lastSaturatedType; // Guarded by this.
+
+    BulkPublishingSubscriber(EventBus eventBus, int batchSize, int window, long flushIntervalMillis) {
+        this.eventBus = eventBus;
+        this.batchSize = batchSize;
+        this.window = window;
+        this.flushIntervalMillis = flushIntervalMillis;
+        pending = new ArrayList<Object>(batchSize);
+        add(BooleanSubscription.create(new Action0() {
+            @Override
+            public void call() {
+                ScheduledFuture<?> task = flushTask;
+                if (task != null) {
+                    task.cancel(false);
+                }
+            }
+        }));
+    }
+
+    @Override
+    public void onStart() {
+        flushTask = flusher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                onFlushInterval();
+            }
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        if (isUnsubscribed()) {
+            flushTask.cancel(false); // Unsubscribed before the task was scheduled.
+        }
+        synchronized (this) {
+            outstanding = window;
+        }
+        requestMore(window);
+    }
+
+    @Override
+    public void onNext(Object event) {
+        boolean full;
+        synchronized (this) {
+            pending.add(event);
+            if (outstanding > 0) {
+                outstanding--;
+            }
+            full = pending.size() >= batchSize;
+        }
+        if (full) {
+            requestMore(flush());
+        }
+    }
+
+    @Override
+    public void onCompleted() {
+        flush();
+        unsubscribe();
+    }
+
+    @Override
+    public void onError(Throwable e) {
+        LOGGER.error("Error from the stream published to the event bus, publishing the events received before it.", e);
+        try {
+            flush(); // Publish what was received before the error.
+        }
+        finally {
+            unsubscribe();
+        }
+    }
+
+    private void onFlushInterval() {
+        try {
+            long toRequest = 0;
+            synchronized (this) {
+                if (saturated) {
+                    saturated = isStillSaturated(); // Consumers may have caught up.
+                    toRequest = saturated ? 0 : replenish();
+                }
+            }
+            toRequest += flush();
+            requestMore(toRequest);
+        }
+        catch (Throwable th) {
+            // Thrown out of a scheduled task, this would cancel the flushes of this sink.
+            LOGGER.error("Failed to flush the events of a stream published to the event bus.", th);
+        }
+    }
+
+    /**
+     * Publishes the pending events, if any.  The events are taken under the
+     * lock of this sink and published outside of it.
+     *
+     * @return Number of events to request.
+     */
+    private long flush() {
+        synchronized (publishLock) {
+            List<Object> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return 0;
+                }
+                batch = pending;
+                pending = new ArrayList<Object>(batchSize);
+            }
+            if (eventBus instanceof EventBusImpl) {
+                ((EventBusImpl) eventBus).publishAll(batch);
+            } else {
+                for (Object event : batch) {
+                    eventBus.publish(event);
+                }
+            }
+            Class<?> saturatedType = findSaturatedType(batch);
+            synchronized (this) {
+                saturated = saturatedType != null;
+                if (saturated) {
+                    lastSaturatedType = saturatedType;
+                    return 0;
+                }
+                return replenish();
+            }
+        }
+    }
+
+    private long replenish() {
+        long toRequest = window - outstanding - pending.size();
+        if (toRequest <= 0) {
+            return 0;
+        }
+        outstanding += toRequest;
+        return toRequest;
+    }
+
+    /**
+     * Checks the type that was saturated after the last batch, guarded by this.
+     */
+    private boolean isStillSaturated() {
+        return eventBus instanceof EventBusImpl && lastSaturatedType != null
+               && ((EventBusImpl) eventBus).isSaturated(lastSaturatedType);
+    }
+
+    /**
+     * @param batch Batch just published.
+     * @return The first saturated type of the batch, null if none is.
+     */
+    private Class<?> findSaturatedType(List<Object> batch) {
+        if (!(eventBus instanceof EventBusImpl)) {
+            return null;
+        }
+        EventBusImpl bus = (EventBusImpl) eventBus;
+        Class<?> checked = null;
+        for (Object event : batch) {
+            if (event.getClass() != checked) {
+                checked = event.getClass();
+                if (bus.isSaturated(checked)) {
+                    return checked;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static ScheduledExecutorService newFlusher() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+                Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                    private final AtomicInteger threadCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "eventbus-rx-publish-stream-flusher-"
+                                                             + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.setRemoveOnCancelPolicy(true); // Cancelled with the sink, not kept till their next run.
+        return executor;
+    }
+
+    /**
+     * Requests from upstream, without recursing when upstream emits
+     * synchronously on request.
+     */
+    private void requestMore(long n) {
+        synchronized (this) {
+            missedRequests += n;
+            if (requesting || missedRequests == 0) {
+                return;
+            }
+            requesting = true;
+        }
+        while (true) {
+            long toRequest;
+            synchronized (this) {
+                toRequest = missedRequests;
+                missedRequests = 0;
+                if (toRequest == 0) {
+                    requesting = false;
+                    return;
+                }
+            }
+            request(toRequest);
+        }
+    }
+}
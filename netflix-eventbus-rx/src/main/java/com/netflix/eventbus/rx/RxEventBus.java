@@ -1,31 +1,54 @@
 package com.netflix.eventbus.rx;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import com.netflix.eventbus.impl.EventBusImpl;
 import com.netflix.eventbus.spi.DynamicSubscriber;
 import com.netflix.eventbus.spi.EventBus;
 import com.netflix.eventbus.spi.EventCreator;
 import com.netflix.eventbus.spi.EventFilter;
 import com.netflix.eventbus.spi.InvalidSubscriberException;
 import com.netflix.eventbus.spi.Subscribe;
+import com.netflix.eventbus.spi.SubscriberConfigProvider;
 
 import rx.Observable;
 import rx.Observable.OnSubscribe;
 import rx.Subscriber;
+import rx.Subscription;
 import rx.functions.Action0;
 import rx.subscriptions.BooleanSubscription;
 
 /**
  * Small wrapper on top of the EventBus to allow consumption of events as
- * Rx streams.  
+ * Rx streams.  Observables for the same event type and filter share a single
+ * subscription to the EventBus, i.e. a single consumer queue and thread, 
+ * irrespective of the number of Rx subscribers.
+ * 
+ * Every Rx subscriber gets events only as requested, the events that are not
+ * requested are handled as per the {@link BackpressureStrategy}.  Batches can
+ * be consumed as built by the event bus, see 
+ * {@link #asBatchedObservable(Class, EventFilter, Subscribe.BatchingStrategy, int, int, BackpressureStrategy, int)}
  * 
  * @author elandau
  *
  */
 @Singleton
 public class RxEventBus {
+    public static final int DEFAULT_STREAM_BATCH_SIZE = 64;
+    public static final int DEFAULT_STREAM_WINDOW = 128;
+    public static final long DEFAULT_STREAM_FLUSH_INTERVAL_MILLIS = 10;
+    
     private final EventBus eventBus;
+    private final ConcurrentMap<SharedKey, SharedSubscription> sharedSubscriptions = 
+            new ConcurrentHashMap<SharedKey, SharedSubscription>();
     
     @Inject
     public RxEventBus(EventBus eventBus) {
@@ -39,6 +62,52 @@ public class RxEventBus {
         eventBus.publish(event);
     }
     
+    /**
+     * Same as calling {@link #publishStream(Observable, int, int, long)} with
+     * a batch size of {@link #DEFAULT_STREAM_BATCH_SIZE}, a window of 
+     * {@link #DEFAULT_STREAM_WINDOW} and a flush interval of
+     * {@link #DEFAULT_STREAM_FLUSH_INTERVAL_MILLIS}.
+     */
+    public Subscription publishStream(Observable<?> events) {
+        return publishStream(events, DEFAULT_STREAM_BATCH_SIZE, DEFAULT_STREAM_WINDOW, 
+                             DEFAULT_STREAM_FLUSH_INTERVAL_MILLIS);
+    }
+    
+    /**
+     * Publishes all the events emitted by the passed Observable.  The events 
+     * are published in batches of batchSize, in bulk when the EventBus is an
+     * {@link EventBusImpl}, see {@link EventBusImpl#publishAll(java.util.Collection)}.
+     * 
+     * At most a window of events is requested upstream and not yet published.
+     * When the subscribers of any event type in a batch have full queues, see
+     * {@link EventBusImpl#isSaturated(Class)}, no more events are requested 
+     * till they catch up.  No event is rejected by a subscriber queue as long
+     * as the window is under a quarter of the queue size, and the events are
+     * published only by this stream.  An Observable that does not support
+     * backpressure keeps emitting, in which case the events are published in
+     * batches and the subscriber queues reject events as usual.
+     * 
+     * @param events Events to publish.
+     * @param batchSize Maximum events published together.
+     * @param window Maximum events requested upstream and not yet published,
+     *        at least the batch size.
+     * @param flushIntervalMillis Interval to publish a batch that is not full,
+     *        and to retry requesting events when the subscribers were saturated.
+     * @return Subscription to stop publishing.
+     */
+    public Subscription publishStream(Observable<?> events, int batchSize, int window, long flushIntervalMillis) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        if (window < batchSize) {
+            throw new IllegalArgumentException("Window must be at least the batch size.");
+        }
+        if (flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Flush interval must be positive.");
+        }
+        return events.subscribe(new BulkPublishingSubscriber(eventBus, batchSize, window, flushIntervalMillis));
+    }
+    
     /**
      * {@link EventBus#publishIffNotDead(EventCreator, Class[])}
      */
@@ -47,86 +116,363 @@ public class RxEventBus {
     }
     
     /**
-     * Create an observable for this eventType.  A new event bus subscription
-     * is made for each call to the Observables.subscribe().  The subscription
-     * is removed from the underlying EventBus when unsubscribe is called.
+     * Create an observable for this eventType.  All subscriptions to observables
+     * for the same eventType, without a filter, share a single event bus
+     * subscription which is made when the first Observable.subscribe() is called
+     * and removed from the underlying EventBus when the last subscription is
+     * unsubscribed.
+     * 
+     * Events are buffered for an Rx subscriber that requests fewer events than
+     * are published.
      * 
      * @param eventType
      * @return
      */
     public <T> Observable<T> asObservable(final Class<T> eventType) {
-        return Observable.create(new OnSubscribe<T>() {
-            @Override
-            public void call(final Subscriber<? super T> observer) {
-                final DynamicSubscriber consumer = new DynamicSubscriber() {
-                    @Override
-                    public Class<?> getEventType() {
-                        return eventType;
-                    }
-                    
-                    @Subscribe
-                    public void consume(Object obj) {
-                        observer.onNext((T) obj);
-                    }
-                };
-                
-                observer.add(BooleanSubscription.create(new Action0() {
-                    @Override
-                    public void call() {
-                        eventBus.unregisterSubscriber(consumer);
-                        observer.onCompleted();
-                    }
-                }));
-                
-                try {
-                    eventBus.registerSubscriber(consumer);
-                } catch (InvalidSubscriberException e) {
-                    observer.onError(e);
-                }
-            }
-        });
+        return asObservable(eventType, null);
     }
     
     /**
-     * Create an observable for this eventType using a filter.  A new event bus 
-     * subscription is made for each call to the Observables.subscribe().  The 
-     * subscription is removed from the underlying EventBus when unsubscribe is 
-     * called.
+     * Create an observable for this eventType using a filter.  All subscriptions
+     * to observables for the same eventType and filter instance share a single 
+     * event bus subscription which is made when the first Observable.subscribe()
+     * is called and removed from the underlying EventBus when the last 
+     * subscription is unsubscribed.
+     * 
+     * The events are multicast to the Rx subscribers on the consumer thread of
+     * the shared event bus subscription, so a slow Rx subscriber delays the
+     * others.
+     * 
+     * Events are buffered for an Rx subscriber that requests fewer events than
+     * are published.
      * 
      * @param eventType
+     * @param filter Filter for the events, null for all events.
      * @return
      */
     public <T> Observable<T> asObservable(final Class<T> eventType, final EventFilter filter) {
+        return asObservable(eventType, filter, BackpressureStrategy.Buffer, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Same as {@link #asObservable(Class, EventFilter)} but applies the passed
+     * strategy when an Rx subscriber requests fewer events than are published.
+     * 
+     * @param eventType
+     * @param filter Filter for the events, null for all events.
+     * @param backpressureStrategy Strategy for the events that are not requested.
+     * @param bufferSize Maximum events buffered per Rx subscriber for
+     *        {@link BackpressureStrategy#Buffer}, ignored otherwise.
+     * @return
+     */
+    public <T> Observable<T> asObservable(final Class<T> eventType, final EventFilter filter,
+                                          final BackpressureStrategy backpressureStrategy, final int bufferSize) {
+        return shared(new SharedKey(eventType, filter, null), backpressureStrategy, bufferSize);
+    }
+    
+    /**
+     * Create an observable of batches of this eventType, the batches are built
+     * by the event bus as per the passed batching strategy, see
+     * {@link Subscribe#batchingStrategy()}, instead of buffering in Rx.  All
+     * subscriptions to observables for the same eventType, filter instance and
+     * batching configuration share a single event bus subscription, as in 
+     * {@link #asObservable(Class, EventFilter)}.
+     * 
+     * The batches are immutable and the backpressure strategy applies to the
+     * batches, not the events.
+     * 
+     * @param eventType
+     * @param filter Filter for the events, null for all events.
+     * @param batchingStrategy {@link Subscribe.BatchingStrategy#Age} or 
+     *        {@link Subscribe.BatchingStrategy#SizeOrAge}
+     * @param batchAge Batch age in milliseconds, see {@link Subscribe#batchAge()}
+     * @param batchSize Batch size for {@link Subscribe.BatchingStrategy#SizeOrAge},
+     *        ignored otherwise.
+     * @param backpressureStrategy Strategy for the batches that are not requested.
+     * @param bufferSize Maximum batches buffered per Rx subscriber for
+     *        {@link BackpressureStrategy#Buffer}, ignored otherwise.
+     * @return
+     */
+    public <T> Observable<List<T>> asBatchedObservable(final Class<T> eventType, final EventFilter filter,
+                                                       Subscribe.BatchingStrategy batchingStrategy, int batchAge,
+                                                       int batchSize, BackpressureStrategy backpressureStrategy,
+                                                       int bufferSize) {
+        if (batchingStrategy == Subscribe.BatchingStrategy.None) {
+            throw new IllegalArgumentException("Batching strategy must be Age or SizeOrAge.");
+        }
+        if (batchAge <= 0) {
+            throw new IllegalArgumentException("Batch age must be positive.");
+        }
+        if (batchingStrategy == Subscribe.BatchingStrategy.SizeOrAge && batchSize <= 1) {
+            throw new IllegalArgumentException("Batch size must be more than 1.");
+        }
+        if (batchingStrategy == Subscribe.BatchingStrategy.Age) {
+            batchSize = 1;
+        }
+        return shared(new SharedKey(eventType, filter, new BatchConfig(batchingStrategy, batchAge, batchSize)),
+                      backpressureStrategy, bufferSize);
+    }
+    
+    /**
+     * @return Number of event bus subscriptions currently made for observables.
+     */
+    int getSharedSubscriptionCount() {
+        return sharedSubscriptions.size();
+    }
+    
+    private <T> Observable<T> shared(final SharedKey key, final BackpressureStrategy backpressureStrategy, 
+                                     final int bufferSize) {
+        if (backpressureStrategy == null) {
+            throw new IllegalArgumentException("Backpressure strategy can not be null.");
+        }
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive.");
+        }
         return Observable.create(new OnSubscribe<T>() {
             @Override
             public void call(final Subscriber<? super T> observer) {
-                final DynamicSubscriber consumer = new DynamicSubscriber() {
-                    @Override
-                    public Class<?> getEventType() {
-                        return eventType;
-                    }
-                    
-                    @Subscribe
-                    public void consume(Object obj) {
-                        observer.onNext((T) obj);
-                    }
-                };
+                final BackpressureEmitter<T> emitter = new BackpressureEmitter<T>(observer, backpressureStrategy,
+                                                                                  bufferSize);
+                observer.setProducer(emitter); // Before any event is emitted, so that none is dropped.
+                final SharedSubscription shared = attach(key, emitter);
+                if (shared == null) {
+                    return;
+                }
                 
                 observer.add(BooleanSubscription.create(new Action0() {
                     @Override
                     public void call() {
-                        eventBus.unregisterSubscriber(consumer);
-                        observer.onCompleted();
+                        shared.remove(emitter);
+                        if (!emitter.isTerminated()) {
+                            observer.onCompleted();
+                        }
                     }
                 }));
-                
+            }
+        });
+    }
+    
+    private SharedSubscription attach(SharedKey key, BackpressureEmitter<?> emitter) {
+        while (true) {
+            SharedSubscription shared = sharedSubscriptions.get(key);
+            if (shared == null) {
+                shared = new SharedSubscription(key);
+                SharedSubscription existing = sharedSubscriptions.putIfAbsent(key, shared);
+                if (existing != null) {
+                    shared = existing;
+                }
+            }
+            try {
+                if (shared.add(emitter)) {
+                    return shared;
+                }
+            } catch (InvalidSubscriberException e) {
+                emitter.getObserver().onError(e);
+                return null;
+            }
+            // Closed by the last unsubscribe in the meantime.
+            sharedSubscriptions.remove(key, shared);
+        }
+    }
+    
+    /**
+     * What to do with the events, or batches, published when an Rx subscriber
+     * has not requested any.
+     */
+    public enum BackpressureStrategy {
+        /**
+         * Drop the events that are not requested.
+         */
+        Drop,
+        /**
+         * Keep only the latest event that is not requested, and emit it on the
+         * next request.
+         */
+        Latest,
+        /**
+         * Buffer the events that are not requested, up to a maximum, after 
+         * which an error is signalled to the Rx subscriber.
+         */
+        Buffer
+    }
+    
+    private static class BatchConfig implements SubscriberConfigProvider.SubscriberConfig {
+        private final Subscribe.BatchingStrategy batchingStrategy;
+        private final int batchAge;
+        private final int batchSize;
+        
+        private BatchConfig(Subscribe.BatchingStrategy batchingStrategy, int batchAge, int batchSize) {
+            this.batchingStrategy = batchingStrategy;
+            this.batchAge = batchAge;
+            this.batchSize = batchSize;
+        }
+        
+        @Override
+        public Subscribe.BatchingStrategy getBatchingStrategy() {
+            return batchingStrategy;
+        }
+        
+        @Override
+        public int getBatchAge() {
+            return batchAge;
+        }
+        
+        @Override
+        public int getBatchSize() {
+            return batchSize;
+        }
+        
+        @Override
+        public int getQueueSize() {
+            return -1;
+        }
+        
+        @Override
+        public boolean syncIfAllowed() {
+            return false;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BatchConfig)) {
+                return false;
+            }
+            BatchConfig that = (BatchConfig) o;
+            return batchingStrategy == that.batchingStrategy && batchAge == that.batchAge
+                   && batchSize == that.batchSize;
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * (31 * batchingStrategy.hashCode() + batchAge) + batchSize;
+        }
+    }
+    
+    private static class SharedKey {
+        private final Class<?> eventType;
+        private final EventFilter filter;
+        private final BatchConfig batchConfig; // null if not batched.
+        
+        private SharedKey(Class<?> eventType, EventFilter filter, BatchConfig batchConfig) {
+            this.eventType = eventType;
+            this.filter = filter;
+            this.batchConfig = batchConfig;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SharedKey)) {
+                return false;
+            }
+            SharedKey that = (SharedKey) o;
+            return eventType.equals(that.eventType) && filter == that.filter
+                   && (batchConfig == null ? that.batchConfig == null : batchConfig.equals(that.batchConfig));
+        }
+        
+        @Override
+        public int hashCode() {
+            int result = 31 * eventType.hashCode() + System.identityHashCode(filter);
+            return 31 * result + (batchConfig == null ? 0 : batchConfig.hashCode());
+        }
+    }
+    
+    /**
+     * A single event bus subscription shared by all the Rx subscribers for an
+     * eventType, filter and batching configuration.
+     */
+    private class SharedSubscription {
+        private final SharedKey key;
+        private final List<BackpressureEmitter<Object>> emitters = new CopyOnWriteArrayList<BackpressureEmitter<Object>>();
+        private final Object consumer;
+        private boolean closed; // Guarded by this.
+        
+        private SharedSubscription(final SharedKey key) {
+            this.key = key;
+            consumer = key.batchConfig == null ? new EventConsumer() : new BatchConsumer();
+        }
+        
+        private void emit(Object event) {
+            for (BackpressureEmitter<Object> emitter : emitters) {
+                emitter.emit(event);
+            }
+        }
+        
+        /**
+         * @return false if this subscription was closed and must not be used.
+         */
+        @SuppressWarnings("unchecked")
+        synchronized boolean add(BackpressureEmitter<?> emitter) throws InvalidSubscriberException {
+            if (closed) {
+                return false;
+            }
+            emitters.add((BackpressureEmitter<Object>) emitter);
+            if (emitters.size() == 1) {
                 try {
-                    eventBus.registerSubscriber(filter, consumer);
+                    eventBus.registerSubscriber(key.filter, consumer);
                 } catch (InvalidSubscriberException e) {
-                    observer.onError(e);
+                    emitters.clear();
+                    closed = true;
+                    sharedSubscriptions.remove(key, this);
+                    throw e;
                 }
             }
-        });
+            return true;
+        }
+        
+        synchronized void remove(BackpressureEmitter<?> emitter) {
+            if (!emitters.remove(emitter) || !emitters.isEmpty()) {
+                return;
+            }
+            closed = true;
+            sharedSubscriptions.remove(key, this);
+            eventBus.unregisterSubscriber(consumer);
+        }
+        
+        private class EventConsumer implements DynamicSubscriber {
+            @Override
+            public Class<?> getEventType() {
+                return key.eventType;
+            }
+            
+            @Subscribe
+            public void consume(Object obj) {
+                emit(obj);
+            }
+        }
+        
+        /**
+         * The batching configuration is provided by {@link #getConfigForName(String)},
+         * the annotation only marks this as a batch subscriber.
+         */
+        private class BatchConsumer implements DynamicSubscriber, SubscriberConfigProvider {
+            @Override
+            public Class<?> getEventType() {
+                return key.eventType;
+            }
+            
+            @Override
+            public SubscriberConfig getConfigForName(String subscriberName) {
+                return key.batchConfig;
+            }
+            
+            @Subscribe(name = "rx-batch", batchingStrategy = Subscribe.BatchingStrategy.Age, batchAge = 1)
+            public void consume(Iterable<Object> batch) {
+                if (batch instanceof List) {
+                    emit(batch); // Immutable as delivered by the bus.
+                    return;
+                }
+                List<Object> copy = new ArrayList<Object>();
+                for (Object event : batch) {
+                    copy.add(event);
+                }
+                emit(Collections.unmodifiableList(copy));
+            }
+        }
     }
-
 }
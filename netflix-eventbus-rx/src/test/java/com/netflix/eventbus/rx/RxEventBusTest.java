@@ -1,17 +1,25 @@
 package com.netflix.eventbus.rx;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import rx.Observable;
+import rx.Producer;
+import rx.Subscriber;
 import rx.Subscription;
 import rx.functions.Action0;
 import rx.functions.Action1;
 
 import com.netflix.eventbus.impl.EventBusImpl;
 import com.netflix.eventbus.spi.EventBus;
+import com.netflix.eventbus.spi.Subscribe;
 
 public class RxEventBusTest {
     @Test
@@ -49,4 +57,241 @@ public class RxEventBusTest {
         Assert.assertTrue(completion.await(1, TimeUnit.SECONDS));
         
     }
+    
+    @Test
+    public void testSharedSubscription() throws InterruptedException {
+        EventBus eventBus = new EventBusImpl();
+        RxEventBus rxEventBus = new RxEventBus(eventBus);
+        
+        final CountDownLatch counter = new CountDownLatch(20);
+        Action1<Long> onNext = new Action1<Long>() {
+            @Override
+            public void call(Long t1) {
+                counter.countDown();
+            }
+        };
+        
+        Subscription sub1 = rxEventBus.asObservable(Long.class).subscribe(onNext);
+        Subscription sub2 = rxEventBus.asObservable(Long.class).subscribe(onNext);
+        Assert.assertEquals(1, eventBus.getAllSubscribers().size());
+        Assert.assertEquals(1, rxEventBus.getSharedSubscriptionCount());
+        
+        for (long i = 0; i < 10; i++) {
+            eventBus.publish(i);
+        }
+        
+        Assert.assertTrue(counter.await(1, TimeUnit.SECONDS));
+        
+        sub1.unsubscribe();
+        Assert.assertEquals(1, eventBus.getAllSubscribers().size());
+        sub2.unsubscribe();
+        Assert.assertEquals(0, eventBus.getAllSubscribers().size());
+        Assert.assertEquals(0, rxEventBus.getSharedSubscriptionCount());
+        
+        Subscription sub3 = rxEventBus.asObservable(Long.class).subscribe(onNext);
+        Assert.assertEquals(1, eventBus.getAllSubscribers().size());
+        sub3.unsubscribe();
+    }
+    
+    @Test
+    public void testBatchedObservable() throws InterruptedException {
+        EventBus eventBus = new EventBusImpl();
+        RxEventBus rxEventBus = new RxEventBus(eventBus);
+        
+        final List<List<Long>> batches = new CopyOnWriteArrayList<List<Long>>();
+        final CountDownLatch counter = new CountDownLatch(2);
+        Subscription sub = rxEventBus.asBatchedObservable(Long.class, null, Subscribe.BatchingStrategy.SizeOrAge, 
+                                                          60000, 5, RxEventBus.BackpressureStrategy.Buffer, 10)
+            .subscribe(new Action1<List<Long>>() {
+                @Override
+                public void call(List<Long> batch) {
+                    batches.add(batch);
+                    counter.countDown();
+                }
+            });
+        
+        for (long i = 0; i < 11; i++) {
+            eventBus.publish(i);
+        }
+        
+        Assert.assertTrue(counter.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals(5, batches.get(0).size());
+        Assert.assertEquals(5, batches.get(1).size());
+        Assert.assertEquals(Long.valueOf(0), batches.get(0).get(0));
+        
+        sub.unsubscribe();
+        Assert.assertEquals(0, eventBus.getAllSubscribers().size());
+    }
+    
+    @Test
+    public void testBackpressureDrop() throws InterruptedException {
+        EventBus eventBus = new EventBusImpl();
+        RxEventBus rxEventBus = new RxEventBus(eventBus);
+        RequestingSubscriber subscriber = new RequestingSubscriber(1);
+        
+        rxEventBus.asObservable(Long.class, null, RxEventBus.BackpressureStrategy.Drop, 1).subscribe(subscriber);
+        for (long i = 0; i < 5; i++) {
+            eventBus.publish(i);
+        }
+        Thread.sleep(200);
+        Assert.assertEquals(Arrays.asList(0L), subscriber.received);
+        
+        subscriber.requestMore(1);
+        eventBus.publish(10L);
+        Thread.sleep(200);
+        Assert.assertEquals(Arrays.asList(0L, 10L), subscriber.received);
+        subscriber.unsubscribe();
+    }
+    
+    @Test
+    public void testBackpressureLatest() throws InterruptedException {
+        EventBus eventBus = new EventBusImpl();
+        RxEventBus rxEventBus = new RxEventBus(eventBus);
+        RequestingSubscriber subscriber = new RequestingSubscriber(0);
+        
+        rxEventBus.asObservable(Long.class, null, RxEventBus.BackpressureStrategy.Latest, 1).subscribe(subscriber);
+        for (long i = 0; i < 5; i++) {
+            eventBus.publish(i);
+        }
+        Thread.sleep(200);
+        Assert.assertTrue(subscriber.received.isEmpty());
+        
+        subscriber.requestMore(1);
+        Assert.assertEquals(Arrays.asList(4L), subscriber.received);
+        subscriber.unsubscribe();
+    }
+    
+    @Test
+    public void testBackpressureBufferOverflow() throws InterruptedException {
+        EventBus eventBus = new EventBusImpl();
+        RxEventBus rxEventBus = new RxEventBus(eventBus);
+        RequestingSubscriber subscriber = new RequestingSubscriber(0);
+        
+        rxEventBus.asObservable(Long.class, null, RxEventBus.BackpressureStrategy.Buffer, 2).subscribe(subscriber);
+        for (long i = 0; i < 3; i++) {
+            eventBus.publish(i);
+        }
+        Assert.assertTrue(subscriber.errored.await(1, TimeUnit.SECONDS));
+        Assert.assertTrue(subscriber.received.isEmpty());
+        long deadline = System.currentTimeMillis() + 1000;
+        while (!eventBus.getAllSubscribers().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10); // Unregistered after the error is signalled.
+        }
+        Assert.assertEquals(0, eventBus.getAllSubscribers().size());
+    }
+    
+    private static class RequestingSubscriber extends Subscriber<Long> {
+        private final long initialRequest;
+        private final List<Long> received = new CopyOnWriteArrayList<Long>();
+        private final CountDownLatch errored = new CountDownLatch(1);
+        
+        private RequestingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+        
+        @Override
+        public void onStart() {
+            request(initialRequest);
+        }
+        
+        @Override
+        public void onCompleted() {
+        }
+        
+        @Override
+        public void onError(Throwable e) {
+            errored.countDown();
+        }
+        
+        @Override
+        public void onNext(Long t) {
+            received.add(t);
+        }
+        
+        private void requestMore(long n) {
+            request(n);
+        }
+    }
+    
+    @Test
+    public void testPublishStream() throws InterruptedException {
+        EventBusImpl eventBus = new EventBusImpl();
+        RxEventBus rxEventBus = new RxEventBus(eventBus);
+        final CountDownLatch counter = new CountDownLatch(10001);
+        
+        rxEventBus.asObservable(Long.class).subscribe(new Action1<Long>() {
+            @Override
+            public void call(Long t1) {
+                counter.countDown();
+            }
+        });
+        
+        CountingSource source = new CountingSource(10001);
+        rxEventBus.publishStream(Observable.create(source), 50, 200, 10);
+        Assert.assertTrue(counter.await(10, TimeUnit.SECONDS)); // Last partial batch published on flush.
+        eventBus.shutdown();
+    }
+    
+    @Test
+    public void testPublishStreamBackpressure() throws Exception {
+        EventBusImpl eventBus = new EventBusImpl();
+        RxEventBus rxEventBus = new RxEventBus(eventBus);
+        StuckSubscriber subscriber = new StuckSubscriber();
+        eventBus.registerSubscriber(subscriber);
+        
+        CountingSource source = new CountingSource(5000);
+        rxEventBus.publishStream(Observable.create(source), 5, 10, 10);
+        Assert.assertTrue(subscriber.taken.await(1, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        long emitted = source.emitted.get();
+        Assert.assertTrue("Requested beyond the saturated queue: " + emitted, emitted < 200);
+        
+        subscriber.release.countDown();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (subscriber.received.get() < 5000 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals("Events rejected by the bus.", 5000, subscriber.received.get());
+        eventBus.shutdown();
+    }
+    
+    /**
+     * Emits a count of longs, only as requested.
+     */
+    private static class CountingSource implements Observable.OnSubscribe<Long> {
+        private final long count;
+        private final AtomicLong emitted = new AtomicLong();
+        
+        private CountingSource(long count) {
+            this.count = count;
+        }
+        
+        @Override
+        public void call(final Subscriber<? super Long> subscriber) {
+            subscriber.setProducer(new Producer() {
+                @Override
+                public synchronized void request(long n) {
+                    for (long i = 0; i < n && emitted.get() < count; i++) {
+                        subscriber.onNext(emitted.getAndIncrement());
+                    }
+                    if (emitted.get() == count) {
+                        subscriber.onCompleted();
+                    }
+                }
+            });
+        }
+    }
+    
+    public static class StuckSubscriber {
+        private final CountDownLatch taken = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicLong received = new AtomicLong();
+        
+        @Subscribe(queueSize = 50)
+        public void consume(Long event) throws InterruptedException {
+            taken.countDown();
+            release.await();
+            received.incrementAndGet();
+        }
+    }
 }
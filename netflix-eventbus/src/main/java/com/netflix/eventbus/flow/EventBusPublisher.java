@@ -0,0 +1,294 @@
+package com.netflix.eventbus.flow;
+
+import com.google.common.base.Preconditions;
+import com.netflix.eventbus.spi.DynamicSubscriber;
+import com.netflix.eventbus.spi.EventBus;
+import com.netflix.eventbus.spi.EventFilter;
+import com.netflix.eventbus.spi.InvalidSubscriberException;
+import com.netflix.eventbus.spi.Subscribe;
+import com.netflix.eventbus.spi.SubscriberConfigProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link Flow.Publisher} of the events of a type published to an {@link EventBus}. <p/>
+ *
+ * Every call to {@link #subscribe(Flow.Subscriber)} registers a new subscriber to the bus, with the optional filter of
+ * this publisher, which is unregistered when the subscription is cancelled. <p/>
+ *
+ * <h3>Backpressure</h3>
+ * The events are delivered by the consumer of the registered subscriber, which takes the next event from its bounded
+ * queue only after the previous event was demanded by {@link Flow.Subscription#request(long)}. When the demand falls
+ * short of the rate of publishing, the {@link OverflowPolicy} of this publisher decides what happens to the event in
+ * hand. With {@link OverflowPolicy#Block}, the queue of the subscriber fills up and the bus rejects the events as
+ * described in {@link EventBus}, so, there is no buffering other than the bounded queue, the size of which can be
+ * specified for this publisher. <p/>
+ *
+ * The events are never delivered concurrently, even when the bus dispatches them from multiple lanes. This publisher
+ * never completes, {@link Flow.Subscriber#onError(Throwable)} is the only terminal signal.
+ */
+public class EventBusPublisher<T> implements Flow.Publisher<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventBusPublisher.class);
+
+    /**
+     * What to do with an event that is received when there is no outstanding demand.
+     */
+    public enum OverflowPolicy {
+
+        /**
+         * Wait for demand, holding up the consumer, so that the bounded queue of the subscriber fills up and the bus
+         * rejects further events.
+         */
+        Block,
+
+        /**
+         * Drop the event.
+         */
+        Drop,
+
+        /**
+         * Cancel the subscription and signal an {@link IllegalStateException} to the subscriber.
+         */
+        Error
+    }
+
+    private final EventBus eventBus;
+    private final Class<T> eventType;
+    @Nullable private final EventFilter filter;
+    private final OverflowPolicy overflowPolicy;
+    private final int queueSize;
+
+    /**
+     * Creates a publisher with {@link OverflowPolicy#Block} and the default queue size.
+     */
+    public EventBusPublisher(EventBus eventBus, Class<T> eventType, @Nullable EventFilter filter) {
+        this(eventBus, eventType, filter, OverflowPolicy.Block, -1);
+    }
+
+    /**
+     * Creates a publisher.
+     *
+     * @param eventBus Bus to subscribe to.
+     * @param eventType Type of the events to publish.
+     * @param filter Optional filter for the events.
+     * @param overflowPolicy Policy for the events received when there is no demand.
+     * @param queueSize Size of the consumer queue of every subscription, as in {@link Subscribe#queueSize()}, a
+     *                  negative value uses the default queue size of the bus.
+     */
+    public EventBusPublisher(EventBus eventBus, Class<T> eventType, @Nullable EventFilter filter,
+                             OverflowPolicy overflowPolicy, int queueSize) {
+        Preconditions.checkNotNull(eventBus, "Event bus can not be null.");
+        Preconditions.checkNotNull(eventType, "Event type can not be null.");
+        Preconditions.checkNotNull(overflowPolicy, "Overflow policy can not be null.");
+        this.eventBus = eventBus;
+        this.eventType = eventType;
+        this.filter = filter;
+        this.overflowPolicy = overflowPolicy;
+        this.queueSize = queueSize;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Preconditions.checkNotNull(subscriber, "Subscriber can not be null.");
+        BusSubscription subscription = new BusSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        if (subscription.cancelled.get()) {
+            return;
+        }
+        try {
+            eventBus.registerSubscriber(filter, subscription.consumer);
+        } catch (InvalidSubscriberException e) {
+            subscription.fail(e);
+        }
+        if (subscription.cancelled.get()) {
+            eventBus.unregisterSubscriber(subscription.consumer); // Cancelled while registering.
+        }
+    }
+
+    private class BusSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super T> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final Object demandMonitor = new Object();
+        private final ReentrantLock emitLock = new ReentrantLock(); // Serializes the signals to the subscriber.
+        private final DemandDrivenConsumer consumer = new DemandDrivenConsumer();
+
+        private BusSubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("Requested a non-positive number of events: " + n));
+                return;
+            }
+            while (true) {
+                long current = demand.get();
+                if (Long.MAX_VALUE == current) {
+                    return; // Unbounded.
+                }
+                long updated = current + n;
+                if (updated < 0) {
+                    updated = Long.MAX_VALUE; // Overflow, treat as unbounded.
+                }
+                if (demand.compareAndSet(current, updated)) {
+                    break;
+                }
+            }
+            synchronized (demandMonitor) {
+                demandMonitor.notifyAll();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled.compareAndSet(false, true)) {
+                return;
+            }
+            synchronized (demandMonitor) {
+                demandMonitor.notifyAll();
+            }
+            eventBus.unregisterSubscriber(consumer);
+        }
+
+        private void fail(Throwable error) {
+            if (cancelled.get()) {
+                return;
+            }
+            cancel(); // Releases a consumer waiting for demand, before acquiring the emit lock.
+            emitLock.lock();
+            try {
+                subscriber.onError(error);
+            } finally {
+                emitLock.unlock();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void onEvent(Object event) {
+            emitLock.lock();
+            try {
+                if (cancelled.get()) {
+                    return;
+                }
+                if (tryConsumeDemand()) {
+                    subscriber.onNext((T) event);
+                    return;
+                }
+                switch (overflowPolicy) {
+                    case Block:
+                        if (awaitDemand()) {
+                            subscriber.onNext((T) event);
+                        }
+                        break;
+                    case Drop:
+                        LOGGER.debug(String.format("No demand for the event type %s, dropping the event.", eventType));
+                        break;
+                    case Error:
+                        cancel();
+                        subscriber.onError(new IllegalStateException(
+                                "Received an event of type " + eventType + " when there was no demand."));
+                        break;
+                }
+            } finally {
+                emitLock.unlock();
+            }
+        }
+
+        private boolean awaitDemand() {
+            synchronized (demandMonitor) {
+                while (!cancelled.get() && !tryConsumeDemand()) {
+                    try {
+                        demandMonitor.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt(); // The consumer is shutdown.
+                        return false;
+                    }
+                }
+            }
+            return !cancelled.get();
+        }
+
+        private boolean tryConsumeDemand() {
+            while (true) {
+                long current = demand.get();
+                if (Long.MAX_VALUE == current) {
+                    return true;
+                }
+                if (0 == current) {
+                    return false;
+                }
+                if (demand.compareAndSet(current, current - 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * The subscriber registered to the bus. The bus takes an event from the queue of this subscriber only after
+         * the previous event is handed to the flow subscriber.
+         */
+        private class DemandDrivenConsumer implements DynamicSubscriber, SubscriberConfigProvider {
+
+            private static final String SUBSCRIBER_NAME = "flow-publisher";
+
+            @Override
+            public Class<?> getEventType() {
+                return eventType;
+            }
+
+            @Override
+            public SubscriberConfig getConfigForName(String subscriberName) {
+                return new QueueSizeConfig(queueSize);
+            }
+
+            @Subscribe(name = SUBSCRIBER_NAME)
+            public void consume(Object event) {
+                onEvent(event);
+            }
+        }
+    }
+
+    private static class QueueSizeConfig implements SubscriberConfigProvider.SubscriberConfig {
+
+        private final int queueSize;
+
+        private QueueSizeConfig(int queueSize) {
+            this.queueSize = queueSize;
+        }
+
+        @Override
+        public Subscribe.BatchingStrategy getBatchingStrategy() {
+            return Subscribe.BatchingStrategy.None;
+        }
+
+        @Override
+        public int getBatchAge() {
+            return 0;
+        }
+
+        @Override
+        public int getBatchSize() {
+            return 1;
+        }
+
+        @Override
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        @Override
+        public boolean syncIfAllowed() {
+            return false;
+        }
+    }
+}
@@ -16,6 +16,7 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
@@ -35,6 +36,8 @@ import java.util.concurrent.locks.ReentrantLock;
  * <em>NOT</em> reap the current batch.</li>
  * <li>Every subsequent offer to this queue, will try to reap the current batch, failing which, the offer will fail.</li>
  * <li>The failure of above offer will typically make the consumer remove & discard a batch and retry.</li>
+ * <li>A batch is sealed before it is moved to the old batches queue, i.e. the reaping waits for the adds in progress
+ * to complete and any later add is retried on the next batch. So, a batch is never modified once it can be taken.</li>
  </ul>
  * @author Nitesh Kant (nkant@netflix.com)
  */
@@ -42,6 +45,8 @@ class AgeBatchingQueue implements EventBusImpl.ConsumerQueueSupplier.ConsumerQue
 
     protected static final Logger LOGGER = LoggerFactory.getLogger(AgeBatchingQueue.class);
 
+    private static final int SEALED = Integer.MIN_VALUE;
+
     protected AtomicReference<AgeBatch> currentBatch;
     protected LinkedBlockingQueue<AgeBatch> oldBatches;
     protected AtomicBoolean oldBatchesQueueFull;
@@ -90,7 +95,19 @@ class AgeBatchingQueue implements EventBusImpl.ConsumerQueueSupplier.ConsumerQue
                 return false;
             }
         }
-        return currentBatch.get().addEvent(event);
+        while (true) {
+            AgeBatch batch = currentBatch.get();
+            if (batch.isFull()) {
+                if (!reapCurrentBatch("Batch size exceeded")) {
+                    return false;
+                }
+                continue;
+            }
+            if (batch.addEvent(event)) {
+                return true;
+            }
+            Thread.yield(); // The batch is being reaped, retry on the next batch.
+        }
     }
 
     @Override
@@ -111,9 +128,22 @@ class AgeBatchingQueue implements EventBusImpl.ConsumerQueueSupplier.ConsumerQue
 
     @Override
     public void clear() {
-        oldBatches.clear();
+        stopReaper();
+        while (null != nonBlockingTake()) {
+            // The size counter is shared by all queues of a consumer, so only this queue's batches are removed.
+        }
         currentBatch.get().clear();
-        queueSizeCounter.set(0);
+    }
+
+    /**
+     * @return Count of the events in all the batches of this queue, including the batch being filled.
+     */
+    long getQueuedEventCount() {
+        long events = currentBatch.get().size();
+        for (AgeBatch batch : oldBatches) {
+            events += batch.size();
+        }
+        return events;
     }
 
     @VisibleForTesting
@@ -131,6 +161,30 @@ class AgeBatchingQueue implements EventBusImpl.ConsumerQueueSupplier.ConsumerQue
         return reapCurrentBatch("Test driven explicit reaping");
     }
 
+    /**
+     * Stops reaping the current batch by age, for a queue that is shutdown or retired, see
+     * {@link ConsumerQueueGeneration}.
+     */
+    void stopReaper() {
+        reaper.cancel();
+    }
+
+    /**
+     * Offers the passed event as the first event of a new batch, holding the reaping lock so that the batch is not
+     * reaped concurrently with the add, which may lose the event. Used to offer the last event to a queue that no
+     * longer receives any other offers, see {@link ConsumerQueueGeneration}.
+     *
+     * @return <code>false</code> if the current batch could not be reaped as the queue is full.
+     */
+    boolean offerInNewBatch(Object event) {
+        batchReapingLock.lock();
+        try {
+            return reapCurrentBatch("New batch") && currentBatch.get().addEvent(event);
+        } finally {
+            batchReapingLock.unlock();
+        }
+    }
+
     protected boolean reapCurrentBatch(String operatorName) {
         AgeBatch currentBatchRef = currentBatch.get();
         if (currentBatchRef.events.isEmpty()) {
@@ -139,15 +193,20 @@ class AgeBatchingQueue implements EventBusImpl.ConsumerQueueSupplier.ConsumerQue
         // We should not block here as the offer & reaper thread both does not block in any condition.
         if (batchReapingLock.tryLock()) {
             try {
+                if (currentBatchRef != currentBatch.get()) {
+                    return true; // Reaped by another thread in the meantime.
+                }
+                currentBatchRef.seal();
                 if (oldBatches.offer(currentBatchRef)) {
                     currentBatch.getAndSet(createNewBatch(null));
                     queueSizeCounter.incrementAndGet();
                     LOGGER.debug(String.format(
                             "[Reaping source: %s , Batching strategy: %s ] Reaped the old batch with size %s for subscriber: %s",
-                            operatorName, batchingStrategy, currentBatchRef.events.size(), subscriberName));
+                            operatorName, batchingStrategy, currentBatchRef.size(), subscriberName));
                     oldBatchesQueueFull.set(false);
                     return true;
                 } else {
+                    currentBatchRef.unseal();
                     oldBatchesQueueFull.set(true);
                     LOGGER.info(String.format(
                             "[Reaping source: %s , Batching strategy: %s ] Old batches queue for subscriber %s is full. Not reaping the batch till we get space.",
@@ -171,29 +230,110 @@ class AgeBatchingQueue implements EventBusImpl.ConsumerQueueSupplier.ConsumerQue
     /**
      * @author Nitesh Kant (nkant@netflix.com)
      */
-    protected class AgeBatch implements EventBatch {
+    protected class AgeBatch implements EventBatch, EnqueueTimestamped {
 
         @VisibleForTesting
         ConcurrentLinkedQueue events;
 
+        /**
+         * Time the first event was added, 0 if the batch is empty. Concurrent first adds may overwrite each other,
+         * which only differ by the time between the adds.
+         */
+        private volatile long firstEventNanos;
+
+        /**
+         * Count of the adds in progress, with the {@link #SEALED} bit set when the batch is being reaped.
+         */
+        private final AtomicInteger addState = new AtomicInteger();
+
+        /**
+         * Count of the events added, as {@link ConcurrentLinkedQueue#size()} traverses the queue.
+         */
+        private final AtomicInteger eventCount = new AtomicInteger();
+
         protected AgeBatch() {
             events = new ConcurrentLinkedQueue();
         }
 
+        /**
+         * Adds the passed event to this batch.
+         *
+         * @return <code>false</code> if this batch is sealed, i.e. being reaped.
+         */
         @SuppressWarnings("unchecked")
         protected boolean addEvent(Object event) {
-            return events.add(event);
+            while (true) {
+                int state = addState.get();
+                if (state < 0) {
+                    return false;
+                }
+                if (addState.compareAndSet(state, state + 1)) {
+                    break;
+                }
+            }
+            try {
+                if (0 == firstEventNanos) {
+                    firstEventNanos = System.nanoTime();
+                }
+                events.add(event);
+                eventCount.incrementAndGet(); // Before the add completes, so a sealed batch has the final count.
+                return true;
+            } finally {
+                addState.decrementAndGet();
+            }
+        }
+
+        /**
+         * @return <code>true</code> if this batch must be reaped before adding any more events.
+         */
+        protected boolean isFull() {
+            return false;
+        }
+
+        /**
+         * Stops any further adds and waits for the adds in progress to complete. Only called holding the reaping lock.
+         */
+        void seal() {
+            while (true) {
+                int state = addState.get();
+                if (addState.compareAndSet(state, state | SEALED)) {
+                    break;
+                }
+            }
+            while (addState.get() != SEALED) {
+                Thread.yield(); // Adds are a single non-blocking queue insert.
+            }
+        }
+
+        /**
+         * Allows adds again, when the sealed batch could not be reaped. Only called holding the reaping lock.
+         */
+        void unseal() {
+            addState.set(0); // Sealed with no adds in progress.
+        }
+
+        @Override
+        public long getEnqueueNanos() {
+            return firstEventNanos;
+        }
+
+        @Override
+        public int size() {
+            return eventCount.get();
         }
 
         @Override
         public Iterator iterator() {
             return events.iterator(); // This will happen only after we enqueue this batch to the oldBatches queue.
-                                      // So, no mutations will happen to this events list after that and hence we can
-                                      // not loose events that are added here but not reflecting in the iterator.
+                                      // The batch is sealed before that, so, no mutations will happen to this events
+                                      // list after that and hence we can not loose events that are added here but
+                                      // not reflecting in the iterator.
         }
 
         protected void clear() {
             events.clear();
+            eventCount.set(0);
+            firstEventNanos = 0;
         }
     }
 
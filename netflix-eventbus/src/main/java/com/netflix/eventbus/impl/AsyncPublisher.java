@@ -0,0 +1,342 @@
+package com.netflix.eventbus.impl;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.netflix.servo.DefaultMonitorRegistry;
+import com.netflix.servo.monitor.BasicCounter;
+import com.netflix.servo.monitor.Counter;
+import com.netflix.servo.monitor.MonitorConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands off events published via {@link EventBusImpl#publishAsync(Object)} to dispatcher threads, which do the actual
+ * publish i.e. filtering and fan out to the consumers. <p/>
+ *
+ * Every publishing thread gets its own single producer, single consumer ring, so a publish is a write to a ring slot
+ * with no contention with other publishers. Each ring is drained by exactly one dispatcher, so events published by a
+ * thread are dispatched in the order they were published. A publish to a full ring is rejected and counted, a
+ * publisher is never blocked. <p/>
+ *
+ * An event published with a dispatch lane key, see {@link EventBusImpl#publish(Object, Object)}, carries the key in
+ * its ring slot and is dispatched in the lane for that key. Any other event is dispatched in the lane of the thread that
+ * published it, recorded in its ring, as if it was published inline by that thread. <p/>
+ *
+ * The rings of threads that have died are removed by the dispatcher once they are empty, the rings of all threads are
+ * removed on {@link #shutdown()}. A thread refers to its ring only weakly, so that a pooled thread that outlives the
+ * event bus does not retain it. The dispatcher threads are started on the first asynchronous publish. <p/>
+ *
+ * The count of rejected events is registered to servo as eventbus_async_publish_rejected, tagged with the id of the
+ * event bus (busId), till {@link #shutdown()}.
+ */
+class AsyncPublisher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncPublisher.class);
+
+    private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final EventBusImpl eventBus;
+    private final int ringSize;
+    private final Dispatcher[] dispatchers;
+    private final AtomicInteger nextDispatcher = new AtomicInteger();
+    private final ThreadLocal<WeakReference<PublisherRing>> publisherRing = new ThreadLocal<WeakReference<PublisherRing>>();
+    private final Object startLock = new Object();
+    private volatile ExecutorService executor;
+    private volatile boolean shutdown;
+
+    final Counter rejectedEvents;
+
+    AsyncPublisher(EventBusImpl eventBus, String busId, int dispatcherCount, int ringSize) {
+        Preconditions.checkArgument(dispatcherCount > 0, "Dispatcher count must be positive.");
+        Preconditions.checkArgument(ringSize > 0, "Ring size must be positive.");
+        this.eventBus = eventBus;
+        this.ringSize = ringSize;
+        dispatchers = new Dispatcher[dispatcherCount];
+        for (int i = 0; i < dispatcherCount; i++) {
+            dispatchers[i] = new Dispatcher();
+        }
+
+        rejectedEvents = new BasicCounter(MonitorConfig.builder("eventbus_async_publish_rejected")
+                                                       .withTag("busId", busId).build());
+        try {
+            DefaultMonitorRegistry.getInstance().register(rejectedEvents);
+        } catch (Throwable th) {
+            LOGGER.error("Unable to register async publish stats to servo.", th);
+        }
+    }
+
+    /**
+     * Hands off the passed event to a dispatcher.
+     *
+     * @return <code>true</code> if the event was accepted, <code>false</code> if the ring of the calling thread is
+     * full or this publisher is shutdown.
+     */
+    boolean publish(Object event) {
+        return publish(event, null);
+    }
+
+    /**
+     * Hands off the passed event to a dispatcher, which publishes it in the dispatch lane for the passed key.
+     *
+     * @param laneKey Key of the dispatch lane, <code>null</code> to publish in the lane of the dispatcher.
+     *
+     * @return <code>true</code> if the event was accepted, <code>false</code> if the ring of the calling thread is
+     * full or this publisher is shutdown.
+     */
+    boolean publish(Object event, @Nullable Object laneKey) {
+        if (shutdown) {
+            rejectedEvents.increment();
+            return false;
+        }
+        PublisherRing ring = getRing();
+        if (null == ring) {
+            ring = newRing();
+        }
+        if (!ring.offer(null == laneKey ? event : new LaneKeyedEvent(event, laneKey))) {
+            rejectedEvents.increment();
+            return false;
+        }
+        ring.dispatcher.wakeUp();
+        return true;
+    }
+
+    void shutdown() {
+        synchronized (startLock) {
+            shutdown = true;
+            if (null != executor) {
+                executor.shutdownNow();
+            }
+        }
+        for (Dispatcher dispatcher : dispatchers) {
+            dispatcher.rings.clear(); // The only strong references to the rings.
+        }
+        try {
+            DefaultMonitorRegistry.getInstance().unregister(rejectedEvents);
+        } catch (Throwable th) {
+            LOGGER.error("Unable to unregister async publish stats from servo.", th);
+        }
+    }
+
+    long getRejectedCount() {
+        return rejectedEvents.getValue().longValue();
+    }
+
+    int getRingCount() {
+        int rings = 0;
+        for (Dispatcher dispatcher : dispatchers) {
+            rings += dispatcher.rings.size();
+        }
+        return rings;
+    }
+
+    private PublisherRing newRing() {
+        startIfRequired();
+        Dispatcher dispatcher = dispatchers[(nextDispatcher.getAndIncrement() & Integer.MAX_VALUE) % dispatchers.length];
+        PublisherRing ring = new PublisherRing(Thread.currentThread(), eventBus.getThreadLane(), ringSize, dispatcher);
+        dispatcher.rings.add(ring);
+        publisherRing.set(new WeakReference<PublisherRing>(ring));
+        return ring;
+    }
+
+    @Nullable
+    private PublisherRing getRing() {
+        WeakReference<PublisherRing> ringRef = publisherRing.get();
+        return null == ringRef ? null : ringRef.get();
+    }
+
+    private void startIfRequired() {
+        if (null != executor) {
+            return;
+        }
+        synchronized (startLock) {
+            if (null != executor || shutdown) {
+                return;
+            }
+            ExecutorService dispatcherExecutor = Executors.newFixedThreadPool(dispatchers.length,
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("eventbus-async-dispatcher-%d").build());
+            for (Dispatcher dispatcher : dispatchers) {
+                dispatcherExecutor.execute(dispatcher);
+            }
+            executor = dispatcherExecutor;
+        }
+    }
+
+    private class Dispatcher implements Runnable {
+
+        private final CopyOnWriteArrayList<PublisherRing> rings = new CopyOnWriteArrayList<PublisherRing>();
+
+        /**
+         * The dispatcher thread, if it is parked waiting for an event.
+         */
+        private volatile Thread waiter;
+
+        @Override
+        public void run() {
+            LOGGER.info("Async publish dispatcher started.");
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    if (0 == drainAll()) {
+                        idle();
+                    }
+                }
+            } finally {
+                LOGGER.info("Async publish dispatcher stopped.");
+            }
+        }
+
+        private void wakeUp() {
+            Thread waiting = waiter;
+            if (null != waiting) {
+                LockSupport.unpark(waiting);
+            }
+        }
+
+        private int drainAll() {
+            int drained = 0;
+            List<PublisherRing> deadRings = null;
+            for (PublisherRing ring : rings) {
+                Object event;
+                // Bounded per ring, so that a busy publisher does not starve the others.
+                for (int i = 0; i < ringSize && null != (event = ring.poll()); i++) {
+                    if (event instanceof LaneKeyedEvent) {
+                        LaneKeyedEvent keyed = (LaneKeyedEvent) event;
+                        eventBus.publishInline(keyed.event, keyed.laneKey);
+                    } else {
+                        eventBus.publishInline(event, ring.lane);
+                    }
+                    drained++;
+                }
+                if (ring.isOwnerDead() && ring.isEmpty()) {
+                    if (null == deadRings) {
+                        deadRings = new ArrayList<PublisherRing>();
+                    }
+                    deadRings.add(ring);
+                }
+            }
+            if (null != deadRings) {
+                rings.removeAll(deadRings);
+            }
+            return drained;
+        }
+
+        private void idle() {
+            waiter = Thread.currentThread();
+            try {
+                // A publisher writes the ring before reading the waiter, so this re-check either sees the event or the
+                // publisher sees the waiter. The park is bounded so that the rings of dead threads are still reclaimed.
+                for (PublisherRing ring : rings) {
+                    if (!ring.isEmpty()) {
+                        return;
+                    }
+                }
+                LockSupport.parkNanos(this, MAX_IDLE_PARK_NANOS);
+            } finally {
+                waiter = null;
+            }
+        }
+    }
+
+    /**
+     * @return Count of the events published asynchronously by the calling thread that are not yet dispatched.
+     */
+    int getPendingCount() {
+        PublisherRing ring = getRing();
+        return null == ring ? 0 : ring.size();
+    }
+
+    /**
+     * @return <code>true</code> if the ring of the calling thread is filled to at least three quarters.
+     */
+    boolean isSaturated() {
+        PublisherRing ring = getRing();
+        return null != ring && ring.size() * 4L >= ring.slots.length() * 3L;
+    }
+
+    /**
+     * An event and its dispatch lane key, in a ring slot. Only keyed events are wrapped.
+     */
+    private static class LaneKeyedEvent {
+
+        private final Object event;
+        private final Object laneKey;
+
+        private LaneKeyedEvent(Object event, Object laneKey) {
+            this.event = event;
+            this.laneKey = laneKey;
+        }
+    }
+
+    /**
+     * A single producer, single consumer ring.
+     */
+    private static class PublisherRing {
+
+        private final WeakReference<Thread> owner;
+        private final int lane; // Dispatch lane of the owner, -1 if there is a single lane.
+        private final AtomicReferenceArray<Object> slots;
+        private final int mask;
+        private final Dispatcher dispatcher;
+        private final AtomicLong head = new AtomicLong(); // Next slot to poll, only written by the dispatcher.
+        private final AtomicLong tail = new AtomicLong(); // Next slot to offer, only written by the owner.
+
+        private PublisherRing(Thread owner, int lane, int size, Dispatcher dispatcher) {
+            this.owner = new WeakReference<Thread>(owner);
+            this.lane = lane;
+            int capacity = Integer.highestOneBit(size);
+            if (capacity < size) {
+                capacity <<= 1;
+            }
+            slots = new AtomicReferenceArray<Object>(capacity);
+            mask = capacity - 1;
+            this.dispatcher = dispatcher;
+        }
+
+        private boolean offer(Object event) {
+            long currentTail = tail.get();
+            if (currentTail - head.get() >= slots.length()) {
+                return false;
+            }
+            slots.lazySet((int) (currentTail & mask), event);
+            tail.set(currentTail + 1); // Volatile write, orders the slot write before the waiter read in wakeUp().
+            return true;
+        }
+
+        private Object poll() {
+            long currentHead = head.get();
+            if (currentHead >= tail.get()) {
+                return null;
+            }
+            int index = (int) (currentHead & mask);
+            Object event = slots.get(index);
+            slots.lazySet(index, null);
+            head.lazySet(currentHead + 1);
+            return event;
+        }
+
+        private boolean isEmpty() {
+            return head.get() >= tail.get();
+        }
+
+        private int size() {
+            return (int) Math.max(0, tail.get() - head.get());
+        }
+
+        private boolean isOwnerDead() {
+            Thread ownerThread = owner.get();
+            return null == ownerThread || !ownerThread.isAlive();
+        }
+    }
+}
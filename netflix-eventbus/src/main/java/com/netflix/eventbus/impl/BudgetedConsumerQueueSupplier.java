@@ -0,0 +1,115 @@
+package com.netflix.eventbus.impl;
+
+import com.netflix.eventbus.spi.EventWeigher;
+import com.netflix.eventbus.spi.SubscriberConfigProvider;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link EventBusImpl.ConsumerQueueSupplier} that charges the events held by the queues of another supplier to a
+ * {@link MemoryBudget}, see {@link MemoryBudgetConfig} for details. <p/>
+ *
+ * An event is weighed and charged before it is offered to the delegate queue, the offer fails without touching the
+ * delegate if the budget does not allow it. The weight is released when the event is taken, for a batch, the weight of
+ * all the events in the batch is released when the batch is taken. <p/>
+ *
+ * This supplier decorates the in-memory queues, so an event that is rejected by the budget is spilled to disk when a
+ * {@link SpillingConsumerQueueSupplier} is used and spilled events are not charged till they are moved back to memory.
+ * <p/>
+ *
+ * Every queue holds an account of the budget till it is cleared, which for a queue replaced on reconfiguration happens
+ * when its generation is released, see {@link ConsumerQueueGeneration#release()}. An account that is never closed
+ * shrinks the fair share of all other queues.
+ */
+class BudgetedConsumerQueueSupplier implements EventBusImpl.ConsumerQueueSupplier {
+
+    private final EventBusImpl.ConsumerQueueSupplier delegate;
+    private final MemoryBudget budget;
+
+    BudgetedConsumerQueueSupplier(EventBusImpl.ConsumerQueueSupplier delegate, MemoryBudget budget) {
+        this.delegate = delegate;
+        this.budget = budget;
+    }
+
+    @Override
+    public ConsumerQueue get(Method subscriberMethod, SubscriberConfigProvider.SubscriberConfig subscriberConfig,
+                             AtomicLong queueSizeCounter) {
+        return new BudgetedConsumerQueue(delegate.get(subscriberMethod, subscriberConfig, queueSizeCounter),
+                                         budget.newAccount(), budget.getConfig().getWeigher());
+    }
+
+    static class BudgetedConsumerQueue implements ConsumerQueue {
+
+        private final ConsumerQueue delegate;
+        private final MemoryBudget.Account account;
+        private final EventWeigher weigher;
+
+        BudgetedConsumerQueue(ConsumerQueue delegate, MemoryBudget.Account account, EventWeigher weigher) {
+            this.delegate = delegate;
+            this.account = account;
+            this.weigher = weigher;
+        }
+
+        ConsumerQueue getDelegate() {
+            return delegate;
+        }
+
+        MemoryBudget.Account getAccount() {
+            return account;
+        }
+
+        @Override
+        public boolean offer(Object event) {
+            long weight = weigh(TimestampingConsumerQueueSupplier.StampedEvent.unwrap(event));
+            if (!account.acquire(weight)) {
+                return false;
+            }
+            if (delegate.offer(event)) {
+                return true;
+            }
+            account.release(weight);
+            return false;
+        }
+
+        @Override
+        public Object nonBlockingTake() {
+            return released(delegate.nonBlockingTake());
+        }
+
+        @Override
+        public Object blockingTake() throws InterruptedException {
+            return released(delegate.blockingTake());
+        }
+
+        @Override
+        public void clear() {
+            delegate.clear();
+            account.close();
+        }
+
+        private Object released(Object taken) {
+            if (null == taken) {
+                return null;
+            }
+            Object unwrapped = TimestampingConsumerQueueSupplier.StampedEvent.unwrap(taken);
+            long weight = 0;
+            if (unwrapped instanceof EventBatch) {
+                for (Object batchedEvent : (EventBatch) unwrapped) {
+                    weight += weigh(batchedEvent);
+                }
+            } else {
+                weight = weigh(unwrapped);
+            }
+            account.release(weight);
+            return taken;
+        }
+
+        private long weigh(Object event) {
+            if (ConsumerQueueGeneration.RETIRED_MARKER == event) {
+                return 0;
+            }
+            return weigher.weigh(event);
+        }
+    }
+}
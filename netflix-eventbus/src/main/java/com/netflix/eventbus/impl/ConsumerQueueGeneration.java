@@ -0,0 +1,220 @@
+package com.netflix.eventbus.impl;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A queue of an {@link EventConsumer} along with the state required to replace it with a new queue, without losing or
+ * reordering events, when the consumer is reconfigured. See {@link EventConsumer#reconfigure}. <p/>
+ *
+ * A replacement works as follows:
+ * <ul>
+ <li>The new generation is made current, so that all subsequent offers go to the new queue, see {@link #retire}. This
+ never blocks, so that a stuck subscriber can not hold up the thread reconfiguring it.</li>
+ <li>A {@link #RETIRED_MARKER} is offered, if there is space, to every polled queue of the old generation, only to wake
+ up the pollers blocked on an empty queue.</li>
+ <li>Every poller consumes the old queue, without blocking, till it is drained and there are no offers in flight on
+ it, see {@link #beginOffer()} and {@link #isDrained(int)}, and then moves to the next generation.</li>
+ <li>The last poller to move on releases the old generation, see {@link #release()}.</li>
+ </ul>
+ *
+ * The offers in flight are counted in stripes picked by the offering thread, so that concurrent publishers do not
+ * contend on a single counter.
+ */
+class ConsumerQueueGeneration {
+
+    /**
+     * Wakes up the pollers of a retired queue. This never reaches a subscriber.
+     */
+    static final Object RETIRED_MARKER = new Object() {
+        @Override
+        public String toString() {
+            return "RetiredQueueMarker";
+        }
+    };
+
+    private static final int STRIPES = stripeCount();
+    private static final int STRIPE_STRIDE = 16; // Keeps every stripe on its own cache line.
+
+    private final EventBusImpl.ConsumerQueueSupplier.ConsumerQueue queue;
+    private final EventBusImpl.ConsumerQueueSupplier.ConsumerQueue[] polledQueues;
+    private final AtomicIntegerArray offersInFlight = new AtomicIntegerArray(STRIPES * STRIPE_STRIDE);
+    private final AtomicInteger retiredPollers = new AtomicInteger();
+    private final AtomicBoolean released = new AtomicBoolean();
+    private volatile ConsumerQueueGeneration next;
+
+    ConsumerQueueGeneration(EventBusImpl.ConsumerQueueSupplier.ConsumerQueue queue) {
+        this.queue = queue;
+        if (queue instanceof LanedConsumerQueueSupplier.PerLaneConsumerQueue) {
+            polledQueues = ((LanedConsumerQueueSupplier.PerLaneConsumerQueue) queue).getLaneQueues();
+        } else {
+            polledQueues = new EventBusImpl.ConsumerQueueSupplier.ConsumerQueue[] {queue};
+        }
+    }
+
+    EventBusImpl.ConsumerQueueSupplier.ConsumerQueue getQueue() {
+        return queue;
+    }
+
+    EventBusImpl.ConsumerQueueSupplier.ConsumerQueue getPolledQueue(int index) {
+        return polledQueues[index];
+    }
+
+    int getPolledQueueCount() {
+        return polledQueues.length;
+    }
+
+    /**
+     * Returns the generation that replaced this one, <code>null</code> if this is the current generation.
+     */
+    ConsumerQueueGeneration getNext() {
+        return next;
+    }
+
+    /**
+     * Must be called before offering to this generation's queue, followed by {@link #endOffer(int)}.
+     *
+     * @return The stripe to pass to {@link #endOffer(int)}, -1 if this generation is already replaced, in which case
+     * the offer must go to the next generation.
+     */
+    int beginOffer() {
+        int stripe = ((int) Thread.currentThread().getId() & (STRIPES - 1)) * STRIPE_STRIDE;
+        offersInFlight.incrementAndGet(stripe);
+        if (null != next) {
+            offersInFlight.decrementAndGet(stripe);
+            return -1;
+        }
+        return stripe;
+    }
+
+    void endOffer(int stripe) {
+        offersInFlight.decrementAndGet(stripe);
+    }
+
+    /**
+     * Retires this generation in favor of the passed generation and wakes up its pollers. This does not wait for the
+     * pollers, see {@link #isDrained(int)}.
+     */
+    void retire(ConsumerQueueGeneration replacement) {
+        next = replacement;
+        if (queue instanceof LanedConsumerQueueSupplier.PerLaneConsumerQueue) {
+            for (EventBusImpl.ConsumerQueueSupplier.ConsumerQueue laneQueue
+                    : ((LanedConsumerQueueSupplier.PerLaneConsumerQueue) queue).laneQueues) {
+                offerMarkerOnce(laneQueue); // Every lane has its own poller.
+            }
+        } else {
+            offerMarker(queue);
+        }
+        if (released.get()) {
+            queue.clear(); // A marker offered concurrently with the release.
+        }
+    }
+
+    /**
+     * Called by a poller of this retired generation once its polled queue returned no event. Reaps the batch being
+     * filled, if any, so that the poller takes it next.
+     *
+     * @return <code>true</code> if no more events can reach the polled queue: there are no offers in flight, nothing
+     * is spilled and there is no batch to reap. The poller must take once more and move to the next generation if there
+     * still is no event.
+     */
+    boolean isDrained(int polledQueueIndex) {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            if (0 != offersInFlight.get(stripe * STRIPE_STRIDE)) {
+                return false;
+            }
+        }
+        EventBusImpl.ConsumerQueueSupplier.ConsumerQueue polledQueue = queue;
+        if (queue instanceof LanedConsumerQueueSupplier.PerLaneConsumerQueue) {
+            polledQueue = ((LanedConsumerQueueSupplier.PerLaneConsumerQueue) queue).laneQueues[polledQueueIndex];
+        }
+        return isDrained(polledQueue);
+    }
+
+    /**
+     * Called by a poller once its polled queue is drained, see {@link #isDrained(int)}.
+     *
+     * @return <code>true</code> if all the pollers are done with this generation, in which case it must be released.
+     */
+    boolean onPollerRetired() {
+        return retiredPollers.incrementAndGet() == polledQueues.length;
+    }
+
+    /**
+     * Releases everything held by the queue of this generation: the events still queued are removed from the shared
+     * queue size counter, the spill files are deleted, the batch reaper is stopped and the memory budget account is
+     * closed. Releasing more than once has no effect.
+     */
+    void release() {
+        if (released.compareAndSet(false, true)) {
+            queue.clear();
+        }
+    }
+
+    private static boolean isDrained(EventBusImpl.ConsumerQueueSupplier.ConsumerQueue queue) {
+        if (queue instanceof LanedConsumerQueueSupplier.MergedConsumerQueue) {
+            for (EventBusImpl.ConsumerQueueSupplier.ConsumerQueue laneQueue
+                    : ((LanedConsumerQueueSupplier.MergedConsumerQueue) queue).laneQueues) {
+                if (!isDrained(laneQueue)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (queue instanceof SpillingConsumerQueueSupplier.SpillingConsumerQueue) {
+            SpillingConsumerQueueSupplier.SpillingConsumerQueue spillingQueue =
+                    (SpillingConsumerQueueSupplier.SpillingConsumerQueue) queue;
+            if (spillingQueue.isSpilling()) {
+                return false;
+            }
+            queue = spillingQueue.getMemoryQueue();
+        }
+        if (queue instanceof BudgetedConsumerQueueSupplier.BudgetedConsumerQueue) {
+            queue = ((BudgetedConsumerQueueSupplier.BudgetedConsumerQueue) queue).getDelegate();
+        }
+        // An empty batch is not reaped, so this is true once the batch is reaped.
+        return !(queue instanceof AgeBatchingQueue) || ((AgeBatchingQueue) queue).reapCurrentBatch("Queue retirement");
+    }
+
+    /**
+     * Offers a marker to the passed queue, or to one of its lanes, without blocking. A queue that has no space for the
+     * marker is not empty, so its poller is not blocked.
+     */
+    private static void offerMarker(EventBusImpl.ConsumerQueueSupplier.ConsumerQueue queue) {
+        if (queue instanceof LanedConsumerQueueSupplier.MergedConsumerQueue) {
+            for (EventBusImpl.ConsumerQueueSupplier.ConsumerQueue laneQueue
+                    : ((LanedConsumerQueueSupplier.MergedConsumerQueue) queue).laneQueues) {
+                if (offerMarkerOnce(laneQueue)) {
+                    return; // One wakes up the single poller.
+                }
+            }
+            return;
+        }
+        offerMarkerOnce(queue);
+    }
+
+    private static boolean offerMarkerOnce(EventBusImpl.ConsumerQueueSupplier.ConsumerQueue queue) {
+        if (queue instanceof BudgetedConsumerQueueSupplier.BudgetedConsumerQueue) {
+            queue = ((BudgetedConsumerQueueSupplier.BudgetedConsumerQueue) queue).getDelegate(); // Marker weighs nothing.
+        }
+        if (queue instanceof SpillingConsumerQueueSupplier.SpillingConsumerQueue) {
+            // The marker can not be written to disk, a spilling queue is not empty anyways.
+            return ((SpillingConsumerQueueSupplier.SpillingConsumerQueue) queue).offerIfNotSpilling(RETIRED_MARKER);
+        }
+        if (queue instanceof AgeBatchingQueue) {
+            // The marker is in a batch of its own, reaped now instead of waiting for the batch to age.
+            AgeBatchingQueue batchingQueue = (AgeBatchingQueue) queue;
+            return batchingQueue.offerInNewBatch(RETIRED_MARKER) && batchingQueue.reapCurrentBatch("Queue retirement");
+        }
+        return queue.offer(RETIRED_MARKER);
+    }
+
+    private static int stripeCount() {
+        int stripes = 1;
+        while (stripes < Runtime.getRuntime().availableProcessors() && stripes < 64) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+}
@@ -54,8 +54,9 @@ class DefaultConsumerQueueSupplier implements EventBusImpl.ConsumerQueueSupplier
 
             @Override
             public void clear() {
-                delegate.clear();
-                queueSizeCounter.set(0);
+                while (null != nonBlockingTake()) {
+                    // The size counter is shared by all queues of a consumer, so only this queue's events are removed.
+                }
             }
         };
     }
@@ -0,0 +1,88 @@
+package com.netflix.eventbus.impl;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Selects the dispatch lane for the publishing thread of an {@link EventBusImpl}. <p/>
+ *
+ * Every publishing thread is assigned a lane, round-robin, the first time it publishes and sticks to that lane, so
+ * that publishers on different threads, mostly, do not offer to the same queue. A publisher can instead choose the
+ * lane by a key, see {@link EventBusImpl#publish(Object, Object)}, so that all events with the same key are received
+ * in the order they were published, irrespective of the publishing thread.
+ */
+class DispatchLanes {
+
+    private static final int NO_KEYED_LANE = -1;
+
+    private final int laneCount;
+    private final AtomicInteger nextThreadLane = new AtomicInteger();
+
+    /**
+     * Index 0 is the lane assigned to the thread, index 1 is the lane for the key of the current keyed publish, if any.
+     */
+    private final ThreadLocal<int[]> threadLanes = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[] {(nextThreadLane.getAndIncrement() & Integer.MAX_VALUE) % laneCount, NO_KEYED_LANE};
+        }
+    };
+
+    DispatchLanes(int laneCount) {
+        Preconditions.checkArgument(laneCount > 0, "Lane count must be positive.");
+        this.laneCount = laneCount;
+    }
+
+    int getLaneCount() {
+        return laneCount;
+    }
+
+    /**
+     * Returns the lane for the calling thread.
+     */
+    int currentLane() {
+        int[] lanes = threadLanes.get();
+        return NO_KEYED_LANE == lanes[1] ? lanes[0] : lanes[1];
+    }
+
+    /**
+     * Returns the lane assigned to the calling thread, ignoring the lane of a keyed publish in progress.
+     */
+    int threadLane() {
+        return threadLanes.get()[0];
+    }
+
+    /**
+     * Makes the calling thread use the lane for the passed key till {@link #endKeyedLane(int)} is called.
+     *
+     * @return The keyed lane before this call, to be passed to {@link #endKeyedLane(int)}, as keyed publishes may nest
+     * eg: a synchronous subscriber publishing.
+     */
+    int beginKeyedLane(Object key) {
+        return beginLane(laneForKey(key));
+    }
+
+    /**
+     * Makes the calling thread use the passed lane till {@link #endKeyedLane(int)} is called, eg: to publish an event
+     * on behalf of another thread, in the lane of that thread.
+     *
+     * @return The keyed lane before this call, to be passed to {@link #endKeyedLane(int)}.
+     */
+    int beginLane(int lane) {
+        int[] lanes = threadLanes.get();
+        int previous = lanes[1];
+        lanes[1] = lane;
+        return previous;
+    }
+
+    void endKeyedLane(int previous) {
+        threadLanes.get()[1] = previous;
+    }
+
+    int laneForKey(Object key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16; // Keys with hash codes differing only in the higher bits, must not map to the same lane.
+        return (hash & Integer.MAX_VALUE) % laneCount;
+    }
+}
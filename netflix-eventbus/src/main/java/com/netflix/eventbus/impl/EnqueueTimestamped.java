@@ -0,0 +1,14 @@
+package com.netflix.eventbus.impl;
+
+/**
+ * An item of a consumer queue that knows when it was enqueued, used to measure how long events wait in the queue. See
+ * {@link TimestampingConsumerQueueSupplier}.
+ */
+interface EnqueueTimestamped {
+
+    /**
+     * Returns the {@link System#nanoTime()} when this item was enqueued. For a batch, this is the time the first event
+     * was added to the batch.
+     */
+    long getEnqueueNanos();
+}
@@ -6,4 +6,11 @@ package com.netflix.eventbus.impl;
  * @author Nitesh Kant
  */
 public interface EventBatch extends Iterable {
+
+    /**
+     * Returns the number of events in this batch. A batch delivered to a subscriber never changes, so this is exact.
+     *
+     * @return The number of events in this batch.
+     */
+    int size();
 }
@@ -1,18 +1,15 @@
 package com.netflix.eventbus.impl;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
-import com.google.common.base.Throwables;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimaps;
 import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
 import com.netflix.config.DynamicIntProperty;
+import com.netflix.config.DynamicLongProperty;
 import com.netflix.config.DynamicPropertyFactory;
-import com.netflix.eventbus.spi.CatchAllSubscriber;
 import com.netflix.eventbus.spi.EventBus;
 import com.netflix.eventbus.spi.EventCreator;
 import com.netflix.eventbus.spi.EventFilter;
@@ -33,14 +30,15 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -52,6 +50,39 @@ import java.util.concurrent.atomic.AtomicLong;
  <li>Inability to easily create custom handler wrappers for our style of async dispatch.</li>
  </ul>
  *
+ * <h3>Dispatch lanes</h3>
+ * Publishers on many threads contend on the queue of every consumer they publish to. An event bus can be created with
+ * more than one dispatch lane, see {@link #EventBusImpl(OverflowSpillConfig, int)}, in which case the queue of every
+ * non-batching consumer is split into one queue per lane. A publishing thread sticks to a lane assigned to it
+ * round-robin, or, publishes to the lane for a key using {@link #publish(Object, Object)}. How a subscriber consumes
+ * the lanes is declared by {@link Subscribe#laneOrdering()}. The default number of lanes is read from the property
+ * {@link #DISPATCH_LANES_PROP_NAME}. <br/>
+ * Note that the queue size of a subscriber is split, not shared, amongst the lanes: each lane holds an equal share of
+ * it, so a single publishing thread or key can only fill its lane's share. Queues that would be split into lanes
+ * smaller than {@link #DISPATCH_LANE_MIN_QUEUE_SIZE_PROP_NAME} are not split.
+ *
+ * <h3>Asynchronous publish</h3>
+ * {@link #publishAsync(Object)} hands off the event to a per publishing thread ring and returns, the event is then
+ * published by a dispatcher thread, see {@link AsyncPublisher}. This shields latency sensitive publishers from the cost
+ * of filtering and fan out. {@link #publish(Object)} can be made asynchronous for a bus via
+ * {@link #setAsyncPublish(boolean)}, the default being read from the property {@link #ASYNC_PUBLISH_PROP_NAME}.
+ *
+ * <h3>Bulk publish</h3>
+ * {@link #publishAll(Collection)} publishes many events in one call, looking up the event type hierarchy, consumers and
+ * stats once for every run of events of the same class instead of once per event. A bulk publisher can back off when
+ * the consumers of an event type can not keep up, see {@link #isSaturated(Class)}.
+ *
+ * <h3>Runtime reconfiguration</h3>
+ * The queue size and batching of a subscriber can be changed without re-registering it, either via the dynamic
+ * properties described in {@link SubscriberConfigOverrides} or, for a {@link SubscriberConfigProvider}, by calling
+ * {@link #refreshSubscriberConfigs()} after the provided configuration changes. The queue is replaced in place and no
+ * queued event is lost or reordered.
+ *
+ * <h3>Memory budget</h3>
+ * Every consumer queue is bounded on its own, which does not bound the memory held by all the queues together. A bus
+ * can be created with a budget shared by all its consumer queues, see {@link MemoryBudgetConfig}. The default budget,
+ * counted in events, is read from the property {@link #MEMORY_BUDGET_EVENTS_PROP_NAME}, 0 disabling it.
+ *
  * @author Nitesh Kant (nkant@netflix.com)
  */
 public class EventBusImpl implements EventBus {
@@ -61,28 +92,54 @@ public class EventBusImpl implements EventBus {
     static final DynamicIntProperty STATS_COLLECTION_DURATION_MILLIS =
             DynamicPropertyFactory.getInstance().getIntProperty("eventbus.stats.collection.duration.millis", 60*1000);
 
+    public static final String DISPATCH_LANES_PROP_NAME = "eventbus.dispatch.lanes";
+
     /**
-     * Event type VS consumers map. Any event for which consumers are required, must query this collection for all the
-     * interfaces & classes the event implements/extends, directly or indirectly, typically by calling
-     * {@link EventBusImpl#getAllTypesForAnEvent(Object)}
+     * A lane count that creates one lane per available processor.
      */
-    private final SetMultimap<Class<?>, EventConsumer> consumersByEventType =
-            Multimaps.newSetMultimap(new ConcurrentHashMap<Class<?>, Collection<EventConsumer>>(),
-                    new Supplier<Set<EventConsumer>>() {
-                        @Override
-                        public Set<EventConsumer> get() {
-                            return new CopyOnWriteArraySet<EventConsumer>();
-                        }
-                    });
+    public static final int LANE_PER_CORE = 0;
+
+    static final DynamicIntProperty DISPATCH_LANES =
+            DynamicPropertyFactory.getInstance().getIntProperty(DISPATCH_LANES_PROP_NAME, 1);
 
     /**
-     * This is an index to aid in unregister of subscribers. This holds the mapping between, the class of the subscriber
-     * and the list of consumers it is registered with. During unregister we get a list of consumers for that class
-     * and then for every consumer get the event class it listens for and then delete the same from
-     * {@link EventBusImpl#consumersByEventType}
+     * The minimum number of events a lane of a split consumer queue must be able to hold, a queue that would be split
+     * into smaller lanes is not split. See {@link LanedConsumerQueueSupplier}.
      */
-    private final ConcurrentHashMap<Class<?>, CopyOnWriteArrayList<EventConsumer>> consumersBySubscriberClass =
-            new ConcurrentHashMap<Class<?>, CopyOnWriteArrayList<EventConsumer>>();
+    public static final String DISPATCH_LANE_MIN_QUEUE_SIZE_PROP_NAME = "eventbus.dispatch.lanes.min.queue.size";
+    public static final int DISPATCH_LANE_MIN_QUEUE_SIZE_DEFAULT = 128;
+
+    static final DynamicIntProperty DISPATCH_LANE_MIN_QUEUE_SIZE =
+            DynamicPropertyFactory.getInstance().getIntProperty(DISPATCH_LANE_MIN_QUEUE_SIZE_PROP_NAME,
+                                                                DISPATCH_LANE_MIN_QUEUE_SIZE_DEFAULT);
+
+    public static final String ASYNC_PUBLISH_PROP_NAME = "eventbus.publish.async";
+
+    static final DynamicIntProperty ASYNC_DISPATCHERS =
+            DynamicPropertyFactory.getInstance().getIntProperty("eventbus.publish.async.dispatchers", 1);
+
+    static final DynamicIntProperty ASYNC_RING_SIZE =
+            DynamicPropertyFactory.getInstance().getIntProperty("eventbus.publish.async.ring.size", 1024);
+
+    public static final String EVENT_TYPE_STATS_MAX_TYPES_PROP_NAME = "eventbus.stats.event.types.max";
+
+    static final DynamicIntProperty EVENT_TYPE_STATS_MAX_TYPES =
+            DynamicPropertyFactory.getInstance().getIntProperty(EVENT_TYPE_STATS_MAX_TYPES_PROP_NAME, 200);
+
+    public static final String MEMORY_BUDGET_EVENTS_PROP_NAME = "eventbus.memory.budget.events";
+
+    static final DynamicLongProperty MEMORY_BUDGET_EVENTS =
+            DynamicPropertyFactory.getInstance().getLongProperty(MEMORY_BUDGET_EVENTS_PROP_NAME, 0);
+
+    static final DynamicIntProperty TAP_RING_SIZE =
+            DynamicPropertyFactory.getInstance().getIntProperty("eventbus.tap.ring.size", EventTap.DEFAULT_RING_SIZE);
+
+    /**
+     * All consumers of this bus. Any event for which consumers are required, must query this registry for all the
+     * interfaces & classes the event implements/extends, directly or indirectly, typically by calling
+     * {@link EventBusImpl#getAllTypesForAnEvent(Object)}
+     */
+    private final SubscriberRegistry registry = new SubscriberRegistry();
 
     /**
      * Filters attached to an event type.
@@ -98,113 +155,434 @@ public class EventBusImpl implements EventBus {
 
     /**
      * Cache of the class hierarchy for an event type. This optimizes multiple publishing of the same event type which
-     * typically will be the case.
+     * typically will be the case. <p/>
+     *
+     * The hierarchy is held in the event class itself by {@link ClassValue}, so a lookup is cheap and the hierarchy is
+     * unloaded along with the event class, eg: when a plugin defining the event is reloaded. The hierarchy is in
+     * breadth first order, starting with the class itself and does not contain duplicates.
      */
-    private static LoadingCache<Class<?>, Set<Class<?>>> eventHierarchyCache =
-            CacheBuilder.newBuilder()
-                        .weakKeys()
-                        .build(new CacheLoader<Class<?>, Set<Class<?>>>() {
-                            @Override
-                            public Set<Class<?>> load(Class<?> concreteClass) throws Exception {
-                                List<Class<?>> parents = Lists.newLinkedList();
-                                Set<Class<?>> classes = Sets.newHashSet();
+    private static final ClassValue<Class<?>[]> eventHierarchyCache = new ClassValue<Class<?>[]>() {
+        @Override
+        protected Class<?>[] computeValue(Class<?> concreteClass) {
+            List<Class<?>> parents = Lists.newLinkedList();
+            Set<Class<?>> classes = new LinkedHashSet<Class<?>>();
 
-                                parents.add(concreteClass);
+            parents.add(concreteClass);
 
-                                while (!parents.isEmpty()) {
-                                    Class<?> clazz = parents.remove(0);
-                                    classes.add(clazz);
+            while (!parents.isEmpty()) {
+                Class<?> clazz = parents.remove(0);
+                if (!classes.add(clazz)) {
+                    continue; // An interface implemented by more than one type in the hierarchy.
+                }
 
-                                    Class<?> parent = clazz.getSuperclass();
-                                    if (parent != null && !parent.equals(Object.class)) { // Do not allow subs on java.lang.Object
-                                        parents.add(parent);
-                                    }
+                Class<?> parent = clazz.getSuperclass();
+                if (parent != null && !parent.equals(Object.class)) { // Do not allow subs on java.lang.Object
+                    parents.add(parent);
+                }
 
-                                    Collections.addAll(parents, clazz.getInterfaces());
-                                }
+                Collections.addAll(parents, clazz.getInterfaces());
+            }
 
-                                return classes;
-                            }
-                        });
+            return classes.toArray(new Class<?>[classes.size()]);
+        }
+    };
 
     private ConsumerQueueSupplier consumerQueueSupplier = new DefaultConsumerQueueSupplier();
 
     private EventBusStats stats = new EventBusStats(STATS_COLLECTION_DURATION_MILLIS.get());
 
-    private EventConsumer catchAllSubscriber;
-    private volatile CatchAllSubscriber catchAllSubInstance;
+    private static final AtomicInteger busIdCounter = new AtomicInteger();
+
+    /**
+     * Tags the servo monitors of this bus, so that the monitors of different buses do not collide.
+     */
+    private final String busId = String.valueOf(busIdCounter.incrementAndGet());
+
+    private final EventTypeStats eventTypeStats = new EventTypeStats(EVENT_TYPE_STATS_MAX_TYPES.get());
+
+    private final EventTap tap = new EventTap(TAP_RING_SIZE.get(), busId);
+
+    @Nullable private final OverflowSpillConfig overflowSpillConfig;
+    private final AtomicLong spillDiskUsage = new AtomicLong(); // Total bytes used by spill segments of all consumers.
+
+    private volatile EventJournalWriter journalWriter;
+
+    @Nullable private final DispatchLanes dispatchLanes; // null if there is a single lane.
+
+    @Nullable private final MemoryBudget memoryBudget; // null if there is no budget.
+
+    private final AsyncPublisher asyncPublisher =
+            new AsyncPublisher(this, busId, ASYNC_DISPATCHERS.get(), ASYNC_RING_SIZE.get());
+
+    private volatile boolean asyncPublish =
+            DynamicPropertyFactory.getInstance().getBooleanProperty(ASYNC_PUBLISH_PROP_NAME, false).get();
 
     public EventBusImpl() {
-        
+        this(null);
+    }
+
+    /**
+     * Creates a new event bus where the consumer queues spill to disk instead of rejecting events when they are full.
+     * See {@link OverflowSpillConfig} for details.
+     *
+     * @param overflowSpillConfig Spill configuration, <code>null</code> disables spilling.
+     */
+    public EventBusImpl(@Nullable OverflowSpillConfig overflowSpillConfig) {
+        this(overflowSpillConfig, DISPATCH_LANES.get());
+    }
+
+    /**
+     * Creates a new event bus with the passed number of dispatch lanes. See the class level documentation for details
+     * about lanes.
+     *
+     * @param overflowSpillConfig Spill configuration, <code>null</code> disables spilling.
+     * @param dispatchLanes Number of lanes, {@link #LANE_PER_CORE} for one lane per available processor.
+     */
+    public EventBusImpl(@Nullable OverflowSpillConfig overflowSpillConfig, int dispatchLanes) {
+        this(overflowSpillConfig, dispatchLanes, getDefaultMemoryBudget());
+    }
+
+    /**
+     * Creates a new event bus with a memory budget shared by all the consumer queues. See {@link MemoryBudgetConfig}
+     * for details.
+     *
+     * @param overflowSpillConfig Spill configuration, <code>null</code> disables spilling.
+     * @param dispatchLanes Number of lanes, {@link #LANE_PER_CORE} for one lane per available processor.
+     * @param memoryBudgetConfig Budget configuration, <code>null</code> for no budget.
+     */
+    public EventBusImpl(@Nullable OverflowSpillConfig overflowSpillConfig, int dispatchLanes,
+                        @Nullable MemoryBudgetConfig memoryBudgetConfig) {
+        Preconditions.checkArgument(dispatchLanes >= 0, "Dispatch lanes can not be negative.");
+        this.overflowSpillConfig = overflowSpillConfig;
+        if (LANE_PER_CORE == dispatchLanes) {
+            dispatchLanes = Runtime.getRuntime().availableProcessors();
+        }
+        this.dispatchLanes = dispatchLanes > 1 ? new DispatchLanes(dispatchLanes) : null;
+        memoryBudget = null != memoryBudgetConfig ? new MemoryBudget(memoryBudgetConfig, busId) : null;
     }
 
     @Override
     public void publish(Object event) {
+        if (asyncPublish) {
+            publishAsync(event);
+        } else {
+            publishInline(event);
+        }
+    }
+
+    /**
+     * Hands off the passed event to be published by a dispatcher thread. This never blocks and does not run any filter
+     * or consumer on the calling thread. Events published asynchronously by a thread are dispatched in the order they
+     * were published.
+     *
+     * @param event Event to publish.
+     *
+     * @return <code>true</code> if the event was accepted, <code>false</code> if the event was rejected as the calling
+     * thread has too many events pending dispatch.
+     */
+    public boolean publishAsync(Object event) {
+        return asyncPublisher.publish(event);
+    }
+
+    /**
+     * Hands off the passed event to be published by a dispatcher thread in the dispatch lane for the passed key, see
+     * {@link #publish(Object, Object)} and {@link #publishAsync(Object)}.
+     *
+     * @param event Event to publish.
+     * @param laneKey Key to select the lane.
+     *
+     * @return <code>true</code> if the event was accepted, <code>false</code> if the event was rejected as the calling
+     * thread has too many events pending dispatch.
+     */
+    public boolean publishAsync(Object event, Object laneKey) {
+        if (null == dispatchLanes) {
+            return publishAsync(event);
+        }
+        Preconditions.checkNotNull(laneKey, "Lane key can not be null.");
+        return asyncPublisher.publish(event, laneKey);
+    }
+
+    /**
+     * Makes {@link #publish(Object)} on this bus asynchronous, as with {@link #publishAsync(Object)}. An event that is
+     * rejected because of too many pending events is dropped and counted.
+     */
+    public void setAsyncPublish(boolean asyncPublish) {
+        this.asyncPublish = asyncPublish;
+    }
+
+    public boolean isAsyncPublish() {
+        return asyncPublish;
+    }
+
+    public long getAsyncPublishRejectedCount() {
+        return asyncPublisher.getRejectedCount();
+    }
+
+    /**
+     * Publishes the event on the calling thread.
+     */
+    void publishInline(Object event) {
         Stopwatch start = stats.publishStats.start();
         try {
-            if (!applyEventLevelFilters(event)) {
-                return;
+            dispatch(event, null);
+        } finally {
+            start.stop();
+        }
+    }
+
+    /**
+     * Publishes the passed events, in order, as with {@link #publish(Object)}. The event type hierarchy, the
+     * consumers and the stats are looked up once for every run of consecutive events of the same class, so consumers
+     * registered while a run is being published receive only the events of the later runs. If publishing is
+     * asynchronous, see {@link #setAsyncPublish(boolean)}, the events are handed off one by one.
+     *
+     * @param events Events to publish.
+     */
+    public void publishAll(Collection<?> events) {
+        if (asyncPublish) {
+            for (Object event : events) {
+                publishAsync(event);
+            }
+            return;
+        }
+        Stopwatch start = stats.publishStats.start();
+        BulkPublishRun run = null;
+        try {
+            for (Object event : events) {
+                if (null != event && (null == run || run.eventClass != event.getClass())) {
+                    if (null != run) {
+                        run.updateStats();
+                    }
+                    run = new BulkPublishRun(event.getClass(), eventTypeStats.getCounters(event.getClass()),
+                                             getConsumersSnapshotForAnEvent(event));
+                }
+                dispatch(event, run); // A null event fails and is counted as an error.
+            }
+        } finally {
+            if (null != run) {
+                run.updateStats();
             }
+            start.stop();
+        }
+    }
 
-            Set<Class<?>> allTypesForAnEvent = getAllTypesForAnEvent(event);
-            for (Class<?> eventType : allTypesForAnEvent) {
-                Set<EventConsumer> eventConsumers = consumersByEventType.get(eventType);
-                for (EventConsumer eventConsumer : eventConsumers) {
-                    eventConsumer.enqueue(event);
+    /**
+     * Publishes a single event on the calling thread: captures it in the journal, applies the event level filters,
+     * enqueues it to all its consumers and hands it to the tap. Any error is logged, counted and swallowed, so that a
+     * publisher never fails.
+     *
+     * @param event Event to publish.
+     * @param run The run of {@link #publishAll(Collection)} the event belongs to, whose consumers are used and to which
+     *            the stats of the event are added. <code>null</code> to look up the consumers of the event and update
+     *            its stats right away.
+     */
+    private void dispatch(Object event, @Nullable BulkPublishRun run) {
+        try {
+            captureInJournal(event);
+            boolean filtered = !applyEventLevelFilters(event);
+            int fanOut = 0;
+            int rejected = 0;
+            if (!filtered) {
+                // Stamped once for all the consumers, see TimestampingConsumerQueueSupplier.
+                TimestampingConsumerQueueSupplier.StampedEvent stamped =
+                        new TimestampingConsumerQueueSupplier.StampedEvent(event, System.nanoTime());
+                if (null != run) {
+                    fanOut = run.consumers.length;
+                    rejected = enqueue(stamped, run.consumers);
+                } else {
+                    for (Class<?> eventType : getAllTypesForAnEvent(event)) {
+                        EventConsumer[] consumers = registry.getConsumersSnapshot(eventType);
+                        fanOut += consumers.length;
+                        rejected += enqueue(stamped, consumers);
+                    }
+                }
+                if (tap.isActive()) {
+                    tap.onPublish(event);
                 }
             }
-            if (null != catchAllSubInstance && catchAllSubInstance.isEnabled()) {
-                catchAllSubscriber.enqueue(event);
+            if (null != run) {
+                run.onPublished(filtered, fanOut, rejected);
+            } else {
+                eventTypeStats.getCounters(event.getClass()).onPublished(1, filtered ? 1 : 0, fanOut, rejected);
             }
         } catch (Throwable th) {
             LOGGER.error("Error occurred while publishing event. Swallowing the error to avoid publisher from failing.", th);
             stats.publishErrors.increment();
+        }
+    }
+
+    /**
+     * @return Count of the consumers that rejected the event.
+     */
+    private static int enqueue(TimestampingConsumerQueueSupplier.StampedEvent stamped, EventConsumer[] consumers) {
+        int rejected = 0;
+        for (EventConsumer eventConsumer : consumers) {
+            if (!eventConsumer.enqueue(stamped)) {
+                rejected++;
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * Returns <code>true</code> if the queue of any consumer of the passed event type is filled to at least three
+     * quarters of its size, i.e. publishing many more events of this type will make the consumer reject events. A bulk
+     * publisher can use this to stop publishing till the consumers catch up, keeping the events it publishes without
+     * checking under a quarter of the queue size. <p/>
+     *
+     * The check is for the calling thread: a queue split into dispatch lanes is saturated if the lane of the calling
+     * thread is, a consumer is also saturated if its share of the memory budget is, see {@link MemoryBudgetConfig},
+     * and the events the calling thread published asynchronously that are not yet dispatched are counted as queued.
+     *
+     * @param eventType Event type to check.
+     *
+     * @return <code>true</code> if any consumer of the event type is saturated.
+     */
+    public boolean isSaturated(Class<?> eventType) {
+        int pendingEvents = 0;
+        if (asyncPublish) {
+            if (asyncPublisher.isSaturated()) {
+                return true; // Further publishes of the calling thread would be rejected before reaching any consumer.
+            }
+            pendingEvents = asyncPublisher.getPendingCount();
+        }
+        for (Class<?> anEventSubType : getAllTypesForAnEventType(eventType)) {
+            for (EventConsumer eventConsumer : registry.getConsumersSnapshot(anEventSubType)) {
+                if (eventConsumer.isQueueSaturated(pendingEvents)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Publishes the passed event in the dispatch lane for the passed key instead of the lane of the publishing thread,
+     * so that all events published with equal keys are received by a subscriber in the order they were published, from
+     * any thread. With a single lane, this is the same as {@link #publish(Object)}. <p/>
+     *
+     * If publishing is asynchronous, see {@link #setAsyncPublish(boolean)}, the key is handed off with the event and
+     * the event is dispatched in the lane for the key. As the events of different publishing threads are dispatched
+     * independently, the order is then only guaranteed for the events with equal keys published by the same thread.
+     *
+     * @param event Event to publish.
+     * @param laneKey Key to select the lane.
+     */
+    public void publish(Object event, Object laneKey) {
+        if (null == dispatchLanes) {
+            publish(event);
+            return;
+        }
+        Preconditions.checkNotNull(laneKey, "Lane key can not be null.");
+        if (asyncPublish) {
+            asyncPublisher.publish(event, laneKey);
+        } else {
+            publishInline(event, laneKey);
+        }
+    }
+
+    /**
+     * Publishes the event on the calling thread, in the passed dispatch lane, see {@link #getThreadLane()}.
+     */
+    void publishInline(Object event, int lane) {
+        if (null == dispatchLanes || lane < 0) {
+            publishInline(event);
+            return;
+        }
+        int previousKeyedLane = dispatchLanes.beginLane(lane);
+        try {
+            publishInline(event);
         } finally {
-            start.stop();
+            dispatchLanes.endKeyedLane(previousKeyedLane);
         }
     }
 
+    /**
+     * @return The dispatch lane assigned to the calling thread, -1 if there is a single lane.
+     */
+    int getThreadLane() {
+        return null == dispatchLanes ? -1 : dispatchLanes.threadLane();
+    }
+
+    /**
+     * Publishes the event on the calling thread, in the dispatch lane for the passed key.
+     */
+    void publishInline(Object event, Object laneKey) {
+        if (null == dispatchLanes) {
+            publishInline(event);
+            return;
+        }
+        int previousKeyedLane = dispatchLanes.beginKeyedLane(laneKey);
+        try {
+            publishInline(event);
+        } finally {
+            dispatchLanes.endKeyedLane(previousKeyedLane);
+        }
+    }
+
+    /**
+     * Returns the number of dispatch lanes of this event bus.
+     */
+    public int getDispatchLaneCount() {
+        return null == dispatchLanes ? 1 : dispatchLanes.getLaneCount();
+    }
+
     @Override
     public void publishIffNotDead(EventCreator creator, Class<?>... eventTypes) {
         Stopwatch start = stats.conditionalPublishStats.start();
         try {
-            Map<Class<?>, Set<EventConsumer>> interestedConsumersByType = new HashMap<Class<?>, Set<EventConsumer>>();
+            Map<Class<?>, List<Class<?>>> interestedSubTypesByType = new HashMap<Class<?>, List<Class<?>>>();
             for (Class<?> eventType : eventTypes) {
                 for (Class<?> anEventSubType : getAllTypesForAnEventType(eventType)) {
-                    Set<EventConsumer> eventConsumers = consumersByEventType.get(anEventSubType);
-                    if (!eventConsumers.isEmpty()) {
+                    if (0 != registry.getConsumersSnapshot(anEventSubType).length) {
                         /*
-                        * Since any change in the underlying consumers get reflected in this set, we get the benefit of any changes
-                        * to the consumers after this check being reflected when we invoke these consumers.
+                        * Only the types are kept, the consumers are read from the registry again when the events are
+                        * dispatched, so that we get the benefit of any changes to the consumers after this check.
                         * We add the evenType to the map and not the subType as the event creator is only aware of the high
                         * level types & not the entire hierarchy.
                         */
-                        interestedConsumersByType.put(eventType, eventConsumers);
+                        List<Class<?>> subTypes = interestedSubTypesByType.get(eventType);
+                        if (null == subTypes) {
+                            subTypes = new ArrayList<Class<?>>();
+                            interestedSubTypesByType.put(eventType, subTypes);
+                        }
+                        subTypes.add(anEventSubType);
                     }
                 }
             }
 
-            if (interestedConsumersByType.isEmpty()) {
+            if (interestedSubTypesByType.isEmpty()) {
                 LOGGER.debug(String.format("Skipping publishing of events types %s as there are no interested listeners.",
                                            Arrays.toString(eventTypes)));
                 return;
             }
 
-            List events = creator.createEvent(interestedConsumersByType.keySet());
+            List events = creator.createEvent(interestedSubTypesByType.keySet());
             if (null == events) {
                 LOGGER.debug(String.format("No events created by event creator for event types %s",
-                        interestedConsumersByType.keySet()));
+                        interestedSubTypesByType.keySet()));
                 return;
             }
 
             for (Object event : events) {
+                captureInJournal(event);
+                EventTypeStats.TypeCounters typeCounters = eventTypeStats.getCounters(event.getClass());
+                typeCounters.published.increment();
                 if (!applyEventLevelFilters(event)) {
+                    typeCounters.filtered.increment();
                     continue;
                 }
-                Set<EventConsumer> eventConsumers = interestedConsumersByType.get(event.getClass());
-                for (EventConsumer eventConsumer : eventConsumers) {
-                    eventConsumer.enqueue(event);
+                List<Class<?>> subTypes = interestedSubTypesByType.get(event.getClass());
+                TimestampingConsumerQueueSupplier.StampedEvent stamped =
+                        new TimestampingConsumerQueueSupplier.StampedEvent(event, System.nanoTime());
+                int fanOut = 0;
+                int rejected = 0;
+                for (Class<?> subType : null == subTypes ? Collections.<Class<?>>emptyList() : subTypes) {
+                    EventConsumer[] consumers = registry.getConsumersSnapshot(subType);
+                    fanOut += consumers.length;
+                    rejected += enqueue(stamped, consumers);
                 }
+                typeCounters.onDispatched(fanOut, rejected);
             }
         } catch (Throwable th) {
             LOGGER.error("Error occurred while publishing event. Swallowing the error to avoid publisher from failing.", th);
@@ -216,24 +594,7 @@ public class EventBusImpl implements EventBus {
 
     @Override
     public void registerSubscriber(@Nullable EventFilter filter, Object subscriber) throws InvalidSubscriberException {
-        List<EventConsumer> allConsumersForThisSubscriber = new ArrayList<EventConsumer>();
-        List<Method> subscriberMethods = findSubscriberMethods(subscriber);
-        for (Method subscriberMethod : subscriberMethods) {
-            Class<?> targetEventType = EventBusUtils.getInterestedEventType(subscriber, subscriberMethod);
-            EventConsumer consumer =
-                    new EventConsumer(subscriberMethod, subscriber, filter, targetEventType, consumerQueueSupplier);
-            allConsumersForThisSubscriber.add(consumer);
-            consumersByEventType.put(targetEventType, consumer);
-        }
-
-        CopyOnWriteArrayList<EventConsumer> existingConsumers =
-                consumersBySubscriberClass.putIfAbsent(subscriber.getClass(),
-                                                       new CopyOnWriteArrayList<EventConsumer>((allConsumersForThisSubscriber)));
-        if (null != existingConsumers) {
-            existingConsumers.addAll(allConsumersForThisSubscriber);
-        } else {
-            LOGGER.info(String.format("Registered a new subscriber: %s with filter: %s", subscriber, filter));
-        }
+        registerSubscribers(filter, Collections.singletonList(subscriber));
     }
 
     @Override
@@ -242,45 +603,77 @@ public class EventBusImpl implements EventBus {
     }
 
     @Override
-    public synchronized boolean enableCatchAllSubscriber(BlockingQueue catchAllSink) {
-        if (null == catchAllSubscriber) {
-            catchAllSubInstance = new CatchAllSubscriber();
-            List<Method> subscriberMethods;
-            try {
-                subscriberMethods = findSubscriberMethods(catchAllSubInstance);
-                if (!subscriberMethods.isEmpty()) {
-                    Method method = subscriberMethods.get(0);
-                    catchAllSubscriber = new EventConsumer(method, catchAllSubInstance, null, Object.class, consumerQueueSupplier);
+    public void registerSubscribers(@Nullable EventFilter filter, Collection<?> subscribers)
+            throws InvalidSubscriberException {
+        // Resolve all subscribers before creating any consumer, so that an invalid subscriber does not leave the rest
+        // half registered.
+        List<List<SubscriberMetadata.SubscriberMethod>> allSubscriberMethods =
+                new ArrayList<List<SubscriberMetadata.SubscriberMethod>>(subscribers.size());
+        for (Object subscriber : subscribers) {
+            allSubscriberMethods.add(SubscriberMetadata.resolve(subscriber));
+        }
+
+        Set<EventFilter> filters = null == filter ? Collections.<EventFilter>emptySet() : Collections.singleton(filter);
+        Iterator<List<SubscriberMetadata.SubscriberMethod>> subscriberMethodsIterator = allSubscriberMethods.iterator();
+        for (Object subscriber : subscribers) {
+            boolean newSubscriber = registry.getConsumersForSubscriberClass(subscriber.getClass()).isEmpty();
+            for (SubscriberMetadata.SubscriberMethod subscriberMethod : subscriberMethodsIterator.next()) {
+                if (null != registry.findConsumer(subscriber, subscriberMethod.getMethod(), filters)) {
+                    LOGGER.info(String.format("Subscriber: %s with filter: %s is already registered for method: %s, ignoring.",
+                                              subscriber, filter, subscriberMethod.getMethod().toGenericString()));
+                    continue;
                 }
-            } catch (InvalidSubscriberException e) {
-                // We know it can not happen as the subscriber is valid.
-                LOGGER.error("Catch all subscriber invalid!", e);
-                return false;
+                registry.add(new EventConsumer(subscriberMethod.getMethod(), subscriber, filter,
+                                               subscriberMethod.getEventType(), subscriberMethod.getConfig(),
+                                               getQueueSupplier()));
+            }
+            if (newSubscriber) {
+                LOGGER.info(String.format("Registered a new subscriber: %s with filter: %s", subscriber, filter));
             }
         }
-        return catchAllSubInstance.enable(catchAllSink);
     }
 
     @Override
-    public synchronized void disableCatchAllSubscriber() {
-        if (null != catchAllSubInstance) {
-            catchAllSubInstance.disable();
-        } else {
+    public void registerSubscribers(Collection<?> subscribers) throws InvalidSubscriberException {
+        registerSubscribers(null, subscribers);
+    }
+
+    /**
+     * Attaches the passed sink to the {@link #getEventTap() tap} of this bus. The sink is offered all sampled events
+     * from the publishing thread.
+     */
+    @Override
+    public boolean enableCatchAllSubscriber(BlockingQueue catchAllSink) {
+        return tap.attachSink(catchAllSink);
+    }
+
+    @Override
+    public void disableCatchAllSubscriber() {
+        if (!tap.detachSink()) {
             LOGGER.info("Catch all subscriber is not enabled, disable call ignored.");
         }
     }
 
+    /**
+     * Returns the tap on all events published to this bus. See {@link EventTap} for details.
+     *
+     * @return The tap of this bus.
+     */
+    public EventTap getEventTap() {
+        return tap;
+    }
+
     @Override
     public Set<Object> unregisterSubscriber(Class<?> subscriberClass) {
         LOGGER.info("Unregistring subscriber class: " + subscriberClass);
         Set<Object> toReturn = new HashSet<Object>();
-        CopyOnWriteArrayList<EventConsumer> eventConsumers = consumersBySubscriberClass.remove(subscriberClass);
-        if (null != eventConsumers) {
-            for (EventConsumer eventConsumer : eventConsumers) {
-                eventConsumer.shutdown();
-                Class<?> targetEventClass = eventConsumer.getTargetEventClass();
-                consumersByEventType.remove(targetEventClass, eventConsumer);
-                toReturn.add(eventConsumer.getContainerInstance());
+        Set<EventConsumer> eventConsumers = registry.getConsumersForSubscriberClass(subscriberClass);
+        if (!eventConsumers.isEmpty()) {
+            for (EventConsumer eventConsumer : new ArrayList<EventConsumer>(eventConsumers)) {
+                if (registry.remove(eventConsumer)) {
+                    eventConsumer.shutdown();
+                    toReturn.add(eventConsumer.getContainerInstance());
+                }
             }
             LOGGER.info(String.format("Subscriber: %s successfully unregistered", subscriberClass));
         } else {
@@ -293,21 +686,10 @@ public class EventBusImpl implements EventBus {
     @Override
     public boolean unregisterSubscriber(Object subscriber) {
         LOGGER.info("Unregistring subscriber instance: " + subscriber);
-        Class subscriberClass = subscriber.getClass();
-        CopyOnWriteArrayList<EventConsumer> eventConsumers = consumersBySubscriberClass.get(subscriberClass);
         boolean unregistered = false;
-        EventConsumer toRemove = null;
-        if (null != eventConsumers) {
-            for (EventConsumer eventConsumer : eventConsumers) {
-                if (eventConsumer.getContainerInstance() == subscriber) {
-                    toRemove = eventConsumer;
-                }
-            }
-
-            if (null != toRemove && eventConsumers.remove(toRemove)) {
-                toRemove.shutdown();
-                Class<?> targetEventClass = toRemove.getTargetEventClass();
-                consumersByEventType.remove(targetEventClass, toRemove);
+        for (EventConsumer eventConsumer : new ArrayList<EventConsumer>(registry.getConsumersForSubscriber(subscriber))) {
+            if (registry.remove(eventConsumer)) {
+                eventConsumer.shutdown();
                 unregistered = true;
             }
         }
@@ -388,19 +770,16 @@ public class EventBusImpl implements EventBus {
     @Override
     public Set<SubscriberInfo> getAllSubscribers() {
         Set<SubscriberInfo> toReturn = new HashSet<SubscriberInfo>();
-        for (CopyOnWriteArrayList<EventConsumer> eventConsumers : consumersBySubscriberClass.values()) {
-            for (EventConsumer eventConsumer : eventConsumers) {
-                toReturn.add(new SubscriberInfo(eventConsumer.getDelegateSubscriber(), eventConsumer.getContainerInstance()));
-            }
-
+        for (EventConsumer eventConsumer : registry.getAllConsumers()) {
+            toReturn.add(new SubscriberInfo(eventConsumer.getDelegateSubscriber(), eventConsumer.getContainerInstance()));
         }
         return Collections.unmodifiableSet(toReturn);
     }
 
     @Override
     public Set<SubscriberInfo> getAllSubscribersForAnEvent(Class<?> eventType) {
-        Set<EventConsumer> eventConsumers = consumersByEventType.get(eventType);
-        if (null == eventConsumers || eventConsumers.isEmpty()) {
+        Set<EventConsumer> eventConsumers = registry.getConsumers(eventType);
+        if (eventConsumers.isEmpty()) {
             return Collections.emptySet();
         }
         Set<SubscriberInfo> toReturn = new HashSet<SubscriberInfo>(eventConsumers.size());
@@ -429,22 +808,111 @@ public class EventBusImpl implements EventBus {
 
     @Override
     public Set<Class<?>> getAllRegisteredEventTypes() {
-        Set<Class<?>> eventTypesWithConsumers = consumersByEventType.keySet();
+        Set<Class<?>> eventTypesWithConsumers = registry.getEventTypes();
         Set<Class<?>> eventTypesWithFilters = eventTypeVsFilters.keySet();
         return Sets.union(eventTypesWithConsumers, eventTypesWithFilters);
     }
 
     public synchronized void shutdown() {
-        Collection<EventConsumer> consumers = consumersByEventType.values();
-        for (EventConsumer consumer : consumers) {
+        asyncPublisher.shutdown();
+        eventTypeStats.shutdown();
+        tap.shutdown();
+        for (EventConsumer consumer : registry.getAllConsumers()) {
             consumer.shutdown();
         }
+        if (null != memoryBudget) {
+            memoryBudget.shutdown();
+        }
         // Clearing the data as the event bus instance *may* be stored somewhere & not GC'ed
-        consumersByEventType.clear();
-        consumersBySubscriberClass.clear();
+        registry.clear();
         eventTypeVsFilters.clear();
     }
 
+    /**
+     * Returns the subscribers that spent the most CPU time consuming events, along with their cost. Costs are only
+     * accounted while the property
+     * <code>eventbus.consumer.resource.accounting.enabled</code> is <code>true</code>.
+     *
+     * @param count Maximum number of subscribers to return.
+     *
+     * @return The costliest subscribers, costliest first.
+     */
+    public List<SubscriberCost> getCostliestSubscribers(int count) {
+        Preconditions.checkArgument(count >= 0, "Count can not be negative.");
+        List<SubscriberCost> costs = new ArrayList<SubscriberCost>();
+        for (EventConsumer consumer : registry.getAllConsumers()) {
+            costs.add(consumer.getCost());
+        }
+        Collections.sort(costs, SubscriberCost.BY_CPU_TIME);
+        return costs.size() > count ? new ArrayList<SubscriberCost>(costs.subList(0, count)) : costs;
+    }
+
+    /**
+     * Returns the number of events queued for the passed subscriber instance, i.e. published but not yet consumed,
+     * across all its subscriber methods. This counts events, not batches, for a batching subscriber, including the
+     * batch being filled, and includes the events spilled to disk, see {@link OverflowSpillConfig}.
+     *
+     * @param subscriber Subscriber instance as passed to {@link #registerSubscriber(Object)}.
+     *
+     * @return The number of queued events, 0 if the subscriber is not registered.
+     */
+    public long getQueuedEventCount(Object subscriber) {
+        long queued = 0;
+        for (EventConsumer consumer : registry.getConsumersForSubscriber(subscriber)) {
+            queued += consumer.getQueuedEventCount();
+        }
+        return queued;
+    }
+
+    /**
+     * Re-reads the configuration of all the registered subscribers that are {@link SubscriberConfigProvider}s and
+     * reconfigures the consumers for which the queue or batching configuration has changed.
+     *
+     * @return The number of consumers that were reconfigured.
+     */
+    public int refreshSubscriberConfigs() {
+        int reconfigured = 0;
+        for (EventConsumer consumer : registry.getAllConsumers()) {
+            Object subscriber = consumer.getContainerInstance();
+            if (subscriber instanceof SubscriberConfigProvider
+                && consumer.reconfigure(EventBusUtils.getSubscriberConfig(consumer.getDelegateSubscriber(), subscriber))) {
+                reconfigured++;
+            }
+        }
+        return reconfigured;
+    }
+
+    /**
+     * Starts capturing all events published to this bus, before applying any publisher level filters, in the passed
+     * journal. Any existing capture is stopped. The journal can be replayed using {@link EventJournalReplayer}.
+     *
+     * @param writer Journal to capture the events in.
+     *
+     * @return The journal of the capture that was stopped, <code>null</code> if there was no capture running.
+     */
+    @Nullable
+    public synchronized EventJournalWriter startJournalCapture(EventJournalWriter writer) {
+        EventJournalWriter existing = journalWriter;
+        journalWriter = writer;
+        LOGGER.info("Started capturing events in journal: " + writer.getFile());
+        return existing;
+    }
+
+    /**
+     * Stops the running journal capture, if any. The returned journal is not closed by this method.
+     *
+     * @return The journal of the capture that was stopped, <code>null</code> if there was no capture running.
+     */
+    @Nullable
+    public synchronized EventJournalWriter stopJournalCapture() {
+        EventJournalWriter existing = journalWriter;
+        journalWriter = null;
+        if (null != existing) {
+            LOGGER.info("Stopped capturing events in journal: " + existing.getFile());
+        }
+        return existing;
+    }
+
     @VisibleForTesting
     void setConsumerQueueSupplier(ConsumerQueueSupplier consumerQueueSupplier) {
         this.consumerQueueSupplier = consumerQueueSupplier;
@@ -452,51 +920,55 @@ public class EventBusImpl implements EventBus {
 
     @VisibleForTesting
     Set<EventConsumer> getEventConsumer(Class eventClass) {
-        return consumersByEventType.get(eventClass);
+        return registry.getConsumers(eventClass);
     }
 
-    private boolean applyEventLevelFilters(Object event) {
-        return EventBusUtils.applyFilters(event, eventTypeVsFilters.get(event.getClass()), stats.filterStats,
-                                          " publisher ", LOGGER);
+    @VisibleForTesting
+    EventTypeStats getEventTypeStats() {
+        return eventTypeStats;
     }
 
-    /**
-     * Finds all the subscriber methods defined in the passed subscriber class. Also, validates whether the subscriber
-     * methods adhere to the rules of the game using {@link SubscriberValidator}
-     *
-     * @param subscriber Subscriber instance for which the subscriber methods are to be found.
-     *
-     * @return List of valid subscriber methods.
-     *
-     * @throws InvalidSubscriberException If any one of the method is invalid.
-     */
-    private List<Method> findSubscriberMethods(Object subscriber) throws InvalidSubscriberException {
-        List<Method> subscriberMethods = new ArrayList<Method>();
-        Set<Method> allMethods = new HashSet<Method>();
-        Method[] methods = subscriber.getClass().getMethods();
-        allMethods.addAll(Arrays.asList(methods));
-        // This enables declaring even private methods in a consumer. We will try to enable access, failure of which
-        // will remove this method from the methods list.
-        Method[] allDeclaredMethods = subscriber.getClass().getDeclaredMethods();
-        allMethods.addAll(Arrays.asList(allDeclaredMethods));
-        for (Method method : allMethods) {
-            if (method.isAnnotationPresent(Subscribe.class)) {
-                try {
-                    method.setAccessible(true);
-                    subscriberMethods.add(method);
-                } catch (SecurityException e) {
-                    LOGGER.error("A subscriber method: " + method.toGenericString() +
-                                 " is not a public method and the security settings does not allow accessing non-public"
-                                 +
-                                 " methods via reflection. This subscriber method will not be registered.", e);
-                }
-            }
+    @VisibleForTesting
+    long getSpillDiskUsage() {
+        return spillDiskUsage.get();
+    }
+
+    @VisibleForTesting
+    @Nullable
+    MemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    @Nullable
+    private static MemoryBudgetConfig getDefaultMemoryBudget() {
+        long budgetEvents = MEMORY_BUDGET_EVENTS.get();
+        return budgetEvents > 0 ? MemoryBudgetConfig.builder().withCapacity(budgetEvents).build() : null;
+    }
+
+    private ConsumerQueueSupplier getQueueSupplier() {
+        ConsumerQueueSupplier supplier = new TimestampingConsumerQueueSupplier(consumerQueueSupplier);
+        if (null != memoryBudget) {
+            supplier = new BudgetedConsumerQueueSupplier(supplier, memoryBudget); // Spills what the budget rejects.
+        }
+        if (null != overflowSpillConfig) {
+            supplier = new SpillingConsumerQueueSupplier(supplier, overflowSpillConfig, spillDiskUsage);
         }
-        Map<Method, String> errors = SubscriberValidator.validate(subscriber, subscriberMethods);
-        if (!errors.isEmpty()) {
-            throw new InvalidSubscriberException(subscriber.getClass(), errors);
+        if (null != dispatchLanes) {
+            supplier = new LanedConsumerQueueSupplier(supplier, dispatchLanes); // Each lane spills on its own.
         }
-        return subscriberMethods;
+        return supplier;
+    }
+
+    private void captureInJournal(Object event) {
+        EventJournalWriter journal = journalWriter;
+        if (null != journal) {
+            journal.append(event);
+        }
+    }
+
+    private boolean applyEventLevelFilters(Object event) {
+        return EventBusUtils.applyFilters(event, eventTypeVsFilters.get(event.getClass()), stats.filterStats,
+                                          " publisher ", LOGGER);
     }
 
     /**
@@ -516,14 +988,10 @@ public class EventBusImpl implements EventBus {
                     subscriberMethod, callDescription));
             return null;
         }
-        CopyOnWriteArrayList<EventConsumer> eventConsumers = consumersBySubscriberClass.get(
-                subscriberMethod.getDeclaringClass());
-        if (null != eventConsumers) {
-            // Here what we are dealing with is the subscriber methods in a SINGLE class, so O(n) will suffice.
-            for (EventConsumer eventConsumer : eventConsumers) {
-                if (isTheSameSubscriber(subscriberInfo, eventConsumer)) {
-                    return eventConsumer;
-                }
+        // Here what we are dealing with is the subscriber methods of a SINGLE instance, so O(n) will suffice.
+        for (EventConsumer eventConsumer : registry.getConsumersForSubscriber(subscriberInfo.getSubscriberInstance())) {
+            if (isTheSameSubscriber(subscriberInfo, eventConsumer)) {
+                return eventConsumer;
             }
         }
         LOGGER.info(String.format("Subscriber: %s is not registered (or already removed). Ignoring %s call.",
@@ -531,20 +999,21 @@ public class EventBusImpl implements EventBus {
         return null;
     }
 
-    private static Set<Class<?>> getAllTypesForAnEvent(Object event) {
-        try {
-            return eventHierarchyCache.get(event.getClass());
-        } catch (ExecutionException e) {
-            throw Throwables.propagate(e.getCause());
+    private EventConsumer[] getConsumersSnapshotForAnEvent(Object event) {
+        List<EventConsumer> consumers = new ArrayList<EventConsumer>();
+        for (Class<?> eventType : getAllTypesForAnEvent(event)) {
+            consumers.addAll(Arrays.asList(registry.getConsumersSnapshot(eventType)));
         }
+        return consumers.toArray(new EventConsumer[consumers.size()]);
     }
 
-    private static Set<Class<?>> getAllTypesForAnEventType(Class eventType) {
-        try {
-            return eventHierarchyCache.get(eventType);
-        } catch (ExecutionException e) {
-            throw Throwables.propagate(e.getCause());
-        }
+    private static Class<?>[] getAllTypesForAnEvent(Object event) {
+        return eventHierarchyCache.get(event.getClass());
+    }
+
+    @VisibleForTesting
+    static Class<?>[] getAllTypesForAnEventType(Class<?> eventType) {
+        return eventHierarchyCache.get(eventType);
     }
 
     private boolean isTheSameSubscriber(SubscriberInfo subscriberInfo, EventConsumer eventConsumer) {
@@ -608,9 +1077,46 @@ public class EventBusImpl implements EventBus {
             Object blockingTake() throws InterruptedException;
 
             /**
-             * Clears the queue and disposes the events.
+             * Clears the queue and disposes the events. The queue size counter is decremented by the events removed,
+             * not reset, as it is shared by all the queues of a consumer, i.e. its lanes and the queues replaced on
+             * reconfiguration.
              */
             void clear();
         }
     }
+
+    /**
+     * Consecutive events of the same class published by {@link #publishAll(Collection)}, the stats of which are
+     * updated once for the run.
+     */
+    private static class BulkPublishRun {
+
+        private final Class<?> eventClass;
+        private final EventTypeStats.TypeCounters typeCounters;
+        private final EventConsumer[] consumers;
+        private long published;
+        private long filtered;
+        private long fanOut;
+        private long rejected;
+
+        private BulkPublishRun(Class<?> eventClass, EventTypeStats.TypeCounters typeCounters,
+                               EventConsumer[] consumers) {
+            this.eventClass = eventClass;
+            this.typeCounters = typeCounters;
+            this.consumers = consumers;
+        }
+
+        private void onPublished(boolean filteredEvent, int consumers, int rejectedByConsumers) {
+            published++;
+            if (filteredEvent) {
+                filtered++;
+            }
+            fanOut += consumers;
+            rejected += rejectedByConsumers;
+        }
+
+        private void updateStats() {
+            typeCounters.onPublished(published, filtered, fanOut, rejected);
+        }
+    }
 }
@@ -3,8 +3,6 @@ package com.netflix.eventbus.impl;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Iterators;
-import com.google.common.collect.PeekingIterator;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.netflix.config.DynamicIntProperty;
 import com.netflix.config.DynamicPropertyFactory;
@@ -21,12 +19,16 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nullable;
 import java.lang.reflect.Method;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import static com.netflix.eventbus.utils.EventBusUtils.isAnEventBatch;
 
@@ -46,25 +48,78 @@ class EventConsumer {
                     EventBus.CONSUMER_QUEUE_FULL_RETRY_MAX_DEFAULT);
 
     private static final AtomicLong threadIdCounter = new AtomicLong();
+
+    private static final long RETIRED_QUEUE_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
     
     private Class<?> targetEventClass;
     private final Method delegateSubscriber;
+    private final String filterInvokerDescription; // Used for every filtered event, so computed once.
     private final Object subscriberClassInstance;
     private final CopyOnWriteArraySet<EventFilter> filters;
 
-    private final EventBusImpl.ConsumerQueueSupplier.ConsumerQueue eventQueue;
+    private final FilteredEventBatch.BatchedEventFilter batchedEventFilter = new FilteredEventBatch.BatchedEventFilter() {
+        @Override
+        public boolean accept(Object event) {
+            if (ConsumerQueueGeneration.RETIRED_MARKER == event) {
+                return false;
+            }
+            return EventBusUtils.applyFilters(event, filters, stats.filterStats, filterInvokerDescription, LOGGER);
+        }
+    };
+
+    private final EventBusImpl.ConsumerQueueSupplier queueSupplier;
+
+    /**
+     * The current queue, replaced when this consumer is reconfigured, see {@link #reconfigure}.
+     */
+    private volatile ConsumerQueueGeneration queueGeneration;
+
+    /**
+     * The oldest queue that is not yet released, a retired queue is released once all the pollers are done with it.
+     * The generations from this one to the current one are released on {@link #shutdown()}.
+     */
+    private volatile ConsumerQueueGeneration oldestGeneration;
+    private volatile boolean shutdown;
 
     private final ExecutorService executor;
-    private final Subscribe.BatchingStrategy batchingStrategy;
+    private volatile Subscribe.BatchingStrategy batchingStrategy;
 
     private final EventConsumerStats stats;
-    private final SubscriberConfigProvider.SubscriberConfig subscriberConfig;
+
+    /**
+     * Configuration as provided by the subscriber, before applying {@link #configOverrides}.
+     */
+    private volatile SubscriberConfigProvider.SubscriberConfig baseSubscriberConfig;
+    private volatile SubscriberConfigProvider.SubscriberConfig subscriberConfig;
+    private final SubscriberConfigOverrides configOverrides;
+    private final Object reconfigurationLock = new Object();
+
+    /**
+     * A consumer that does not favor sync consumption is never sync, so this avoids even looking at the
+     * {@link #syncDecisions} for such consumers.
+     */
+    private final boolean syncIfAllowed;
+
+    /**
+     * Result of {@link SyncSubscribersGatekeeper#isSyncSubscriber(SubscriberConfigProvider.SubscriberConfig, Class, Class)}
+     * by event class, for the current {@link SyncSubscribersGatekeeper#getConfigVersion()}. This is replaced, never
+     * modified.
+     */
+    private volatile SyncDecisions syncDecisions = new SyncDecisions(-1, Collections.<Class<?>, Boolean>emptyMap());
+
+    EventConsumer(Method subscriber, Object subscriberClassInstance, @Nullable EventFilter filter, Class<?> targetEventType,
+                  EventBusImpl.ConsumerQueueSupplier queueSupplier) {
+        this(subscriber, subscriberClassInstance, filter, targetEventType,
+             EventBusUtils.getSubscriberConfig(subscriber, subscriberClassInstance), queueSupplier);
+    }
 
     EventConsumer(Method subscriber, Object subscriberClassInstance, @Nullable EventFilter filter, Class<?> targetEventType,
+                  SubscriberConfigProvider.SubscriberConfig subscriberConfig,
                   EventBusImpl.ConsumerQueueSupplier queueSupplier) {
         Preconditions.checkArgument(subscriber.getDeclaringClass() == subscriberClassInstance.getClass(), "The subscriber method does not belong to the subscriber class.");
 
         this.delegateSubscriber = subscriber;
+        filterInvokerDescription = "subscriber: " + subscriber.toGenericString();
         this.subscriberClassInstance = subscriberClassInstance;
         targetEventClass = targetEventType;
 
@@ -73,37 +128,77 @@ class EventConsumer {
                 delegateSubscriber.getName(),
                 targetEventClass.getName());
         stats = new EventConsumerStats(consumerName, EventBusImpl.STATS_COLLECTION_DURATION_MILLIS.get());
-        subscriberConfig = EventBusUtils.getSubscriberConfig(subscriber, subscriberClassInstance);
-        batchingStrategy = subscriberConfig.getBatchingStrategy();
-        eventQueue = queueSupplier.get(delegateSubscriber, subscriberConfig, stats.QUEUE_SIZE_COUNTER);
+        this.queueSupplier = queueSupplier;
+        baseSubscriberConfig = subscriberConfig;
+        configOverrides = new SubscriberConfigOverrides(subscriber, new Runnable() {
+            @Override
+            public void run() {
+                reconfigure(baseSubscriberConfig);
+            }
+        });
+        this.subscriberConfig = configOverrides.apply(subscriberConfig);
+        batchingStrategy = this.subscriberConfig.getBatchingStrategy();
+        syncIfAllowed = this.subscriberConfig.syncIfAllowed();
+        queueGeneration = new ConsumerQueueGeneration(
+                queueSupplier.get(delegateSubscriber, this.subscriberConfig, stats.QUEUE_SIZE_COUNTER));
+        oldestGeneration = queueGeneration;
         if (null != filter) {
             filters = new CopyOnWriteArraySet<EventFilter>(Arrays.asList(filter));
         } else {
             filters = new CopyOnWriteArraySet<EventFilter>();
         }
-        executor = Executors.newSingleThreadExecutor(
+        int pollerCount = queueGeneration.getPolledQueueCount();
+        executor = Executors.newFixedThreadPool(pollerCount,
                 new ThreadFactoryBuilder()
                     .setDaemon(true)
-                    .setNameFormat(consumerName + "-" + threadIdCounter.incrementAndGet())
+                    .setNameFormat(consumerName + "-" + threadIdCounter.incrementAndGet()
+                                   + (pollerCount > 1 ? "-lane-%d" : ""))
                     .build()
                 );
-        
-        executor.execute(new EventPoller());
+
+        for (int i = 0; i < pollerCount; i++) {
+            executor.execute(new EventPoller(i));
+        }
     }
 
-    void enqueue(Object event) {
-        if (SyncSubscribersGatekeeper.isSyncSubscriber(subscriberConfig, event.getClass(), delegateSubscriber.getClass())) {
+    /**
+     * Enqueues the passed event, or consumes it on the calling thread, if this consumer is synchronous.
+     *
+     * @return <code>false</code> if the event was rejected as the queue is full.
+     */
+    boolean enqueue(Object event) {
+        return enqueue(new TimestampingConsumerQueueSupplier.StampedEvent(event, System.nanoTime()));
+    }
+
+    /**
+     * Enqueues the passed event, stamped once by the publisher for all consumers, or consumes it on the calling thread,
+     * if this consumer is synchronous. The stamped event is offered as is to a queue of events, so that it is not
+     * stamped again by every consumer, see {@link TimestampingConsumerQueueSupplier}, and unwrapped for a batching queue.
+     *
+     * @return <code>false</code> if the event was rejected as the queue is full.
+     */
+    boolean enqueue(TimestampingConsumerQueueSupplier.StampedEvent stamped) {
+        Object event = stamped.getEvent();
+        if (syncIfAllowed && isSyncDispatch(event.getClass())) {
             LOGGER.debug(String.format("Sending a sync event to subscriber: %s. Set the property %s to false to disable sync consumption.",
                                        delegateSubscriber.toGenericString(), SyncSubscribersGatekeeper.ALLOW_SYNC_SUBSCRIBERS));
             processEvent(event);
-            return;
+            return true;
         }
 
+        ConsumerQueueGeneration generation = queueGeneration;
+        int offerStripe;
+        while (-1 == (offerStripe = generation.beginOffer())) {
+            generation = generation.getNext(); // Being reconfigured.
+        }
         Stopwatch start = stats.enqueueStats.start();
         try {
+            EventBusImpl.ConsumerQueueSupplier.ConsumerQueue eventQueue = generation.getQueue();
+            Object queued = Subscribe.BatchingStrategy.None == batchingStrategy ? stamped : event;
             int retries = 0;
             int maxRetries = maxRetriesOnQueueFull.get();
-            while (!eventQueue.offer(event) && retries++ < maxRetries) {
+            boolean offered;
+            while (!(offered = eventQueue.offer(queued)) && retries++ < maxRetries) {
                 stats.QUEUE_OFFER_RETRY_COUNTER.increment();
                 eventQueue.nonBlockingTake(); // removes and rejects.
                 LOGGER.info(String.format("Subscriber: %s queue full, rejected one %s as a result of retries.",
@@ -120,12 +215,93 @@ class EventConsumer {
                     stats.EVENT_ENQUEUE_REJECTED_COUNTER.increment();
                 }
             }
-
+            if (offered) {
+                stats.onEnqueued(stamped.getEnqueueNanos());
+            }
+            return offered;
         } finally {
             start.stop();
+            generation.endOffer(offerStripe);
+        }
+    }
+
+    /**
+     * Reconfigures the queue and batching of this consumer, in place, to the passed configuration with the overrides
+     * from {@link SubscriberConfigOverrides} applied. If the queue or batching configuration changed, a new queue is
+     * created and all new events are offered to it, while the pollers consume the events already in the old queue
+     * before moving to the new queue. So, no event is lost or reordered. <p/>
+     *
+     * A batching strategy can not be changed from or to {@link Subscribe.BatchingStrategy#None} as the subscriber
+     * method accepts either events or batches. Neither can a queue size be changed such that a queue polled per lane
+     * is split into a different number of lanes, see {@link LanedConsumerQueueSupplier}, as the consumer threads are
+     * started once.
+     *
+     * @param config The new configuration of the subscriber.
+     *
+     * @return <code>true</code> if the queue was replaced.
+     */
+    boolean reconfigure(SubscriberConfigProvider.SubscriberConfig config) {
+        synchronized (reconfigurationLock) {
+            baseSubscriberConfig = config;
+            SubscriberConfigProvider.SubscriberConfig newConfig = configOverrides.apply(config);
+            SubscriberConfigProvider.SubscriberConfig currentConfig = subscriberConfig;
+            if (SubscriberConfigOverrides.isSameQueueConfig(currentConfig, newConfig)) {
+                return false;
+            }
+            if ((Subscribe.BatchingStrategy.None == currentConfig.getBatchingStrategy())
+                != (Subscribe.BatchingStrategy.None == newConfig.getBatchingStrategy())) {
+                LOGGER.error(String.format("Subscriber: %s can not change the batching strategy from %s to %s, ignoring the new configuration.",
+                                           delegateSubscriber.toGenericString(), currentConfig.getBatchingStrategy(),
+                                           newConfig.getBatchingStrategy()));
+                return false;
+            }
+
+            ConsumerQueueGeneration oldGeneration = queueGeneration;
+            ConsumerQueueGeneration newGeneration = new ConsumerQueueGeneration(
+                    queueSupplier.get(delegateSubscriber, newConfig, stats.QUEUE_SIZE_COUNTER));
+            if (newGeneration.getPolledQueueCount() != oldGeneration.getPolledQueueCount()) {
+                // A per-lane queue that is, or is no longer, too small to be split, the pollers are fixed.
+                LOGGER.error(String.format("Subscriber: %s can not change the queue size from %s to %s as it changes the consumer threads from %s to %s, ignoring the new configuration.",
+                                           delegateSubscriber.toGenericString(), currentConfig.getQueueSize(),
+                                           newConfig.getQueueSize(), oldGeneration.getPolledQueueCount(),
+                                           newGeneration.getPolledQueueCount()));
+                newGeneration.release();
+                return false;
+            }
+            subscriberConfig = newConfig;
+            batchingStrategy = newConfig.getBatchingStrategy();
+            queueGeneration = newGeneration;
+            oldGeneration.retire(newGeneration); // Does not wait for the pollers.
+            if (shutdown) {
+                newGeneration.release(); // Possibly not yet reachable by the shutdown.
+                return true;
+            }
+            LOGGER.info(String.format("Subscriber: %s reconfigured to batching strategy: %s, batch size: %s, batch age: %s, queue size: %s",
+                                      delegateSubscriber.toGenericString(), newConfig.getBatchingStrategy(),
+                                      newConfig.getBatchSize(), newConfig.getBatchAge(), newConfig.getQueueSize()));
+            return true;
         }
     }
 
+    private boolean isSyncDispatch(Class<?> eventClass) {
+        int configVersion = SyncSubscribersGatekeeper.getConfigVersion();
+        SyncDecisions decisions = syncDecisions;
+        if (decisions.configVersion == configVersion) {
+            Boolean decision = decisions.decisionsByEventClass.get(eventClass);
+            if (null != decision) {
+                return decision;
+            }
+        } else {
+            decisions = new SyncDecisions(configVersion, Collections.<Class<?>, Boolean>emptyMap());
+        }
+        boolean sync = SyncSubscribersGatekeeper.isSyncSubscriber(subscriberConfig, eventClass,
+                                                                  subscriberClassInstance.getClass());
+        Map<Class<?>, Boolean> updated = new IdentityHashMap<Class<?>, Boolean>(decisions.decisionsByEventClass);
+        updated.put(eventClass, sync);
+        syncDecisions = new SyncDecisions(configVersion, updated); // Concurrent updates may get lost, they are recomputed.
+        return sync;
+    }
+
     void addFilters(EventFilter... filters) {
         this.filters.addAll(Arrays.asList(filters));
     }
@@ -139,11 +315,69 @@ class EventConsumer {
     }
 
     void shutdown() {
+        shutdown = true;
+        configOverrides.close();
         executor.shutdownNow();
-        eventQueue.clear();
+        for (ConsumerQueueGeneration generation = oldestGeneration; null != generation;
+             generation = generation.getNext()) {
+            generation.release();
+        }
         filters.clear();
     }
 
+    /**
+     * Checks whether the queue the calling thread offers to is filled to at least three quarters of its capacity,
+     * leaving headroom for the events in flight of a publisher that backs off on saturation. The queue is the lane of
+     * the calling thread for a queue split into lanes, see {@link LanedConsumerQueueSupplier}, and the queue is also
+     * saturated if its memory budget account is, see {@link MemoryBudget.Account#isSaturated()}.
+     *
+     * @param pendingEvents Events published by the calling thread that are not yet offered to the queue, eg: pending
+     *                      an asynchronous dispatch.
+     *
+     * @return <code>true</code> if the queue is saturated.
+     */
+    boolean isQueueSaturated(long pendingEvents) {
+        EventBusImpl.ConsumerQueueSupplier.ConsumerQueue queue = queueGeneration.getQueue();
+        long size;
+        long capacity;
+        if (queue instanceof LanedConsumerQueueSupplier.MergedConsumerQueue) {
+            LanedConsumerQueueSupplier.MergedConsumerQueue lanedQueue =
+                    (LanedConsumerQueueSupplier.MergedConsumerQueue) queue;
+            size = lanedQueue.getCurrentLaneSize();
+            capacity = lanedQueue.getLaneCapacity();
+            queue = lanedQueue.getCurrentLaneQueue();
+        } else {
+            size = stats.QUEUE_SIZE_COUNTER.get();
+            capacity = EventBusUtils.getQueueSize(subscriberConfig);
+        }
+        if ((size + pendingEvents) * 4 >= capacity * 3) {
+            return true;
+        }
+        if (queue instanceof SpillingConsumerQueueSupplier.SpillingConsumerQueue) {
+            queue = ((SpillingConsumerQueueSupplier.SpillingConsumerQueue) queue).getMemoryQueue();
+        }
+        return queue instanceof BudgetedConsumerQueueSupplier.BudgetedConsumerQueue
+               && ((BudgetedConsumerQueueSupplier.BudgetedConsumerQueue) queue).getAccount().isSaturated();
+    }
+
+    long getQueueSize() {
+        return stats.QUEUE_SIZE_COUNTER.get();
+    }
+
+    /**
+     * Returns the number of events queued for this consumer in all its queues that are not yet released. Unlike
+     * {@link #getQueueSize()}, which counts the batches of a batching consumer, this counts the events in the batches,
+     * including the batch being filled, and the events spilled to disk.
+     */
+    long getQueuedEventCount() {
+        long queued = Subscribe.BatchingStrategy.None == batchingStrategy ? stats.QUEUE_SIZE_COUNTER.get() : 0;
+        for (ConsumerQueueGeneration generation = oldestGeneration; null != generation;
+             generation = generation.getNext()) {
+            queued += countEventsNotInQueueSize(generation.getQueue());
+        }
+        return queued;
+    }
+
     Method getDelegateSubscriber() {
         return delegateSubscriber;
     }
@@ -160,6 +394,11 @@ class EventConsumer {
         return filters;
     }
 
+    SubscriberCost getCost() {
+        return new SubscriberCost(delegateSubscriber.toGenericString(), targetEventClass, stats.getCpuNanos(),
+                                  stats.getAllocatedBytes(), stats.getAccountedEvents());
+    }
+
     @VisibleForTesting
     EventConsumerStats getStats() {
         return stats;
@@ -171,11 +410,32 @@ class EventConsumer {
     }
 
     private void processEvent(Object event) {
-        Stopwatch start = stats.consumptionStats.start();
+        if (!ThreadResourceSampler.isEnabled()) {
+            dispatchEvent(event);
+            return;
+        }
+        long cpuNanosAtStart = ThreadResourceSampler.currentThreadCpuNanos();
+        long allocatedBytesAtStart = ThreadResourceSampler.currentThreadAllocatedBytes();
+        try {
+            dispatchEvent(event);
+        } finally {
+            stats.onAccounted(ThreadResourceSampler.currentThreadCpuNanos() - cpuNanosAtStart,
+                              ThreadResourceSampler.currentThreadAllocatedBytes() - allocatedBytesAtStart);
+        }
+    }
 
-        event = wrapIfBatched(event);
+    private void dispatchEvent(Object event) {
+        if (isAnEventBatch(event)) {
+            event = FilteredEventBatch.filter((EventBatch) event, batchedEventFilter);
+            if (((EventBatch) event).size() == 0) {
+                return; // All filtered out, or, an empty batch.
+            }
+        }
 
         if (applyFilters(event)) {
+            // Started once the event is known to be dispatched, so that every started stopwatch is stopped. The
+            // filters are timed by their own stats.
+            Stopwatch start = stats.consumptionStats.start();
             try {
                 delegateSubscriber.invoke(subscriberClassInstance, event);
             } catch (Exception e) {
@@ -188,58 +448,74 @@ class EventConsumer {
         }
     }
 
-    private boolean applyFilters(Object event) {
-        if (isAnEventBatch(event)) { // For batches, the filters are run on demand i.e. in each next() call.
-            return true;
-        } else {
-            return EventBusUtils.applyFilters(event, filters, stats.filterStats,
-                                              "subscriber: " + delegateSubscriber.toGenericString(), LOGGER);
+    /**
+     * Processes an event (or batch) taken from the queue. A {@link ConsumerQueueGeneration#RETIRED_MARKER} is skipped,
+     * it is only offered to wake up the poller of a retired queue.
+     */
+    private void processQueuedEvent(Object event) {
+        Object unwrapped = event;
+        if (event instanceof TimestampingConsumerQueueSupplier.StampedEvent) {
+            unwrapped = ((TimestampingConsumerQueueSupplier.StampedEvent) event).getEvent();
         }
-    }
-
-    private Object wrapIfBatched(Object event) {
-        if (isAnEventBatch(event)) {
-            return new BatchDecorator((EventBatch) event);
+        if (ConsumerQueueGeneration.RETIRED_MARKER == unwrapped) {
+            return;
+        }
+        if (!(event instanceof EnqueueTimestamped) || 0 == ((EnqueueTimestamped) event).getEnqueueNanos()) {
+            processEvent(unwrapped); // A batch from a custom queue or an empty batch, nothing to measure.
+            return;
         }
-        return event;
+        long enqueueNanos = ((EnqueueTimestamped) event).getEnqueueNanos();
+        stats.onTake(enqueueNanos);
+        processEvent(unwrapped);
+        stats.onConsumed(enqueueNanos);
     }
 
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) {
-            return true;
-        }
-        if (o == null || getClass() != o.getClass()) {
-            return false;
+    /**
+     * @return The events held by the passed queue that the queue size counter does not count: the events of a batching
+     * queue and the spilled events.
+     */
+    private static long countEventsNotInQueueSize(EventBusImpl.ConsumerQueueSupplier.ConsumerQueue queue) {
+        long events = 0;
+        if (queue instanceof LanedConsumerQueueSupplier.MergedConsumerQueue) {
+            for (EventBusImpl.ConsumerQueueSupplier.ConsumerQueue laneQueue
+                    : ((LanedConsumerQueueSupplier.MergedConsumerQueue) queue).laneQueues) {
+                events += countEventsNotInQueueSize(laneQueue);
+            }
+            return events;
         }
-
-        EventConsumer consumer = (EventConsumer) o;
-
-        if (delegateSubscriber != null ? !delegateSubscriber.equals(consumer.delegateSubscriber)
-                                       : consumer.delegateSubscriber != null) {
-            return false;
+        if (queue instanceof SpillingConsumerQueueSupplier.SpillingConsumerQueue) {
+            SpillingConsumerQueueSupplier.SpillingConsumerQueue spillingQueue =
+                    (SpillingConsumerQueueSupplier.SpillingConsumerQueue) queue;
+            events += spillingQueue.getSpill().getPendingEvents();
+            queue = spillingQueue.getMemoryQueue();
         }
-        if (filters != null ? !filters.equals(consumer.filters) : consumer.filters != null) {
-            return false;
+        if (queue instanceof BudgetedConsumerQueueSupplier.BudgetedConsumerQueue) {
+            queue = ((BudgetedConsumerQueueSupplier.BudgetedConsumerQueue) queue).getDelegate();
         }
-        if (subscriberClassInstance != null ? !subscriberClassInstance.equals(consumer.subscriberClassInstance)
-                                            : consumer.subscriberClassInstance != null) {
-            return false;
+        if (queue instanceof AgeBatchingQueue) {
+            events += ((AgeBatchingQueue) queue).getQueuedEventCount();
         }
-
-        return true;
+        return events;
     }
 
-    @Override
-    public int hashCode() {
-        int result = delegateSubscriber != null ? delegateSubscriber.hashCode() : 0;
-        result = 31 * result + (subscriberClassInstance != null ? subscriberClassInstance.hashCode() : 0);
-        result = 31 * result + (filters != null ? filters.hashCode() : 0);
-        return result;
+    private boolean applyFilters(Object event) {
+        if (isAnEventBatch(event)) { // Batches are filtered before dispatch, see FilteredEventBatch.
+            return true;
+        } else {
+            return EventBusUtils.applyFilters(event, filters, stats.filterStats,
+                                              filterInvokerDescription, LOGGER);
+        }
     }
 
     private class EventPoller implements Runnable {
 
+        private final int polledQueueIndex;
+        private ConsumerQueueGeneration generation = queueGeneration;
+
+        private EventPoller(int polledQueueIndex) {
+            this.polledQueueIndex = polledQueueIndex;
+        }
+
         @Override
         public void run() {
             LOGGER.info("Event consumer: " + delegateSubscriber.toGenericString() + " started.");
@@ -248,9 +524,13 @@ class EventConsumer {
                 while (!done) {
                     Object event;
                     try {
-                        event = eventQueue.blockingTake();
+                        if (null == generation.getNext()) {
+                            event = generation.getPolledQueue(polledQueueIndex).blockingTake();
+                        } else {
+                            event = takeFromRetired();
+                        }
                         if (null != event) {
-                            processEvent(event);
+                            processQueuedEvent(event);
                         }
                     } catch (InterruptedException e) {
                         LOGGER.info("Event consumer: " + delegateSubscriber.toGenericString() +
@@ -263,67 +543,53 @@ class EventConsumer {
                 LOGGER.info("Event consumer: " + delegateSubscriber.toGenericString() + " stopped.");
             }
         }
-    }
-
-    /**
-     * A decorator for {@link com.netflix.eventbus.impl.EventBatch} to run filters when events are requested by the consumer. <br/>
-     * The reason for this is that we can not run a filter on an event batch and running the filter on enqueue does it in
-     * the publishing thread which is not desirable. The downside of this is that a consumer may get an empty batch.
-     *
-     * @author Nitesh Kant
-     */
-    class BatchDecorator implements Iterable {
-
-        private final EventBatch batch;
-
-        BatchDecorator(EventBatch batch) {
-            this.batch = batch;
-        }
-
-        @Override
-        public Iterator iterator() {
-            return new BatchIterator(batch);
-        }
-
-        private class BatchIterator implements Iterator {
 
-            private final PeekingIterator delegatePeekingIterator;
-
-            @SuppressWarnings("unchecked")
-            BatchIterator(EventBatch batch) {
-                this.delegatePeekingIterator = Iterators.peekingIterator(batch.iterator());
-                _ensureNextEventIsConsumable();
+        /**
+         * Takes an event from the retired generation without blocking, so that the poller notices when the retired
+         * queue is drained and moves to the next generation.
+         *
+         * @return The event taken, <code>null</code> if there was none.
+         */
+        private Object takeFromRetired() throws InterruptedException {
+            EventBusImpl.ConsumerQueueSupplier.ConsumerQueue polledQueue = generation.getPolledQueue(polledQueueIndex);
+            Object event = polledQueue.nonBlockingTake();
+            if (null != event) {
+                return event;
             }
-
-            @Override
-            public boolean hasNext() {
-                return delegatePeekingIterator.hasNext();
+            if (!generation.isDrained(polledQueueIndex)) {
+                // An offer in flight, a spill transfer or a batch that could not be reaped yet.
+                LockSupport.parkNanos(RETIRED_QUEUE_POLL_NANOS);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                return null;
             }
-
-            @Override
-            public Object next() {
-                Object toReturn = delegatePeekingIterator.next(); // Since we call _fetchNext before hand, next() event is always valid.
-                _ensureNextEventIsConsumable();
-                return toReturn;
+            event = polledQueue.nonBlockingTake(); // The batch reaped or the offer completed after the first take.
+            if (null == event) {
+                onRetiredQueueDrained();
             }
+            return event;
+        }
 
-            @Override
-            public void remove() {
-                throw new UnsupportedOperationException("Event batch iterator does not support remove.");
+        private void onRetiredQueueDrained() {
+            ConsumerQueueGeneration retired = generation;
+            generation = retired.getNext();
+            if (retired.onPollerRetired()) {
+                // Generations are released in order, as every poller moves through all of them.
+                oldestGeneration = generation;
+                retired.release();
             }
+        }
+    }
 
-            private void _ensureNextEventIsConsumable() {
-                if (delegatePeekingIterator.hasNext()) {
-                    Object nextEvent = delegatePeekingIterator.peek();
-                    if (!EventBusUtils.applyFilters(nextEvent, filters, stats.filterStats,
-                                                    "subscriber: " + delegateSubscriber.toGenericString(), LOGGER)) {
-                        // If next event is not consumable i.e. filtered, remove and see next.
-                        delegatePeekingIterator.next();
-                        delegatePeekingIterator.remove();
-                        _ensureNextEventIsConsumable();
-                    }
-                }
-            }
+    private static class SyncDecisions {
+
+        private final int configVersion;
+        private final Map<Class<?>, Boolean> decisionsByEventClass;
+
+        private SyncDecisions(int configVersion, Map<Class<?>, Boolean> decisionsByEventClass) {
+            this.configVersion = configVersion;
+            this.decisionsByEventClass = decisionsByEventClass;
         }
     }
 }
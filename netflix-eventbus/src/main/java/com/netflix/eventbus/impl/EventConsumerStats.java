@@ -10,8 +10,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
+import static com.netflix.eventbus.utils.EventBusUtils.newLatencyTimer;
 import static com.netflix.eventbus.utils.EventBusUtils.newStatsTimer;
 
 /**
@@ -24,10 +26,28 @@ public class EventConsumerStats {
     final StatsTimer enqueueStats;
     final StatsTimer consumptionStats;
     final StatsTimer filterStats;
+    final StatsTimer queueWaitStats;
+    final StatsTimer endToEndStats;
     final AtomicLong QUEUE_SIZE_COUNTER;
     final BasicGauge<Long> QUEUE_SIZE_GAUGE;
     final Counter QUEUE_OFFER_RETRY_COUNTER;
     final Counter EVENT_ENQUEUE_REJECTED_COUNTER;
+    final BasicGauge<Long> LAG_MILLIS_GAUGE;
+    final Counter CPU_NANOS_COUNTER;
+    final Counter ALLOCATED_BYTES_COUNTER;
+    final Counter ACCOUNTED_EVENTS_COUNTER;
+
+    /**
+     * Marks that no event is queued, see {@link #oldestEnqueueNanos}.
+     */
+    private static final long NOTHING_QUEUED = Long.MIN_VALUE;
+
+    /**
+     * Enqueue time of the oldest event (or batch) in the queue, {@link #NOTHING_QUEUED} if the queue is empty, see
+     * {@link #getLagMillis()}. Set by the first event enqueued to an empty queue and, as the queue can not be peeked,
+     * to the enqueue time of the last taken event otherwise, as the oldest event in the queue was enqueued after it.
+     */
+    private final AtomicLong oldestEnqueueNanos = new AtomicLong(NOTHING_QUEUED);
 
     public EventConsumerStats(String consumerName, long collectionDurationInMillis) {
         String statsPrefix = "eventbus_consumer_" + consumerName;
@@ -41,9 +61,21 @@ public class EventConsumerStats {
         QUEUE_OFFER_RETRY_COUNTER = new BasicCounter(MonitorConfig.builder(statsPrefix + "_queue_retry").build());
         EVENT_ENQUEUE_REJECTED_COUNTER = new BasicCounter(MonitorConfig.builder(statsPrefix + "_enqueue_reject").build());
 
+        CPU_NANOS_COUNTER = new BasicCounter(MonitorConfig.builder(statsPrefix + "_cpu_nanos").build());
+        ALLOCATED_BYTES_COUNTER = new BasicCounter(MonitorConfig.builder(statsPrefix + "_allocated_bytes").build());
+        ACCOUNTED_EVENTS_COUNTER = new BasicCounter(MonitorConfig.builder(statsPrefix + "_accounted_events").build());
+
         enqueueStats = newStatsTimer(statsPrefix + "_enqueue", collectionDurationInMillis);
         consumptionStats = newStatsTimer(statsPrefix + "_consumption", collectionDurationInMillis);
         filterStats = newStatsTimer(statsPrefix + "_filter", collectionDurationInMillis);
+        queueWaitStats = newLatencyTimer(statsPrefix + "_queue_wait", collectionDurationInMillis);
+        endToEndStats = newLatencyTimer(statsPrefix + "_end_to_end", collectionDurationInMillis);
+        LAG_MILLIS_GAUGE = new BasicGauge<Long>(MonitorConfig.builder(statsPrefix + "_lag_millis").build(), new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return getLagMillis();
+            }
+        });
         try {
             DefaultMonitorRegistry.getInstance().register(QUEUE_SIZE_GAUGE);
             DefaultMonitorRegistry.getInstance().register(QUEUE_OFFER_RETRY_COUNTER);
@@ -51,8 +83,84 @@ public class EventConsumerStats {
             DefaultMonitorRegistry.getInstance().register(enqueueStats);
             DefaultMonitorRegistry.getInstance().register(consumptionStats);
             DefaultMonitorRegistry.getInstance().register(filterStats);
+            DefaultMonitorRegistry.getInstance().register(queueWaitStats);
+            DefaultMonitorRegistry.getInstance().register(endToEndStats);
+            DefaultMonitorRegistry.getInstance().register(LAG_MILLIS_GAUGE);
+            DefaultMonitorRegistry.getInstance().register(CPU_NANOS_COUNTER);
+            DefaultMonitorRegistry.getInstance().register(ALLOCATED_BYTES_COUNTER);
+            DefaultMonitorRegistry.getInstance().register(ACCOUNTED_EVENTS_COUNTER);
         } catch (Throwable th) {
             LOGGER.error("Unable to register to event bus consumer stats to servo.", th);
         }
     }
+
+    /**
+     * Records that an event stamped at the passed time is enqueued.
+     */
+    void onEnqueued(long enqueueNanos) {
+        if (NOTHING_QUEUED == oldestEnqueueNanos.get()) {
+            oldestEnqueueNanos.compareAndSet(NOTHING_QUEUED, enqueueNanos);
+        }
+    }
+
+    /**
+     * Records that an event (or batch) enqueued at the passed time is taken from the queue.
+     */
+    void onTake(long enqueueNanos) {
+        oldestEnqueueNanos.set(enqueueNanos);
+        if (QUEUE_SIZE_COUNTER.get() <= 0 && oldestEnqueueNanos.compareAndSet(enqueueNanos, NOTHING_QUEUED)
+            && QUEUE_SIZE_COUNTER.get() > 0) {
+            // Raced with an enqueue that did not see the queue empty, the last taken event is the best bound known.
+            oldestEnqueueNanos.compareAndSet(NOTHING_QUEUED, enqueueNanos);
+        }
+        queueWaitStats.record(System.nanoTime() - enqueueNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records that an event (or batch) enqueued at the passed time is consumed.
+     */
+    void onConsumed(long enqueueNanos) {
+        endToEndStats.record(System.nanoTime() - enqueueNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Attributes the CPU time and bytes allocated while consuming an event (or batch) to this consumer. See
+     * {@link ThreadResourceSampler}.
+     */
+    void onAccounted(long cpuNanos, long allocatedBytes) {
+        CPU_NANOS_COUNTER.increment(cpuNanos);
+        ALLOCATED_BYTES_COUNTER.increment(allocatedBytes);
+        ACCOUNTED_EVENTS_COUNTER.increment();
+    }
+
+    /**
+     * Returns the CPU time spent by this consumer, including filters, while accounting was enabled.
+     */
+    long getCpuNanos() {
+        return CPU_NANOS_COUNTER.getValue().longValue();
+    }
+
+    /**
+     * Returns the bytes allocated by this consumer, including filters, while accounting was enabled.
+     */
+    long getAllocatedBytes() {
+        return ALLOCATED_BYTES_COUNTER.getValue().longValue();
+    }
+
+    long getAccountedEvents() {
+        return ACCOUNTED_EVENTS_COUNTER.getValue().longValue();
+    }
+
+    /**
+     * Returns how far behind the consumer is, in time. This is the time since the oldest event in the queue was
+     * enqueued if there are events in the queue, 0 otherwise. So, this keeps growing if the consumer is stuck on an
+     * event, which a queue size does not show, and does not include the time the queue was idle.
+     */
+    long getLagMillis() {
+        long oldest = oldestEnqueueNanos.get();
+        if (QUEUE_SIZE_COUNTER.get() <= 0 || NOTHING_QUEUED == oldest) {
+            return 0;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest));
+    }
 }
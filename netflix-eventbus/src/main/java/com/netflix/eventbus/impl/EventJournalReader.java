@@ -0,0 +1,128 @@
+package com.netflix.eventbus.impl;
+
+import com.google.common.base.Preconditions;
+import com.netflix.eventbus.spi.EventCodec;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.NoSuchElementException;
+
+/**
+ * A cursor over a journal written by {@link EventJournalWriter}. The journal is read through memory-mapped windows of
+ * the file, so reading does not copy the records, the only allocation per record is the one done by the codec while
+ * decoding the event. <p/>
+ *
+ * Usage:
+ * <pre>
+ while (reader.next()) {
+     long nanos = reader.getTimestampNanos();
+     Object event = reader.getEvent();
+ }
+ * </pre>
+ *
+ * This class is <b>not</b> thread-safe.
+ */
+public class EventJournalReader implements Closeable {
+
+    public static final int DEFAULT_WINDOW_SIZE_BYTES = 64 * 1024 * 1024;
+
+    private final EventCodec codec;
+    private final int windowSize;
+    private final RandomAccessFile raf;
+    private final long fileLength;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long readPosition; // File offset of the next record.
+
+    private long currentTimestamp;
+    private Object currentEvent;
+    private boolean hasCurrent;
+
+    public EventJournalReader(File file, EventCodec codec) throws IOException {
+        this(file, codec, DEFAULT_WINDOW_SIZE_BYTES);
+    }
+
+    public EventJournalReader(File file, EventCodec codec, int windowSize) throws IOException {
+        Preconditions.checkNotNull(file, "Journal file can not be null.");
+        Preconditions.checkNotNull(codec, "Codec can not be null.");
+        Preconditions.checkArgument(windowSize > EventJournalWriter.RECORD_HEADER_BYTES,
+                                    "Window size must be more than %s bytes.", EventJournalWriter.RECORD_HEADER_BYTES);
+        this.codec = codec;
+        this.windowSize = windowSize;
+        raf = new RandomAccessFile(file, "r");
+        fileLength = raf.length();
+    }
+
+    /**
+     * Moves this cursor to the next record in the journal.
+     *
+     * @return <code>true</code> if there is a next record, <code>false</code> if the end of the journal is reached.
+     *
+     * @throws IOException If the file could not be mapped.
+     */
+    public boolean next() throws IOException {
+        hasCurrent = false;
+        currentEvent = null;
+        if (fileLength - readPosition < EventJournalWriter.RECORD_HEADER_BYTES) {
+            return false;
+        }
+        ensureMapped(EventJournalWriter.RECORD_HEADER_BYTES);
+        int offset = (int) (readPosition - windowStart);
+        int recordSize = window.getInt(offset);
+        if (recordSize < EventJournalWriter.RECORD_HEADER_BYTES || recordSize > fileLength - readPosition) {
+            return false; // End marker or a record that was never completely written.
+        }
+        ensureMapped(recordSize);
+        offset = (int) (readPosition - windowStart);
+        currentTimestamp = window.getLong(offset + 4);
+        ByteBuffer source = window.duplicate();
+        source.limit(offset + recordSize);
+        source.position(offset + EventJournalWriter.RECORD_HEADER_BYTES);
+        currentEvent = codec.decode(source);
+        readPosition += recordSize;
+        hasCurrent = true;
+        return true;
+    }
+
+    /**
+     * Returns the nanoseconds elapsed between the start of the capture and the publish of the current event.
+     *
+     * @return Timestamp of the current record.
+     */
+    public long getTimestampNanos() {
+        checkCurrent();
+        return currentTimestamp;
+    }
+
+    public Object getEvent() {
+        checkCurrent();
+        return currentEvent;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        raf.close();
+    }
+
+    private void checkCurrent() {
+        if (!hasCurrent) {
+            throw new NoSuchElementException("No current record, call next() first.");
+        }
+    }
+
+    private void ensureMapped(int bytesNeeded) throws IOException {
+        if (null != window && readPosition + bytesNeeded <= windowStart + window.capacity()) {
+            return;
+        }
+        long size = Math.min(fileLength - readPosition, Math.max(windowSize, bytesNeeded));
+        window = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, readPosition, size);
+        windowStart = readPosition;
+    }
+}
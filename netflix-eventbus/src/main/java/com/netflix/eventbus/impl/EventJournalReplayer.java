@@ -0,0 +1,90 @@
+package com.netflix.eventbus.impl;
+
+import com.google.common.base.Preconditions;
+import com.netflix.eventbus.spi.EventBus;
+import com.netflix.eventbus.spi.EventCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Republishes the events of a journal captured by {@link EventJournalWriter} into an {@link EventBus}. This is
+ * intended to reproduce a production load locally, eg: to benchmark subscribers and filters against real traffic. <p/>
+ *
+ * The pace of replay is controlled by a speed factor:
+ * <ul>
+ <li>{@link #ORIGINAL_SPEED}: Events are published with the same gaps as they were captured.</li>
+ <li>N: Gaps between events are reduced N times.</li>
+ <li>{@link #FLAT_OUT}: Events are published as fast as they can be read.</li>
+ </ul>
+ * Events are published from the thread calling {@link #replay(EventBus)}. If the publish falls behind the schedule,
+ * eg: because the subscribers are slow, the replay does not skip events but publishes them as fast as possible till
+ * it catches up.
+ */
+public class EventJournalReplayer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventJournalReplayer.class);
+
+    public static final double ORIGINAL_SPEED = 1.0;
+    public static final double FLAT_OUT = Double.POSITIVE_INFINITY;
+
+    private final File journal;
+    private final EventCodec codec;
+    private final double speedFactor;
+
+    public EventJournalReplayer(File journal, EventCodec codec) {
+        this(journal, codec, ORIGINAL_SPEED);
+    }
+
+    public EventJournalReplayer(File journal, EventCodec codec, double speedFactor) {
+        Preconditions.checkNotNull(journal, "Journal file can not be null.");
+        Preconditions.checkNotNull(codec, "Codec can not be null.");
+        Preconditions.checkArgument(speedFactor > 0, "Speed factor must be positive.");
+        this.journal = journal;
+        this.codec = codec;
+        this.speedFactor = speedFactor;
+    }
+
+    /**
+     * Publishes all events of the journal to the passed event bus, this blocks till the entire journal is replayed.
+     *
+     * @param eventBus Event bus to publish to.
+     *
+     * @return Number of events published.
+     *
+     * @throws IOException If the journal could not be read.
+     * @throws InterruptedException If the thread is interrupted while waiting for the next event's turn.
+     */
+    public long replay(EventBus eventBus) throws IOException, InterruptedException {
+        EventJournalReader reader = new EventJournalReader(journal, codec);
+        long published = 0;
+        long replayStart = System.nanoTime();
+        try {
+            while (reader.next()) {
+                if (speedFactor != FLAT_OUT) {
+                    waitTillDue(replayStart + (long) (reader.getTimestampNanos() / speedFactor));
+                }
+                eventBus.publish(reader.getEvent());
+                published++;
+            }
+        } finally {
+            reader.close();
+        }
+        LOGGER.info(String.format("Replayed %s events from journal: %s in %s milliseconds.", published, journal,
+                                  (System.nanoTime() - replayStart) / 1000000));
+        return published;
+    }
+
+    private static void waitTillDue(long dueNanos) throws InterruptedException {
+        long waitNanos;
+        while ((waitNanos = dueNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(waitNanos);
+            if (Thread.interrupted()) {
+                throw new InterruptedException("Interrupted while replaying events.");
+            }
+        }
+    }
+}
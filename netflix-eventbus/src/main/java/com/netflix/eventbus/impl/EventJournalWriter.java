@@ -0,0 +1,181 @@
+package com.netflix.eventbus.impl;
+
+import com.google.common.base.Preconditions;
+import com.netflix.eventbus.spi.EventCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Captures events published to an {@link EventBusImpl} into a journal file, which can later be replayed using
+ * {@link EventJournalReplayer}. A capture is started by {@link EventBusImpl#startJournalCapture(EventJournalWriter)}
+ * and every event published thereafter, before applying any publisher level filters, is appended to this journal. <p/>
+ *
+ * The journal is a sequence of records, each of the form:
+ * <pre>
+ [int record size][long nanos since capture start][encoded event]
+ * </pre>
+ * where the record size includes the 12 byte header. A record size of 0 marks the end of the journal. Events are
+ * encoded directly into memory-mapped regions of the file using the passed {@link EventCodec}. When a record does
+ * not fit in the current region, the next region is mapped starting exactly at the end of the last record, so a
+ * record never spans regions and there are no gaps in the file. <p/>
+ *
+ * Any event that can not be journaled, i.e. the journal has reached its maximum size, the event is larger than a
+ * region or the codec fails, is dropped and counted in {@link #getDroppedCount()}. A capture never fails a publish. <p/>
+ *
+ * This class is thread-safe.
+ */
+public class EventJournalWriter implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventJournalWriter.class);
+
+    public static final int DEFAULT_REGION_SIZE_BYTES = 64 * 1024 * 1024;
+    public static final long DEFAULT_MAX_JOURNAL_BYTES = 4L * 1024 * 1024 * 1024;
+
+    static final int RECORD_HEADER_BYTES = 12;
+
+    private final File file;
+    private final EventCodec codec;
+    private final int regionSize;
+    private final long maxJournalBytes;
+    private final RandomAccessFile raf;
+    private final long startNanos;
+
+    private final AtomicLong eventCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    // All below are guarded by this.
+    private MappedByteBuffer region;
+    private long regionStart; // File offset of the current region.
+    private long writePosition; // File offset where the next record goes.
+    private boolean closed;
+
+    public EventJournalWriter(File file, EventCodec codec) throws IOException {
+        this(file, codec, DEFAULT_REGION_SIZE_BYTES, DEFAULT_MAX_JOURNAL_BYTES);
+    }
+
+    public EventJournalWriter(File file, EventCodec codec, int regionSize, long maxJournalBytes) throws IOException {
+        Preconditions.checkNotNull(file, "Journal file can not be null.");
+        Preconditions.checkNotNull(codec, "Codec can not be null.");
+        Preconditions.checkArgument(regionSize > RECORD_HEADER_BYTES, "Region size must be more than %s bytes.",
+                                    RECORD_HEADER_BYTES);
+        Preconditions.checkArgument(maxJournalBytes >= regionSize, "Max journal size must be atleast one region.");
+        this.file = file;
+        this.codec = codec;
+        this.regionSize = regionSize;
+        this.maxJournalBytes = maxJournalBytes;
+        raf = new RandomAccessFile(file, "rw");
+        raf.setLength(0);
+        mapRegion(0);
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Appends the passed event to this journal, timestamped with the current time.
+     *
+     * @param event Event to append.
+     *
+     * @return <code>true</code> if the event was appended, <code>false</code> if it was dropped.
+     */
+    public boolean append(Object event) {
+        return append(System.nanoTime() - startNanos, event);
+    }
+
+    synchronized boolean append(long nanosSinceStart, Object event) {
+        if (closed) {
+            droppedCount.incrementAndGet();
+            return false;
+        }
+        try {
+            if (!tryWrite(nanosSinceStart, event)) {
+                if (writePosition == regionStart || !mapRegion(writePosition) || !tryWrite(nanosSinceStart, event)) {
+                    droppedCount.incrementAndGet();
+                    return false;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to map the next region of event journal: " + file, e);
+            droppedCount.incrementAndGet();
+            return false;
+        } catch (RuntimeException e) {
+            LOGGER.error(String.format("Failed to encode event: %s into journal: %s", event, file), e);
+            droppedCount.incrementAndGet();
+            return false;
+        }
+        eventCount.incrementAndGet();
+        return true;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getEventCount() {
+        return eventCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Closes this journal and truncates the file to the last record. Any append after close is dropped.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        region.force();
+        region = null;
+        try {
+            raf.setLength(writePosition);
+        } catch (IOException e) {
+            // Some platforms do not allow truncating a mapped file, the end marker makes the extra bytes harmless.
+            LOGGER.info("Could not truncate event journal: " + file, e);
+        } finally {
+            raf.close();
+        }
+        LOGGER.info(String.format("Closed event journal: %s with %s events, dropped %s events.", file,
+                                  eventCount.get(), droppedCount.get()));
+    }
+
+    private boolean tryWrite(long nanosSinceStart, Object event) {
+        int offset = (int) (writePosition - regionStart);
+        if (region.capacity() - offset < RECORD_HEADER_BYTES) {
+            return false;
+        }
+        region.limit(region.capacity());
+        region.position(offset + RECORD_HEADER_BYTES);
+        try {
+            codec.encode(event, region);
+        } catch (BufferOverflowException e) {
+            return false;
+        }
+        int recordSize = region.position() - offset;
+        region.putLong(offset + 4, nanosSinceStart);
+        region.putInt(offset, recordSize); // Written last so that a partially written record reads as the end.
+        writePosition += recordSize;
+        return true;
+    }
+
+    private boolean mapRegion(long start) throws IOException {
+        long size = Math.min(regionSize, maxJournalBytes - start);
+        if (size <= RECORD_HEADER_BYTES) {
+            LOGGER.debug(String.format("Event journal: %s reached its max size: %s", file, maxJournalBytes));
+            return false;
+        }
+        region = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, start, size);
+        regionStart = start;
+        return true;
+    }
+}
@@ -0,0 +1,220 @@
+package com.netflix.eventbus.impl;
+
+import com.google.common.base.Preconditions;
+import com.netflix.servo.DefaultMonitorRegistry;
+import com.netflix.servo.monitor.BasicCounter;
+import com.netflix.servo.monitor.Counter;
+import com.netflix.servo.monitor.MonitorConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A tap on all events published to an {@link EventBusImpl}, used to debug a live event bus. The tap replaces the
+ * dedicated consumer of {@link com.netflix.eventbus.spi.CatchAllSubscriber} and runs inline on the publishing thread,
+ * so when it is neither recording nor attached to a sink, the cost to a publish is a single volatile read. <p/>
+ *
+ * The tap provides:
+ * <ul>
+ <li>Sampling: Every event is sampled with the rate of its type, see {@link #setSampleRate(Class, double)}, else the
+ default rate, see {@link #setDefaultSampleRate(double)}. Only sampled events reach the ring and the sink.</li>
+ <li>Ring: A fixed size, lock-free ring of the most recent sampled events, started by {@link #startRecording()}. The
+ ring can be read at any time using {@link #snapshot()}.</li>
+ <li>Sink: A {@link BlockingQueue} attached via {@link EventBusImpl#enableCatchAllSubscriber(BlockingQueue)}, which is
+ offered every sampled event. An event that is not accepted by the sink is dropped and counted, it is never
+ logged.</li>
+ </ul>
+ *
+ * The counts of sampled events (eventbus_tap_sampled) and of events dropped by the sink (eventbus_tap_sink_dropped) are
+ * registered to servo, tagged with the id of the event bus (busId), till the event bus is shutdown.
+ */
+public class EventTap {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventTap.class);
+
+    public static final int DEFAULT_RING_SIZE = 1024;
+
+    private final AtomicReferenceArray<Object> ring;
+    private final int ringMask;
+    private final AtomicLong ringSequence = new AtomicLong();
+
+    private final ConcurrentHashMap<Class<?>, Double> sampleRatesByType = new ConcurrentHashMap<Class<?>, Double>();
+    private volatile double defaultSampleRate = 1.0;
+
+    private final AtomicReference<BlockingQueue> sink = new AtomicReference<BlockingQueue>();
+    private volatile boolean recording;
+
+    /**
+     * Only updated when the tap is started or stopped, so that a publish only needs to read this.
+     */
+    private volatile boolean active;
+
+    final Counter sampledEvents;
+    final Counter sinkDroppedEvents;
+
+    EventTap(int ringSize, String busId) {
+        Preconditions.checkArgument(ringSize > 0, "Ring size must be positive.");
+        int capacity = Integer.highestOneBit(ringSize);
+        if (capacity < ringSize) {
+            capacity <<= 1;
+        }
+        ring = new AtomicReferenceArray<Object>(capacity);
+        ringMask = capacity - 1;
+
+        sampledEvents = new BasicCounter(MonitorConfig.builder("eventbus_tap_sampled").withTag("busId", busId).build());
+        sinkDroppedEvents = new BasicCounter(MonitorConfig.builder("eventbus_tap_sink_dropped").withTag("busId", busId)
+                                                          .build());
+        try {
+            DefaultMonitorRegistry.getInstance().register(sampledEvents);
+            DefaultMonitorRegistry.getInstance().register(sinkDroppedEvents);
+        } catch (Throwable th) {
+            LOGGER.error("Unable to register event bus tap stats to servo.", th);
+        }
+    }
+
+    /**
+     * Unregisters the stats of this tap from servo, called when the event bus is shutdown.
+     */
+    void shutdown() {
+        try {
+            DefaultMonitorRegistry.getInstance().unregister(sampledEvents);
+            DefaultMonitorRegistry.getInstance().unregister(sinkDroppedEvents);
+        } catch (Throwable th) {
+            LOGGER.error("Unable to unregister event bus tap stats from servo.", th);
+        }
+    }
+
+    /**
+     * Sets the sample rate for all event types that do not have a specific rate set. Defaults to 1.0 i.e. every event.
+     *
+     * @param sampleRate A rate between 0.0 (no event) and 1.0 (every event).
+     */
+    public void setDefaultSampleRate(double sampleRate) {
+        defaultSampleRate = checkRate(sampleRate);
+    }
+
+    /**
+     * Sets the sample rate for events of exactly the passed type.
+     *
+     * @param eventType Event type.
+     * @param sampleRate A rate between 0.0 (no event) and 1.0 (every event).
+     */
+    public void setSampleRate(Class<?> eventType, double sampleRate) {
+        Preconditions.checkNotNull(eventType, "Event type can not be null.");
+        sampleRatesByType.put(eventType, checkRate(sampleRate));
+    }
+
+    public void clearSampleRate(Class<?> eventType) {
+        sampleRatesByType.remove(eventType);
+    }
+
+    public synchronized void startRecording() {
+        recording = true;
+        updateActive();
+    }
+
+    public synchronized void stopRecording() {
+        recording = false;
+        updateActive();
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * Returns the events currently in the ring, oldest first. The snapshot is taken without stopping the publishers,
+     * so events published during the snapshot may or may not be in it.
+     *
+     * @return An immutable snapshot of the ring.
+     */
+    public List<Object> snapshot() {
+        long end = ringSequence.get();
+        long start = Math.max(0, end - ring.length());
+        List<Object> events = new ArrayList<Object>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            Object event = ring.get((int) (sequence & ringMask));
+            if (null != event) {
+                events.add(event);
+            }
+        }
+        return Collections.unmodifiableList(events);
+    }
+
+    /**
+     * Empties the ring.
+     */
+    public void clearRing() {
+        for (int i = 0; i < ring.length(); i++) {
+            ring.set(i, null);
+        }
+    }
+
+    public long getSinkDroppedCount() {
+        return sinkDroppedEvents.getValue().longValue();
+    }
+
+    boolean isActive() {
+        return active;
+    }
+
+    synchronized boolean attachSink(BlockingQueue sink) {
+        boolean attached = this.sink.compareAndSet(null, sink);
+        updateActive();
+        return attached;
+    }
+
+    synchronized boolean detachSink() {
+        boolean detached = null != sink.getAndSet(null);
+        updateActive();
+        return detached;
+    }
+
+    boolean isSinkAttached() {
+        return null != sink.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    void onPublish(Object event) {
+        if (!sample(event)) {
+            return;
+        }
+        sampledEvents.increment();
+        if (recording) {
+            ring.lazySet((int) (ringSequence.getAndIncrement() & ringMask), event);
+        }
+        BlockingQueue sinkNow = sink.get();
+        if (null != sinkNow && !sinkNow.offer(event)) {
+            sinkDroppedEvents.increment();
+        }
+    }
+
+    private boolean sample(Object event) {
+        double rate = defaultSampleRate;
+        if (!sampleRatesByType.isEmpty()) {
+            Double rateForType = sampleRatesByType.get(event.getClass());
+            if (null != rateForType) {
+                rate = rateForType;
+            }
+        }
+        return rate >= 1.0 || (rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    private void updateActive() {
+        active = recording || null != sink.get();
+    }
+
+    private static double checkRate(double sampleRate) {
+        Preconditions.checkArgument(sampleRate >= 0.0 && sampleRate <= 1.0, "Sample rate must be between 0.0 and 1.0");
+        return sampleRate;
+    }
+}
@@ -0,0 +1,150 @@
+package com.netflix.eventbus.impl;
+
+import com.netflix.servo.DefaultMonitorRegistry;
+import com.netflix.servo.monitor.BasicCounter;
+import com.netflix.servo.monitor.Counter;
+import com.netflix.servo.monitor.MonitorConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Publish statistics of an {@link EventBusImpl} per event class, i.e. the class of the published event object and not
+ * the types in its hierarchy. For every class the following counters are registered to servo, and hence also exposed
+ * over JMX, tagged with the event class name:
+ * <ul>
+ <li>eventbus_event_published: Events published.</li>
+ <li>eventbus_event_filtered: Events rejected by the event level filters.</li>
+ <li>eventbus_event_fanout: Consumers the events were dispatched to.</li>
+ <li>eventbus_event_rejected: Events rejected by the consumer queues.</li>
+ </ul>
+ *
+ * The counters are held in a lock-free table. To protect servo from an unbounded number of event classes, eg: events
+ * generated as anonymous classes, only the first N classes get their own counters, all other classes are counted
+ * under the event class name {@link #OTHER_TYPES}. N is defined by the property
+ * {@link EventBusImpl#EVENT_TYPE_STATS_MAX_TYPES_PROP_NAME}, 0 counts all events under {@link #OTHER_TYPES}.
+ */
+class EventTypeStats {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventTypeStats.class);
+
+    static final String OTHER_TYPES = "other";
+
+    private final int maxTypes;
+    private final ConcurrentHashMap<Class<?>, TypeCounters> countersByType =
+            new ConcurrentHashMap<Class<?>, TypeCounters>();
+    private final TypeCounters otherTypes;
+
+    EventTypeStats(int maxTypes) {
+        this.maxTypes = maxTypes;
+        otherTypes = new TypeCounters(OTHER_TYPES);
+    }
+
+    /**
+     * Returns the counters for the passed event class, which are the counters for {@link #OTHER_TYPES} if the maximum
+     * number of classes are already tracked.
+     */
+    TypeCounters getCounters(Class<?> eventClass) {
+        TypeCounters counters = countersByType.get(eventClass);
+        if (null != counters) {
+            return counters;
+        }
+        if (countersByType.size() >= maxTypes) {
+            return otherTypes;
+        }
+        synchronized (this) { // Creation is rare, this avoids registering duplicate monitors for the same class.
+            counters = countersByType.get(eventClass);
+            if (null == counters) {
+                if (countersByType.size() >= maxTypes) {
+                    return otherTypes;
+                }
+                counters = new TypeCounters(eventClass.getName());
+                countersByType.put(eventClass, counters);
+            }
+            return counters;
+        }
+    }
+
+    /**
+     * Returns the counters of all tracked classes along with {@link #OTHER_TYPES}.
+     */
+    List<TypeCounters> getAllCounters() {
+        List<TypeCounters> all = new ArrayList<TypeCounters>(countersByType.values());
+        all.add(otherTypes);
+        return all;
+    }
+
+    synchronized void shutdown() {
+        for (TypeCounters counters : getAllCounters()) {
+            counters.unregister();
+        }
+        countersByType.clear();
+    }
+
+    static class TypeCounters {
+
+        private final String eventType;
+        final Counter published;
+        final Counter filtered;
+        final Counter fanOut;
+        final Counter rejected;
+
+        private TypeCounters(String eventType) {
+            this.eventType = eventType;
+            published = newCounter("eventbus_event_published", eventType);
+            filtered = newCounter("eventbus_event_filtered", eventType);
+            fanOut = newCounter("eventbus_event_fanout", eventType);
+            rejected = newCounter("eventbus_event_rejected", eventType);
+            try {
+                DefaultMonitorRegistry.getInstance().register(published);
+                DefaultMonitorRegistry.getInstance().register(filtered);
+                DefaultMonitorRegistry.getInstance().register(fanOut);
+                DefaultMonitorRegistry.getInstance().register(rejected);
+            } catch (Throwable th) {
+                LOGGER.error("Unable to register event type stats for " + eventType + " to servo.", th);
+            }
+        }
+
+        void onDispatched(long consumers, long rejectedByConsumers) {
+            if (consumers > 0) {
+                fanOut.increment(consumers);
+            }
+            if (rejectedByConsumers > 0) {
+                rejected.increment(rejectedByConsumers);
+            }
+        }
+
+        /**
+         * Adds the passed counts of published events, all of which were either filtered out or dispatched.
+         */
+        void onPublished(long events, long filteredEvents, long consumers, long rejectedByConsumers) {
+            published.increment(events);
+            if (filteredEvents > 0) {
+                filtered.increment(filteredEvents);
+            }
+            onDispatched(consumers, rejectedByConsumers);
+        }
+
+        String getEventType() {
+            return eventType;
+        }
+
+        private void unregister() {
+            try {
+                DefaultMonitorRegistry.getInstance().unregister(published);
+                DefaultMonitorRegistry.getInstance().unregister(filtered);
+                DefaultMonitorRegistry.getInstance().unregister(fanOut);
+                DefaultMonitorRegistry.getInstance().unregister(rejected);
+            } catch (Throwable th) {
+                LOGGER.error("Unable to unregister event type stats for " + eventType + " from servo.", th);
+            }
+        }
+
+        private static Counter newCounter(String name, String eventType) {
+            return new BasicCounter(MonitorConfig.builder(name).withTag("eventType", eventType).build());
+        }
+    }
+}
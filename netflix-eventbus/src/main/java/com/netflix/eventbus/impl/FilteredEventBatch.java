@@ -0,0 +1,70 @@
+package com.netflix.eventbus.impl;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * An immutable, random access {@link EventBatch} as delivered to a batching subscriber. The events are copied from the
+ * batch taken from the queue, dropping the events rejected by the subscriber's filters, in a single pass on the
+ * consumer thread. So, the subscriber gets only consumable events and knows the size of the batch upfront. <p/>
+ *
+ * A subscriber can cast the received {@link Iterable} to {@link java.util.List} or {@link EventBatch}.
+ */
+class FilteredEventBatch extends AbstractList implements EventBatch, RandomAccess {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Object[] events;
+    private final int size;
+
+    private FilteredEventBatch(Object[] events, int size) {
+        this.events = events;
+        this.size = size;
+    }
+
+    /**
+     * Copies the events of the passed batch that are accepted by the passed filter.
+     *
+     * @param batch Batch to copy.
+     * @param filter Filter to apply on every event.
+     *
+     * @return The filtered batch, which may be empty.
+     */
+    static FilteredEventBatch filter(EventBatch batch, BatchedEventFilter filter) {
+        int sizeHint = batch.size();
+        Object[] accepted = new Object[sizeHint > 0 ? sizeHint : INITIAL_CAPACITY];
+        int acceptedCount = 0;
+        for (Object event : batch) {
+            if (!filter.accept(event)) {
+                continue;
+            }
+            if (acceptedCount == accepted.length) {
+                accepted = Arrays.copyOf(accepted, accepted.length << 1); // Events added after the size was read.
+            }
+            accepted[acceptedCount++] = event;
+        }
+        return new FilteredEventBatch(accepted, acceptedCount);
+    }
+
+    @Override
+    public Object get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return events[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * A filter for the events of a batch.
+     */
+    interface BatchedEventFilter {
+
+        boolean accept(Object event);
+    }
+}
@@ -0,0 +1,293 @@
+package com.netflix.eventbus.impl;
+
+import com.netflix.eventbus.spi.Subscribe;
+import com.netflix.eventbus.spi.SubscriberConfigProvider;
+import com.netflix.eventbus.utils.EventBusUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link EventBusImpl.ConsumerQueueSupplier} that splits the queue of a consumer into one queue per dispatch lane,
+ * see {@link DispatchLanes}, so that publishers on different lanes do not contend on the same queue. Each lane queue is
+ * created by the delegate supplier and holds an equal share of the configured queue size. <p/>
+ *
+ * <b>The configured queue size is split, not shared, amongst the lanes</b>: a lane rejects events once it holds
+ * <code>ceil(queueSize / laneCount)</code> events, even if the other lanes are empty. So, a consumer fed by a single
+ * publishing thread, or by a single hot key, can only use its share of the queue. To not drop events much earlier than
+ * an unsplit queue would, a queue whose share per lane would be less than
+ * {@link EventBusImpl#DISPATCH_LANE_MIN_QUEUE_SIZE_PROP_NAME} (default
+ * {@link EventBusImpl#DISPATCH_LANE_MIN_QUEUE_SIZE_DEFAULT}) events, is not split. Size the queues of subscribers for the lanes,
+ * i.e. at least the lane count times the events a single lane must be able to hold. <p/>
+ *
+ * How the lanes are consumed is declared by the subscriber via {@link Subscribe#laneOrdering()}:
+ * <ul>
+ <li>{@link Subscribe.LaneOrdering#Merged}: The lanes are polled by the single consumer thread.</li>
+ <li>{@link Subscribe.LaneOrdering#PerLane}: Each lane is polled by its own consumer thread, see
+ {@link EventConsumer}. So, such a subscriber has as many consumer threads as the bus has lanes, unless its queue is
+ not split.</li>
+ </ul>
+ *
+ * Consumers with a batching strategy other than {@link Subscribe.BatchingStrategy#None} are not split, as batching
+ * already amortizes the cost of a shared queue and splitting would only make the batches smaller.
+ */
+class LanedConsumerQueueSupplier implements EventBusImpl.ConsumerQueueSupplier {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LanedConsumerQueueSupplier.class);
+
+    private final EventBusImpl.ConsumerQueueSupplier delegate;
+    private final DispatchLanes lanes;
+
+    LanedConsumerQueueSupplier(EventBusImpl.ConsumerQueueSupplier delegate, DispatchLanes lanes) {
+        this.delegate = delegate;
+        this.lanes = lanes;
+    }
+
+    @Override
+    public ConsumerQueue get(Method subscriberMethod, SubscriberConfigProvider.SubscriberConfig subscriberConfig,
+                             AtomicLong queueSizeCounter) {
+        if (Subscribe.BatchingStrategy.None != subscriberConfig.getBatchingStrategy()) {
+            return delegate.get(subscriberMethod, subscriberConfig, queueSizeCounter);
+        }
+
+        int queueSize = EventBusUtils.getQueueSize(subscriberConfig);
+        int laneQueueSize = (queueSize + lanes.getLaneCount() - 1) / lanes.getLaneCount();
+        if (laneQueueSize < EventBusImpl.DISPATCH_LANE_MIN_QUEUE_SIZE.get()) {
+            LOGGER.info(String.format("Queue of subscriber: %s is not split into %s lanes as each lane would only hold %s of its %s events, less than the minimum: %s.",
+                                      subscriberMethod.toGenericString(), lanes.getLaneCount(), laneQueueSize,
+                                      queueSize, EventBusImpl.DISPATCH_LANE_MIN_QUEUE_SIZE.get()));
+            return delegate.get(subscriberMethod, subscriberConfig, queueSizeCounter);
+        }
+        SubscriberConfigProvider.SubscriberConfig laneConfig = new LaneSubscriberConfig(subscriberConfig,
+                                                                                        laneQueueSize);
+        ConsumerQueue[] laneQueues = new ConsumerQueue[lanes.getLaneCount()];
+        for (int i = 0; i < laneQueues.length; i++) {
+            laneQueues[i] = delegate.get(subscriberMethod, laneConfig, queueSizeCounter);
+        }
+
+        Subscribe subscribe = subscriberMethod.getAnnotation(Subscribe.class);
+        if (null != subscribe && Subscribe.LaneOrdering.PerLane == subscribe.laneOrdering()) {
+            return new PerLaneConsumerQueue(lanes, laneQueues, laneQueueSize);
+        }
+        return new MergedConsumerQueue(lanes, laneQueues, laneQueueSize);
+    }
+
+    /**
+     * A queue that merges all lanes for a single consumer thread. Events are offered to the lane of the publishing
+     * thread and taken from the lanes round-robin. <p/>
+     *
+     * The events in every lane are counted, so that a publisher can tell whether its lane is filling up, see
+     * {@link EventConsumer#isQueueSaturated(long)}, as the queue size counter of the consumer is shared by all lanes.
+     */
+    static class MergedConsumerQueue implements ConsumerQueue {
+
+        /**
+         * Distance between the counts of two lanes, so that each is on its own cache line.
+         */
+        private static final int LANE_SIZE_STRIDE = 16;
+
+        private final DispatchLanes lanes;
+        final ConsumerQueue[] laneQueues;
+        private final int laneCapacity;
+        private final AtomicIntegerArray laneSizes;
+
+        /**
+         * The consumer thread, if it is parked waiting for an event.
+         */
+        private volatile Thread waiter;
+
+        private int nextTakeLane; // Only accessed by the consumer thread.
+
+        MergedConsumerQueue(DispatchLanes lanes, ConsumerQueue[] laneQueues, int laneCapacity) {
+            this.lanes = lanes;
+            this.laneQueues = laneQueues;
+            this.laneCapacity = laneCapacity;
+            laneSizes = new AtomicIntegerArray(laneQueues.length * LANE_SIZE_STRIDE);
+        }
+
+        @Override
+        public boolean offer(Object event) {
+            int lane = lanes.currentLane();
+            if (!laneQueues[lane].offer(event)) {
+                return false;
+            }
+            laneSizes.incrementAndGet(lane * LANE_SIZE_STRIDE);
+            Thread waiting = waiter;
+            if (null != waiting) {
+                LockSupport.unpark(waiting);
+            }
+            return true;
+        }
+
+        /**
+         * Takes from the lane of the calling thread, this is used to make space when an offer from the calling thread
+         * fails.
+         */
+        @Override
+        public Object nonBlockingTake() {
+            return takeFromLane(lanes.currentLane());
+        }
+
+        @Override
+        public Object blockingTake() throws InterruptedException {
+            Object event;
+            while (null == (event = takeFromAnyLane())) {
+                waiter = Thread.currentThread();
+                try {
+                    // The offer writes the lane before reading the waiter, so an event offered before the waiter was
+                    // set is found by this re-check and one offered after, unparks.
+                    event = takeFromAnyLane();
+                    if (null != event) {
+                        return event;
+                    }
+                    LockSupport.park(this);
+                } finally {
+                    waiter = null;
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException("Interrupted while waiting for an event.");
+                }
+            }
+            return event;
+        }
+
+        @Override
+        public void clear() {
+            for (int lane = 0; lane < laneQueues.length; lane++) {
+                laneQueues[lane].clear();
+                laneSizes.set(lane * LANE_SIZE_STRIDE, 0);
+            }
+        }
+
+        /**
+         * Returns the count of events in the lane of the calling thread. A retired marker, see
+         * {@link ConsumerQueueGeneration}, is not offered via this queue, so the count of a retired lane may end below
+         * zero.
+         */
+        int getCurrentLaneSize() {
+            return laneSizes.get(lanes.currentLane() * LANE_SIZE_STRIDE);
+        }
+
+        int getLaneCapacity() {
+            return laneCapacity;
+        }
+
+        ConsumerQueue getCurrentLaneQueue() {
+            return laneQueues[lanes.currentLane()];
+        }
+
+        private Object takeFromAnyLane() {
+            for (int i = 0; i < laneQueues.length; i++) {
+                int lane = nextTakeLane;
+                nextTakeLane = (lane + 1) % laneQueues.length;
+                Object event = takeFromLane(lane);
+                if (null != event) {
+                    return event;
+                }
+            }
+            return null;
+        }
+
+        Object takeFromLane(int lane) {
+            return taken(lane, laneQueues[lane].nonBlockingTake());
+        }
+
+        Object taken(int lane, Object event) {
+            if (null != event) {
+                laneSizes.decrementAndGet(lane * LANE_SIZE_STRIDE);
+            }
+            return event;
+        }
+    }
+
+    /**
+     * A queue whose lanes are polled by a consumer thread each. {@link #blockingTake()} still merges the lanes, for
+     * callers that are not aware of the lanes.
+     */
+    static class PerLaneConsumerQueue extends MergedConsumerQueue {
+
+        PerLaneConsumerQueue(DispatchLanes lanes, ConsumerQueue[] laneQueues, int laneCapacity) {
+            super(lanes, laneQueues, laneCapacity);
+        }
+
+        /**
+         * Returns the queues to be polled by the consumer thread of each lane, which keep the count of the lane.
+         */
+        ConsumerQueue[] getLaneQueues() {
+            ConsumerQueue[] polled = new ConsumerQueue[laneQueues.length];
+            for (int i = 0; i < polled.length; i++) {
+                polled[i] = new PolledLane(i);
+            }
+            return polled;
+        }
+
+        private class PolledLane implements ConsumerQueue {
+
+            private final int lane;
+
+            private PolledLane(int lane) {
+                this.lane = lane;
+            }
+
+            @Override
+            public boolean offer(Object event) {
+                throw new UnsupportedOperationException("Events are offered to the lanes via the consumer queue.");
+            }
+
+            @Override
+            public Object nonBlockingTake() {
+                return takeFromLane(lane);
+            }
+
+            @Override
+            public Object blockingTake() throws InterruptedException {
+                return taken(lane, laneQueues[lane].blockingTake());
+            }
+
+            @Override
+            public void clear() {
+                laneQueues[lane].clear();
+            }
+        }
+    }
+
+    private static class LaneSubscriberConfig implements SubscriberConfigProvider.SubscriberConfig {
+
+        private final SubscriberConfigProvider.SubscriberConfig delegate;
+        private final int queueSize;
+
+        private LaneSubscriberConfig(SubscriberConfigProvider.SubscriberConfig delegate, int queueSize) {
+            this.delegate = delegate;
+            this.queueSize = queueSize;
+        }
+
+        @Override
+        public Subscribe.BatchingStrategy getBatchingStrategy() {
+            return delegate.getBatchingStrategy();
+        }
+
+        @Override
+        public int getBatchAge() {
+            return delegate.getBatchAge();
+        }
+
+        @Override
+        public int getBatchSize() {
+            return delegate.getBatchSize();
+        }
+
+        @Override
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        @Override
+        public boolean syncIfAllowed() {
+            return delegate.syncIfAllowed();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.netflix.eventbus.impl;
+
+import com.netflix.servo.DefaultMonitorRegistry;
+import com.netflix.servo.monitor.BasicCounter;
+import com.netflix.servo.monitor.BasicGauge;
+import com.netflix.servo.monitor.Counter;
+import com.netflix.servo.monitor.MonitorConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The state of a memory budget shared by all consumer queues of an {@link EventBusImpl}, see
+ * {@link MemoryBudgetConfig} for the semantics. Every queue holds an {@link Account} which is charged for the events it
+ * holds. <p/>
+ *
+ * The weight charged to the fair shares never exceeds the reserved part of the budget and the borrowed weight never
+ * exceeds the shared part, so the total weight held never exceeds the capacity. An account that holds more than its
+ * current fair share, as the fair share shrunk since, keeps it till it is released. <p/>
+ *
+ * The following are registered to servo, tagged with the id of the event bus (busId):
+ * <ul>
+ <li>eventbus_memory_budget_used: Total weight held by all the queues.</li>
+ <li>eventbus_memory_budget_borrowed: Weight borrowed from the shared part of the budget.</li>
+ <li>eventbus_memory_budget_fair_share: Current fair share of a queue.</li>
+ <li>eventbus_memory_budget_rejected: Offers rejected as the budget was exhausted.</li>
+ </ul>
+ */
+class MemoryBudget {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MemoryBudget.class);
+
+    private final MemoryBudgetConfig config;
+    private final long reservedCapacity;
+    private final long sharedCapacity;
+    private final AtomicInteger accountCount = new AtomicInteger();
+    private final AtomicLong used = new AtomicLong();
+    private final AtomicLong reservedUsed = new AtomicLong(); // Weight charged to the fair shares of all accounts.
+    private final AtomicLong borrowed = new AtomicLong();
+
+    private final BasicGauge<Long> usedGauge;
+    private final BasicGauge<Long> borrowedGauge;
+    private final BasicGauge<Long> fairShareGauge;
+    final Counter rejected;
+
+    MemoryBudget(MemoryBudgetConfig config, String busId) {
+        this.config = config;
+        reservedCapacity = (long) (config.getCapacity() * config.getReservedFraction());
+        sharedCapacity = config.getCapacity() - reservedCapacity;
+
+        usedGauge = new BasicGauge<Long>(MonitorConfig.builder("eventbus_memory_budget_used").withTag("busId", busId).build(), new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return getUsed();
+            }
+        });
+        borrowedGauge = new BasicGauge<Long>(MonitorConfig.builder("eventbus_memory_budget_borrowed").withTag("busId", busId).build(), new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return getBorrowed();
+            }
+        });
+        fairShareGauge = new BasicGauge<Long>(MonitorConfig.builder("eventbus_memory_budget_fair_share").withTag("busId", busId).build(), new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return getFairShare();
+            }
+        });
+        rejected = new BasicCounter(MonitorConfig.builder("eventbus_memory_budget_rejected").withTag("busId", busId).build());
+        try {
+            DefaultMonitorRegistry.getInstance().register(usedGauge);
+            DefaultMonitorRegistry.getInstance().register(borrowedGauge);
+            DefaultMonitorRegistry.getInstance().register(fairShareGauge);
+            DefaultMonitorRegistry.getInstance().register(rejected);
+        } catch (Throwable th) {
+            LOGGER.error("Unable to register memory budget stats to servo.", th);
+        }
+    }
+
+    MemoryBudgetConfig getConfig() {
+        return config;
+    }
+
+    Account newAccount() {
+        accountCount.incrementAndGet();
+        return new Account();
+    }
+
+    long getUsed() {
+        return used.get();
+    }
+
+    long getBorrowed() {
+        return borrowed.get();
+    }
+
+    long getFairShare() {
+        int accounts = accountCount.get();
+        return 0 == accounts ? reservedCapacity : reservedCapacity / accounts;
+    }
+
+    int getAccountCount() {
+        return accountCount.get();
+    }
+
+    long getRejectedCount() {
+        return rejected.getValue().longValue();
+    }
+
+    void shutdown() {
+        try {
+            DefaultMonitorRegistry.getInstance().unregister(usedGauge);
+            DefaultMonitorRegistry.getInstance().unregister(borrowedGauge);
+            DefaultMonitorRegistry.getInstance().unregister(fairShareGauge);
+            DefaultMonitorRegistry.getInstance().unregister(rejected);
+        } catch (Throwable th) {
+            LOGGER.error("Unable to unregister memory budget stats from servo.", th);
+        }
+    }
+
+    /**
+     * Charges at most the passed weight to the reserved part of the budget.
+     *
+     * @return The weight charged, less than the passed weight if the reserved part is exhausted.
+     */
+    private long reserve(long weight) {
+        while (true) {
+            long current = reservedUsed.get();
+            long reserved = Math.min(weight, Math.max(0, reservedCapacity - current));
+            if (0 == reserved || reservedUsed.compareAndSet(current, current + reserved)) {
+                return reserved;
+            }
+        }
+    }
+
+    private boolean tryBorrow(long weight) {
+        while (true) {
+            long current = borrowed.get();
+            if (current + weight > sharedCapacity) {
+                return false;
+            }
+            if (borrowed.compareAndSet(current, current + weight)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * The share of the budget used by a single queue. The weight held by a queue is first charged to its fair share
+     * and the rest is borrowed. On release, the borrowed weight is returned first.
+     */
+    class Account {
+
+        private long accountReserved; // Guarded by this.
+        private long accountBorrowed; // Guarded by this.
+        private boolean closed; // Guarded by this.
+
+        /**
+         * Charges the passed weight to this account.
+         *
+         * @return <code>false</code> if the weight is over the fair share of this account and can not be borrowed.
+         */
+        synchronized boolean acquire(long weight) {
+            if (closed) {
+                return true; // The queue is shutdown.
+            }
+            long fromReserved = reserve(Math.min(weight, Math.max(0, getFairShare() - accountReserved)));
+            long toBorrow = weight - fromReserved;
+            if (toBorrow > 0 && !tryBorrow(toBorrow)) {
+                reservedUsed.addAndGet(-fromReserved);
+                rejected.increment();
+                return false;
+            }
+            accountReserved += fromReserved;
+            accountBorrowed += toBorrow;
+            used.addAndGet(weight);
+            return true;
+        }
+
+        synchronized void release(long weight) {
+            if (closed) {
+                return;
+            }
+            long fromBorrowed = Math.min(weight, accountBorrowed);
+            long fromReserved = Math.min(weight - fromBorrowed, accountReserved);
+            accountBorrowed -= fromBorrowed;
+            accountReserved -= fromReserved;
+            borrowed.addAndGet(-fromBorrowed);
+            reservedUsed.addAndGet(-fromReserved);
+            used.addAndGet(-(fromBorrowed + fromReserved));
+        }
+
+        /**
+         * Releases all the weight held by this account and removes it from the budget.
+         */
+        synchronized void close() {
+            if (closed) {
+                return;
+            }
+            release(accountBorrowed + accountReserved);
+            closed = true;
+            accountCount.decrementAndGet();
+        }
+
+        synchronized long getUsed() {
+            return accountReserved + accountBorrowed;
+        }
+
+        /**
+         * @return <code>true</code> if this account holds at least three quarters of the weight it can hold, i.e. its
+         * fair share and whatever it can still borrow.
+         */
+        synchronized boolean isSaturated() {
+            if (closed) {
+                return false;
+            }
+            long available = Math.min(Math.max(0, getFairShare() - accountReserved),
+                                      Math.max(0, reservedCapacity - reservedUsed.get()))
+                             + Math.max(0, sharedCapacity - borrowed.get());
+            long held = accountReserved + accountBorrowed;
+            return held * 4 >= (held + available) * 3;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.netflix.eventbus.impl;
+
+import com.google.common.base.Preconditions;
+import com.netflix.eventbus.spi.EventWeigher;
+
+/**
+ * Configuration for a memory budget shared by all consumer queues of an {@link EventBusImpl}. <p/>
+ *
+ * Every consumer queue is bounded on its own by its queue size, which does not bound the memory held by all the queues
+ * of a bus together. A budget caps the total weight of the events held by all the queues, as estimated by the
+ * configured {@link EventWeigher}, which by default weighs every event as 1, i.e. the budget is a count of events. <p/>
+ *
+ * The budget is split into two parts:
+ * <ul>
+ <li>Reserved: Split equally between all the queues, this is a fair share that a queue can always use, irrespective of
+ how much the other queues hold.</li>
+ <li>Shared: Borrowed by the queues that need more than their fair share. When other queues are idle, a busy queue can
+ borrow all of it.</li>
+ </ul>
+ * The reserved part is defined as a fraction of the budget. An offer to a queue, which is over its fair share, fails
+ * when there is nothing left to borrow and the usual rejection as described in {@link com.netflix.eventbus.spi.EventBus}
+ * kicks in, or, the event is spilled if an {@link OverflowSpillConfig} is used. <p/>
+ *
+ * The fair share is recomputed as queues are created and removed, so, a queue that was created later may find some of
+ * its share used by the existing queues till they drain. <p/>
+ *
+ * When dispatch lanes are used, the queue of every lane is budgeted as a separate queue.
+ */
+public class MemoryBudgetConfig {
+
+    public static final double DEFAULT_RESERVED_FRACTION = 0.5;
+
+    /**
+     * Weighs every event as 1.
+     */
+    public static final EventWeigher COUNTING_WEIGHER = new EventWeigher() {
+        @Override
+        public long weigh(Object event) {
+            return 1;
+        }
+    };
+
+    private final long capacity;
+    private final double reservedFraction;
+    private final EventWeigher weigher;
+
+    private MemoryBudgetConfig(Builder builder) {
+        capacity = builder.capacity;
+        reservedFraction = builder.reservedFraction;
+        weigher = builder.weigher;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public double getReservedFraction() {
+        return reservedFraction;
+    }
+
+    public EventWeigher getWeigher() {
+        return weigher;
+    }
+
+    public static class Builder {
+
+        private long capacity;
+        private double reservedFraction = DEFAULT_RESERVED_FRACTION;
+        private EventWeigher weigher = COUNTING_WEIGHER;
+
+        /**
+         * Total weight of all the events held by all the consumer queues.
+         */
+        public Builder withCapacity(long capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * Fraction of the capacity that is reserved as fair shares of the queues. Defaults to
+         * {@link #DEFAULT_RESERVED_FRACTION}
+         */
+        public Builder withReservedFraction(double reservedFraction) {
+            this.reservedFraction = reservedFraction;
+            return this;
+        }
+
+        /**
+         * Weigher for the events. Defaults to {@link #COUNTING_WEIGHER}
+         */
+        public Builder withWeigher(EventWeigher weigher) {
+            this.weigher = weigher;
+            return this;
+        }
+
+        public MemoryBudgetConfig build() {
+            Preconditions.checkArgument(capacity > 0, "Capacity must be positive.");
+            Preconditions.checkArgument(reservedFraction >= 0 && reservedFraction <= 1,
+                                        "Reserved fraction must be between 0 and 1.");
+            Preconditions.checkNotNull(weigher, "Must specify a weigher.");
+            return new MemoryBudgetConfig(this);
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.netflix.eventbus.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.netflix.eventbus.spi.EventCodec;
+import com.netflix.servo.DefaultMonitorRegistry;
+import com.netflix.servo.monitor.BasicCounter;
+import com.netflix.servo.monitor.BasicGauge;
+import com.netflix.servo.monitor.Counter;
+import com.netflix.servo.monitor.MonitorConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A FIFO log of events, spilled by a single consumer queue, backed by memory-mapped segment files. See
+ * {@link OverflowSpillConfig} for details. <p/>
+ *
+ * Every record in a segment is the length of the encoded event as an int followed by the encoded event. The segments
+ * are held in a deque where the head is the segment being read and the tail is the segment being written. A segment
+ * which is completely read is recycled, i.e. it is reset and used for writing again without creating a new file. <p/>
+ *
+ * This class is <b>not</b> thread-safe, all calls must be guarded by the owner.
+ */
+class OverflowSpill {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OverflowSpill.class);
+
+    private static final int RECORD_HEADER_BYTES = 4;
+
+    /**
+     * Number of completely read segments that are retained for recycling, the rest are deleted so that a consumer does
+     * not hold on to the disk space of its largest burst forever.
+     */
+    private static final int MAX_SPARE_SEGMENTS = 1;
+
+    /**
+     * Tags the stats of every spill, so that the spills of consumers with the same name do not collide in servo.
+     */
+    private static final AtomicInteger spillIdCounter = new AtomicInteger();
+
+    private final String name;
+    private final EventCodec codec;
+    private final File spillDirectory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final long maxTotalBytes;
+    private final AtomicLong totalBytesOnDisk; // Shared amongst all spills of an event bus.
+
+    private final ArrayDeque<Segment> activeSegments = new ArrayDeque<Segment>();
+    private final ArrayDeque<Segment> spareSegments = new ArrayDeque<Segment>();
+    private final AtomicLong pendingEvents = new AtomicLong();
+
+    final Counter spilledEvents;
+    final Counter spilledBytes;
+    final Counter spillRejected;
+    final BasicGauge<Long> pendingEventsGauge;
+    private boolean statsRegistered;
+
+    OverflowSpill(String name, OverflowSpillConfig config, AtomicLong totalBytesOnDisk) {
+        this.name = name;
+        this.totalBytesOnDisk = totalBytesOnDisk;
+        codec = config.getCodec();
+        spillDirectory = config.getSpillDirectory();
+        segmentSize = config.getSegmentSizeBytes();
+        maxSegments = config.getMaxSegmentsPerConsumer();
+        maxTotalBytes = config.getMaxTotalBytes();
+
+        String statsPrefix = "eventbus_consumer_" + name + "_spill";
+        String spillId = String.valueOf(spillIdCounter.incrementAndGet());
+        spilledEvents = new BasicCounter(MonitorConfig.builder(statsPrefix + "_events").withTag("spillId", spillId).build());
+        spilledBytes = new BasicCounter(MonitorConfig.builder(statsPrefix + "_bytes").withTag("spillId", spillId).build());
+        spillRejected = new BasicCounter(MonitorConfig.builder(statsPrefix + "_reject").withTag("spillId", spillId).build());
+        pendingEventsGauge = new BasicGauge<Long>(MonitorConfig.builder(statsPrefix + "_pending").withTag("spillId", spillId).build(),
+                                                  new Callable<Long>() {
+                                                      @Override
+                                                      public Long call() throws Exception {
+                                                          return pendingEvents.get();
+                                                      }
+                                                  });
+        try {
+            DefaultMonitorRegistry.getInstance().register(spilledEvents);
+            DefaultMonitorRegistry.getInstance().register(spilledBytes);
+            DefaultMonitorRegistry.getInstance().register(spillRejected);
+            DefaultMonitorRegistry.getInstance().register(pendingEventsGauge);
+            statsRegistered = true;
+        } catch (Throwable th) {
+            LOGGER.error("Unable to register event bus spill stats to servo.", th);
+        }
+    }
+
+    /**
+     * Appends the passed event to this spill.
+     *
+     * @param event Event to append.
+     *
+     * @return <code>true</code> if the event was appended, <code>false</code> if the disk caps are reached or the event
+     * could not be encoded.
+     */
+    boolean append(Object event) {
+        try {
+            Segment segment = activeSegments.peekLast();
+            if (null == segment || !segment.write(event)) {
+                segment = nextWritableSegment();
+                if (null == segment) {
+                    spillRejected.increment();
+                    return false;
+                }
+                if (!segment.write(event)) {
+                    // An event that does not fit in an empty segment is never going to be spilled.
+                    LOGGER.error(String.format("Event: %s is larger than the spill segment size: %s for consumer: %s. Rejecting the event.",
+                                               event, segmentSize, name));
+                    spillRejected.increment();
+                    return false;
+                }
+            }
+        } catch (RuntimeException e) {
+            // Not retried in another segment as the event would fail to encode there as well.
+            LOGGER.error(String.format("Failed to encode event: %s for the spill of consumer: %s. Rejecting the event.",
+                                       event, name), e);
+            spillRejected.increment();
+            return false;
+        }
+        pendingEvents.incrementAndGet();
+        spilledEvents.increment();
+        return true;
+    }
+
+    /**
+     * Removes and returns the oldest event in this spill.
+     *
+     * @return The oldest event, <code>null</code> if the spill is empty.
+     */
+    Object poll() {
+        while (true) {
+            Segment head = activeSegments.peekFirst();
+            if (null == head) {
+                return null;
+            }
+            if (head.hasUnread()) {
+                pendingEvents.decrementAndGet();
+                try {
+                    return head.read();
+                } catch (RuntimeException e) {
+                    LOGGER.error(String.format("Failed to decode a spilled event for consumer: %s. Ignoring the event.",
+                                               name), e);
+                    continue;
+                }
+            }
+            if (activeSegments.size() == 1) {
+                head.reset(); // Only segment and fully read, start over from the beginning.
+                return null;
+            }
+            recycle(activeSegments.pollFirst());
+        }
+    }
+
+    boolean isEmpty() {
+        return pendingEvents.get() == 0;
+    }
+
+    /**
+     * Discards all events, deletes all the segment files and unregisters the stats of this spill.
+     */
+    void clear() {
+        if (statsRegistered) {
+            statsRegistered = false;
+            try {
+                DefaultMonitorRegistry.getInstance().unregister(spilledEvents);
+                DefaultMonitorRegistry.getInstance().unregister(spilledBytes);
+                DefaultMonitorRegistry.getInstance().unregister(spillRejected);
+                DefaultMonitorRegistry.getInstance().unregister(pendingEventsGauge);
+            } catch (Throwable th) {
+                LOGGER.error("Unable to unregister event bus spill stats from servo.", th);
+            }
+        }
+        for (Segment segment : activeSegments) {
+            segment.release();
+        }
+        for (Segment segment : spareSegments) {
+            segment.release();
+        }
+        activeSegments.clear();
+        spareSegments.clear();
+        pendingEvents.set(0);
+    }
+
+    @VisibleForTesting
+    int getSegmentCount() {
+        return activeSegments.size() + spareSegments.size();
+    }
+
+    @VisibleForTesting
+    long getPendingEvents() {
+        return pendingEvents.get();
+    }
+
+    private Segment nextWritableSegment() {
+        if (activeSegments.size() >= maxSegments) {
+            LOGGER.debug(String.format("Spill for consumer: %s reached the max segments: %s.", name, maxSegments));
+            return null;
+        }
+        Segment segment = spareSegments.pollFirst();
+        if (null == segment) {
+            if (totalBytesOnDisk.addAndGet(segmentSize) > maxTotalBytes) {
+                totalBytesOnDisk.addAndGet(-segmentSize);
+                LOGGER.debug(String.format("Spill for consumer: %s can not allocate a segment, total spill size reached: %s.",
+                                           name, maxTotalBytes));
+                return null;
+            }
+            try {
+                segment = new Segment();
+            } catch (IOException e) {
+                totalBytesOnDisk.addAndGet(-segmentSize);
+                LOGGER.error(String.format("Failed to create a spill segment for consumer: %s in directory: %s",
+                                           name, spillDirectory), e);
+                return null;
+            }
+        }
+        activeSegments.addLast(segment);
+        return segment;
+    }
+
+    private void recycle(Segment segment) {
+        if (spareSegments.size() < MAX_SPARE_SEGMENTS) {
+            segment.reset();
+            spareSegments.addLast(segment);
+        } else {
+            segment.release();
+        }
+    }
+
+    private class Segment {
+
+        private final File file;
+        private final RandomAccessFile raf;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private int readPosition;
+
+        private Segment() throws IOException {
+            file = File.createTempFile("eventbus-spill-", ".seg", spillDirectory);
+            file.deleteOnExit();
+            raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(segmentSize);
+                buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            } catch (IOException e) {
+                raf.close();
+                file.delete();
+                throw e;
+            }
+        }
+
+        /**
+         * @return <code>false</code> if the event does not fit in the remaining space of this segment.
+         *
+         * @throws RuntimeException If the codec fails to encode the event.
+         */
+        private boolean write(Object event) {
+            if (segmentSize - writePosition <= RECORD_HEADER_BYTES) {
+                return false;
+            }
+            buffer.limit(segmentSize);
+            buffer.position(writePosition + RECORD_HEADER_BYTES);
+            try {
+                codec.encode(event, buffer);
+            } catch (BufferOverflowException e) {
+                return false;
+            }
+            int length = buffer.position() - writePosition - RECORD_HEADER_BYTES;
+            buffer.putInt(writePosition, length);
+            writePosition = buffer.position();
+            spilledBytes.increment(length + RECORD_HEADER_BYTES);
+            return true;
+        }
+
+        private boolean hasUnread() {
+            return readPosition < writePosition;
+        }
+
+        private Object read() {
+            int length = buffer.getInt(readPosition);
+            ByteBuffer source = buffer.duplicate();
+            source.limit(readPosition + RECORD_HEADER_BYTES + length);
+            source.position(readPosition + RECORD_HEADER_BYTES);
+            readPosition += RECORD_HEADER_BYTES + length;
+            return codec.decode(source);
+        }
+
+        private void reset() {
+            readPosition = 0;
+            writePosition = 0;
+        }
+
+        private void release() {
+            try {
+                raf.close();
+            } catch (IOException e) {
+                LOGGER.info("Failed to close spill segment: " + file, e);
+            }
+            if (!file.delete()) {
+                LOGGER.info("Failed to delete spill segment: " + file);
+            }
+            totalBytesOnDisk.addAndGet(-segmentSize);
+        }
+    }
+}
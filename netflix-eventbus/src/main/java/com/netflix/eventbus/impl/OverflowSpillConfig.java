@@ -0,0 +1,134 @@
+package com.netflix.eventbus.impl;
+
+import com.google.common.base.Preconditions;
+import com.netflix.eventbus.spi.EventCodec;
+
+import java.io.File;
+
+/**
+ * Configuration for the overflow spill of consumer queues in {@link EventBusImpl}. <p/>
+ *
+ * When a consumer's in-memory queue is full, instead of rejecting events, the event is encoded using the configured
+ * {@link EventCodec} and appended to a memory-mapped segment file owned by that consumer. Once the consumer frees up
+ * space in its in-memory queue, the spilled events are moved back to the queue in the order they were spilled. So, a
+ * spill only absorbs bursts, it does not change the order in which a consumer receives its events. <p/>
+ *
+ * The following are the caps on disk usage:
+ * <ul>
+ <li>Segment size: Size of each segment file. A single encoded event must fit in a segment.</li>
+ <li>Max bytes per consumer: Total size of all segments of a single consumer. This is rounded down to a whole number
+ of segments.</li>
+ <li>Max total bytes: Total size of all segments across all consumers of an event bus.</li>
+ </ul>
+ * Once a cap is hit, the offer to the consumer queue fails and the usual rejection as described in
+ * {@link com.netflix.eventbus.spi.EventBus} kicks in. <p/>
+ *
+ * Segments are recycled once all events in them are consumed, so a consumer with a steady spill does not create new
+ * files.
+ */
+public class OverflowSpillConfig {
+
+    public static final int DEFAULT_SEGMENT_SIZE_BYTES = 8 * 1024 * 1024;
+    public static final long DEFAULT_MAX_BYTES_PER_CONSUMER = 64L * 1024 * 1024;
+    public static final long DEFAULT_MAX_TOTAL_BYTES = 1024L * 1024 * 1024;
+
+    private final EventCodec codec;
+    private final File spillDirectory;
+    private final int segmentSizeBytes;
+    private final long maxBytesPerConsumer;
+    private final long maxTotalBytes;
+
+    private OverflowSpillConfig(Builder builder) {
+        codec = builder.codec;
+        spillDirectory = builder.spillDirectory;
+        segmentSizeBytes = builder.segmentSizeBytes;
+        maxBytesPerConsumer = builder.maxBytesPerConsumer;
+        maxTotalBytes = builder.maxTotalBytes;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public EventCodec getCodec() {
+        return codec;
+    }
+
+    public File getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    public int getSegmentSizeBytes() {
+        return segmentSizeBytes;
+    }
+
+    public long getMaxBytesPerConsumer() {
+        return maxBytesPerConsumer;
+    }
+
+    public long getMaxTotalBytes() {
+        return maxTotalBytes;
+    }
+
+    /**
+     * Maximum number of segments a single consumer can hold at any point of time.
+     *
+     * @return Maximum number of segments per consumer.
+     */
+    int getMaxSegmentsPerConsumer() {
+        return (int) Math.min(Integer.MAX_VALUE, maxBytesPerConsumer / segmentSizeBytes);
+    }
+
+    public static class Builder {
+
+        private EventCodec codec;
+        private File spillDirectory = new File(System.getProperty("java.io.tmpdir"));
+        private int segmentSizeBytes = DEFAULT_SEGMENT_SIZE_BYTES;
+        private long maxBytesPerConsumer = DEFAULT_MAX_BYTES_PER_CONSUMER;
+        private long maxTotalBytes = DEFAULT_MAX_TOTAL_BYTES;
+
+        /**
+         * The codec used to write events to and read events from the spill segments.
+         */
+        public Builder withCodec(EventCodec codec) {
+            this.codec = codec;
+            return this;
+        }
+
+        /**
+         * Directory where the segment files are created. Defaults to <code>java.io.tmpdir</code>
+         */
+        public Builder withSpillDirectory(File spillDirectory) {
+            this.spillDirectory = spillDirectory;
+            return this;
+        }
+
+        public Builder withSegmentSizeBytes(int segmentSizeBytes) {
+            this.segmentSizeBytes = segmentSizeBytes;
+            return this;
+        }
+
+        public Builder withMaxBytesPerConsumer(long maxBytesPerConsumer) {
+            this.maxBytesPerConsumer = maxBytesPerConsumer;
+            return this;
+        }
+
+        public Builder withMaxTotalBytes(long maxTotalBytes) {
+            this.maxTotalBytes = maxTotalBytes;
+            return this;
+        }
+
+        public OverflowSpillConfig build() {
+            Preconditions.checkNotNull(codec, "Must specify a codec for the spill.");
+            Preconditions.checkNotNull(spillDirectory, "Must specify a spill directory.");
+            Preconditions.checkArgument(spillDirectory.isDirectory() || spillDirectory.mkdirs(),
+                                        "Spill directory %s does not exist and can not be created.", spillDirectory);
+            Preconditions.checkArgument(segmentSizeBytes > 4, "Segment size must be more than 4 bytes.");
+            Preconditions.checkArgument(maxBytesPerConsumer >= segmentSizeBytes,
+                                        "Max bytes per consumer must be atleast one segment.");
+            Preconditions.checkArgument(maxTotalBytes >= maxBytesPerConsumer,
+                                        "Max total bytes must be atleast the max bytes per consumer.");
+            return new OverflowSpillConfig(this);
+        }
+    }
+}
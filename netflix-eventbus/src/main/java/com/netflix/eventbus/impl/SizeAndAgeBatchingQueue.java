@@ -5,7 +5,6 @@ import com.netflix.eventbus.spi.SubscriberConfigProvider;
 
 import javax.annotation.Nullable;
 import java.lang.reflect.Method;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -36,32 +35,15 @@ class SizeAndAgeBatchingQueue extends AgeBatchingQueue {
     private class AgeAndSizeBatch extends AgeBatch {
 
         private final int batchSize;
-        private AtomicInteger currentBatchSize;
 
         protected AgeAndSizeBatch(int batchSize) {
             super();
             this.batchSize = batchSize;
-            currentBatchSize = new AtomicInteger();
         }
 
         @Override
-        protected boolean addEvent(Object event) {
-            if(currentBatchSize.get() >= batchSize) {
-                if(!reapCurrentBatch("Batch size exceeded")) {
-                    return false;
-                }
-            }
-            if(super.addEvent(event)) {
-                currentBatchSize.incrementAndGet();
-                return true;
-            }
-            return false;
-        }
-
-        @Override
-        protected void clear() {
-            super.clear();
-            currentBatchSize.set(0);
+        protected boolean isFull() {
+            return size() >= batchSize;
         }
     }
 }
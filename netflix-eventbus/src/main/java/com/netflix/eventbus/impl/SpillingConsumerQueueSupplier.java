@@ -0,0 +1,150 @@
+package com.netflix.eventbus.impl;
+
+import com.netflix.eventbus.spi.SubscriberConfigProvider;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link EventBusImpl.ConsumerQueueSupplier} that decorates the queues of another supplier with an
+ * {@link OverflowSpill}. See {@link OverflowSpillConfig} for details. <p/>
+ *
+ * As long as the in-memory queue has space, events are directly offered to it and the spill is not touched. Once an
+ * offer fails, all subsequent events are appended to the spill till the spill is completely drained back to the
+ * in-memory queue, so that a consumer still receives events in the order they were published. The draining happens on
+ * the consumer thread after every take from the queue.
+ */
+class SpillingConsumerQueueSupplier implements EventBusImpl.ConsumerQueueSupplier {
+
+    private final EventBusImpl.ConsumerQueueSupplier delegate;
+    private final OverflowSpillConfig spillConfig;
+    private final AtomicLong totalBytesOnDisk;
+
+    SpillingConsumerQueueSupplier(EventBusImpl.ConsumerQueueSupplier delegate, OverflowSpillConfig spillConfig,
+                                  AtomicLong totalBytesOnDisk) {
+        this.delegate = delegate;
+        this.spillConfig = spillConfig;
+        this.totalBytesOnDisk = totalBytesOnDisk;
+    }
+
+    @Override
+    public ConsumerQueue get(Method subscriberMethod, SubscriberConfigProvider.SubscriberConfig subscriberConfig,
+                             AtomicLong queueSizeCounter) {
+        String spillName = subscriberMethod.getDeclaringClass().getName() + "_" + subscriberMethod.getName();
+        return new SpillingConsumerQueue(delegate.get(subscriberMethod, subscriberConfig, queueSizeCounter),
+                                         new OverflowSpill(spillName, spillConfig, totalBytesOnDisk));
+    }
+
+    static class SpillingConsumerQueue implements ConsumerQueue {
+
+        private final ConsumerQueue memoryQueue;
+        private final OverflowSpill spill;
+        private final Object spillLock = new Object();
+
+        /**
+         * Set when the in-memory queue overflows and reset once the spill is fully drained. Read without the lock so
+         * that the non-spilling path does not contend with the consumer.
+         */
+        private volatile boolean spilling;
+
+        /**
+         * An event read from the spill that could not be offered to the in-memory queue. Guarded by the spill lock.
+         */
+        private Object pendingTransfer;
+
+        SpillingConsumerQueue(ConsumerQueue memoryQueue, OverflowSpill spill) {
+            this.memoryQueue = memoryQueue;
+            this.spill = spill;
+        }
+
+        @Override
+        public boolean offer(Object event) {
+            if (!spilling && memoryQueue.offer(event)) {
+                return true;
+            }
+            synchronized (spillLock) {
+                if (!spilling) {
+                    if (memoryQueue.offer(event)) {
+                        return true;
+                    }
+                    spilling = true;
+                }
+                // Never written with its stamp, it is stamped again when transferred back to memory.
+                return spill.append(TimestampingConsumerQueueSupplier.StampedEvent.unwrap(event));
+            }
+        }
+
+        /**
+         * Offers the passed event only to the in-memory queue and only if nothing is spilled, so that it is behind all
+         * spilled events.
+         *
+         * @return <code>true</code> if the event was added to the in-memory queue.
+         */
+        boolean offerIfNotSpilling(Object event) {
+            synchronized (spillLock) {
+                return !spilling && memoryQueue.offer(event);
+            }
+        }
+
+        @Override
+        public Object nonBlockingTake() {
+            Object event = memoryQueue.nonBlockingTake();
+            transferFromSpill();
+            return event;
+        }
+
+        @Override
+        public Object blockingTake() throws InterruptedException {
+            transferFromSpill(); // In case, the last transfer could not move anything.
+            Object event = memoryQueue.blockingTake();
+            transferFromSpill();
+            return event;
+        }
+
+        @Override
+        public void clear() {
+            synchronized (spillLock) {
+                memoryQueue.clear();
+                spill.clear();
+                pendingTransfer = null;
+                spilling = false;
+            }
+        }
+
+        OverflowSpill getSpill() {
+            return spill;
+        }
+
+        ConsumerQueue getMemoryQueue() {
+            return memoryQueue;
+        }
+
+        /**
+         * @return <code>true</code> if there are events in the spill, or read from it, that are not yet in the in-memory
+         * queue.
+         */
+        boolean isSpilling() {
+            return spilling;
+        }
+
+        private void transferFromSpill() {
+            if (!spilling) {
+                return;
+            }
+            synchronized (spillLock) {
+                while (true) {
+                    Object next = null != pendingTransfer ? pendingTransfer : spill.poll();
+                    if (null == next) {
+                        spilling = false;
+                        return;
+                    }
+                    if (!memoryQueue.offer(next)) {
+                        pendingTransfer = next;
+                        return;
+                    }
+                    pendingTransfer = null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.netflix.eventbus.impl;
+
+import com.netflix.config.DynamicIntProperty;
+import com.netflix.config.DynamicPropertyFactory;
+import com.netflix.config.DynamicStringProperty;
+import com.netflix.eventbus.spi.Subscribe;
+import com.netflix.eventbus.spi.SubscriberConfigProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+
+/**
+ * Dynamic properties that override the queue and batching configuration of a subscriber method at runtime. The
+ * properties are named as:
+ * <pre>
+ eventbus.subscriber.[subscriber class name].[subscriber method name].queueSize
+ eventbus.subscriber.[subscriber class name].[subscriber method name].batchSize
+ eventbus.subscriber.[subscriber class name].[subscriber method name].batchAge
+ eventbus.subscriber.[subscriber class name].[subscriber method name].batchingStrategy
+ </pre>
+ * A property that is not set, leaves the value of the subscriber's own configuration as is. A change to any of these
+ * properties reconfigures the consumer in place, see {@link EventConsumer#reconfigure}.
+ */
+class SubscriberConfigOverrides {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SubscriberConfigOverrides.class);
+
+    static final String PROP_NAME_PREFIX = "eventbus.subscriber.";
+
+    private static final int NOT_SET = Integer.MIN_VALUE;
+
+    private final DynamicIntProperty queueSize;
+    private final DynamicIntProperty batchSize;
+    private final DynamicIntProperty batchAge;
+    private final DynamicStringProperty batchingStrategy;
+
+    SubscriberConfigOverrides(Method subscriberMethod, Runnable onChange) {
+        String prefix = getPropertyNamePrefix(subscriberMethod);
+        DynamicPropertyFactory factory = DynamicPropertyFactory.getInstance();
+        queueSize = factory.getIntProperty(prefix + "queueSize", NOT_SET, onChange);
+        batchSize = factory.getIntProperty(prefix + "batchSize", NOT_SET, onChange);
+        batchAge = factory.getIntProperty(prefix + "batchAge", NOT_SET, onChange);
+        batchingStrategy = factory.getStringProperty(prefix + "batchingStrategy", null, onChange);
+    }
+
+    static String getPropertyNamePrefix(Method subscriberMethod) {
+        return PROP_NAME_PREFIX + subscriberMethod.getDeclaringClass().getName() + '.' + subscriberMethod.getName() + '.';
+    }
+
+    /**
+     * Returns the passed configuration with the overrides applied, the passed configuration itself if there are none.
+     */
+    SubscriberConfigProvider.SubscriberConfig apply(SubscriberConfigProvider.SubscriberConfig config) {
+        Subscribe.BatchingStrategy strategyOverride = getBatchingStrategyOverride();
+        if (NOT_SET == queueSize.get() && NOT_SET == batchSize.get() && NOT_SET == batchAge.get()
+            && null == strategyOverride) {
+            return config;
+        }
+        return new OverriddenConfig(
+                null != strategyOverride ? strategyOverride : config.getBatchingStrategy(),
+                valueOrDefault(batchAge, config.getBatchAge()),
+                valueOrDefault(batchSize, config.getBatchSize()),
+                valueOrDefault(queueSize, config.getQueueSize()),
+                config.syncIfAllowed());
+    }
+
+    void close() {
+        queueSize.removeAllCallbacks();
+        batchSize.removeAllCallbacks();
+        batchAge.removeAllCallbacks();
+        batchingStrategy.removeAllCallbacks();
+    }
+
+    /**
+     * Returns <code>true</code> if the passed configurations have the same queue and batching configuration.
+     */
+    static boolean isSameQueueConfig(SubscriberConfigProvider.SubscriberConfig config1,
+                                     SubscriberConfigProvider.SubscriberConfig config2) {
+        return config1.getBatchingStrategy() == config2.getBatchingStrategy()
+               && config1.getBatchAge() == config2.getBatchAge()
+               && config1.getBatchSize() == config2.getBatchSize()
+               && config1.getQueueSize() == config2.getQueueSize();
+    }
+
+    private Subscribe.BatchingStrategy getBatchingStrategyOverride() {
+        String strategy = batchingStrategy.get();
+        if (null == strategy) {
+            return null;
+        }
+        try {
+            return Subscribe.BatchingStrategy.valueOf(strategy.trim());
+        } catch (IllegalArgumentException e) {
+            LOGGER.error(String.format("Invalid batching strategy override: %s for property: %s, ignoring.", strategy,
+                                       batchingStrategy.getName()));
+            return null;
+        }
+    }
+
+    private static int valueOrDefault(DynamicIntProperty property, int defaultValue) {
+        int value = property.get();
+        return NOT_SET == value ? defaultValue : value;
+    }
+
+    private static class OverriddenConfig implements SubscriberConfigProvider.SubscriberConfig {
+
+        private final Subscribe.BatchingStrategy batchingStrategy;
+        private final int batchAge;
+        private final int batchSize;
+        private final int queueSize;
+        private final boolean syncIfAllowed;
+
+        private OverriddenConfig(Subscribe.BatchingStrategy batchingStrategy, int batchAge, int batchSize,
+                                 int queueSize, boolean syncIfAllowed) {
+            this.batchingStrategy = batchingStrategy;
+            this.batchAge = batchAge;
+            this.batchSize = batchSize;
+            this.queueSize = queueSize;
+            this.syncIfAllowed = syncIfAllowed;
+        }
+
+        @Override
+        public Subscribe.BatchingStrategy getBatchingStrategy() {
+            return batchingStrategy;
+        }
+
+        @Override
+        public int getBatchAge() {
+            return batchAge;
+        }
+
+        @Override
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        @Override
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        @Override
+        public boolean syncIfAllowed() {
+            return syncIfAllowed;
+        }
+    }
+}
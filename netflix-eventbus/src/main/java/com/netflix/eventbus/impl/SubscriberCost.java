@@ -0,0 +1,72 @@
+package com.netflix.eventbus.impl;
+
+import java.util.Comparator;
+
+/**
+ * The CPU time and bytes allocated by a subscriber method, while consuming events, since it was registered. See
+ * {@link EventBusImpl#getCostliestSubscribers(int)}.
+ */
+public class SubscriberCost {
+
+    /**
+     * Orders the costs by CPU time, highest first, and then by allocated bytes.
+     */
+    public static final Comparator<SubscriberCost> BY_CPU_TIME = new Comparator<SubscriberCost>() {
+        @Override
+        public int compare(SubscriberCost cost1, SubscriberCost cost2) {
+            int cpuComparison = compareLongs(cost2.cpuNanos, cost1.cpuNanos);
+            return 0 != cpuComparison ? cpuComparison : compareLongs(cost2.allocatedBytes, cost1.allocatedBytes);
+        }
+    };
+
+    private final String subscriber;
+    private final Class<?> eventType;
+    private final long cpuNanos;
+    private final long allocatedBytes;
+    private final long accountedEvents;
+
+    SubscriberCost(String subscriber, Class<?> eventType, long cpuNanos, long allocatedBytes, long accountedEvents) {
+        this.subscriber = subscriber;
+        this.eventType = eventType;
+        this.cpuNanos = cpuNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.accountedEvents = accountedEvents;
+    }
+
+    /**
+     * Returns the generic string of the subscriber method.
+     */
+    public String getSubscriber() {
+        return subscriber;
+    }
+
+    public Class<?> getEventType() {
+        return eventType;
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Returns the number of events (or batches) for which the cost was accounted, i.e. consumed while accounting was
+     * enabled.
+     */
+    public long getAccountedEvents() {
+        return accountedEvents;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SubscriberCost{subscriber=%s, eventType=%s, cpuNanos=%s, allocatedBytes=%s, accountedEvents=%s}",
+                             subscriber, eventType.getName(), cpuNanos, allocatedBytes, accountedEvents);
+    }
+
+    private static int compareLongs(long long1, long long2) {
+        return long1 < long2 ? -1 : (long1 == long2 ? 0 : 1);
+    }
+}
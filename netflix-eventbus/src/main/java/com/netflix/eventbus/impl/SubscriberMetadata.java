@@ -0,0 +1,162 @@
+package com.netflix.eventbus.impl;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.netflix.eventbus.spi.DynamicSubscriber;
+import com.netflix.eventbus.spi.InvalidSubscriberException;
+import com.netflix.eventbus.spi.Subscribe;
+import com.netflix.eventbus.spi.SubscriberConfigProvider;
+import com.netflix.eventbus.utils.EventBusUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Subscriber metadata of a class, i.e. the subscriber methods, their event types and configurations, computed once per
+ * class and cached. <p/>
+ *
+ * The methods of a subscriber class and their validity do not change across instances, so, registering a new instance
+ * of an already seen class does not use reflection or validation. The exceptions are:
+ * <ul>
+ <li>{@link DynamicSubscriber}: The event type is defined by the instance, so the event type and its validity is
+ computed per instance.</li>
+ <li>{@link SubscriberConfigProvider}: The configuration is defined by the instance, so the configuration is
+ computed per instance.</li>
+ </ul>
+ */
+class SubscriberMetadata {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SubscriberMetadata.class);
+
+    private static final LoadingCache<Class<?>, SubscriberMetadata> metadataCache =
+            CacheBuilder.newBuilder()
+                        .weakKeys()
+                        .build(new CacheLoader<Class<?>, SubscriberMetadata>() {
+                            @Override
+                            public SubscriberMetadata load(Class<?> subscriberClass) throws Exception {
+                                return new SubscriberMetadata(subscriberClass);
+                            }
+                        });
+
+    private final List<Method> subscriberMethods;
+    private final boolean dynamicSubscriber;
+    private final boolean configProvider;
+
+    /**
+     * Validation errors for a subscriber that is not a {@link DynamicSubscriber}, <code>null</code> till the first
+     * instance is validated.
+     */
+    private volatile Map<Method, String> validationErrors;
+
+    /**
+     * Subscriber methods for a class that neither is a {@link DynamicSubscriber} nor a {@link SubscriberConfigProvider},
+     * <code>null</code> till the first instance is resolved.
+     */
+    private volatile List<SubscriberMethod> resolvedMethods;
+
+    private SubscriberMetadata(Class<?> subscriberClass) {
+        dynamicSubscriber = DynamicSubscriber.class.isAssignableFrom(subscriberClass);
+        configProvider = SubscriberConfigProvider.class.isAssignableFrom(subscriberClass);
+
+        Set<Method> allMethods = new HashSet<Method>();
+        allMethods.addAll(Arrays.asList(subscriberClass.getMethods()));
+        // This enables declaring even private methods in a consumer. We will try to enable access, failure of which
+        // will remove this method from the methods list.
+        allMethods.addAll(Arrays.asList(subscriberClass.getDeclaredMethods()));
+        List<Method> methods = new ArrayList<Method>();
+        for (Method method : allMethods) {
+            if (method.isAnnotationPresent(Subscribe.class)) {
+                try {
+                    method.setAccessible(true);
+                    methods.add(method);
+                } catch (SecurityException e) {
+                    LOGGER.error("A subscriber method: " + method.toGenericString() +
+                                 " is not a public method and the security settings does not allow accessing non-public"
+                                 +
+                                 " methods via reflection. This subscriber method will not be registered.", e);
+                }
+            }
+        }
+        subscriberMethods = Collections.unmodifiableList(methods);
+    }
+
+    /**
+     * Returns the subscriber methods of the passed subscriber, validating them if the class of this subscriber is seen
+     * for the first time or the subscriber is a {@link DynamicSubscriber}.
+     *
+     * @param subscriber Subscriber instance.
+     *
+     * @return All subscriber methods of this subscriber.
+     *
+     * @throws InvalidSubscriberException If the subscriber is invalid.
+     */
+    static List<SubscriberMethod> resolve(Object subscriber) throws InvalidSubscriberException {
+        return metadataCache.getUnchecked(subscriber.getClass()).resolveInstance(subscriber);
+    }
+
+    private List<SubscriberMethod> resolveInstance(Object subscriber) throws InvalidSubscriberException {
+        List<SubscriberMethod> resolved = resolvedMethods;
+        if (null != resolved) {
+            return resolved;
+        }
+
+        Map<Method, String> errors = validationErrors;
+        if (null == errors) {
+            errors = SubscriberValidator.validate(subscriber, subscriberMethods);
+            if (!dynamicSubscriber) {
+                validationErrors = errors; // Same for every instance.
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new InvalidSubscriberException(subscriber.getClass(), errors);
+        }
+
+        resolved = new ArrayList<SubscriberMethod>(subscriberMethods.size());
+        for (Method method : subscriberMethods) {
+            resolved.add(new SubscriberMethod(method, EventBusUtils.getInterestedEventType(subscriber, method),
+                                              EventBusUtils.getSubscriberConfig(method, subscriber)));
+        }
+        resolved = Collections.unmodifiableList(resolved);
+        if (!dynamicSubscriber && !configProvider) {
+            resolvedMethods = resolved;
+        }
+        return resolved;
+    }
+
+    /**
+     * A subscriber method along with its event type and configuration, as resolved for a subscriber instance.
+     */
+    static class SubscriberMethod {
+
+        private final Method method;
+        private final Class<?> eventType;
+        private final SubscriberConfigProvider.SubscriberConfig config;
+
+        SubscriberMethod(Method method, Class<?> eventType, SubscriberConfigProvider.SubscriberConfig config) {
+            this.method = method;
+            this.eventType = eventType;
+            this.config = config;
+        }
+
+        Method getMethod() {
+            return method;
+        }
+
+        Class<?> getEventType() {
+            return eventType;
+        }
+
+        SubscriberConfigProvider.SubscriberConfig getConfig() {
+            return config;
+        }
+    }
+}
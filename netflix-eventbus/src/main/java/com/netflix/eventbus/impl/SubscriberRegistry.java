@@ -0,0 +1,222 @@
+package com.netflix.eventbus.impl;
+
+import com.netflix.eventbus.spi.EventFilter;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The registry of all {@link EventConsumer}s of an {@link EventBusImpl}, indexed by event type, subscriber class and
+ * subscriber instance. <p/>
+ *
+ * All indexes are hash based and keyed on identity (an {@link EventConsumer} does not override equals &amp; hashCode
+ * and subscriber instances are wrapped in {@link InstanceKey}) so registering and unregistering a consumer is O(1),
+ * irrespective of the number of consumers already registered, and never copies an index. This matters for subscribers
+ * that are created and removed at a high rate, eg: a {@link com.netflix.eventbus.spi.DynamicSubscriber} per
+ * subscription. <p/>
+ *
+ * Publishing iterates over a snapshot array of the consumers of an event type. After a registration, the snapshot is
+ * only rebuilt by the first publish after the consumers of that type changed, so a burst of registrations costs one
+ * copy, not one per registration. An unregistration rebuilds the snapshot before returning, so that no publish started
+ * after {@link #remove(EventConsumer)} returned reaches the removed consumer. <p/>
+ *
+ * All modifications are serialized on this registry, all reads are lock-free.
+ */
+class SubscriberRegistry {
+
+    private static final EventConsumer[] NO_CONSUMERS = new EventConsumer[0];
+
+    private final ConcurrentHashMap<Class<?>, ConsumerSet> consumersByEventType =
+            new ConcurrentHashMap<Class<?>, ConsumerSet>();
+    private final ConcurrentHashMap<Class<?>, ConsumerSet> consumersBySubscriberClass =
+            new ConcurrentHashMap<Class<?>, ConsumerSet>();
+    private final ConcurrentHashMap<InstanceKey, ConsumerSet> consumersBySubscriberInstance =
+            new ConcurrentHashMap<InstanceKey, ConsumerSet>();
+
+    synchronized void add(EventConsumer consumer) {
+        getOrCreate(consumersByEventType, consumer.getTargetEventClass()).add(consumer);
+        getOrCreate(consumersBySubscriberClass, consumer.getContainerInstance().getClass()).add(consumer);
+        getOrCreate(consumersBySubscriberInstance, new InstanceKey(consumer.getContainerInstance())).add(consumer);
+    }
+
+    /**
+     * Removes the passed consumer from all indexes.
+     *
+     * @return <code>true</code> if the consumer was registered.
+     */
+    synchronized boolean remove(EventConsumer consumer) {
+        boolean removed = removeFrom(consumersBySubscriberInstance, new InstanceKey(consumer.getContainerInstance()),
+                                     consumer);
+        removeFrom(consumersBySubscriberClass, consumer.getContainerInstance().getClass(), consumer);
+        removeFrom(consumersByEventType, consumer.getTargetEventClass(), consumer);
+        return removed;
+    }
+
+    synchronized void clear() {
+        consumersByEventType.clear();
+        consumersBySubscriberClass.clear();
+        consumersBySubscriberInstance.clear();
+    }
+
+    /**
+     * Returns a snapshot of the consumers for the passed event type. The returned array must not be modified.
+     */
+    EventConsumer[] getConsumersSnapshot(Class<?> eventType) {
+        ConsumerSet consumers = consumersByEventType.get(eventType);
+        return null == consumers ? NO_CONSUMERS : consumers.snapshot();
+    }
+
+    /**
+     * Returns a live, unmodifiable view of the consumers for the passed event type. The view only stays live while the
+     * event type has consumers, once the last consumer is removed, the consumers registered later are not reflected.
+     * Use {@link #getConsumersSnapshot(Class)} to read the current consumers.
+     */
+    Set<EventConsumer> getConsumers(Class<?> eventType) {
+        return view(consumersByEventType.get(eventType));
+    }
+
+    Set<EventConsumer> getConsumersForSubscriberClass(Class<?> subscriberClass) {
+        return view(consumersBySubscriberClass.get(subscriberClass));
+    }
+
+    Set<EventConsumer> getConsumersForSubscriber(Object subscriber) {
+        return view(consumersBySubscriberInstance.get(new InstanceKey(subscriber)));
+    }
+
+    /**
+     * Finds the consumer for the passed subscriber instance and method having exactly the passed filters.
+     *
+     * @return The consumer, <code>null</code> if none exists.
+     */
+    EventConsumer findConsumer(Object subscriber, Method subscriberMethod, Set<EventFilter> filters) {
+        for (EventConsumer consumer : getConsumersForSubscriber(subscriber)) {
+            if (consumer.getDelegateSubscriber().equals(subscriberMethod)
+                && consumer.getAttachedFilters().equals(filters)) {
+                return consumer;
+            }
+        }
+        return null;
+    }
+
+    Collection<EventConsumer> getAllConsumers() {
+        List<EventConsumer> all = new ArrayList<EventConsumer>();
+        for (ConsumerSet consumers : consumersBySubscriberInstance.values()) {
+            all.addAll(consumers.consumers);
+        }
+        return all;
+    }
+
+    /**
+     * Returns a live, unmodifiable view of all event types that have atleast one consumer.
+     */
+    Set<Class<?>> getEventTypes() {
+        return Collections.unmodifiableSet(consumersByEventType.keySet());
+    }
+
+    private static <K> ConsumerSet getOrCreate(ConcurrentHashMap<K, ConsumerSet> index, K key) {
+        ConsumerSet consumers = index.get(key);
+        if (null == consumers) {
+            consumers = new ConsumerSet();
+            index.put(key, consumers);
+        }
+        return consumers;
+    }
+
+    private static <K> boolean removeFrom(ConcurrentHashMap<K, ConsumerSet> index, K key, EventConsumer consumer) {
+        ConsumerSet consumers = index.get(key);
+        if (null == consumers) {
+            return false;
+        }
+        boolean removed = consumers.remove(consumer);
+        if (consumers.consumers.isEmpty()) {
+            index.remove(key);
+        }
+        return removed;
+    }
+
+    private static Set<EventConsumer> view(ConsumerSet consumers) {
+        return null == consumers ? Collections.<EventConsumer>emptySet()
+                                 : Collections.unmodifiableSet(consumers.consumers);
+    }
+
+    private static class ConsumerSet {
+
+        private final Set<EventConsumer> consumers =
+                Collections.newSetFromMap(new ConcurrentHashMap<EventConsumer, Boolean>());
+        private final AtomicLong modifications = new AtomicLong();
+        private final AtomicReference<Snapshot> snapshot =
+                new AtomicReference<Snapshot>(new Snapshot(0, NO_CONSUMERS));
+
+        private void add(EventConsumer consumer) {
+            if (consumers.add(consumer)) {
+                modifications.incrementAndGet();
+            }
+        }
+
+        private boolean remove(EventConsumer consumer) {
+            if (consumers.remove(consumer)) {
+                // Modifications are serialized on the registry, so this can not race with another rebuild here.
+                long modificationsNow = modifications.incrementAndGet();
+                snapshot.set(new Snapshot(modificationsNow, consumers.toArray(NO_CONSUMERS)));
+                return true;
+            }
+            return false;
+        }
+
+        private EventConsumer[] snapshot() {
+            Snapshot current = snapshot.get();
+            long modificationsNow = modifications.get();
+            if (current.modifications != modificationsNow) {
+                // Racing publishers may both rebuild, which is harmless. A modification during the copy leaves the
+                // snapshot stale as per the count read before the copy, so the next publish rebuilds it. The snapshot
+                // is only replaced if it did not change meanwhile, so that an unregistration is never overwritten by
+                // a copy started before it.
+                Snapshot rebuilt = new Snapshot(modificationsNow, consumers.toArray(NO_CONSUMERS));
+                snapshot.compareAndSet(current, rebuilt);
+                current = rebuilt;
+            }
+            return current.consumers;
+        }
+    }
+
+    private static class Snapshot {
+
+        private final long modifications;
+        private final EventConsumer[] consumers;
+
+        private Snapshot(long modifications, EventConsumer[] consumers) {
+            this.modifications = modifications;
+            this.consumers = consumers;
+        }
+    }
+
+    /**
+     * A key that compares subscriber instances by identity, as subscribers may define equals &amp; hashCode which need
+     * not be consistent with registration.
+     */
+    private static class InstanceKey {
+
+        private final Object instance;
+
+        private InstanceKey(Object instance) {
+            this.instance = instance;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || (o instanceof InstanceKey && ((InstanceKey) o).instance == instance);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(instance);
+        }
+    }
+}
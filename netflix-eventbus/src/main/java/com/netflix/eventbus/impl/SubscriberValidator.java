@@ -31,7 +31,6 @@ class SubscriberValidator {
      *
      * @return Map of method definition against error. Empty map if none found.
      */
-    @SuppressWarnings("fallthrough")
     static Map<Method, String> validate(Object subscriber, List<Method> subscriberMethods) {
         Map<Method, String> errors = new HashMap<Method, String>(subscriberMethods.size());
         for (Method method : subscriberMethods) {
@@ -52,7 +51,11 @@ class SubscriberValidator {
                 } else if (DynamicSubscriber.class.isAssignableFrom(subscriber.getClass())
                            && !parameterTypes[0].equals(Object.class)) {
                     Class<?> targetedEventType = ((DynamicSubscriber) subscriber).getEventType();
-                    if (!parameterTypes[0].isAssignableFrom(targetedEventType)) {
+                    if (subscribeAnnotation.batchingStrategy() != Subscribe.BatchingStrategy.None
+                        && Iterable.class.isAssignableFrom(parameterTypes[0])) {
+                        // Batches of the dynamic event type, the Iterable's type parameter is not relevant.
+                        validateBatchConfig(subscriber, method, subscribeAnnotation, errors);
+                    } else if (!parameterTypes[0].isAssignableFrom(targetedEventType)) {
                         errors.put(method, String.format(
                                 "Dynamic subscriber: %s's Method: %s's argument is not compatible with the interested event type %s.",
                                 subscriber.getClass(), method.toGenericString(), targetedEventType.getName()));
@@ -71,30 +74,35 @@ class SubscriberValidator {
                                     subscriber.getClass(), method.toGenericString()));
                         }
                     }
-
-                    switch (subscribeAnnotation.batchingStrategy()) {
-                        case SizeOrAge:
-                            if (subscribeAnnotation.batchSize() <= 1) {
-                                errors.put(method, String.format(
-                                        "Subscriber: %s's Method: %s is annotated with batching strategy: %s but does define a batch size.",
-                                        subscriber.getClass(), method.toGenericString(),
-                                        subscribeAnnotation.batchingStrategy()));
-                            }
-                        case Age:
-                            if (subscribeAnnotation.batchAge() <= 0) {
-                                errors.put(method, String.format(
-                                        "Subscriber: %s's Method: %s is annotated with batching strategy: %s but does define a batch age.",
-                                        subscriber.getClass(), method.toGenericString(),
-                                        subscribeAnnotation.batchingStrategy()));
-                            }
-                            break;
-                    }
+                    validateBatchConfig(subscriber, method, subscribeAnnotation, errors);
                 }
             }
         }
         return errors;
     }
 
+    @SuppressWarnings("fallthrough")
+    private static void validateBatchConfig(Object subscriber, Method method, Subscribe subscribeAnnotation,
+                                            Map<Method, String> errors) {
+        switch (subscribeAnnotation.batchingStrategy()) {
+            case SizeOrAge:
+                if (subscribeAnnotation.batchSize() <= 1) {
+                    errors.put(method, String.format(
+                            "Subscriber: %s's Method: %s is annotated with batching strategy: %s but does define a batch size.",
+                            subscriber.getClass(), method.toGenericString(),
+                            subscribeAnnotation.batchingStrategy()));
+                }
+            case Age:
+                if (subscribeAnnotation.batchAge() <= 0) {
+                    errors.put(method, String.format(
+                            "Subscriber: %s's Method: %s is annotated with batching strategy: %s but does define a batch age.",
+                            subscriber.getClass(), method.toGenericString(),
+                            subscribeAnnotation.batchingStrategy()));
+                }
+                break;
+        }
+    }
+
     private static void issueWarningsIfPresent(Subscribe subscribeAnnotation, Object subscriber, Method method) {
         if (subscribeAnnotation.syncIfAllowed()) {
             if (subscribeAnnotation.batchingStrategy() != Subscribe.BatchingStrategy.None) {
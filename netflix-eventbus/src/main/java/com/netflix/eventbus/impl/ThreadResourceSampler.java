@@ -0,0 +1,66 @@
+package com.netflix.eventbus.impl;
+
+import com.netflix.config.DynamicBooleanProperty;
+import com.netflix.config.DynamicPropertyFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Samples the CPU time and the bytes allocated by the current thread, used to attribute the cost of consuming events
+ * to the consumers, see {@link EventConsumerStats#getCpuNanos()} and {@link EventConsumerStats#getAllocatedBytes()}.
+ * <p/>
+ *
+ * Sampling costs a few hundred nanoseconds per event, so it is disabled by default and can be switched on at runtime
+ * via the property {@link #ACCOUNTING_ENABLED_PROP_NAME}. The allocated bytes are only available on JVMs that provide
+ * {@link com.sun.management.ThreadMXBean}, else reported as 0.
+ */
+final class ThreadResourceSampler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThreadResourceSampler.class);
+
+    static final String ACCOUNTING_ENABLED_PROP_NAME = "eventbus.consumer.resource.accounting.enabled";
+
+    private static final DynamicBooleanProperty accountingEnabled =
+            DynamicPropertyFactory.getInstance().getBooleanProperty(ACCOUNTING_ENABLED_PROP_NAME, false);
+
+    private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private static final boolean cpuTimeSupported;
+    private static final boolean allocatedBytesSupported;
+
+    static {
+        cpuTimeSupported = threadMXBean.isCurrentThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled();
+        boolean allocationSupported = false;
+        try {
+            allocationSupported = threadMXBean instanceof com.sun.management.ThreadMXBean
+                                  && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported()
+                                  && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemoryEnabled();
+        } catch (Throwable th) { // com.sun.management is not available on all JVMs.
+            LOGGER.info("Thread allocated bytes are not available, consumer allocations will not be accounted.", th);
+        }
+        allocatedBytesSupported = allocationSupported;
+        if (!cpuTimeSupported) {
+            LOGGER.info("Thread CPU time is not available, consumer CPU time will not be accounted.");
+        }
+    }
+
+    private ThreadResourceSampler() {
+    }
+
+    static boolean isEnabled() {
+        return accountingEnabled.get() && (cpuTimeSupported || allocatedBytesSupported);
+    }
+
+    static long currentThreadCpuNanos() {
+        return cpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() : 0;
+    }
+
+    static long currentThreadAllocatedBytes() {
+        if (!allocatedBytesSupported) {
+            return 0;
+        }
+        return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,103 @@
+package com.netflix.eventbus.impl;
+
+import com.netflix.eventbus.spi.Subscribe;
+import com.netflix.eventbus.spi.SubscriberConfigProvider;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link EventBusImpl.ConsumerQueueSupplier} that stamps every event offered to a queue with the time it was
+ * enqueued, so that {@link EventConsumer} can measure the time an event waited in the queue and the time till it was
+ * consumed. <p/>
+ *
+ * Events are held in the delegate queue as {@link StampedEvent}s and returned as such by the takes, the consumer
+ * unwraps them. The event bus stamps an event once per publish and offers the same {@link StampedEvent} to all the
+ * consumers, which is queued as is, so a publish costs a single stamp irrespective of the consumers. The queues above
+ * this one unwrap a stamped event when they need the event itself, e.g. to weigh or spill it. Batching queues are not decorated as the batches carry the time of their first event, see
+ * {@link AgeBatchingQueue.AgeBatch}. <p/>
+ *
+ * This supplier decorates the queues closest to the memory, so an event that is spilled to disk, see
+ * {@link SpillingConsumerQueueSupplier}, is stamped when it is transferred back to memory and never written to disk
+ * with its stamp.
+ */
+class TimestampingConsumerQueueSupplier implements EventBusImpl.ConsumerQueueSupplier {
+
+    private final EventBusImpl.ConsumerQueueSupplier delegate;
+
+    TimestampingConsumerQueueSupplier(EventBusImpl.ConsumerQueueSupplier delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public ConsumerQueue get(Method subscriberMethod, SubscriberConfigProvider.SubscriberConfig subscriberConfig,
+                             AtomicLong queueSizeCounter) {
+        ConsumerQueue queue = delegate.get(subscriberMethod, subscriberConfig, queueSizeCounter);
+        if (Subscribe.BatchingStrategy.None != subscriberConfig.getBatchingStrategy()) {
+            return queue;
+        }
+        return new TimestampingConsumerQueue(queue);
+    }
+
+    private static class TimestampingConsumerQueue implements ConsumerQueue {
+
+        private final ConsumerQueue delegate;
+
+        private TimestampingConsumerQueue(ConsumerQueue delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean offer(Object event) {
+            if (event instanceof StampedEvent) {
+                return delegate.offer(event); // Stamped by the publisher.
+            }
+            return delegate.offer(new StampedEvent(event, System.nanoTime()));
+        }
+
+        @Override
+        public Object nonBlockingTake() {
+            return delegate.nonBlockingTake();
+        }
+
+        @Override
+        public Object blockingTake() throws InterruptedException {
+            return delegate.blockingTake();
+        }
+
+        @Override
+        public void clear() {
+            delegate.clear();
+        }
+    }
+
+    /**
+     * An event along with the time it was enqueued.
+     */
+    static final class StampedEvent implements EnqueueTimestamped {
+
+        private final Object event;
+        private final long enqueueNanos;
+
+        StampedEvent(Object event, long enqueueNanos) {
+            this.event = event;
+            this.enqueueNanos = enqueueNanos;
+        }
+
+        Object getEvent() {
+            return event;
+        }
+
+        /**
+         * @return The event wrapped by the passed object if it is a {@link StampedEvent}, the passed object otherwise.
+         */
+        static Object unwrap(Object event) {
+            return event instanceof StampedEvent ? ((StampedEvent) event).getEvent() : event;
+        }
+
+        @Override
+        public long getEnqueueNanos() {
+            return enqueueNanos;
+        }
+    }
+}
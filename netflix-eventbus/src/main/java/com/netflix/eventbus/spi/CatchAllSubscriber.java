@@ -19,8 +19,13 @@ import java.util.concurrent.atomic.AtomicReference;
  * pushed by the eventbus in async mode. The queue size for this is {@link CatchAllSubscriber#SUBSCRIBER_QUEUE_SIZE} and
  * there is no batching done for events to reduce memory overheads.
  *
+ * @deprecated {@link com.netflix.eventbus.impl.EventBusImpl} does not use this subscriber anymore, the sink passed to
+ * {@link EventBus#enableCatchAllSubscriber(java.util.concurrent.BlockingQueue)} is fed by
+ * {@link com.netflix.eventbus.impl.EventTap} from the publishing thread.
+ *
  * @author Nitesh Kant (nkant@netflix.com)
  */
+@Deprecated
 public final class CatchAllSubscriber {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CatchAllSubscriber.class);
@@ -3,6 +3,7 @@ package com.netflix.eventbus.spi;
 import javax.annotation.Nullable;
 
 
+import java.util.Collection;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 
@@ -160,17 +161,58 @@ public interface EventBus {
     void registerSubscriber(Object subscriber) throws InvalidSubscriberException;
 
     /**
-     * Enables the {@link CatchAllSubscriber} for this eventbus with the sink for the subscriber as the passed
-     * {@link BlockingQueue} instance.
+     * Registers all the passed subscribers with the passed filter in one call. This is the same as calling
+     * {@link EventBus#registerSubscriber(EventFilter, Object)} for each subscriber, except:
+     * <ul>
+     <li>The registration is all or nothing: if any subscriber is invalid, none of the subscribers are registered.</li>
+     <li>It is cheaper than registering the subscribers one at a time, which matters when registering a lot of
+     subscribers.</li>
+     </ul>
+     * The default implementation only calls {@link EventBus#registerSubscriber(EventFilter, Object)} (or
+     * {@link EventBus#registerSubscriber(Object)} for a <code>null</code> filter) for each subscriber, so it is neither
+     * all or nothing nor cheaper. It is meant for existing implementations, which should override it.
+     *
+     * @param filter Filter, which is attached to all subscriber methods of all the passed subscribers.
+     * @param subscribers Subscribers to register.
+     *
+     * @throws InvalidSubscriberException If any of the passed subscribers is invalid.
+     */
+    default void registerSubscribers(@Nullable EventFilter filter, Collection<?> subscribers)
+            throws InvalidSubscriberException {
+        for (Object subscriber : subscribers) {
+            if (null != filter) {
+                registerSubscriber(filter, subscriber);
+            } else {
+                registerSubscriber(subscriber);
+            }
+        }
+    }
+
+    /**
+     * Same as calling {@link EventBus#registerSubscribers(EventFilter, java.util.Collection)} with a <code>null</code>
+     * filter.
+     *
+     * @param subscribers Subscribers to register.
+     *
+     * @throws InvalidSubscriberException If any of the passed subscribers is invalid.
+     */
+    default void registerSubscribers(Collection<?> subscribers) throws InvalidSubscriberException {
+        registerSubscribers(null, subscribers);
+    }
+
+    /**
+     * Enables the catch all subscriber for this eventbus with the sink for the subscriber as the passed
+     * {@link BlockingQueue} instance. Only {@link BlockingQueue#offer(Object)} is called on the sink and any event not
+     * accepted by the sink is dropped.
      *
-     * @param catchAllSink The sink for the {@link CatchAllSubscriber}
+     * @param catchAllSink The sink for the catch all subscriber.
      *
      * @return <code>true</code> if the passes sink was successfully attached, iff there is no sink already present.
      */
     boolean enableCatchAllSubscriber(BlockingQueue<?> catchAllSink);
 
     /**
-     * Disables the {@link CatchAllSubscriber} for this eventbus.
+     * Disables the catch all subscriber for this eventbus.
      */
     void disableCatchAllSubscriber();
 
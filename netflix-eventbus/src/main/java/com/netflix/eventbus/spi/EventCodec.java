@@ -0,0 +1,42 @@
+package com.netflix.eventbus.spi;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A codec to convert events to and from a binary form. This is used by facilities of eventbus that have to move events
+ * out of the heap, eg: the overflow spill of consumer queues ({@link com.netflix.eventbus.impl.OverflowSpillConfig}).
+ *
+ * A codec always works directly on the buffers supplied by the caller, so that the events are not copied into
+ * intermediate byte arrays. The buffers are typically memory mapped or pooled and must not be retained by the codec
+ * after the call returns.
+ *
+ * Implementations must be thread-safe.
+ */
+public interface EventCodec {
+
+    /**
+     * Encodes the passed event into the passed buffer, starting at the current position of the buffer. On return, the
+     * position of the buffer must be just after the last byte written for this event.
+     *
+     * @param event Event to encode.
+     * @param target Buffer to write the event to.
+     *
+     * @throws java.nio.BufferOverflowException If the remaining space in the buffer is not enough to hold this event.
+     * The caller may retry with a larger buffer.
+     * @throws IllegalArgumentException If this codec can not encode the passed event.
+     */
+    void encode(Object event, ByteBuffer target);
+
+    /**
+     * Decodes an event from the passed buffer. The buffer is positioned at the start of the encoded event and its limit
+     * is set to the end of the event, i.e. the remaining bytes in the buffer are exactly the bytes written by
+     * {@link #encode(Object, java.nio.ByteBuffer)} for this event.
+     *
+     * @param source Buffer to read the event from.
+     *
+     * @return The decoded event.
+     *
+     * @throws IllegalArgumentException If the bytes can not be decoded into an event.
+     */
+    Object decode(ByteBuffer source);
+}
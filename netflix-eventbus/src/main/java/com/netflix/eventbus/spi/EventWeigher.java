@@ -0,0 +1,22 @@
+package com.netflix.eventbus.spi;
+
+/**
+ * Estimates the weight of an event, typically its retained size in bytes, for the memory budget shared by all consumer
+ * queues of an event bus ({@link com.netflix.eventbus.impl.MemoryBudgetConfig}).
+ *
+ * An event is weighed once when it is queued and once again when it is taken from the queue, so the weight of an event
+ * must not change while it is queued. Weighing happens on the publishing and consuming threads, so it must be cheap.
+ *
+ * Implementations must be thread-safe.
+ */
+public interface EventWeigher {
+
+    /**
+     * Returns the weight of the passed event.
+     *
+     * @param event Event to weigh.
+     *
+     * @return Weight of the event, must not be negative.
+     */
+    long weigh(Object event);
+}
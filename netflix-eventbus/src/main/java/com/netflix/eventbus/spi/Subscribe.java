@@ -49,6 +49,25 @@ public @interface Subscribe {
         None
     }
 
+    /**
+     * Order in which a subscriber receives events when the event bus dispatches through more than one lane. See
+     * {@link com.netflix.eventbus.impl.EventBusImpl} for details about lanes.
+     */
+    enum LaneOrdering {
+        /**
+         * Events from all lanes are merged and dispatched to the subscriber by a single thread. Events published in
+         * the same lane are received in the order they were published.
+         */
+        Merged,
+
+        /**
+         * Every lane is dispatched to the subscriber by its own thread, so the subscriber receives events from
+         * different lanes concurrently. Events published in the same lane are received in the order they were
+         * published.
+         */
+        PerLane
+    }
+
     /**
      * A name for this subscriber, this is only required if you want to have a dynamic configuration via
      * {@link SubscriberConfigProvider} AND each subscriber method in the class has a different configuration.
@@ -61,7 +80,9 @@ public @interface Subscribe {
     /**
      * Returns the batching strategy for this subscriber. If a subscriber chooses a batching strategy other than
      * {@link BatchingStrategy#None}, the argument to the subscriber method <b>must</b> be an {@link Iterable}.
-     * <b>Event batches does not support removal.</b>
+     * <b>Event batches does not support removal.</b> The batch passed to the subscriber is also an immutable, random
+     * access {@link java.util.List} and a {@link com.netflix.eventbus.impl.EventBatch}, holding only the events that
+     * passed the subscriber's filters. A batch with no such events is not delivered.
      *
      * @return The batching strategy for this subscriber.
      */
@@ -102,4 +123,13 @@ public @interface Subscribe {
      * default.
      */
     boolean syncIfAllowed() default false;
+
+    /**
+     * The order in which this subscriber receives events when the event bus dispatches through more than one lane.
+     * Only considered if the batching strategy is {@link BatchingStrategy#None}, batches are always received from a
+     * single queue.
+     *
+     * @return The lane ordering for this subscriber. {@link LaneOrdering#Merged} by default.
+     */
+    LaneOrdering laneOrdering() default LaneOrdering.Merged;
 }
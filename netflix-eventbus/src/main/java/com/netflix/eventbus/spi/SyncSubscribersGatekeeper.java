@@ -26,6 +26,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -85,6 +86,8 @@ public class SyncSubscribersGatekeeper {
 
     private static DynamicStringProperty syncSubsWhitelistJson;
 
+    private static final AtomicInteger configVersion = new AtomicInteger();
+
     static {
         initState();
     }
@@ -147,11 +150,31 @@ public class SyncSubscribersGatekeeper {
         return false;
     }
 
+    /**
+     * Returns the version of the configuration used by {@link #isSyncSubscriber(SubscriberConfigProvider.SubscriberConfig, Class, Class)}.
+     * The version changes whenever either of the properties {@link #ALLOW_SYNC_SUBSCRIBERS} or
+     * {@link #SYNC_SUBSCRIBERS_WHITELIST_JSON} changes, so any caller caching the result of
+     * {@link #isSyncSubscriber(SubscriberConfigProvider.SubscriberConfig, Class, Class)} must discard the cache when the
+     * version changes.
+     *
+     * @return The current configuration version.
+     */
+    public static int getConfigVersion() {
+        return configVersion.get();
+    }
+
     @VisibleForTesting
     static void initState() {
         syncSubsWhiteList = new AtomicReference<SetMultimap<String, String>>(EMPTY_WHITELIST);
         allowSyncSubs =
-                DynamicPropertyFactory.getInstance().getBooleanProperty(ALLOW_SYNC_SUBSCRIBERS, true);
+                DynamicPropertyFactory.getInstance().getBooleanProperty(ALLOW_SYNC_SUBSCRIBERS, true,
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                configVersion.incrementAndGet();
+                            }
+                        }
+                );
         syncSubsWhitelistJson =
                 DynamicPropertyFactory.getInstance().getStringProperty(
                         SyncSubscribersGatekeeper.SYNC_SUBSCRIBERS_WHITELIST_JSON, "",
@@ -159,9 +182,11 @@ public class SyncSubscribersGatekeeper {
                             @Override
                             public void run() {
                                 populateSubsWhiteList();
+                                configVersion.incrementAndGet();
                             }
                         }
                 );
+        configVersion.incrementAndGet();
     }
 
     private static void populateSubsWhiteList() {
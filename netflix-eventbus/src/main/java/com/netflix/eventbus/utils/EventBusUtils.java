@@ -116,9 +116,10 @@ public class EventBusUtils {
      * @return The event class this subscriber is interested in.
      */
     public static Class<?> getInterestedEventType(Object subscriber, Method subMethod) {
-        Class<?> interestedEventType = (DynamicSubscriber.class.isAssignableFrom(subscriber.getClass()))
-                          ? ((DynamicSubscriber) subscriber).getEventType()
-                          : subMethod.getParameterTypes()[0];/* The subscriber method must be valid here. */
+        if (DynamicSubscriber.class.isAssignableFrom(subscriber.getClass())) {
+            return ((DynamicSubscriber) subscriber).getEventType(); // Also for batches of the dynamic type.
+        }
+        Class<?> interestedEventType = subMethod.getParameterTypes()[0];/* The subscriber method must be valid here. */
         Subscribe annotation = subMethod.getAnnotation(Subscribe.class);
         if (annotation.batchingStrategy() != Subscribe.BatchingStrategy.None
             && Iterable.class.isAssignableFrom(interestedEventType)) {
@@ -186,6 +187,21 @@ public class EventBusUtils {
                     .build());
     }
 
+    /**
+     * Creates a {@link StatsTimer} for latencies, which publishes the percentiles of the recorded durations along with
+     * the mean and max, as the mean hides the outliers that matter for latencies.
+     */
+    public static StatsTimer newLatencyTimer(String monitorName, long collectionDurationInMillis) {
+        return new StatsTimer(
+                MonitorConfig.builder(monitorName).build(),
+                new StatsConfig.Builder()
+                    .withComputeFrequencyMillis(collectionDurationInMillis)
+                    .withPublishMean(true)
+                    .withPublishMax(true)
+                    .withPercentiles(new double[] {50.0, 90.0, 99.0, 99.9})
+                    .build());
+    }
+
     private static class AnnotationBasedSubscriberConfig implements SubscriberConfigProvider.SubscriberConfig {
 
         private final Subscribe annotation;
@@ -0,0 +1,125 @@
+package com.netflix.eventbus.flow;
+
+import com.netflix.eventbus.impl.EventBusImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+public class EventBusPublisherTest {
+
+    @Test
+    public void testBackpressureReachesQueue() throws Exception {
+        EventBusImpl bus = new EventBusImpl();
+        EventBusPublisher<Long> publisher = new EventBusPublisher<Long>(bus, Long.class, null,
+                                                                        EventBusPublisher.OverflowPolicy.Block, 10);
+        RecordingSubscriber subscriber = new RecordingSubscriber(2);
+        publisher.subscribe(subscriber);
+        for (long i = 0; i < 50; i++) {
+            bus.publish(i);
+        }
+        Assert.assertTrue("Requested events not received.", subscriber.awaitEvents(2));
+        Thread.sleep(100);
+        Assert.assertEquals("Received more than the demand.", 2, subscriber.events.size());
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        Thread.sleep(200);
+        int received = subscriber.events.size();
+        Assert.assertTrue("Events were buffered beyond the queue: " + received, received < 50);
+
+        subscriber.subscription.cancel();
+        bus.shutdown();
+    }
+
+    @Test
+    public void testDropPolicy() throws Exception {
+        EventBusImpl bus = new EventBusImpl();
+        EventBusPublisher<String> publisher = new EventBusPublisher<String>(bus, String.class, null,
+                                                                            EventBusPublisher.OverflowPolicy.Drop, -1);
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        publisher.subscribe(subscriber);
+        bus.publish("dropped");
+        Thread.sleep(100);
+        subscriber.subscription.request(1);
+        bus.publish("delivered");
+        Assert.assertTrue("Requested event not received.", subscriber.awaitEvents(1));
+        Assert.assertEquals("Unexpected event.", "delivered", subscriber.events.get(0));
+        subscriber.subscription.cancel();
+        bus.shutdown();
+    }
+
+    @Test
+    public void testErrorPolicy() throws Exception {
+        EventBusImpl bus = new EventBusImpl();
+        EventBusPublisher<String> publisher = new EventBusPublisher<String>(bus, String.class, null,
+                                                                            EventBusPublisher.OverflowPolicy.Error, -1);
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        publisher.subscribe(subscriber);
+        bus.publish("unexpected");
+        Assert.assertTrue("Error not signalled.", subscriber.errored.await(1, TimeUnit.MINUTES));
+        Assert.assertTrue("Unexpected error.", subscriber.error instanceof IllegalStateException);
+        Assert.assertTrue("Subscriber not unregistered.", bus.getAllSubscribers().isEmpty());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testInvalidRequest() throws Exception {
+        EventBusImpl bus = new EventBusImpl();
+        EventBusPublisher<String> publisher = new EventBusPublisher<String>(bus, String.class, null);
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(0);
+        Assert.assertTrue("Error not signalled.", subscriber.errored.await(1, TimeUnit.MINUTES));
+        Assert.assertTrue("Unexpected error.", subscriber.error instanceof IllegalArgumentException);
+        Assert.assertTrue("Subscriber not unregistered.", bus.getAllSubscribers().isEmpty());
+        bus.shutdown();
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<Object> {
+
+        private final long initialRequest;
+        private final List<Object> events = new CopyOnWriteArrayList<Object>();
+        private final CountDownLatch errored = new CountDownLatch(1);
+        private volatile Flow.Subscription subscription;
+        private volatile Throwable error;
+
+        private RecordingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(Object item) {
+            events.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            errored.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        private boolean awaitEvents(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+            while (events.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            return events.size() >= count;
+        }
+    }
+}
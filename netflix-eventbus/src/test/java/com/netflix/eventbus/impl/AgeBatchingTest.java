@@ -62,6 +62,27 @@ public class AgeBatchingTest {
 
     }
 
+    @Test
+    public void testQueuedEventCount() throws Exception {
+        MySub mySub = new MySub();
+        Method subMethod = mySub.getClass().getMethod("subMe", String.class);
+        SubscriberConfigProvider.SubscriberConfig subscriberConfig = EventBusUtils.getSubscriberConfig(subMethod, mySub);
+        AtomicLong queueSizeCounter = new AtomicLong();
+        AgeBatchingQueue q = new AgeBatchingQueue(subMethod, subscriberConfig, false, queueSizeCounter);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue("Age batch queue offer failed.", q.offer("event" + i));
+        }
+        q.invokeReaping();
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue("Age batch queue offer failed.", q.offer("young" + i));
+        }
+
+        Assert.assertEquals("Queue size must count the reaped batches.", 1, queueSizeCounter.get());
+        Assert.assertEquals("Unexpected queued event count.", 13, q.getQueuedEventCount());
+        q.clear();
+        Assert.assertEquals("Queued events after clear.", 0, q.getQueuedEventCount());
+    }
+
     private AgeBatchingQueue newQ(Method subMethod, SubscriberConfigProvider.SubscriberConfig annotation) {
         return new AgeBatchingQueue(subMethod, annotation, false, new AtomicLong());
     }
@@ -0,0 +1,116 @@
+package com.netflix.eventbus.impl;
+
+import com.netflix.eventbus.spi.EventFilter;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncPublishTest {
+
+    @Test
+    public void testPublishAsyncOrdered() throws Exception {
+        EventBusImpl bus = new EventBusImpl();
+        EventJournalTest.RecordingSubscriber subscriber = new EventJournalTest.RecordingSubscriber(100);
+        bus.registerSubscriber(subscriber);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue("Async publish rejected.", bus.publishAsync("event" + i));
+        }
+        Assert.assertTrue("Async published events not received.", subscriber.received.await(1, TimeUnit.MINUTES));
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals("Unexpected event order.", "event" + i, subscriber.events.get(i));
+        }
+        bus.shutdown();
+    }
+
+    @Test
+    public void testAsyncPublishForBus() throws Exception {
+        EventBusImpl bus = new EventBusImpl();
+        bus.setAsyncPublish(true);
+        ThreadRecordingFilter filter = new ThreadRecordingFilter(null);
+        bus.addFilterForEvent(filter, String.class);
+        EventJournalTest.RecordingSubscriber subscriber = new EventJournalTest.RecordingSubscriber(1);
+        bus.registerSubscriber(subscriber);
+        bus.publish("event");
+        Assert.assertTrue("Event not received.", subscriber.received.await(1, TimeUnit.MINUTES));
+        Assert.assertNotSame("Event filtered on the publishing thread.", Thread.currentThread(),
+                             filter.filteringThreads.get(0));
+        bus.shutdown();
+    }
+
+    @Test
+    public void testRingFullRejects() throws Exception {
+        EventBusImpl bus = new EventBusImpl();
+        CountDownLatch release = new CountDownLatch(1);
+        bus.addFilterForEvent(new ThreadRecordingFilter(release), String.class); // Stalls the dispatcher.
+        int accepted = 0;
+        int ringSize = EventBusImpl.ASYNC_RING_SIZE.get();
+        for (int i = 0; i < ringSize * 4; i++) {
+            if (bus.publishAsync("event" + i)) {
+                accepted++;
+            }
+        }
+        Assert.assertTrue("No event rejected.", bus.getAsyncPublishRejectedCount() > 0);
+        Assert.assertEquals("Unexpected rejected count.", ringSize * 4 - accepted, bus.getAsyncPublishRejectedCount());
+        release.countDown();
+        bus.shutdown();
+    }
+
+    @Test
+    public void testDeadThreadRingRemoved() throws Exception {
+        EventBusImpl bus = new EventBusImpl();
+        final AsyncPublisher publisher = new AsyncPublisher(bus, "test", 1, 16);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Assert.assertTrue("Async publish rejected.", publisher.publish("event"));
+            }
+        });
+        thread.start();
+        thread.join();
+        long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+        while (publisher.getRingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals("Ring of a dead thread not removed.", 0, publisher.getRingCount());
+        publisher.shutdown();
+        bus.shutdown();
+    }
+
+    private static class ThreadRecordingFilter implements EventFilter {
+
+        private final List<Thread> filteringThreads = new CopyOnWriteArrayList<Thread>();
+        @Nullable private final CountDownLatch release;
+
+        private ThreadRecordingFilter(@Nullable CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public boolean apply(@Nullable Object input) {
+            filteringThreads.add(Thread.currentThread());
+            if (null != release) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String getLanguage() {
+            return "none";
+        }
+
+        @Override
+        public String serialize() {
+            return null;
+        }
+    }
+}
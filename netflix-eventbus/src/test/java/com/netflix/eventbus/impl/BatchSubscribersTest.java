@@ -1,15 +1,22 @@
 package com.netflix.eventbus.impl;
 
+import com.netflix.eventbus.spi.EventFilter;
 import com.netflix.eventbus.spi.InvalidSubscriberException;
 import com.netflix.eventbus.spi.Subscribe;
 import com.netflix.eventbus.spi.SubscriberConfigProvider;
 import junit.framework.Assert;
 import org.junit.Test;
 
+import javax.annotation.Nullable;
 import java.lang.reflect.Method;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * @author Nitesh Kant
@@ -19,12 +26,14 @@ public class BatchSubscribersTest {
     @Test
     public void testBatch() throws Exception {
         EventBusImpl bus = new EventBusImpl();
+        final AtomicReference<SizeAndAgeBatchingQueue> queue = new AtomicReference<SizeAndAgeBatchingQueue>();
 
         bus.setConsumerQueueSupplier(new EventBusImpl.ConsumerQueueSupplier() {
             @Override
             public ConsumerQueue get(Method subscriber, SubscriberConfigProvider.SubscriberConfig subscriberConfig, AtomicLong queueSizeCounter) {
                 SizeAndAgeBatchingQueue q =
                         new SizeAndAgeBatchingQueue(subscriber, subscriberConfig, false, queueSizeCounter);
+                queue.set(q);
                 return q;
             }
         });
@@ -35,12 +44,39 @@ public class BatchSubscribersTest {
         for (int i = 0; i < 3; i++) {
             bus.publish("Hey buddy " + i);
         }
+        queue.get().invokeReaping(); // The last event is in a batch of its own, which is not full.
+        long deadline = System.currentTimeMillis() + 2000;
         synchronized (subscriber.mockReceiveMonitor) {
-            subscriber.mockReceiveMonitor.wait(2000);
+            while (subscriber.eventsCounter.get() < 3 && System.currentTimeMillis() < deadline) {
+                subscriber.mockReceiveMonitor.wait(100);
+            }
         }
         Assert.assertEquals("Not all events received by the consumer.", 3, subscriber.eventsCounter.get());
     }
 
+    @Test
+    public void testFilteredBatchDelivery() throws Exception {
+        EventBusImpl bus = new EventBusImpl();
+        ListBatchConsumer subscriber = new ListBatchConsumer();
+        bus.registerSubscriber(new EvenNumberFilter(), subscriber);
+
+        int eventCount = 100000; // Long runs of filtered events must not overflow the stack.
+        for (int i = 0; i < eventCount; i++) {
+            bus.publish(i * 2 + 1);
+        }
+        bus.publish(2);
+
+        Assert.assertTrue("Batch not received.", subscriber.received.await(1, TimeUnit.MINUTES));
+        List<?> batch = subscriber.batches.get(0);
+        Assert.assertTrue("Batch is not random access.", batch instanceof RandomAccess);
+        Assert.assertEquals("Unexpected batch size.", 1, batch.size());
+        Assert.assertEquals("Unexpected batch size.", 1, ((EventBatch) batch).size());
+        Assert.assertEquals("Unexpected event in batch.", 2, batch.get(0));
+        Thread.sleep(200); // More than the batch age.
+        Assert.assertEquals("Empty batch delivered.", 1, subscriber.batches.size());
+        bus.shutdown();
+    }
+
     @Test
     public void testNestedGenericsRegistration() throws Exception {
         try {
@@ -76,6 +112,36 @@ public class BatchSubscribersTest {
         }
     }
 
+    public static class ListBatchConsumer {
+
+        private final List<List<?>> batches = new CopyOnWriteArrayList<List<?>>();
+        private final CountDownLatch received = new CountDownLatch(1);
+
+        @Subscribe(batchingStrategy = Subscribe.BatchingStrategy.Age, batchAge = 50, queueSize = 1000)
+        public void consume(Iterable<Integer> eventBatch) {
+            batches.add((List<?>) eventBatch);
+            received.countDown();
+        }
+    }
+
+    private static class EvenNumberFilter implements EventFilter {
+
+        @Override
+        public boolean apply(@Nullable Object input) {
+            return input instanceof Integer && (Integer) input % 2 == 0;
+        }
+
+        @Override
+        public String getLanguage() {
+            return "none";
+        }
+
+        @Override
+        public String serialize() {
+            return null;
+        }
+    }
+
     private class NestedGenericsBatchConsumer {
 
         @Subscribe(batchingStrategy = Subscribe.BatchingStrategy.SizeOrAge, batchSize = 2, batchAge = 60000)
@@ -0,0 +1,258 @@
+package com.netflix.eventbus.impl;
+
+import com.netflix.config.ConcurrentCompositeConfiguration;
+import com.netflix.config.ConfigurationManager;
+import com.netflix.eventbus.spi.Subscribe;
+import com.netflix.eventbus.spi.SubscriberConfigProvider;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ConsumerReconfigurationTest {
+
+    private static final int EVENT_COUNT = 5000;
+
+    @Test
+    public void testQueueResizeByProperty() throws Exception {
+        EventBusImpl bus = new EventBusImpl();
+        StringSubscriber subscriber = new StringSubscriber(EVENT_COUNT);
+        bus.registerSubscriber(subscriber);
+        String queueSizeProp = getPropertyNamePrefix(StringSubscriber.class) + "queueSize";
+        ConcurrentCompositeConfiguration config = (ConcurrentCompositeConfiguration) ConfigurationManager.getConfigInstance();
+        try {
+            for (int i = 0; i < EVENT_COUNT; i++) {
+                if (i == EVENT_COUNT / 2) {
+                    config.setOverrideProperty(queueSizeProp, "20000");
+                }
+                bus.publish(String.valueOf(i));
+            }
+            Assert.assertEquals("Queue not resized.", 20000,
+                                getConsumer(bus, String.class).getSubscriberConfig().getQueueSize());
+            Assert.assertTrue("Not all events received.", subscriber.received.await(1, TimeUnit.MINUTES));
+            assertInOrder(subscriber.events);
+        } finally {
+            config.clearOverrideProperty(queueSizeProp);
+            bus.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatchAgeChangeByProperty() throws Exception {
+        EventBusImpl bus = new EventBusImpl();
+        BatchingSubscriber subscriber = new BatchingSubscriber(EVENT_COUNT);
+        bus.registerSubscriber(subscriber);
+        String batchAgeProp = getPropertyNamePrefix(BatchingSubscriber.class) + "batchAge";
+        ConcurrentCompositeConfiguration config = (ConcurrentCompositeConfiguration) ConfigurationManager.getConfigInstance();
+        try {
+            for (int i = 0; i < EVENT_COUNT; i++) {
+                if (i == EVENT_COUNT / 2) {
+                    config.setOverrideProperty(batchAgeProp, "10");
+                }
+                bus.publish(i);
+            }
+            Assert.assertEquals("Batch age not changed.", 10,
+                                getConsumer(bus, Integer.class).getSubscriberConfig().getBatchAge());
+            Assert.assertTrue("Not all events received.", subscriber.received.await(1, TimeUnit.MINUTES));
+            assertInOrder(subscriber.events);
+        } finally {
+            config.clearOverrideProperty(batchAgeProp);
+            bus.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatchingToNoneRejected() throws Exception {
+        EventBusImpl bus = new EventBusImpl();
+        bus.registerSubscriber(new BatchingSubscriber(0));
+        EventConsumer consumer = getConsumer(bus, Integer.class);
+        Assert.assertFalse("Batching strategy changed to None.",
+                           consumer.reconfigure(new Config(Subscribe.BatchingStrategy.None, 100, 100, 1000)));
+        Assert.assertEquals("Batching strategy changed.", Subscribe.BatchingStrategy.Age,
+                            consumer.getSubscriberConfig().getBatchingStrategy());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testRefreshConfigProvider() throws Exception {
+        EventBusImpl bus = new EventBusImpl();
+        ProvidingSubscriber subscriber = new ProvidingSubscriber();
+        bus.registerSubscriber(subscriber);
+        Assert.assertEquals("Consumer reconfigured without a change.", 0, bus.refreshSubscriberConfigs());
+
+        subscriber.config = new Config(Subscribe.BatchingStrategy.SizeOrAge, 50, 100, 200);
+        Assert.assertEquals("Consumer not reconfigured.", 1, bus.refreshSubscriberConfigs());
+        SubscriberConfigProvider.SubscriberConfig reconfigured = getConsumer(bus, Integer.class).getSubscriberConfig();
+        Assert.assertEquals("Batching strategy not changed.", Subscribe.BatchingStrategy.SizeOrAge,
+                            reconfigured.getBatchingStrategy());
+        Assert.assertEquals("Queue size not changed.", 200, reconfigured.getQueueSize());
+
+        for (int i = 0; i < 20; i++) {
+            bus.publish(i);
+        }
+        Assert.assertTrue("Events not received after reconfiguration.", subscriber.received.await(1, TimeUnit.MINUTES));
+        bus.shutdown();
+    }
+
+    @Test
+    public void testRetirementDoesNotWaitForPoller() throws Exception {
+        EventBusImpl bus = new EventBusImpl();
+        BlockingSubscriber subscriber = new BlockingSubscriber();
+        bus.registerSubscriber(subscriber);
+        try {
+            bus.publish("first");
+            Assert.assertTrue("First event not taken.", subscriber.taken.await(1, TimeUnit.MINUTES));
+            bus.publish("event0");
+            bus.publish("event1"); // Fills the queue, so the retired marker can not be offered.
+
+            EventConsumer consumer = getConsumer(bus, String.class);
+            long startNanos = System.nanoTime();
+            Assert.assertTrue("Consumer not reconfigured.",
+                              consumer.reconfigure(new Config(Subscribe.BatchingStrategy.None, 100, 100, 10)));
+            Assert.assertTrue("Retirement of a full queue waited for the poller.",
+                              System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(5));
+            bus.publish("event2");
+            bus.publish("event3");
+
+            subscriber.release.countDown();
+            Assert.assertTrue("Not all events received.", subscriber.received.await(1, TimeUnit.MINUTES));
+            Assert.assertEquals("Events lost or reordered by the retirement.",
+                                Arrays.asList("first", "event0", "event1", "event2", "event3"), subscriber.events);
+        } finally {
+            subscriber.release.countDown();
+            bus.shutdown();
+        }
+    }
+
+    private static String getPropertyNamePrefix(Class<?> subscriberClass) throws NoSuchMethodException {
+        for (java.lang.reflect.Method method : subscriberClass.getDeclaredMethods()) {
+            if (method.isAnnotationPresent(Subscribe.class)) {
+                return SubscriberConfigOverrides.getPropertyNamePrefix(method);
+            }
+        }
+        throw new NoSuchMethodException("No subscriber method in " + subscriberClass);
+    }
+
+    private static EventConsumer getConsumer(EventBusImpl bus, Class<?> eventType) {
+        return bus.getEventConsumer(eventType).iterator().next();
+    }
+
+    private static void assertInOrder(List<Object> events) {
+        Assert.assertEquals("Unexpected event count.", EVENT_COUNT, events.size());
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            Assert.assertEquals("Out of order event.", String.valueOf(i), String.valueOf(events.get(i)));
+        }
+    }
+
+    public static class StringSubscriber {
+
+        private final List<Object> events = new CopyOnWriteArrayList<Object>();
+        private final CountDownLatch received;
+
+        public StringSubscriber(int expected) {
+            received = new CountDownLatch(expected);
+        }
+
+        @Subscribe(queueSize = 10000)
+        public void consume(String event) {
+            events.add(event);
+            received.countDown();
+        }
+    }
+
+    public static class BatchingSubscriber {
+
+        private final List<Object> events = new CopyOnWriteArrayList<Object>();
+        private final CountDownLatch received;
+
+        public BatchingSubscriber(int expected) {
+            received = new CountDownLatch(expected);
+        }
+
+        @Subscribe(batchingStrategy = Subscribe.BatchingStrategy.Age, batchAge = 100, queueSize = 10000)
+        public void consume(Iterable<Integer> batch) {
+            for (Integer event : batch) {
+                events.add(event);
+                received.countDown();
+            }
+        }
+    }
+
+    public static class BlockingSubscriber {
+
+        private final List<Object> events = new CopyOnWriteArrayList<Object>();
+        private final CountDownLatch taken = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch received = new CountDownLatch(5);
+
+        @Subscribe(queueSize = 2)
+        public void consume(String event) throws InterruptedException {
+            taken.countDown();
+            release.await();
+            events.add(event);
+            received.countDown();
+        }
+    }
+
+    public static class ProvidingSubscriber implements SubscriberConfigProvider {
+
+        private volatile SubscriberConfig config = new Config(Subscribe.BatchingStrategy.Age, 50, 100, 100);
+        private final CountDownLatch received = new CountDownLatch(20);
+
+        @Override
+        public SubscriberConfig getConfigForName(String subscriberName) {
+            return config;
+        }
+
+        @Subscribe(name = "provided", batchingStrategy = Subscribe.BatchingStrategy.Age, batchAge = 50)
+        public void consume(Iterable<Integer> batch) {
+            for (Integer event : batch) {
+                received.countDown();
+            }
+        }
+    }
+
+    static class Config implements SubscriberConfigProvider.SubscriberConfig {
+
+        private final Subscribe.BatchingStrategy batchingStrategy;
+        private final int batchAge;
+        private final int batchSize;
+        private final int queueSize;
+
+        Config(Subscribe.BatchingStrategy batchingStrategy, int batchAge, int batchSize, int queueSize) {
+            this.batchingStrategy = batchingStrategy;
+            this.batchAge = batchAge;
+            this.batchSize = batchSize;
+            this.queueSize = queueSize;
+        }
+
+        @Override
+        public Subscribe.BatchingStrategy getBatchingStrategy() {
+            return batchingStrategy;
+        }
+
+        @Override
+        public int getBatchAge() {
+            return batchAge;
+        }
+
+        @Override
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        @Override
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        @Override
+        public boolean syncIfAllowed() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.netflix.eventbus.impl;
+
+import com.netflix.eventbus.spi.Subscribe;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class DispatchLanesTest {
+
+    private static final int LANES = 4;
+    private static final int EVENTS_PER_KEY = 500;
+
+    @Test
+    public void testMergedKeyedOrdering() throws Exception {
+        EventBusImpl bus = new EventBusImpl(null, LANES);
+        Assert.assertEquals("Unexpected lane count.", LANES, bus.getDispatchLaneCount());
+        MergedSubscriber subscriber = new MergedSubscriber(LANES * EVENTS_PER_KEY);
+        bus.registerSubscriber(subscriber);
+
+        publishKeyed(bus);
+
+        Assert.assertTrue("Not all events received.", subscriber.received.await(1, TimeUnit.MINUTES));
+        assertOrderedPerKey(subscriber.eventsByKey);
+        Assert.assertEquals("Merged lanes consumed by more than one thread.", 1, subscriber.threads.size());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testPerLaneKeyedOrdering() throws Exception {
+        EventBusImpl bus = new EventBusImpl(null, LANES);
+        PerLaneSubscriber subscriber = new PerLaneSubscriber(LANES * EVENTS_PER_KEY);
+        bus.registerSubscriber(subscriber);
+
+        publishKeyed(bus);
+
+        Assert.assertTrue("Not all events received.", subscriber.received.await(1, TimeUnit.MINUTES));
+        assertOrderedPerKey(subscriber.eventsByKey);
+        Set<Integer> usedLanes = new HashSet<Integer>();
+        DispatchLanes lanes = new DispatchLanes(LANES);
+        for (int key = 0; key < LANES; key++) {
+            usedLanes.add(lanes.laneForKey(key));
+        }
+        Assert.assertEquals("Unexpected consumer threads.", usedLanes.size(), subscriber.threads.size());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testAsyncPublishKeepsKeyedLane() throws Exception {
+        EventBusImpl bus = new EventBusImpl(null, LANES);
+        bus.setAsyncPublish(true);
+        PerLaneSubscriber subscriber = new PerLaneSubscriber(LANES * EVENTS_PER_KEY);
+        bus.registerSubscriber(subscriber);
+
+        // A single publisher, so without the keys all events would be dispatched in the lane of one dispatcher.
+        for (int sequence = 0; sequence < EVENTS_PER_KEY; sequence++) {
+            for (int key = 0; key < LANES; key++) {
+                while (!bus.publishAsync(new KeyedEvent(key, sequence), key)) {
+                    Thread.yield(); // Ring full.
+                }
+            }
+        }
+
+        Assert.assertTrue("Not all events received.", subscriber.received.await(1, TimeUnit.MINUTES));
+        assertOrderedPerKey(subscriber.eventsByKey);
+        Set<Integer> usedLanes = new HashSet<Integer>();
+        DispatchLanes lanes = new DispatchLanes(LANES);
+        for (int key = 0; key < LANES; key++) {
+            usedLanes.add(lanes.laneForKey(key));
+        }
+        Assert.assertTrue("Keys map to a single lane.", usedLanes.size() > 1);
+        Assert.assertEquals("Lane keys lost by async publish.", usedLanes.size(), subscriber.threads.size());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testAsyncPublishKeepsThreadLane() throws Exception {
+        final EventBusImpl bus = new EventBusImpl(null, LANES);
+        bus.setAsyncPublish(true);
+        PerLaneSubscriber subscriber = new PerLaneSubscriber(LANES * EVENTS_PER_KEY);
+        bus.registerSubscriber(subscriber);
+
+        // Unkeyed, so the events of a publisher must be dispatched in its lane, not in the lane of the dispatcher.
+        final Set<Integer> publisherLanes = new HashSet<Integer>();
+        List<Thread> publishers = new ArrayList<Thread>();
+        for (int i = 0; i < LANES; i++) {
+            final int key = i;
+            publishers.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (publisherLanes) {
+                        publisherLanes.add(bus.getThreadLane());
+                    }
+                    for (int sequence = 0; sequence < EVENTS_PER_KEY; sequence++) {
+                        while (!bus.publishAsync(new KeyedEvent(key, sequence))) {
+                            Thread.yield(); // Ring full.
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread publisher : publishers) {
+            publisher.start();
+            publisher.join();
+        }
+
+        Assert.assertTrue("Not all events received.", subscriber.received.await(1, TimeUnit.MINUTES));
+        assertOrderedPerKey(subscriber.eventsByKey);
+        Assert.assertTrue("Publishers in a single lane.", publisherLanes.size() > 1);
+        Assert.assertEquals("Lanes of the publishers lost by async publish.", publisherLanes.size(),
+                            subscriber.threads.size());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testThreadLanes() throws Exception {
+        final DispatchLanes lanes = new DispatchLanes(LANES);
+        final Set<Integer> threadLanes = new HashSet<Integer>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < LANES; i++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    int lane = lanes.currentLane();
+                    Assert.assertEquals("Thread changed lanes.", lane, lanes.currentLane());
+                    int previous = lanes.beginKeyedLane("key");
+                    Assert.assertEquals("Unexpected keyed lane.", lanes.laneForKey("key"), lanes.currentLane());
+                    lanes.endKeyedLane(previous);
+                    Assert.assertEquals("Thread lane not restored.", lane, lanes.currentLane());
+                    synchronized (threadLanes) {
+                        threadLanes.add(lane);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+            thread.join();
+        }
+        Assert.assertEquals("Threads not spread over all lanes.", LANES, threadLanes.size());
+    }
+
+    @Test
+    public void testBatchingSubscriberNotLaned() throws Exception {
+        EventBusImpl bus = new EventBusImpl(null, LANES);
+        BatchingSubscriber subscriber = new BatchingSubscriber();
+        bus.registerSubscriber(subscriber);
+        for (int i = 0; i < 10; i++) {
+            bus.publish(new KeyedEvent(i, 0), i);
+        }
+        Assert.assertTrue("Batched events not received.", subscriber.received.await(1, TimeUnit.MINUTES));
+        bus.shutdown();
+    }
+
+    @Test
+    public void testSmallQueueNotLaned() throws Exception {
+        EventBusImpl bus = new EventBusImpl(null, LANES);
+        SmallQueueSubscriber subscriber = new SmallQueueSubscriber(150);
+        bus.registerSubscriber(subscriber);
+
+        // A single key, i.e. a single lane, can fill the whole queue as it is too small to be split.
+        for (int i = 0; i < 150; i++) {
+            bus.publish(new KeyedEvent(0, i), 0);
+        }
+        subscriber.release.countDown();
+
+        Assert.assertTrue("Events of a single lane rejected before the queue is full.",
+                          subscriber.received.await(1, TimeUnit.MINUTES));
+        assertOrderedPerKey(subscriber.eventsByKey, 1, 150);
+        Assert.assertEquals("Unsplit queue consumed by more than one thread.", 1, subscriber.threads.size());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testPerLaneQueueNotResizedBelowSplit() throws Exception {
+        EventBusImpl bus = new EventBusImpl(null, LANES);
+        PerLaneSubscriber subscriber = new PerLaneSubscriber(LANES);
+        bus.registerSubscriber(subscriber);
+        EventConsumer consumer = bus.getEventConsumer(KeyedEvent.class).iterator().next();
+        Assert.assertFalse("Per-lane queue resized to an unsplit queue.", consumer.reconfigure(
+                new ConsumerReconfigurationTest.Config(Subscribe.BatchingStrategy.None, 100, 100, 200)));
+        Assert.assertEquals("Queue size changed.", 100000, consumer.getSubscriberConfig().getQueueSize());
+
+        for (int key = 0; key < LANES; key++) {
+            bus.publish(new KeyedEvent(key, 0), key);
+        }
+        Assert.assertTrue("Events not received after a rejected resize.", subscriber.received.await(1, TimeUnit.MINUTES));
+        bus.shutdown();
+    }
+
+    @Test
+    public void testSaturationPerLane() throws Exception {
+        EventBusImpl bus = new EventBusImpl(null, LANES);
+        SplitQueueSubscriber subscriber = new SplitQueueSubscriber(160);
+        bus.registerSubscriber(subscriber);
+
+        // All to the lane of this thread, which holds a quarter of the queue.
+        for (int i = 0; i < 160; i++) {
+            bus.publish(new KeyedEvent(0, i));
+        }
+        Assert.assertTrue("Lane filled to three quarters not saturated.", bus.isSaturated(KeyedEvent.class));
+
+        subscriber.release.countDown();
+        Assert.assertTrue("Not all events received.", subscriber.received.await(1, TimeUnit.MINUTES));
+        Assert.assertFalse("Saturated with an empty queue.", bus.isSaturated(KeyedEvent.class));
+        bus.shutdown();
+    }
+
+    private static void publishKeyed(final EventBusImpl bus) throws InterruptedException {
+        List<Thread> publishers = new ArrayList<Thread>();
+        for (int i = 0; i < LANES; i++) {
+            final int key = i;
+            publishers.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int sequence = 0; sequence < EVENTS_PER_KEY; sequence++) {
+                        bus.publish(new KeyedEvent(key, sequence), key);
+                    }
+                }
+            }));
+        }
+        for (Thread publisher : publishers) {
+            publisher.start();
+        }
+        for (Thread publisher : publishers) {
+            publisher.join();
+        }
+    }
+
+    private static void assertOrderedPerKey(Map<Integer, List<Integer>> eventsByKey) {
+        assertOrderedPerKey(eventsByKey, LANES, EVENTS_PER_KEY);
+    }
+
+    private static void assertOrderedPerKey(Map<Integer, List<Integer>> eventsByKey, int keys, int eventsPerKey) {
+        Assert.assertEquals("Unexpected keys.", keys, eventsByKey.size());
+        for (Map.Entry<Integer, List<Integer>> entry : eventsByKey.entrySet()) {
+            List<Integer> sequences = entry.getValue();
+            Assert.assertEquals("Unexpected events for key: " + entry.getKey(), eventsPerKey, sequences.size());
+            for (int i = 0; i < sequences.size(); i++) {
+                Assert.assertEquals("Out of order event for key: " + entry.getKey(), i, sequences.get(i).intValue());
+            }
+        }
+    }
+
+    public static class KeyedEvent {
+
+        private final int key;
+        private final int sequence;
+
+        public KeyedEvent(int key, int sequence) {
+            this.key = key;
+            this.sequence = sequence;
+        }
+    }
+
+    public static class MergedSubscriber {
+
+        protected final Map<Integer, List<Integer>> eventsByKey = new ConcurrentHashMap<Integer, List<Integer>>();
+        protected final Set<String> threads = new HashSet<String>();
+        protected final CountDownLatch received;
+
+        public MergedSubscriber(int expected) {
+            received = new CountDownLatch(expected);
+        }
+
+        @Subscribe(queueSize = 100000)
+        public void consume(KeyedEvent event) {
+            record(event);
+        }
+
+        protected void record(KeyedEvent event) {
+            synchronized (threads) {
+                threads.add(Thread.currentThread().getName());
+                List<Integer> sequences = eventsByKey.get(event.key);
+                if (null == sequences) {
+                    sequences = new ArrayList<Integer>();
+                    eventsByKey.put(event.key, sequences);
+                }
+                sequences.add(event.sequence);
+            }
+            received.countDown();
+        }
+    }
+
+    public static class PerLaneSubscriber extends MergedSubscriber {
+
+        public PerLaneSubscriber(int expected) {
+            super(expected);
+        }
+
+        @Override
+        @Subscribe(queueSize = 100000, laneOrdering = Subscribe.LaneOrdering.PerLane)
+        public void consume(KeyedEvent event) {
+            record(event);
+        }
+    }
+
+    public static class SmallQueueSubscriber extends MergedSubscriber {
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        public SmallQueueSubscriber(int expected) {
+            super(expected);
+        }
+
+        @Override
+        @Subscribe(queueSize = 200, laneOrdering = Subscribe.LaneOrdering.PerLane)
+        public void consume(KeyedEvent event) {
+            try {
+                release.await(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            record(event);
+        }
+    }
+
+    public static class SplitQueueSubscriber extends MergedSubscriber {
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        public SplitQueueSubscriber(int expected) {
+            super(expected);
+        }
+
+        @Override
+        @Subscribe(queueSize = 800)
+        public void consume(KeyedEvent event) {
+            try {
+                release.await(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            record(event);
+        }
+    }
+
+    public static class BatchingSubscriber {
+
+        private final CountDownLatch received = new CountDownLatch(10);
+
+        @Subscribe(batchingStrategy = Subscribe.BatchingStrategy.Age, batchAge = 100)
+        public void consume(Iterable<KeyedEvent> events) {
+            for (KeyedEvent event : events) {
+                received.countDown();
+            }
+        }
+    }
+}
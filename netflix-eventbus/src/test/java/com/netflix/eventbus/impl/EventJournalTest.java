@@ -0,0 +1,126 @@
+package com.netflix.eventbus.impl;
+
+import com.netflix.eventbus.spi.Subscribe;
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class EventJournalTest {
+
+    private File journalFile;
+
+    @Before
+    public void setUp() throws Exception {
+        journalFile = File.createTempFile("eventbus-journal-test", ".journal");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        journalFile.delete();
+    }
+
+    @Test
+    public void testCaptureAndRead() throws Exception {
+        EventBusImpl bus = new EventBusImpl();
+        // Small regions so that the capture spans multiple regions.
+        EventJournalWriter writer = new EventJournalWriter(journalFile, new StringEventCodec(), 64, 1024 * 1024);
+        Assert.assertNull("Unexpected existing capture.", bus.startJournalCapture(writer));
+        for (int i = 0; i < 100; i++) {
+            bus.publish("event" + i);
+        }
+        Assert.assertSame("Unexpected stopped capture.", writer, bus.stopJournalCapture());
+        bus.publish("not captured");
+        writer.close();
+
+        Assert.assertEquals("Unexpected captured events.", 100, writer.getEventCount());
+        Assert.assertEquals("Unexpected dropped events.", 0, writer.getDroppedCount());
+
+        EventJournalReader reader = new EventJournalReader(journalFile, new StringEventCodec(), 100);
+        long lastTimestamp = -1;
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue("Journal ended early at event: " + i, reader.next());
+            Assert.assertEquals("Unexpected event.", "event" + i, reader.getEvent());
+            Assert.assertTrue("Timestamps not monotonic.", reader.getTimestampNanos() >= lastTimestamp);
+            lastTimestamp = reader.getTimestampNanos();
+        }
+        Assert.assertFalse("Unexpected event after the last captured event.", reader.next());
+        reader.close();
+        bus.shutdown();
+    }
+
+    @Test
+    public void testMaxJournalSize() throws Exception {
+        EventJournalWriter writer = new EventJournalWriter(journalFile, new StringEventCodec(), 64, 64);
+        int appended = 0;
+        while (writer.append("event" + appended)) {
+            appended++;
+        }
+        Assert.assertTrue("Nothing appended.", appended > 0);
+        Assert.assertEquals("Unexpected dropped events.", 1, writer.getDroppedCount());
+        writer.close();
+        Assert.assertTrue("Journal larger than its max size.", journalFile.length() <= 64);
+    }
+
+    @Test
+    public void testReplayFlatOut() throws Exception {
+        EventJournalWriter writer = new EventJournalWriter(journalFile, new StringEventCodec());
+        for (int i = 0; i < 10; i++) {
+            writer.append(TimeUnit.SECONDS.toNanos(i), "event" + i); // Would take 9 seconds at original speed.
+        }
+        writer.close();
+
+        EventBusImpl bus = new EventBusImpl();
+        RecordingSubscriber subscriber = new RecordingSubscriber(10);
+        bus.registerSubscriber(subscriber);
+
+        long start = System.currentTimeMillis();
+        long published = new EventJournalReplayer(journalFile, new StringEventCodec(), EventJournalReplayer.FLAT_OUT)
+                .replay(bus);
+        Assert.assertEquals("Unexpected replayed events.", 10, published);
+        Assert.assertTrue("Flat out replay was paced.", System.currentTimeMillis() - start < 5000);
+        Assert.assertTrue("Replayed events not received.", subscriber.received.await(1, TimeUnit.MINUTES));
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals("Unexpected replay order.", "event" + i, subscriber.events.get(i));
+        }
+        bus.shutdown();
+    }
+
+    @Test
+    public void testReplayPaced() throws Exception {
+        EventJournalWriter writer = new EventJournalWriter(journalFile, new StringEventCodec());
+        for (int i = 0; i < 5; i++) {
+            writer.append(TimeUnit.MILLISECONDS.toNanos(i * 100), "event" + i);
+        }
+        writer.close();
+
+        EventBusImpl bus = new EventBusImpl();
+        long start = System.nanoTime();
+        new EventJournalReplayer(journalFile, new StringEventCodec(), 2).replay(bus);
+        long tookMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assert.assertTrue("Replay at 2x finished too early: " + tookMillis, tookMillis >= 200);
+        bus.shutdown();
+    }
+
+    public static class RecordingSubscriber {
+
+        final List<String> events = new CopyOnWriteArrayList<String>();
+        final CountDownLatch received;
+
+        public RecordingSubscriber(int expected) {
+            received = new CountDownLatch(expected);
+        }
+
+        @Subscribe
+        public void consume(String event) {
+            events.add(event);
+            received.countDown();
+        }
+    }
+}
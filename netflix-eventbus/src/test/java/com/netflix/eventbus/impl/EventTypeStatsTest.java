@@ -0,0 +1,81 @@
+package com.netflix.eventbus.impl;
+
+import com.netflix.eventbus.filter.AlwaysTrueEventFilter;
+import com.netflix.eventbus.spi.EventFilter;
+import com.netflix.eventbus.spi.Subscribe;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import javax.annotation.Nullable;
+
+public class EventTypeStatsTest {
+
+    @Test
+    public void testPublishCounts() throws Exception {
+        EventBusImpl bus = new EventBusImpl();
+        bus.registerSubscriber(new StringSubscriber());
+        bus.registerSubscriber(new CharSequenceSubscriber());
+        bus.addFilterForEvent(new RejectAllFilter(), Integer.class);
+        bus.addFilterForEvent(AlwaysTrueEventFilter.INSTANCE, String.class);
+
+        bus.publish("event1");
+        bus.publish("event2");
+        bus.publish(1);
+
+        EventTypeStats.TypeCounters stringCounters = bus.getEventTypeStats().getCounters(String.class);
+        Assert.assertEquals("Unexpected published.", 2, stringCounters.published.getValue().longValue());
+        Assert.assertEquals("Unexpected filtered.", 0, stringCounters.filtered.getValue().longValue());
+        Assert.assertEquals("Unexpected fan out.", 4, stringCounters.fanOut.getValue().longValue());
+
+        EventTypeStats.TypeCounters integerCounters = bus.getEventTypeStats().getCounters(Integer.class);
+        Assert.assertEquals("Unexpected published.", 1, integerCounters.published.getValue().longValue());
+        Assert.assertEquals("Unexpected filtered.", 1, integerCounters.filtered.getValue().longValue());
+        Assert.assertEquals("Unexpected fan out.", 0, integerCounters.fanOut.getValue().longValue());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testCardinalityLimit() throws Exception {
+        EventTypeStats stats = new EventTypeStats(2);
+        EventTypeStats.TypeCounters stringCounters = stats.getCounters(String.class);
+        Assert.assertEquals("Unexpected event type.", String.class.getName(), stringCounters.getEventType());
+        Assert.assertSame("Counters not reused.", stringCounters, stats.getCounters(String.class));
+        stats.getCounters(Integer.class);
+        Assert.assertEquals("Type over the limit not counted as other.", EventTypeStats.OTHER_TYPES,
+                            stats.getCounters(Long.class).getEventType());
+        Assert.assertEquals("Unexpected tracked types.", 3, stats.getAllCounters().size());
+        stats.shutdown();
+    }
+
+    public static class StringSubscriber {
+
+        @Subscribe
+        public void consume(String event) {
+        }
+    }
+
+    public static class CharSequenceSubscriber {
+
+        @Subscribe
+        public void consume(CharSequence event) {
+        }
+    }
+
+    private static class RejectAllFilter implements EventFilter {
+
+        @Override
+        public boolean apply(@Nullable Object input) {
+            return false;
+        }
+
+        @Override
+        public String getLanguage() {
+            return "none";
+        }
+
+        @Override
+        public String serialize() {
+            return null;
+        }
+    }
+}
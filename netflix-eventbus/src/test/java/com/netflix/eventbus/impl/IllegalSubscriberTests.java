@@ -2,8 +2,11 @@ package com.netflix.eventbus.impl;
 
 import com.netflix.eventbus.spi.InvalidSubscriberException;
 import com.netflix.eventbus.spi.Subscribe;
+import junit.framework.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 /**
  * @author Nitesh Kant (nkant@netflix.com)
  */
@@ -61,6 +64,26 @@ public class IllegalSubscriberTests {
         registerInvalidSub(bus, multiArgSub, "Batching subscriber with no batch age not invalid!");
     }
 
+    @Test
+    public void testInvalidSubscriberRegisteredTwice() throws Exception {
+        EventBusImpl bus = new EventBusImpl();
+        registerInvalidSub(bus, new MultiArgSubscriber(), "Subscriber with two arguments not invalid!");
+        registerInvalidSub(bus, new MultiArgSubscriber(), "Subscriber with two arguments not invalid on second registration!");
+    }
+
+    @Test
+    public void testBulkRegisterWithAnInvalidSubscriber() throws Exception {
+        EventBusImpl bus = new EventBusImpl();
+        try {
+            bus.registerSubscribers(Arrays.asList(new ValidSubscriber(), new MultiArgSubscriber()));
+            throw new AssertionError("Bulk registration with an invalid subscriber succeeded!");
+        } catch (InvalidSubscriberException e) {
+            // expected.
+        }
+        Assert.assertTrue("Valid subscriber registered by a failed bulk registration.",
+                          bus.getEventConsumer(String.class).isEmpty());
+    }
+
     private void registerInvalidSub(EventBusImpl bus, Object multiArgSub, String errorMessage) throws InvalidSubscriberException {
         try {
             bus.registerSubscriber(multiArgSub);
@@ -69,4 +92,20 @@ public class IllegalSubscriberTests {
             // expected.
         }
     }
+
+    public static class MultiArgSubscriber {
+
+        @Subscribe
+        public void subscribe(String s, String s1) {
+
+        }
+    }
+
+    public static class ValidSubscriber {
+
+        @Subscribe
+        public void subscribe(String s) {
+
+        }
+    }
 }
@@ -0,0 +1,163 @@
+package com.netflix.eventbus.impl;
+
+import com.netflix.eventbus.spi.EventWeigher;
+import com.netflix.eventbus.spi.Subscribe;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class MemoryBudgetTest {
+
+    @Test
+    public void testFairShareAndBorrowing() throws Exception {
+        MemoryBudget budget = new MemoryBudget(MemoryBudgetConfig.builder().withCapacity(100).build(), "test");
+        MemoryBudget.Account busy = budget.newAccount();
+        MemoryBudget.Account idle = budget.newAccount();
+        Assert.assertEquals("Unexpected fair share.", 25, budget.getFairShare());
+
+        Assert.assertTrue("Fair share not acquired.", busy.acquire(25));
+        Assert.assertEquals("Fair share borrowed.", 0, budget.getBorrowed());
+        Assert.assertTrue("Shared part not borrowed.", busy.acquire(50));
+        Assert.assertEquals("Unexpected borrowed weight.", 50, budget.getBorrowed());
+        Assert.assertFalse("Acquired over the budget.", busy.acquire(1));
+        Assert.assertEquals("Rejection not counted.", 1, budget.getRejectedCount());
+
+        Assert.assertTrue("Fair share of an idle queue not available.", idle.acquire(25));
+        Assert.assertEquals("Unexpected used weight.", 100, budget.getUsed());
+
+        busy.release(10);
+        Assert.assertEquals("Borrowed weight not released first.", 40, budget.getBorrowed());
+        idle.close();
+        Assert.assertEquals("Closed account not released.", 65, budget.getUsed());
+        Assert.assertEquals("Fair share not recomputed.", 50, budget.getFairShare());
+        budget.shutdown();
+    }
+
+    @Test
+    public void testFairShareShrinkKeepsCapacity() throws Exception {
+        MemoryBudget budget = new MemoryBudget(MemoryBudgetConfig.builder().withCapacity(1000).build(), "test");
+        MemoryBudget.Account first = budget.newAccount();
+        Assert.assertTrue("Budget of a single account not acquired.", first.acquire(1000));
+
+        MemoryBudget.Account second = budget.newAccount();
+        MemoryBudget.Account third = budget.newAccount();
+        Assert.assertFalse("Fair share acquired over the reserved part.", second.acquire(100));
+        Assert.assertFalse("Fair share acquired over the reserved part.", third.acquire(1));
+        Assert.assertEquals("Budget exceeded.", 1000, budget.getUsed());
+
+        first.release(600);
+        Assert.assertTrue("Released weight not available.", second.acquire(166));
+        Assert.assertTrue("Released weight not available.", third.acquire(166));
+        Assert.assertTrue("Budget exceeded.", budget.getUsed() <= 1000);
+        budget.shutdown();
+    }
+
+    @Test
+    public void testBusRejectsOverBudget() throws Exception {
+        EventBusImpl bus = new EventBusImpl(null, 1, MemoryBudgetConfig.builder().withCapacity(10).build());
+        BlockingSubscriber subscriber = new BlockingSubscriber();
+        bus.registerSubscriber(subscriber);
+        bus.publish("first");
+        Assert.assertTrue("First event not taken.", subscriber.taken.await(1, TimeUnit.MINUTES));
+        for (int i = 0; i < 20; i++) {
+            bus.publish("event" + i);
+        }
+        MemoryBudget budget = bus.getMemoryBudget();
+        Assert.assertTrue("Budget exceeded.", budget.getUsed() <= 10);
+        Assert.assertTrue("No offer rejected by the budget.", budget.getRejectedCount() > 0);
+
+        subscriber.release.countDown();
+        long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+        while (budget.getUsed() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals("Budget not released after consumption.", 0, budget.getUsed());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testWeigher() throws Exception {
+        EventWeigher lengthWeigher = new EventWeigher() {
+            @Override
+            public long weigh(Object event) {
+                return ((String) event).length();
+            }
+        };
+        EventBusImpl bus = new EventBusImpl(null, 1, MemoryBudgetConfig.builder().withCapacity(10)
+                                                                       .withReservedFraction(0)
+                                                                       .withWeigher(lengthWeigher).build());
+        BlockingSubscriber subscriber = new BlockingSubscriber();
+        bus.registerSubscriber(subscriber);
+        bus.publish("first");
+        Assert.assertTrue("First event not taken.", subscriber.taken.await(1, TimeUnit.MINUTES));
+        bus.publish("123456");
+        bus.publish("1234");
+        MemoryBudget budget = bus.getMemoryBudget();
+        Assert.assertEquals("Unexpected used weight.", 10, budget.getUsed());
+        Assert.assertEquals("Reserved nothing, so all must be borrowed.", 10, budget.getBorrowed());
+        subscriber.release.countDown();
+        bus.shutdown();
+    }
+
+    @Test
+    public void testSaturatedByBudget() throws Exception {
+        EventBusImpl bus = new EventBusImpl(null, 1, MemoryBudgetConfig.builder().withCapacity(10).build());
+        BlockingSubscriber subscriber = new BlockingSubscriber();
+        bus.registerSubscriber(subscriber);
+        bus.publish("first");
+        Assert.assertTrue("First event not taken.", subscriber.taken.await(1, TimeUnit.MINUTES));
+        Assert.assertFalse("Saturated with an empty queue.", bus.isSaturated(String.class));
+        for (int i = 0; i < 8; i++) {
+            bus.publish("event" + i);
+        }
+        Assert.assertTrue("Not saturated with the budget almost used.", bus.isSaturated(String.class));
+        subscriber.release.countDown();
+        bus.shutdown();
+    }
+
+    @Test
+    public void testReconfigurationDoesNotLeakAccounts() throws Exception {
+        EventBusImpl bus = new EventBusImpl(null, 1, MemoryBudgetConfig.builder().withCapacity(1000).build());
+        bus.registerSubscriber(new BlockingSubscriber());
+        bus.registerSubscriber(new OtherSubscriber());
+        MemoryBudget budget = bus.getMemoryBudget();
+        int accounts = budget.getAccountCount();
+        long fairShare = budget.getFairShare();
+
+        EventConsumer consumer = bus.getEventConsumer(String.class).iterator().next();
+        for (int i = 1; i <= 10; i++) {
+            Assert.assertTrue("Consumer not reconfigured.", consumer.reconfigure(
+                    new ConsumerReconfigurationTest.Config(Subscribe.BatchingStrategy.None, 100, 100, 1000 + i)));
+        }
+        // The retired accounts are closed by the poller, once it consumed the retired queues.
+        long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+        while (budget.getAccountCount() != accounts && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals("Accounts of retired queues not closed.", accounts, budget.getAccountCount());
+        Assert.assertEquals("Fair share shrunk by retired queues.", fairShare, budget.getFairShare());
+        bus.shutdown();
+        Assert.assertEquals("Accounts not closed on shutdown.", 0, budget.getAccountCount());
+    }
+
+    public static class BlockingSubscriber {
+
+        private final CountDownLatch taken = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Subscribe(queueSize = 1000)
+        public void consume(String event) throws InterruptedException {
+            taken.countDown();
+            release.await();
+        }
+    }
+
+    public static class OtherSubscriber {
+
+        @Subscribe(queueSize = 1000)
+        public void consume(Integer event) {
+        }
+    }
+}
@@ -3,9 +3,11 @@ package com.netflix.eventbus.impl;
 import com.google.common.base.Predicate;
 import com.netflix.config.ConcurrentCompositeConfiguration;
 import com.netflix.config.ConfigurationManager;
+import com.netflix.eventbus.filter.AlwaysTrueEventFilter;
 import com.netflix.eventbus.filter.lang.infix.InfixEventFilter;
 import com.netflix.eventbus.filter.lang.infix.InfixFilterLanguageSupport;
 import com.netflix.eventbus.spi.DynamicSubscriber;
+import com.netflix.eventbus.spi.EventBus;
 import com.netflix.eventbus.spi.EventCreator;
 import com.netflix.eventbus.spi.EventFilter;
 import com.netflix.eventbus.spi.InvalidSubscriberException;
@@ -21,10 +23,12 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -85,17 +89,54 @@ public class NFEventBusTest {
         });
 
         LinkedBlockingQueue q = new LinkedBlockingQueue();
-		eventBus.enableCatchAllSubscriber(q);
+		assertTrue("Catch all sink not attached.", eventBus.enableCatchAllSubscriber(q));
+		assertFalse("Second catch all sink attached.", eventBus.enableCatchAllSubscriber(new LinkedBlockingQueue()));
 		eventBus.publish(new Event("name", 1));
-        assertEquals("No event enqueued to catch all subscriber.", 1, testAwareQueue.offeredCount.get());
-        assertNotNull("No event enqueued to catch all subscriber sink under 1 second.", q.poll(1, TimeUnit.SECONDS));
+        assertEquals("Catch all event enqueued to a consumer queue.", 0, testAwareQueue.offeredCount.get());
+        assertNotNull("No event offered to catch all subscriber sink.", q.poll());
         eventBus.disableCatchAllSubscriber();
         q.clear();
-        testAwareQueue.offeredCount.set(0);
 
         eventBus.publish(new Event("name", 1));
-        assertEquals("Event enqueued to catch all subscriber after disable.", 0, testAwareQueue.offeredCount.get());
-        assertNull("Event enqueued to catch all subscriber sink under 1 second after disable.", q.poll(1, TimeUnit.SECONDS));
+        assertNull("Event offered to catch all subscriber sink after disable.", q.poll());
+    }
+
+    @Test
+    public void testCatchAllSinkFull() throws Exception {
+        eventBus = new EventBusImpl();
+        LinkedBlockingQueue q = new LinkedBlockingQueue(1);
+        eventBus.enableCatchAllSubscriber(q);
+        long droppedBefore = eventBus.getEventTap().getSinkDroppedCount();
+        eventBus.publish(new Event("name", 1));
+        eventBus.publish(new Event("name", 2));
+        eventBus.publish(new Event("name", 3));
+        assertEquals("Unexpected events in the sink.", 1, q.size());
+        assertEquals("Unexpected dropped events.", 2, eventBus.getEventTap().getSinkDroppedCount() - droppedBefore);
+        eventBus.disableCatchAllSubscriber();
+    }
+
+    @Test
+    public void testTapRing() throws Exception {
+        eventBus = new EventBusImpl();
+        EventTap tap = eventBus.getEventTap();
+        eventBus.publish("before recording");
+        tap.startRecording();
+        tap.setSampleRate(Event.class, 0.0);
+        for (int i = 0; i < EventTap.DEFAULT_RING_SIZE + 10; i++) {
+            eventBus.publish("event" + i);
+            eventBus.publish(new Event("name", i));
+        }
+        tap.stopRecording();
+        eventBus.publish("after recording");
+
+        List<Object> snapshot = tap.snapshot();
+        assertEquals("Unexpected ring size.", EventTap.DEFAULT_RING_SIZE, snapshot.size());
+        assertEquals("Unexpected oldest event in the ring.", "event10", snapshot.get(0));
+        assertEquals("Unexpected newest event in the ring.", "event" + (EventTap.DEFAULT_RING_SIZE + 9),
+                     snapshot.get(snapshot.size() - 1));
+
+        tap.clearRing();
+        assertTrue("Ring not cleared.", tap.snapshot().isEmpty());
     }
 
 	@Test
@@ -228,6 +269,35 @@ public class NFEventBusTest {
 
     }
 
+    @Test
+    public void testPublishIfNotDeadReachesReplacedHandler() throws InvalidSubscriberException {
+        final EventBusImpl bus = eventBus;
+        TestAwareConsumerQueueSupplier consumerQueueSupplier = new TestAwareConsumerQueueSupplier();
+        bus.setConsumerQueueSupplier(consumerQueueSupplier);
+
+        final EventHandler handler = new EventHandler();
+        bus.registerSubscriber(handler);
+        final EventHandler replacement = new EventHandler();
+
+        // The only handler of the type is replaced after the liveness check, which drops the type from the registry.
+        TestAwareEventCreator creator = new TestAwareEventCreator(new Event("name", 1)) {
+            @Override
+            public List createEvent(Set<Class<?>> liveEventTypes) {
+                bus.unregisterSubscriber(handler);
+                try {
+                    bus.registerSubscriber(replacement);
+                } catch (InvalidSubscriberException e) {
+                    throw new IllegalStateException(e);
+                }
+                return super.createEvent(liveEventTypes);
+            }
+        };
+        bus.publishIffNotDead(creator, Event.class);
+
+        checkIfEventOfferedAndDispatched(consumerQueueSupplier.testAwareQueue, replacement);
+        assertEquals("Event received by the unregistered handler.", 0, handler.counterMockAnnotatable.get());
+    }
+
 	@Test
 	public void testPublishIfNotDeadForOneHandler() throws InvalidSubscriberException {
 		EventBusImpl bus = eventBus;
@@ -320,6 +390,61 @@ public class NFEventBusTest {
         });
     }
 
+    @Test
+    public void testUnregisterMultiMethodSubInstance() throws Exception {
+        EventBusImpl bus = eventBus;
+        MultiEventHandler sub1 = new MultiEventHandler();
+        MultiEventHandler sub2 = new MultiEventHandler();
+
+        bus.registerSubscriber(sub1);
+        bus.registerSubscriber(sub2);
+        assertEquals("Unexpected subscribers.", 4, bus.getAllSubscribers().size());
+
+        Assert.assertTrue("Subscriber instance not removed.", bus.unregisterSubscriber(sub1));
+        assertEquals("All methods of the subscriber instance not removed.", 2, bus.getAllSubscribers().size());
+        assertEquals("Unexpected subscribers for event.", 1, bus.getAllSubscribersForAnEvent(MockAnnotatable.class).size());
+        assertEquals("Unexpected subscribers for event2.", 1, bus.getAllSubscribersForAnEvent(Event2.class).size());
+        Assert.assertFalse("Subscriber instance removed twice.", bus.unregisterSubscriber(sub1));
+
+        Assert.assertTrue("Subscriber instance not removed.", bus.unregisterSubscriber(sub2));
+        Assert.assertTrue("Event types not removed with the last subscriber.", bus.getAllRegisteredEventTypes().isEmpty());
+    }
+
+    @Test
+    public void testDuplicateRegistrationIgnored() throws Exception {
+        EventBusImpl bus = eventBus;
+        EventHandler sub = new EventHandler();
+
+        bus.registerSubscriber(sub);
+        bus.registerSubscriber(sub);
+        assertEquals("Duplicate registration created a new consumer.", 1, bus.getEventConsumer(MockAnnotatable.class).size());
+
+        bus.registerSubscriber(AlwaysTrueEventFilter.INSTANCE, sub);
+        assertEquals("Registration with a filter not honored.", 2, bus.getEventConsumer(MockAnnotatable.class).size());
+    }
+
+    @Test
+    public void testInterfaceInheritedTwiceDeliveredOnce() throws Exception {
+        Class<?>[] hierarchy = EventBusImpl.getAllTypesForAnEventType(ReimplementingEvent.class);
+        assertEquals("Event hierarchy not breadth first or contains duplicates.",
+                     Arrays.<Class<?>>asList(ReimplementingEvent.class, Event.class, NamedAnnotatable.class,
+                                             MockAnnotatable.class),
+                     Arrays.asList(hierarchy));
+
+        EventBusImpl bus = eventBus;
+        EventHandler handler = new EventHandler();
+        bus.registerSubscriber(handler);
+        bus.publish(new ReimplementingEvent("name", 1));
+        synchronized (handler.mockReceiveMonitor) {
+            if (0 == handler.counterMockAnnotatable.get()) {
+                handler.mockReceiveMonitor.wait(1000);
+            }
+        }
+        Thread.sleep(100); // Gives a duplicate delivery a chance to arrive.
+        assertEquals("Event implementing an interface twice not delivered once.", 1,
+                     handler.counterMockAnnotatable.get());
+    }
+
     @Test
     public void testSubOnObjectDisallowed() throws Exception {
         EventBusImpl bus = eventBus;
@@ -423,6 +548,29 @@ public class NFEventBusTest {
         assertEquals("Dynamic Handler received event it did not subscribe to!", 0, testAwareQueue.offeredCount.get());
     }
 
+    @Test
+    public void testRegisterSubscribers() throws Exception {
+        EventBusImpl bus = eventBus;
+        final TestAwareQueue testAwareQueue = new TestAwareQueue();
+        bus.setConsumerQueueSupplier(new EventBusImpl.ConsumerQueueSupplier() {
+            @Override
+            public ConsumerQueue get(Method subscriber, SubscriberConfigProvider.SubscriberConfig subscriberConfig, AtomicLong queueSizeCounter) {
+                return testAwareQueue.setQueueSizeCounter(queueSizeCounter);
+            }
+        });
+
+        bus.registerSubscribers(Arrays.asList(new StatefulEventHandler("one"), new StatefulEventHandler("two"),
+                                              new Event2Handler()));
+        assertEquals("Unexpected consumers for event.", 2, bus.getEventConsumer(MockAnnotatable.class).size());
+        assertEquals("Unexpected consumers for event2.", 1, bus.getEventConsumer(Event2.class).size());
+
+        bus.publish(new Event("name", 1));
+        assertEquals("Event not offered to all bulk registered subscribers.", 2, testAwareQueue.offeredCount.get());
+
+        Set<Object> removedSubs = bus.unregisterSubscriber(StatefulEventHandler.class);
+        assertEquals("Bulk registered subscribers of the same class not removed.", 2, removedSubs.size());
+    }
+
     @Test
     public void testSyncPublish() throws Exception {
         ((ConcurrentCompositeConfiguration)ConfigurationManager.getConfigInstance()).setOverrideProperty(
@@ -483,6 +631,133 @@ public class NFEventBusTest {
     }
 
 
+    @Test
+    public void testSyncPublishWhitelist() throws Exception {
+        ConcurrentCompositeConfiguration config = (ConcurrentCompositeConfiguration)ConfigurationManager.getConfigInstance();
+        config.setOverrideProperty(SyncSubscribersGatekeeper.ALLOW_SYNC_SUBSCRIBERS, true);
+        config.setOverrideProperty(SyncSubscribersGatekeeper.SYNC_SUBSCRIBERS_WHITELIST_JSON,
+                                   "{\"" + SyncEventHandler.class.getName() + "\" : [\"" + Event2.class.getName() + "\"]}");
+        try {
+            EventBusImpl bus = eventBus;
+            final TestAwareQueue testAwareQueue = new TestAwareQueue();
+            bus.setConsumerQueueSupplier(new EventBusImpl.ConsumerQueueSupplier() {
+                @Override
+                public ConsumerQueue get(Method subscriber, SubscriberConfigProvider.SubscriberConfig subscriberConfig, AtomicLong queueSizeCounter) {
+                    return testAwareQueue.setQueueSizeCounter(queueSizeCounter);
+                }
+            });
+
+            SyncEventHandler handler = new SyncEventHandler();
+            bus.registerSubscriber(handler);
+
+            bus.publish(new Event("name", 1));
+            assertEquals("Non whitelisted event consumed synchronously.", 1, testAwareQueue.offeredCount.get());
+
+            config.setOverrideProperty(SyncSubscribersGatekeeper.SYNC_SUBSCRIBERS_WHITELIST_JSON,
+                                       "{\"" + SyncEventHandler.class.getName() + "\" : []}");
+            bus.publish(new Event("name", 1));
+            assertEquals("Whitelisted event not consumed synchronously.", 1, testAwareQueue.offeredCount.get());
+        } finally {
+            config.clearProperty(SyncSubscribersGatekeeper.SYNC_SUBSCRIBERS_WHITELIST_JSON);
+        }
+    }
+
+
+    @Test
+    public void testPublishAll() throws Exception {
+        TestAwareConsumerQueueSupplier supplier = new TestAwareConsumerQueueSupplier();
+        eventBus.setConsumerQueueSupplier(supplier);
+        eventBus.registerSubscriber(new EventHandler());
+        TestAwareQueue eventQueue = supplier.testAwareQueue;
+        eventBus.registerSubscriber(new Event2Handler());
+        TestAwareQueue event2Queue = supplier.testAwareQueue;
+
+        eventBus.publishAll(Arrays.asList(new Event("name", 1), new Event("name", 2), new Event2("name", 3),
+                                          new Event("name", 4)));
+        assertEquals("Unexpected events offered.", 3, eventQueue.offeredCount.get());
+        assertEquals("Unexpected events offered.", 1, event2Queue.offeredCount.get());
+    }
+
+    @Test
+    public void testSaturation() throws Exception {
+        StuckHandler handler = new StuckHandler();
+        eventBus.registerSubscriber(handler);
+        eventBus.publish(new Event2("name", 0));
+        assertTrue("First event not taken.", handler.taken.await(1, TimeUnit.MINUTES));
+        assertFalse("Saturated with an empty queue.", eventBus.isSaturated(Event2.class));
+
+        List<Event2> events = new ArrayList<Event2>();
+        for (int i = 0; i < EventBus.CONSUMER_QUEUE_SIZE_DEFAULT * 3 / 4; i++) {
+            events.add(new Event2("name", i));
+        }
+        eventBus.publishAll(events);
+        assertTrue("Not saturated with a three quarters full queue.", eventBus.isSaturated(Event2.class));
+        assertFalse("Unrelated event type saturated.", eventBus.isSaturated(Event.class));
+        handler.release.countDown();
+    }
+
+    @Test
+    public void testConsumerLag() throws Exception {
+        StuckHandler handler = new StuckHandler();
+        eventBus.registerSubscriber(handler);
+        EventConsumerStats stats = eventBus.getEventConsumer(Event2.class).iterator().next().getStats();
+        assertEquals("Unexpected lag before publish.", 0, stats.getLagMillis());
+
+        eventBus.publish(new Event2("name", 1));
+        eventBus.publish(new Event2("name", 1));
+        assertTrue("First event not taken.", handler.taken.await(1, TimeUnit.MINUTES));
+        Thread.sleep(100);
+        assertTrue("Lag not reported for a stuck consumer.", stats.getLagMillis() >= 100);
+
+        handler.release.countDown();
+        long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+        while (stats.getLagMillis() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("Lag reported after the queue is drained.", 0, stats.getLagMillis());
+    }
+
+    @Test
+    public void testConsumerLagExcludesIdleTime() throws Exception {
+        StuckHandler handler = new StuckHandler();
+        eventBus.registerSubscriber(handler);
+        EventConsumerStats stats = eventBus.getEventConsumer(Event2.class).iterator().next().getStats();
+
+        eventBus.publish(new Event2("name", 1));
+        assertTrue("First event not taken.", handler.taken.await(1, TimeUnit.MINUTES));
+        Thread.sleep(300); // The queue is empty meanwhile.
+        eventBus.publish(new Event2("name", 2));
+        assertTrue("Lag includes the time the queue was empty.", stats.getLagMillis() < 300);
+        handler.release.countDown();
+    }
+
+    @Test
+    public void testCostliestSubscribers() throws Exception {
+        ConcurrentCompositeConfiguration config = (ConcurrentCompositeConfiguration)ConfigurationManager.getConfigInstance();
+        config.setOverrideProperty(ThreadResourceSampler.ACCOUNTING_ENABLED_PROP_NAME, true);
+        try {
+            CostlyHandler costlyHandler = new CostlyHandler();
+            eventBus.registerSubscriber(costlyHandler);
+            StuckHandler cheapHandler = new StuckHandler();
+            cheapHandler.release.countDown();
+            eventBus.registerSubscriber(cheapHandler);
+
+            for (int i = 0; i < 10; i++) {
+                eventBus.publish(new Event2("name", i));
+            }
+            assertTrue("Events not consumed.", costlyHandler.consumed.await(1, TimeUnit.MINUTES));
+
+            List<SubscriberCost> costliest = eventBus.getCostliestSubscribers(1);
+            assertEquals("Unexpected number of subscribers.", 1, costliest.size());
+            assertTrue("Unexpected costliest subscriber: " + costliest.get(0),
+                       costliest.get(0).getSubscriber().contains(CostlyHandler.class.getSimpleName()));
+            assertTrue("CPU time not accounted.", costliest.get(0).getCpuNanos() > 0);
+            assertEquals("Unexpected subscribers.", 2, eventBus.getCostliestSubscribers(5).size());
+        } finally {
+            config.clearProperty(ThreadResourceSampler.ACCOUNTING_ENABLED_PROP_NAME);
+        }
+    }
+
     public static void checkIfEventOfferedAndDispatched(TestAwareQueue testAwareQueue, EventHandler handler) {
         assertEquals("Event not offered.", 1, testAwareQueue.offeredCount.get());
 
@@ -561,6 +836,19 @@ public class NFEventBusTest {
         }
 	}
 
+	public static class MultiEventHandler {
+
+        @Subscribe
+        @SuppressWarnings("unused")
+        public void handleEvent(MockAnnotatable event) {
+        }
+
+        @Subscribe
+        @SuppressWarnings("unused")
+        public void handleEvent2(Event2 event) {
+        }
+	}
+
 	public static class Event2Handler {
 
         final Object event2ReceiveMonitor = new Object();
@@ -645,6 +933,19 @@ public class NFEventBusTest {
 		}
 	}
 
+    public interface NamedAnnotatable extends MockAnnotatable {
+    }
+
+    /**
+     * Reaches {@link MockAnnotatable} through its superclass and through {@link NamedAnnotatable}.
+     */
+    public static class ReimplementingEvent extends Event implements NamedAnnotatable {
+
+        public ReimplementingEvent(String name, int id) {
+            super(name, id);
+        }
+    }
+
     public static class TestAwareQueue implements EventBusImpl.ConsumerQueueSupplier.ConsumerQueue {
 
         AtomicInteger offeredCount = new AtomicInteger();
@@ -707,4 +1008,32 @@ public class NFEventBusTest {
             return testAwareQueue.setQueueSizeCounter(queueSizeCounter);
         }
     }
+
+    public static class StuckHandler {
+
+        private final CountDownLatch taken = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Subscribe
+        public void consume(Event2 event) throws InterruptedException {
+            taken.countDown();
+            release.await();
+        }
+    }
+
+    public static class CostlyHandler {
+
+        private final CountDownLatch consumed = new CountDownLatch(10);
+        private volatile long sink;
+
+        @Subscribe
+        public void consume(Event2 event) {
+            long sum = 0;
+            for (int i = 0; i < 100000; i++) {
+                sum += new byte[64].length * i;
+            }
+            sink = sum;
+            consumed.countDown();
+        }
+    }
 }
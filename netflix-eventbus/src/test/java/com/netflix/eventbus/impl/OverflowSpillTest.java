@@ -0,0 +1,179 @@
+package com.netflix.eventbus.impl;
+
+import com.netflix.eventbus.spi.Subscribe;
+import com.netflix.eventbus.utils.EventBusUtils;
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class OverflowSpillTest {
+
+    private File spillDir;
+    private AtomicLong diskUsage;
+
+    @Before
+    public void setUp() throws Exception {
+        spillDir = File.createTempFile("eventbus-spill-test", "");
+        spillDir.delete();
+        spillDir.mkdirs();
+        diskUsage = new AtomicLong();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        File[] files = spillDir.listFiles();
+        if (null != files) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        spillDir.delete();
+    }
+
+    @Test
+    public void testOrderPreservedAcrossSpill() throws Exception {
+        EventBusImpl.ConsumerQueueSupplier.ConsumerQueue queue = newQueue(64, 2048, 4096);
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue("Offer failed for event: " + i, queue.offer("event" + i));
+        }
+        Assert.assertTrue("Spill files not created.", diskUsage.get() > 0);
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals("Unexpected event order.", "event" + i, queue.nonBlockingTake());
+        }
+        Assert.assertNull("Queue not empty after draining.", queue.nonBlockingTake());
+
+        // Once drained, events must go directly to memory.
+        Assert.assertTrue(queue.offer("after"));
+        Assert.assertEquals("after", queue.blockingTake());
+
+        queue.clear();
+        Assert.assertEquals("Spill disk usage not released on clear.", 0, diskUsage.get());
+        Assert.assertEquals("Spill files not deleted on clear.", 0, spillDir.listFiles().length);
+    }
+
+    @Test
+    public void testConsumerCapRejects() throws Exception {
+        EventBusImpl.ConsumerQueueSupplier.ConsumerQueue queue = newQueue(64, 128, 4096);
+
+        int accepted = 0;
+        while (queue.offer("event" + accepted)) {
+            accepted++;
+            Assert.assertTrue("Consumer spill cap not honored.", accepted < 1000);
+        }
+        Assert.assertTrue("Nothing spilled.", accepted > 2);
+        Assert.assertEquals("Consumer spill cap not honored.", 128, diskUsage.get());
+        queue.clear();
+    }
+
+    @Test
+    public void testTotalCapRejects() throws Exception {
+        OverflowSpillConfig config = newConfig(64, 128, 128);
+        SpillingConsumerQueueSupplier supplier =
+                new SpillingConsumerQueueSupplier(new DefaultConsumerQueueSupplier(), config, diskUsage);
+        EventBusImpl.ConsumerQueueSupplier.ConsumerQueue first = newQueue(supplier);
+        EventBusImpl.ConsumerQueueSupplier.ConsumerQueue second = newQueue(supplier);
+
+        int accepted = 0;
+        while (first.offer("event" + accepted)) {
+            accepted++;
+        }
+        Assert.assertTrue("Memory queue must still accept.", second.offer("event"));
+        Assert.assertTrue("Memory queue must still accept.", second.offer("event"));
+        Assert.assertFalse("Total spill cap not honored.", second.offer("event"));
+
+        first.clear();
+        Assert.assertTrue("Spill space not released on clear.", second.offer("event"));
+        second.clear();
+    }
+
+    @Test
+    public void testSegmentsRecycled() throws Exception {
+        EventBusImpl.ConsumerQueueSupplier.ConsumerQueue queue = newQueue(64, 256, 4096);
+        OverflowSpill spill = ((SpillingConsumerQueueSupplier.SpillingConsumerQueue) queue).getSpill();
+
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 20; i++) {
+                Assert.assertTrue(queue.offer("event" + i));
+            }
+            for (int i = 0; i < 20; i++) {
+                Assert.assertEquals("event" + i, queue.nonBlockingTake());
+            }
+        }
+        Assert.assertEquals("Unexpected pending events.", 0, spill.getPendingEvents());
+        Assert.assertTrue("Segments not recycled.", spill.getSegmentCount() <= 2);
+        Assert.assertTrue("Segments not recycled.", diskUsage.get() <= 128);
+        queue.clear();
+    }
+
+    @Test
+    public void testEncodeFailureDoesNotRollSegments() throws Exception {
+        OverflowSpillConfig config = OverflowSpillConfig.builder()
+                                                        .withCodec(new StringEventCodec() {
+                                                            @Override
+                                                            public void encode(Object event, ByteBuffer target) {
+                                                                if ("poison".equals(event)) {
+                                                                    throw new IllegalArgumentException("Can not encode.");
+                                                                }
+                                                                super.encode(event, target);
+                                                            }
+                                                        })
+                                                        .withSpillDirectory(spillDir)
+                                                        .withSegmentSizeBytes(64)
+                                                        .withMaxBytesPerConsumer(256)
+                                                        .withMaxTotalBytes(4096)
+                                                        .build();
+        EventBusImpl.ConsumerQueueSupplier.ConsumerQueue queue =
+                newQueue(new SpillingConsumerQueueSupplier(new DefaultConsumerQueueSupplier(), config, diskUsage));
+        OverflowSpill spill = ((SpillingConsumerQueueSupplier.SpillingConsumerQueue) queue).getSpill();
+
+        Assert.assertTrue(queue.offer("event0"));
+        Assert.assertTrue(queue.offer("event1"));
+        Assert.assertTrue(queue.offer("event2")); // Spilled.
+        for (int i = 0; i < 10; i++) {
+            Assert.assertFalse("Poison event spilled.", queue.offer("poison"));
+        }
+        Assert.assertEquals("Poison events rolled segments.", 1, spill.getSegmentCount());
+        Assert.assertEquals("Poison events used disk.", 64, diskUsage.get());
+        Assert.assertTrue("Spill unusable after a poison event.", queue.offer("event3"));
+        Assert.assertEquals(2, spill.getPendingEvents());
+        queue.clear();
+    }
+
+    private EventBusImpl.ConsumerQueueSupplier.ConsumerQueue newQueue(int segmentSize, long maxPerConsumer,
+                                                                      long maxTotal) throws Exception {
+        OverflowSpillConfig config = newConfig(segmentSize, maxPerConsumer, maxTotal);
+        return newQueue(new SpillingConsumerQueueSupplier(new DefaultConsumerQueueSupplier(), config, diskUsage));
+    }
+
+    private EventBusImpl.ConsumerQueueSupplier.ConsumerQueue newQueue(SpillingConsumerQueueSupplier supplier)
+            throws Exception {
+        SmallQueueSubscriber subscriber = new SmallQueueSubscriber();
+        Method method = subscriber.getClass().getMethod("consume", String.class);
+        return supplier.get(method, EventBusUtils.getSubscriberConfig(method, subscriber), new AtomicLong());
+    }
+
+    private OverflowSpillConfig newConfig(int segmentSize, long maxPerConsumer, long maxTotal) {
+        return OverflowSpillConfig.builder()
+                                  .withCodec(new StringEventCodec())
+                                  .withSpillDirectory(spillDir)
+                                  .withSegmentSizeBytes(segmentSize)
+                                  .withMaxBytesPerConsumer(maxPerConsumer)
+                                  .withMaxTotalBytes(maxTotal)
+                                  .build();
+    }
+
+    public static class SmallQueueSubscriber {
+
+        @Subscribe(queueSize = 2)
+        public void consume(String event) {
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.netflix.eventbus.impl;
+
+import com.netflix.eventbus.spi.EventCodec;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * A codec for string events, used by tests.
+ */
+public class StringEventCodec implements EventCodec {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Override
+    public void encode(Object event, ByteBuffer target) {
+        byte[] bytes = ((String) event).getBytes(UTF_8);
+        if (target.remaining() < bytes.length) {
+            throw new BufferOverflowException();
+        }
+        target.put(bytes);
+    }
+
+    @Override
+    public Object decode(ByteBuffer source) {
+        byte[] bytes = new byte[source.remaining()];
+        source.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}